@@ -0,0 +1,81 @@
+package io.adampoi.java_auto_grader.util;
+
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link TestReportParser} with the DOM parser it replaced on synthetic Gradle-style
+ * reports: {@code testCases} test cases, every tenth failing with a deep stack trace and printing a little, and
+ * {@code suiteOutputKb} kilobytes of suite-level {@code system-out}. Run with
+ * {@code ./gradlew jmh -PjmhIncludes=TestReportParserBenchmark}; the gc profiler reports allocation per report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TestReportParserBenchmark {
+
+    @Param({"50", "1000"})
+    private int testCases;
+
+    @Param({"0", "4096"})
+    private int suiteOutputKb;
+
+    private final TestReportParser streamingParser = new TestReportParser();
+    private final DomTestReportParser domParser = new DomTestReportParser();
+    private byte[] report;
+
+    @Setup(Level.Trial)
+    public void createReport() {
+        int failures = testCases / 10;
+        StringBuilder xml = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<testsuite name=\"workspace.SolutionTest\" tests=\"").append(testCases)
+                .append("\" skipped=\"0\" failures=\"").append(failures)
+                .append("\" errors=\"0\" timestamp=\"2026-01-01T00:00:00\" hostname=\"sandbox\" time=\"1.5\">\n")
+                .append("  <properties/>\n");
+        for (int i = 0; i < testCases; i++) {
+            xml.append("  <testcase name=\"case").append(i).append("()\" classname=\"workspace.SolutionTest\" time=\"0.002\"");
+            if (i % 10 != 0) {
+                xml.append("/>\n");
+                continue;
+            }
+            xml.append(">\n    <failure message=\"expected: &lt;").append(i).append("&gt; but was: &lt;0&gt;\" ")
+                    .append("type=\"org.opentest4j.AssertionFailedError\">org.opentest4j.AssertionFailedError: expected\n");
+            for (int frame = 0; frame < 200; frame++) {
+                xml.append("\tat workspace.Solution.step").append(frame).append("(Solution.java:").append(frame).append(")\n");
+            }
+            xml.append("</failure>\n    <system-out><![CDATA[case ").append(i).append(" printed this\n]]></system-out>\n")
+                    .append("  </testcase>\n");
+        }
+        xml.append("  <system-out><![CDATA[");
+        String line = "DEBUG workspace.Solution - some rather chatty logging from the submission under test\n";
+        for (long written = 0; written < suiteOutputKb * 1024L; written += line.length()) {
+            xml.append(line);
+        }
+        xml.append("]]></system-out>\n  <system-err><![CDATA[]]></system-err>\n</testsuite>\n");
+        report = xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Optional<TestSuiteResult> streaming() {
+        return streamingParser.parseTestReport(new ByteArrayInputStream(report), "benchmark");
+    }
+
+    @Benchmark
+    public Optional<TestSuiteResult> dom() {
+        return domParser.parseTestReport(new ByteArrayInputStream(report), "benchmark");
+    }
+}
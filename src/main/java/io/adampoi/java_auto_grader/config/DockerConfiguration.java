@@ -0,0 +1,60 @@
+package io.adampoi.java_auto_grader.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.util.DockerCliContainerManager;
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.adampoi.java_auto_grader.util.DockerEngineClient;
+import io.adampoi.java_auto_grader.util.DockerEngineContainerManager;
+import io.adampoi.java_auto_grader.util.LocalProcessContainerManager;
+import io.adampoi.java_auto_grader.util.SandboxContainerSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@Configuration
+@Slf4j
+public class DockerConfiguration {
+
+    @Value("${grader.sandbox.backend:docker}")
+    private String backend;
+
+    @Value("${grader.sandbox.local.root:${java.io.tmpdir}/grader-sandbox}")
+    private String localRoot;
+
+    @Value("${grader.sandbox.local.ulimits:-f 4194304,-n 4096}")
+    private List<String> localUlimits;
+
+    @Value("${grader.docker.transport:api}")
+    private String transport;
+
+    @Value("${grader.docker.socket:/var/run/docker.sock}")
+    private String socketPath;
+
+    @Value("${grader.docker.max-idle-connections:8}")
+    private int maxIdleConnections;
+
+    @Bean
+    public DockerContainerManager dockerContainerManager(SandboxContainerSpec containerSpec, ObjectMapper objectMapper) {
+        if ("local".equalsIgnoreCase(backend)) {
+            log.warn("Running sandbox commands as local processes under {}; submissions are not isolated", localRoot);
+            return new LocalProcessContainerManager(containerSpec, Path.of(localRoot), localUlimits);
+        }
+        if ("cli".equalsIgnoreCase(transport)) {
+            log.info("Using docker CLI for sandbox containers");
+            return new DockerCliContainerManager(containerSpec);
+        }
+        Path socket = Path.of(socketPath);
+        if (!Files.exists(socket)) {
+            log.warn("Docker socket {} not found, falling back to docker CLI", socket);
+            return new DockerCliContainerManager(containerSpec);
+        }
+        log.info("Using Docker Engine API at {}", socket);
+        return new DockerEngineContainerManager(
+                new DockerEngineClient(socket, maxIdleConnections), containerSpec, objectMapper);
+    }
+}
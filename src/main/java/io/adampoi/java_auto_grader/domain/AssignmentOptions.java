@@ -1,6 +1,9 @@
 package io.adampoi.java_auto_grader.domain;
 
+import io.adampoi.java_auto_grader.model.enums.GradingEngine;
 import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import lombok.Data;
 
 @Data
@@ -9,10 +12,13 @@ public class AssignmentOptions {
     private Boolean isPublished;
     private Boolean isTimed;
     private Integer timeLimit;         // in second
+    private Integer gradingTimeout;    // in second, per sandbox build
     private Integer maxAttempts;
     private Boolean showTrySubmission;
     private Boolean showFeedback;
     private Boolean showSolution;
     private Boolean allowUpload;
+    @Enumerated(EnumType.STRING)
+    private GradingEngine gradingEngine;
 
 }
\ No newline at end of file
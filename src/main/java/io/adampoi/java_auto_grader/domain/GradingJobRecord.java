@@ -0,0 +1,64 @@
+package io.adampoi.java_auto_grader.domain;
+
+import io.adampoi.java_auto_grader.model.enums.GradingJobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A grading job handed from an API node to the grader workers. Request and response are the JSON form of
+ * {@code TestCodeRequest} and {@code TestCodeResponse}.
+ */
+@Entity
+@Table(name = "grading_jobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradingJobRecord {
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    @GeneratedValue
+    @UuidGenerator
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private GradingJobStatus status;
+
+    /**
+     * Higher runs first: 2 for FINAL, 1 for ATTEMPT and 0 for TRYOUT submissions.
+     */
+    @Column(nullable = false)
+    private Integer priority;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String request;
+
+    @Column(columnDefinition = "text")
+    private String response;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    private String workerId;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(nullable = false)
+    private Boolean cancelRequested;
+
+    @Column(nullable = false)
+    private OffsetDateTime createdAt;
+
+    private OffsetDateTime claimedAt;
+
+    private OffsetDateTime heartbeatAt;
+
+    private OffsetDateTime completedAt;
+}
@@ -1,8 +1,11 @@
 package io.adampoi.java_auto_grader.domain;
 
 
+import io.adampoi.java_auto_grader.model.type.GradeArguments;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.util.Set;
@@ -29,6 +32,13 @@ public class RubricGrade extends Auditable {
     @Column(nullable = false, length = 50)
     private GradeType gradeType;
 
+    /**
+     * Settings for the grade type, e.g. the stdin cases of an {@code INPUT_OUTPUT} grade.
+     */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private GradeArguments arguments;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "rubric_id", referencedColumnName = "id", nullable = true)
     private Rubric rubric;
@@ -0,0 +1,10 @@
+package io.adampoi.java_auto_grader.event;
+
+import java.util.UUID;
+
+/**
+ * Published when an assignment's rubric test code is changed, so anything derived from the old tests
+ * (compiled test classes, rubric indexes) can be dropped.
+ */
+public record AssignmentTestCodeChangedEvent(UUID assignmentId) {
+}
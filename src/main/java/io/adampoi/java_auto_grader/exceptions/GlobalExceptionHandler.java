@@ -2,6 +2,7 @@ package io.adampoi.java_auto_grader.exceptions;
 
 import io.adampoi.java_auto_grader.model.response.ApiErrorResponse;
 import io.adampoi.java_auto_grader.model.response.FieldErrorDetail;
+import io.adampoi.java_auto_grader.util.GradingQueueFullException;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.security.SignatureException;
 import jakarta.persistence.EntityNotFoundException;
@@ -10,6 +11,7 @@ import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -28,6 +30,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
 import static io.adampoi.java_auto_grader.util.ExceptionUtil.extractFieldName;
 import static io.adampoi.java_auto_grader.util.ExceptionUtil.extractRejectedValue;
@@ -64,6 +67,33 @@ public class GlobalExceptionHandler {
                 .body(new ApiErrorResponse.ErrorWrapper(errorResponse));
     }
 
+    @ExceptionHandler(GradingQueueFullException.class)
+    public ResponseEntity<ApiErrorResponse.ErrorWrapper> handleGradingQueueFullException(
+            GradingQueueFullException exception, HttpServletRequest request) {
+        ApiErrorResponse errorResponse = ApiErrorResponse.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .message(exception.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(new ApiErrorResponse.ErrorWrapper(errorResponse));
+    }
+
+    @ExceptionHandler(CancellationException.class)
+    public ResponseEntity<ApiErrorResponse.ErrorWrapper> handleCancellationException(
+            CancellationException exception, HttpServletRequest request) {
+        ApiErrorResponse errorResponse = ApiErrorResponse.builder()
+                .status(HttpStatus.CONFLICT.value())
+                .message(exception.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiErrorResponse.ErrorWrapper(errorResponse));
+    }
+
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     public ResponseEntity<ApiErrorResponse.ErrorWrapper> handleTypeMismatchException(
             MethodArgumentTypeMismatchException exception, HttpServletRequest request) {
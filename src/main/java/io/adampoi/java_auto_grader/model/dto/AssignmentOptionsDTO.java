@@ -1,5 +1,6 @@
 package io.adampoi.java_auto_grader.model.dto;
 
+import io.adampoi.java_auto_grader.model.enums.GradingEngine;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,4 +16,6 @@ public class AssignmentOptionsDTO {
     private Boolean showFeedback;       // Show feedback after submit
     private Boolean showSolution;       // Show solution after submit (if available)
     private Boolean allowUpload;        // Allow student to upload code
+    private GradingEngine gradingEngine; // Sandbox build (default) or in-memory grader JVM
+    private Integer gradingTimeout;     // Build time limit in seconds (null = server default)
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package io.adampoi.java_auto_grader.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.adampoi.java_auto_grader.model.enums.GradingJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GradingJobDTO {
+
+    private UUID id;
+
+    private String type;
+
+    private GradingJobStatus status;
+
+    private Integer queuePosition;     // jobs ahead of this one, only while QUEUED
+
+    private OffsetDateTime submittedAt;
+
+    private OffsetDateTime startedAt;
+
+    private OffsetDateTime completedAt;
+
+    private SubmissionDTO result;
+
+    private String error;
+
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.adampoi.java_auto_grader.domain.RubricGrade;
+import io.adampoi.java_auto_grader.model.type.GradeArguments;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -34,6 +35,8 @@ public class RubricGradeDTO extends AuditableDTO {
 
     private RubricGrade.GradeType gradeType;
 
+    private GradeArguments arguments;
+
     private UUID rubricId;
 
     private UUID assignmentId;
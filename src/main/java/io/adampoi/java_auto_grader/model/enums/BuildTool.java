@@ -1,5 +1,10 @@
 package io.adampoi.java_auto_grader.model.enums;
 
 public enum BuildTool {
-    GRADLE, MAVEN
+    GRADLE, MAVEN,
+    /**
+     * Maven run through a resident mvnd daemon in the sandbox. Chosen for Maven submissions when
+     * {@code grader.sandbox.maven-mode} is {@code DAEMON}; never requested by clients directly.
+     */
+    MAVEN_DAEMON
 }
\ No newline at end of file
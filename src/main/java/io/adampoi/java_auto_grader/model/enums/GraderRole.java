@@ -0,0 +1,10 @@
+package io.adampoi.java_auto_grader.model.enums;
+
+/**
+ * What a node of the grader does with submissions. {@code STANDALONE} grades them itself; {@code API} only
+ * queues them in the {@code grading_jobs} table and waits for the result; {@code WORKER} claims and grades
+ * queued jobs and is normally run without the web layer.
+ */
+public enum GraderRole {
+    STANDALONE, API, WORKER
+}
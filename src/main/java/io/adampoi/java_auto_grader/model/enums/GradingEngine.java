@@ -0,0 +1,9 @@
+package io.adampoi.java_auto_grader.model.enums;
+
+/**
+ * How an assignment's tests are run. {@code DOCKER} builds a full Gradle/Maven project in a sandbox container;
+ * {@code IN_JVM} compiles in memory and runs the tests in a pooled grader JVM.
+ */
+public enum GradingEngine {
+    DOCKER, IN_JVM
+}
@@ -0,0 +1,5 @@
+package io.adampoi.java_auto_grader.model.enums;
+
+public enum GradingJobStatus {
+    QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+}
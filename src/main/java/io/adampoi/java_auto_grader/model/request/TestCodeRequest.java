@@ -1,6 +1,9 @@
 package io.adampoi.java_auto_grader.model.request;
 
+import io.adampoi.java_auto_grader.domain.Submission;
+import io.adampoi.java_auto_grader.model.enums.GradingEngine;
 import io.adampoi.java_auto_grader.model.type.CodeFile;
+import io.adampoi.java_auto_grader.model.type.InputOutputRun;
 import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -14,10 +17,25 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class TestCodeRequest {
+    private String assignmentId;
+    private String studentId;
     private List<CodeFile> sourceFiles;
     private List<CodeFile> testFiles;
     private String mainClassName;
     private boolean mutationTestingEnabled;
+    private GradingEngine gradingEngine;
+    /**
+     * Time limit per sandbox build in seconds, or {@code null} for the server default.
+     */
+    private Integer timeoutSeconds;
+    /**
+     * What the run is graded for, which orders it among other jobs; {@code null} counts as an attempt.
+     */
+    private Submission.SubmissionType submissionType;
+    /**
+     * Input/output cases to run after the build, by the same engine; {@code null} or empty if there are none.
+     */
+    private List<InputOutputRun> inputOutputRuns;
 
     @Pattern(regexp = "gradle|maven",
             message = "Build Tool must be one of: gradle, maven")
@@ -2,6 +2,8 @@ package io.adampoi.java_auto_grader.model.response;
 
 import io.adampoi.java_auto_grader.model.enums.CompilationStage;
 import io.adampoi.java_auto_grader.model.type.CompilationError;
+import io.adampoi.java_auto_grader.model.type.InputOutputResult;
+import io.adampoi.java_auto_grader.model.type.MutationTestResult;
 import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,7 +22,21 @@ public class TestCodeResponse {
     private String error;
     private int exitCode;
     private long executionTime;
+    /**
+     * Whether output or error was cut down to the capture limit; {@code truncatedBytes} says by how much.
+     */
+    private boolean outputTruncated;
+    private long truncatedBytes;
     private List<TestSuiteResult> testSuites;
     private List<CompilationError> compilationErrors;
     private CompilationStage compilationStage;
+    /**
+     * PIT results, or {@code null} if mutation testing was not requested or did not run.
+     */
+    private MutationTestResult mutationTestResult;
+    /**
+     * One result per {@link io.adampoi.java_auto_grader.model.request.TestCodeRequest#getInputOutputRuns() run}
+     * that was attempted; none if the submission did not compile.
+     */
+    private List<InputOutputResult> inputOutputResults;
 }
@@ -12,6 +12,7 @@ import lombok.NoArgsConstructor;
 public class CompilationError {
     private String errorFile;
     private int line;
+    private int column;
     private String errorMessage;
     private String codeSnippet;
     private String pointer;
@@ -0,0 +1,34 @@
+package io.adampoi.java_auto_grader.model.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One submission sent to a grader JVM. Files are keyed by their project path, laid out as in the sandbox build.
+ * With a {@code mainClass}, the tests are not run; instead {@code main} is invoked once per {@code inputs}
+ * entry, each within {@code timeoutMs}.
+ * <p>
+ * {@code nonce} is fresh for every request and must come back in the result; the submission runs in the same
+ * JVM and can write to its stdout, so a line without it is not an answer.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InJvmGradingRequest {
+    private String nonce;
+    private Map<String, String> sourceFiles;
+    private Map<String, String> testFiles;
+    private String mainClass;
+    private List<String> inputs;
+    /**
+     * Pass each input as whitespace-separated program arguments instead of on stdin.
+     */
+    private boolean inputsAsArguments;
+    private long timeoutMs;
+}
@@ -0,0 +1,38 @@
+package io.adampoi.java_auto_grader.model.type;
+
+import io.adampoi.java_auto_grader.model.enums.CompilationStage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * What a grader JVM reports back for one submission. The exit code follows the build tools: non-zero when
+ * compilation or any test failed.
+ * <p>
+ * {@code mainRuns} holds one entry per input of a {@code main} request, in order. It may stop short after a run
+ * timed out or called {@code System.exit}; the grader JVM then asks to be replaced through {@code recycle}, as it
+ * does when a submission left threads running.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InJvmGradingResult {
+    /**
+     * The {@link InJvmGradingRequest#getNonce() nonce} of the request this answers.
+     */
+    private String nonce;
+    private int exitCode;
+    private String output;
+    private String errors;
+    private long executionTime;
+    private long truncatedBytes;
+    private CompilationStage compilationStage;
+    private List<CompilationError> compilationErrors;
+    private List<TestSuiteResult> testSuites;
+    private List<InJvmMainRun> mainRuns;
+    private boolean recycle;
+}
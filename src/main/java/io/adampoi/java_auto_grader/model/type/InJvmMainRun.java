@@ -0,0 +1,27 @@
+package io.adampoi.java_auto_grader.model.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One invocation of a submission's {@code main}, in a grader JVM or in a sandbox.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InJvmMainRun {
+
+    /**
+     * {@code COMPLETED}, {@code EXCEPTION} when {@code main} threw, {@code EXITED} when it called
+     * {@code System.exit}, or {@code TIMEOUT}.
+     */
+    private String status;
+    private String output;
+    private String errors;
+    private String exception;
+    private long executionTime;
+    private long truncatedBytes;
+}
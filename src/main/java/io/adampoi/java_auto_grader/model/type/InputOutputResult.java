@@ -0,0 +1,26 @@
+package io.adampoi.java_auto_grader.model.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * What came of an {@link InputOutputRun}: one entry of {@code runs} per input, in order. When there are fewer
+ * runs than inputs, {@code error} says why the rest did not run.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InputOutputResult {
+    private String id;
+    private List<InJvmMainRun> runs;
+    private String error;
+    /**
+     * The time limit each case actually got, which the server may have lowered.
+     */
+    private long timeoutMs;
+}
@@ -0,0 +1,31 @@
+package io.adampoi.java_auto_grader.model.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The input/output cases of one rubric grade, run against the submission once it compiled. {@code main} of
+ * {@code mainClass} is called once per {@code inputs} entry, each within {@code timeoutMs}, with the input on
+ * stdin or as whitespace-separated program arguments.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InputOutputRun {
+    /**
+     * The rubric grade the cases belong to; the {@link InputOutputResult} carries it back.
+     */
+    private String id;
+    /**
+     * Binary name, e.g. {@code workspace.Main}.
+     */
+    private String mainClass;
+    private List<String> inputs;
+    private boolean inputsAsArguments;
+    private long timeoutMs;
+}
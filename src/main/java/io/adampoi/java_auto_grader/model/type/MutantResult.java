@@ -0,0 +1,21 @@
+package io.adampoi.java_auto_grader.model.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MutantResult {
+    private String sourceFile;
+    private String mutatedClass;
+    private String mutatedMethod;
+    private int lineNumber;
+    private String mutator;
+    private String description;
+    private String status; // PIT status, e.g. "KILLED", "SURVIVED", "NO_COVERAGE"
+    private String killingTest;
+}
@@ -0,0 +1,21 @@
+package io.adampoi.java_auto_grader.model.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MutationTestResult {
+    private int totalMutations;
+    private int detected; // killed, timed out or crashed the tests
+    private int survived;
+    private int noCoverage;
+    private double mutationScore; // percentage of mutations detected
+    private List<MutantResult> undetectedMutants;
+}
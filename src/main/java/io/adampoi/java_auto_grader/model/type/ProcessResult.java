@@ -10,8 +10,20 @@ public class ProcessResult {
     private String output;
     private String errors;
     private long executionTime;
+    /**
+     * Bytes of output that were dropped because a stream exceeded its capture limit.
+     */
+    private long truncatedBytes;
+
+    public ProcessResult(int exitCode, String output, String errors, long executionTime) {
+        this(exitCode, output, errors, executionTime, 0);
+    }
 
     public boolean isSuccess() {
         return exitCode == 0;
     }
+
+    public boolean isTruncated() {
+        return truncatedBytes > 0;
+    }
 }
\ No newline at end of file
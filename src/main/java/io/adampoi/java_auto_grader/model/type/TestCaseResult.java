@@ -17,4 +17,9 @@ public class TestCaseResult {
     private String failureMessage;
     private String errorMessage;
     private String stackTrace;
+    /**
+     * The test's own {@code system-out} and {@code system-err}, cut to the configured limit; {@code null} if
+     * the report has none for it.
+     */
+    private String output;
 }
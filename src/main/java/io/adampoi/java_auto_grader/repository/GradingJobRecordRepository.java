@@ -0,0 +1,101 @@
+package io.adampoi.java_auto_grader.repository;
+
+import io.adampoi.java_auto_grader.domain.GradingJobRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface GradingJobRecordRepository extends JpaRepository<GradingJobRecord, UUID> {
+
+    /**
+     * Locks the queued job with the highest priority, where waiting {@code agingSeconds} counts as one level.
+     * Rows locked by other workers are skipped rather than waited for, so workers never claim the same job.
+     */
+    @Query(value = """
+            SELECT * FROM grading_jobs
+            WHERE status = 'QUEUED'
+            ORDER BY priority + EXTRACT(EPOCH FROM (LOCALTIMESTAMP - created_at)) / :agingSeconds DESC, created_at
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    Optional<GradingJobRecord> lockNextQueued(@Param("agingSeconds") long agingSeconds);
+
+    /**
+     * Stores the outcome of a job, unless it was handed to another worker in the meantime.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE grading_jobs SET status = :status, response = :response, error = :error, completed_at = :now
+            WHERE id = :id AND worker_id = :workerId AND status = 'RUNNING'
+            """, nativeQuery = true)
+    int complete(@Param("id") UUID id, @Param("workerId") String workerId, @Param("status") String status,
+                 @Param("response") String response, @Param("error") String error,
+                 @Param("now") OffsetDateTime now);
+
+    /**
+     * Cancels a job no worker has claimed yet. Waits for a worker that is claiming it right now, after which
+     * the job is no longer queued and nothing is changed.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE grading_jobs SET status = 'CANCELLED', cancel_requested = TRUE, completed_at = :now
+            WHERE id = :id AND status = 'QUEUED'
+            """, nativeQuery = true)
+    int cancelQueued(@Param("id") UUID id, @Param("now") OffsetDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE grading_jobs SET cancel_requested = TRUE WHERE id = :id", nativeQuery = true)
+    int requestCancel(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = "UPDATE grading_jobs SET heartbeat_at = :now WHERE id IN (:ids) AND worker_id = :workerId",
+            nativeQuery = true)
+    int touch(@Param("ids") Collection<UUID> ids, @Param("workerId") String workerId,
+              @Param("now") OffsetDateTime now);
+
+    @Query(value = "SELECT id FROM grading_jobs WHERE id IN (:ids) AND cancel_requested", nativeQuery = true)
+    List<UUID> findCancelRequested(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Gives the running jobs of a worker that is shutting down back to the queue.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE grading_jobs SET status = 'QUEUED', worker_id = NULL, claimed_at = NULL, heartbeat_at = NULL
+            WHERE worker_id = :workerId AND status = 'RUNNING'
+            """, nativeQuery = true)
+    int release(@Param("workerId") String workerId);
+
+    /**
+     * Fails jobs whose worker stopped sending heartbeats and that already had their tries.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE grading_jobs SET status = 'FAILED', completed_at = :now,
+                error = 'Grading worker stopped responding'
+            WHERE status = 'RUNNING' AND heartbeat_at < :cutoff AND attempts >= :maxAttempts
+            """, nativeQuery = true)
+    int failStale(@Param("cutoff") OffsetDateTime cutoff, @Param("maxAttempts") int maxAttempts,
+                  @Param("now") OffsetDateTime now);
+
+    /**
+     * Puts the remaining jobs whose worker stopped sending heartbeats back in the queue.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE grading_jobs SET status = 'QUEUED', worker_id = NULL, claimed_at = NULL, heartbeat_at = NULL
+            WHERE status = 'RUNNING' AND heartbeat_at < :cutoff
+            """, nativeQuery = true)
+    int requeueStale(@Param("cutoff") OffsetDateTime cutoff);
+
+    @Modifying
+    @Query(value = "DELETE FROM grading_jobs WHERE completed_at < :cutoff", nativeQuery = true)
+    int deleteCompletedBefore(@Param("cutoff") OffsetDateTime cutoff);
+}
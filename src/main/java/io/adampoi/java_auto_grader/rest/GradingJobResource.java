@@ -0,0 +1,79 @@
+package io.adampoi.java_auto_grader.rest;
+
+import io.adampoi.java_auto_grader.model.dto.GradingJobDTO;
+import io.adampoi.java_auto_grader.model.response.ApiSuccessResponse;
+import io.adampoi.java_auto_grader.service.BuildLogService;
+import io.adampoi.java_auto_grader.service.GradingJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping(value = "/api/grading-jobs",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+@Tag(name = "GradingJobs")
+public class GradingJobResource {
+
+    private final GradingJobService gradingJobService;
+    private final BuildLogService buildLogService;
+
+    public GradingJobResource(final GradingJobService gradingJobService,
+                              final BuildLogService buildLogService) {
+        this.gradingJobService = gradingJobService;
+        this.buildLogService = buildLogService;
+    }
+
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasAnyAuthority('SUBMISSION:CREATE', 'SUBMISSION:TEST')")
+    @ApiResponse(responseCode = "200")
+    @Operation(summary = "Get Grading Job", description = "Get the status of a queued grading job, and its result once finished")
+    public ApiSuccessResponse<GradingJobDTO> getGradingJob(@PathVariable(name = "jobId") final UUID jobId) {
+        return ApiSuccessResponse.<GradingJobDTO>builder()
+                .data(gradingJobService.get(jobId))
+                .statusCode(HttpStatus.OK)
+                .build();
+    }
+
+    @DeleteMapping("/{jobId}")
+    @PreAuthorize("hasAnyAuthority('SUBMISSION:CREATE', 'SUBMISSION:TEST')")
+    @ApiResponse(responseCode = "200")
+    @Operation(summary = "Cancel Grading Job", description = "Cancel a queued or running grading job, stopping its sandbox build")
+    public ApiSuccessResponse<GradingJobDTO> cancelGradingJob(@PathVariable(name = "jobId") final UUID jobId) {
+        return ApiSuccessResponse.<GradingJobDTO>builder()
+                .data(gradingJobService.cancel(jobId))
+                .statusCode(HttpStatus.OK)
+                .build();
+    }
+
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority('SUBMISSION:CREATE', 'SUBMISSION:TEST')")
+    @ApiResponse(responseCode = "200")
+    @Operation(summary = "Subscribe to Grading Job", description = "Stream 'status' events of a grading job until it finishes")
+    public SseEmitter subscribeToGradingJob(@PathVariable(name = "jobId") final UUID jobId) {
+        return gradingJobService.subscribe(jobId);
+    }
+
+    @GetMapping(value = "/{jobId}/logs", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority('SUBMISSION:CREATE', 'SUBMISSION:TEST')")
+    @ApiResponse(responseCode = "200")
+    @Operation(summary = "Stream Build Log", description = "Stream the build output of a grading job as 'log' events, resuming after Last-Event-ID")
+    public SseEmitter streamBuildLog(@PathVariable(name = "jobId") final UUID jobId,
+                                     @RequestHeader(name = "Last-Event-ID", required = false) final Long lastEventId) {
+        // Resolving the job first applies the same ownership check as the status endpoints.
+        gradingJobService.get(jobId);
+        return buildLogService.subscribe(jobId.toString(), lastEventId);
+    }
+
+}
@@ -3,6 +3,7 @@ package io.adampoi.java_auto_grader.rest;
 import io.adampoi.java_auto_grader.domain.Submission;
 import io.adampoi.java_auto_grader.filter.SubmissionFilterDef;
 import io.adampoi.java_auto_grader.model.dto.BulkSubmissionDTO;
+import io.adampoi.java_auto_grader.model.dto.GradingJobDTO;
 import io.adampoi.java_auto_grader.model.dto.SubmissionCompileDTO;
 import io.adampoi.java_auto_grader.model.dto.SubmissionDTO;
 import io.adampoi.java_auto_grader.model.request.BulkUploadSubmissionRequest;
@@ -16,6 +17,7 @@ import io.adampoi.java_auto_grader.repository.SubmissionRepository;
 import io.adampoi.java_auto_grader.repository.UserRepository;
 import io.adampoi.java_auto_grader.service.ChatService;
 import io.adampoi.java_auto_grader.service.CodeFeedbackService;
+import io.adampoi.java_auto_grader.service.GradingJobService;
 import io.adampoi.java_auto_grader.service.SubmissionService;
 import io.adampoi.java_auto_grader.util.ReferencedException;
 import io.adampoi.java_auto_grader.util.ReferencedWarning;
@@ -23,9 +25,11 @@ import io.github.acoboh.query.filter.jpa.annotations.QFParam;
 import io.github.acoboh.query.filter.jpa.processor.QueryFilter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -53,10 +57,12 @@ public class SubmissionResource {
     private final CodeFeedbackService codeFeedbackService;
     private final ChatService chatService;
     private final SubmissionRepository submissionRepository;
+    private final GradingJobService gradingJobService;
 
     public SubmissionResource(final SubmissionService submissionService,
                               final AssignmentRepository assignmentRepository, final UserRepository userRepository,
-                              final ClassroomRepository classroomRepository, CodeFeedbackService codeFeedbackService, ChatService chatService, SubmissionRepository submissionRepository) {
+                              final ClassroomRepository classroomRepository, CodeFeedbackService codeFeedbackService, ChatService chatService, SubmissionRepository submissionRepository,
+                              final GradingJobService gradingJobService) {
         this.submissionService = submissionService;
         this.assignmentRepository = assignmentRepository;
         this.userRepository = userRepository;
@@ -64,6 +70,7 @@ public class SubmissionResource {
         this.codeFeedbackService = codeFeedbackService;
         this.chatService = chatService;
         this.submissionRepository = submissionRepository;
+        this.gradingJobService = gradingJobService;
     }
 
     @GetMapping
@@ -150,12 +157,25 @@ public class SubmissionResource {
 
     @PostMapping
     @PreAuthorize("hasAuthority('SUBMISSION:CREATE')")
-    @Operation(summary = "Create Submission", description = "Create a new student submission for an assignment")
-    @ApiResponse(responseCode = "201", description = "Submission created")
-    public ApiSuccessResponse<SubmissionDTO> createSubmission(
-            @RequestBody @Validated(TestSubmitRequest.CreateGroup.class) final TestSubmitRequest request
+    @Operation(summary = "Create Submission", description = "Create a new student submission for an assignment. "
+            + "The submission is queued and a grading job to poll is returned; with 'Prefer: wait' the request "
+            + "waits for grading and returns the submission instead.")
+    @ApiResponse(responseCode = "201", description = "Submission created, with 'Prefer: wait'")
+    @ApiResponse(responseCode = "202", description = "Submission queued for grading")
+    @ApiResponse(responseCode = "503", description = "Grading queue is full")
+    public ApiSuccessResponse<?> createSubmission(
+            @RequestBody @Validated(TestSubmitRequest.CreateGroup.class) final TestSubmitRequest request,
+            @RequestHeader(name = "Prefer", required = false) final String prefer,
+            final HttpServletResponse response
     ) {
-        final SubmissionDTO createdSubmission = submissionService.submitStudentSubmission(UUID.fromString(request.getUserId()), request);
+        UUID studentId = UUID.fromString(request.getUserId());
+        if (gradingJobService.respondAsync(prefer)) {
+            GradingJobService.GradingJob job = gradingJobService.submit(GradingJobService.typeOf(request),
+                    () -> submissionService.submitStudentSubmission(studentId, request));
+            return accepted(job, response);
+        }
+        final SubmissionDTO createdSubmission = gradingJobService.submitAndWait(GradingJobService.typeOf(request),
+                () -> submissionService.submitStudentSubmission(studentId, request));
         return ApiSuccessResponse.<SubmissionDTO>builder()
                 .data(createdSubmission)
                 .statusCode(HttpStatus.CREATED)
@@ -210,17 +230,37 @@ public class SubmissionResource {
 
     @PostMapping("/tryout")
     @PreAuthorize("hasAuthority('SUBMISSION:TEST')")
-    @Operation(summary = "Tryout Submission", description = "Try out code submission (not persisted, just returns results)")
-    @ApiResponse(responseCode = HTTP_OK, description = "Tryout results returned")
-    public ApiSuccessResponse<SubmissionDTO> tryoutSubmission(
-            @RequestBody @Validated(TestSubmitRequest.TryoutGroup.class) final TestSubmitRequest request
+    @Operation(summary = "Tryout Submission", description = "Try out code submission (not persisted, just returns results). "
+            + "The tryout is queued and a grading job to poll is returned; with 'Prefer: wait' the request waits "
+            + "for grading and returns the results instead.")
+    @ApiResponse(responseCode = HTTP_OK, description = "Tryout results returned, with 'Prefer: wait'")
+    @ApiResponse(responseCode = "202", description = "Tryout queued for grading")
+    @ApiResponse(responseCode = "503", description = "Grading queue is full")
+    public ApiSuccessResponse<?> tryoutSubmission(
+            @RequestBody @Validated(TestSubmitRequest.TryoutGroup.class) final TestSubmitRequest request,
+            @RequestHeader(name = "Prefer", required = false) final String prefer,
+            final HttpServletResponse response
     ) {
-        SubmissionDTO result = submissionService.tryoutSubmission(request);
+        if (gradingJobService.respondAsync(prefer)) {
+            GradingJobService.GradingJob job = gradingJobService.submit(Submission.SubmissionType.TRYOUT,
+                    () -> submissionService.tryoutSubmission(request));
+            return accepted(job, response);
+        }
+        SubmissionDTO result = gradingJobService.submitAndWait(Submission.SubmissionType.TRYOUT,
+                () -> submissionService.tryoutSubmission(request));
         return ApiSuccessResponse.<SubmissionDTO>builder()
                 .data(result)
                 .statusCode(HttpStatus.OK)
                 .build();
     }
 
+    private ApiSuccessResponse<GradingJobDTO> accepted(GradingJobService.GradingJob job, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.LOCATION, "/api/grading-jobs/" + job.getId());
+        return ApiSuccessResponse.<GradingJobDTO>builder()
+                .data(gradingJobService.toDTO(job))
+                .statusCode(HttpStatus.ACCEPTED)
+                .build();
+    }
+
 
 }
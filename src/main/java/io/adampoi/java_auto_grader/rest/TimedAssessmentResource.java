@@ -1,11 +1,13 @@
 package io.adampoi.java_auto_grader.rest;
 
+import io.adampoi.java_auto_grader.domain.Submission;
 import io.adampoi.java_auto_grader.domain.User;
 import io.adampoi.java_auto_grader.model.dto.SubmissionDTO;
 import io.adampoi.java_auto_grader.model.dto.TimedAssessmentAttempt;
 import io.adampoi.java_auto_grader.model.request.TestSubmitRequest;
 import io.adampoi.java_auto_grader.model.response.ApiSuccessResponse;
 import io.adampoi.java_auto_grader.repository.UserRepository;
+import io.adampoi.java_auto_grader.service.GradingJobService;
 import io.adampoi.java_auto_grader.service.TimedAssessmentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -19,6 +21,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
+import java.time.OffsetDateTime;
 import java.util.Map;
 import java.util.UUID;
 
@@ -30,10 +33,13 @@ public class TimedAssessmentResource {
 
     private final TimedAssessmentService timedAssessmentService;
     private final UserRepository userRepository;
+    private final GradingJobService gradingJobService;
 
-    public TimedAssessmentResource(TimedAssessmentService timedAssessmentService, UserRepository userRepository) {
+    public TimedAssessmentResource(TimedAssessmentService timedAssessmentService, UserRepository userRepository,
+                                   GradingJobService gradingJobService) {
         this.timedAssessmentService = timedAssessmentService;
         this.userRepository = userRepository;
+        this.gradingJobService = gradingJobService;
     }
 
     private UUID getStudentId(Principal principal) {
@@ -81,8 +87,11 @@ public class TimedAssessmentResource {
             @PathVariable UUID assignmentId,
             @RequestBody @Validated(TestSubmitRequest.CreateGroup.class) final TestSubmitRequest request
     ) {
-        SubmissionDTO createdSubmission = timedAssessmentService.submitTimedAssessment(
-                UUID.fromString(request.getUserId()), request);
+        // The time limit is checked against arrival, so time spent queued for grading is not held against the student.
+        OffsetDateTime receivedAt = OffsetDateTime.now();
+        SubmissionDTO createdSubmission = gradingJobService.submitAndWait(Submission.SubmissionType.FINAL,
+                () -> timedAssessmentService.submitTimedAssessment(
+                        UUID.fromString(request.getUserId()), request, receivedAt));
         return ApiSuccessResponse.<SubmissionDTO>builder()
                 .data(createdSubmission)
                 .statusCode(HttpStatus.OK)
@@ -1,6 +1,7 @@
 package io.adampoi.java_auto_grader.service;
 
 import io.adampoi.java_auto_grader.domain.*;
+import io.adampoi.java_auto_grader.event.AssignmentTestCodeChangedEvent;
 import io.adampoi.java_auto_grader.model.dto.AssignmentDTO;
 import io.adampoi.java_auto_grader.model.dto.AssignmentOptionsDTO;
 import io.adampoi.java_auto_grader.model.dto.RubricDTO;
@@ -13,11 +14,13 @@ import io.github.acoboh.query.filter.jpa.processor.QueryFilter;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.SneakyThrows;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -30,15 +33,18 @@ public class AssignmentService {
     private final UserRepository userRepository;
     private final SubmissionRepository submissionRepository;
     private final RubricGradeRepository rubricGradeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public AssignmentService(final AssignmentRepository assignmentRepository,
                              final CourseRepository courseRepository, final UserRepository userRepository,
-                             final SubmissionRepository submissionRepository, RubricGradeRepository rubricGradeRepository) {
+                             final SubmissionRepository submissionRepository, RubricGradeRepository rubricGradeRepository,
+                             final ApplicationEventPublisher eventPublisher) {
         this.assignmentRepository = assignmentRepository;
         this.courseRepository = courseRepository;
         this.userRepository = userRepository;
         this.submissionRepository = submissionRepository;
         this.rubricGradeRepository = rubricGradeRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     public static AssignmentDTO mapToDTO(final Assignment assignment, final AssignmentDTO assignmentDTO) {
@@ -75,6 +81,8 @@ public class AssignmentService {
         dto.setShowFeedback(options.getShowFeedback());
         dto.setShowSolution(options.getShowSolution());
         dto.setAllowUpload(options.getAllowUpload());
+        dto.setGradingEngine(options.getGradingEngine());
+        dto.setGradingTimeout(options.getGradingTimeout());
         return dto;
     }
 
@@ -109,8 +117,12 @@ public class AssignmentService {
     public AssignmentDTO update(final UUID assignmentId, final AssignmentDTO assignmentDTO) {
         final Assignment assignment = assignmentRepository.findById(assignmentId)
                 .orElseThrow(() -> new EntityNotFoundException("Assignment not found"));
+        String previousTestCode = assignment.getTestCode();
         mapToEntity(assignmentDTO, assignment);
         Assignment savedAssignment = assignmentRepository.save(assignment);
+        if (!Objects.equals(previousTestCode, savedAssignment.getTestCode())) {
+            eventPublisher.publishEvent(new AssignmentTestCodeChangedEvent(assignmentId));
+        }
         return mapToDTO(savedAssignment, new AssignmentDTO());
     }
 
@@ -189,6 +201,8 @@ public class AssignmentService {
         if (optionsDTO.getShowFeedback() != null) options.setShowFeedback(optionsDTO.getShowFeedback());
         if (optionsDTO.getShowSolution() != null) options.setShowSolution(optionsDTO.getShowSolution());
         if (optionsDTO.getAllowUpload() != null) options.setAllowUpload(optionsDTO.getAllowUpload());
+        if (optionsDTO.getGradingEngine() != null) options.setGradingEngine(optionsDTO.getGradingEngine());
+        if (optionsDTO.getGradingTimeout() != null) options.setGradingTimeout(optionsDTO.getGradingTimeout());
 
         return options;
     }
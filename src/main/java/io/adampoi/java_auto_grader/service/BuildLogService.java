@@ -0,0 +1,271 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Live build output per grading job. Output is split into lines and kept in a fixed-size ring buffer, so a
+ * client that subscribes late still sees the most recent lines and a noisy build cannot grow memory without
+ * bound. Lines are pushed to subscribers from a separate thread pool: a slow client never stalls the build.
+ * <p>
+ * The log of the job running on the current thread is found through {@link #current()}, the same way the
+ * security context travels with a request.
+ */
+@Service
+@Slf4j
+public class BuildLogService {
+
+    private static final long SSE_TIMEOUT_MILLIS = Duration.ofMinutes(10).toMillis();
+    private static final ThreadLocal<BuildLog> CURRENT = new ThreadLocal<>();
+
+    /**
+     * One line of output. Sequence numbers start at 1 and double as SSE event ids.
+     */
+    public record LogLine(long sequence, String stream, String text) {
+    }
+
+    private final Map<String, BuildLog> logs = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private ExecutorService streamExecutor;
+
+    @Value("${grader.build-logs.max-lines:1000}")
+    private int maxLines;
+
+    @Value("${grader.build-logs.max-line-length:2000}")
+    private int maxLineLength;
+
+    @Value("${grader.build-logs.retention-minutes:10}")
+    private long retentionMinutes;
+
+    @Value("${grader.build-logs.stream-threads:2}")
+    private int streamThreads;
+
+    @PostConstruct
+    public void init() {
+        streamExecutor = Executors.newFixedThreadPool(Math.max(1, streamThreads), runnable -> {
+            Thread thread = new Thread(runnable, "build-log-stream-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
+    }
+
+    /**
+     * Opens the log for {@code id} and makes it the current thread's log until {@link #close(String)}.
+     */
+    public BuildLog open(String id) {
+        BuildLog buildLog = logs.computeIfAbsent(id, BuildLog::new);
+        CURRENT.set(buildLog);
+        return buildLog;
+    }
+
+    /**
+     * Marks the log as complete, ends all subscriptions once they have caught up and detaches it from the
+     * current thread. The buffered lines remain available for {@code grader.build-logs.retention-minutes}.
+     */
+    public void close(String id) {
+        BuildLog buildLog = logs.get(id);
+        if (CURRENT.get() == buildLog) {
+            CURRENT.remove();
+        }
+        if (buildLog != null) {
+            buildLog.finish();
+        }
+    }
+
+    /**
+     * The log of the job running on this thread, or {@code null} outside a grading job.
+     */
+    public BuildLog current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code work} with {@code buildLog} as the current log, for work a grading job hands to another thread.
+     */
+    public <T> T callWith(BuildLog buildLog, Supplier<T> work) {
+        BuildLog previous = CURRENT.get();
+        CURRENT.set(buildLog);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Streams {@code log} events for every buffered line after {@code lastEventId}, then new lines as they
+     * arrive, and an {@code end} event once the build has finished.
+     */
+    public SseEmitter subscribe(String id, Long lastEventId) {
+        BuildLog buildLog = logs.get(id);
+        if (buildLog == null) {
+            throw new EntityNotFoundException("Build log not found: " + id);
+        }
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(emitter, lastEventId == null ? 0 : lastEventId);
+        buildLog.subscribers.add(subscriber);
+        emitter.onCompletion(() -> buildLog.subscribers.remove(subscriber));
+        emitter.onTimeout(() -> buildLog.subscribers.remove(subscriber));
+        emitter.onError(error -> buildLog.subscribers.remove(subscriber));
+        buildLog.scheduleDrain();
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${grader.build-logs.cleanup-interval-ms:60000}")
+    public void evictFinishedLogs() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minusMinutes(retentionMinutes);
+        logs.values().removeIf(buildLog -> buildLog.finishedAt != null && buildLog.finishedAt.isBefore(cutoff));
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private long lastSent;
+
+        Subscriber(SseEmitter emitter, long lastSent) {
+            this.emitter = emitter;
+            this.lastSent = lastSent;
+        }
+    }
+
+    public final class BuildLog implements DockerContainerManager.OutputListener {
+
+        private final String id;
+        private final ArrayDeque<LogLine> lines = new ArrayDeque<>();
+        private final ByteArrayOutputStream[] partialLines = {new ByteArrayOutputStream(), new ByteArrayOutputStream()};
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private final Object drainLock = new Object();
+        private long nextSequence = 1;
+        private volatile OffsetDateTime finishedAt;
+
+        private BuildLog(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void onOutput(boolean stderr, byte[] data, int length) {
+            synchronized (this) {
+                ByteArrayOutputStream partial = partialLines[stderr ? 1 : 0];
+                for (int i = 0; i < length; i++) {
+                    byte b = data[i];
+                    if (b == '\n') {
+                        flushLine(stderr);
+                    } else if (b != '\r') {
+                        partial.write(b);
+                        if (partial.size() >= maxLineLength) {
+                            flushLine(stderr);
+                        }
+                    }
+                }
+            }
+            scheduleDrain();
+        }
+
+        /**
+         * Adds a line that did not come from the sandbox, e.g. a status message from the grader itself.
+         */
+        public void appendLine(String text) {
+            synchronized (this) {
+                addLine("system", text.length() > maxLineLength ? text.substring(0, maxLineLength) : text);
+            }
+            scheduleDrain();
+        }
+
+        private void finish() {
+            synchronized (this) {
+                // A trailing line without a newline is still output; an empty remainder is not.
+                for (boolean stderr : new boolean[]{false, true}) {
+                    if (partialLines[stderr ? 1 : 0].size() > 0) {
+                        flushLine(stderr);
+                    }
+                }
+                finishedAt = OffsetDateTime.now();
+            }
+            scheduleDrain();
+        }
+
+        private void flushLine(boolean stderr) {
+            ByteArrayOutputStream partial = partialLines[stderr ? 1 : 0];
+            addLine(stderr ? "stderr" : "stdout", partial.toString(StandardCharsets.UTF_8));
+            partial.reset();
+        }
+
+        private void addLine(String stream, String text) {
+            lines.addLast(new LogLine(nextSequence++, stream, text));
+            while (lines.size() > maxLines) {
+                lines.removeFirst();
+            }
+        }
+
+        private synchronized List<LogLine> linesAfter(long sequence) {
+            return lines.stream().filter(line -> line.sequence() > sequence).toList();
+        }
+
+        private void scheduleDrain() {
+            if (!subscribers.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+                streamExecutor.execute(() -> {
+                    drainScheduled.set(false);
+                    drain();
+                });
+            }
+        }
+
+        private void drain() {
+            synchronized (drainLock) {
+                boolean finished = finishedAt != null;
+                for (Subscriber subscriber : subscribers) {
+                    try {
+                        for (LogLine line : linesAfter(subscriber.lastSent)) {
+                            subscriber.emitter.send(SseEmitter.event()
+                                    .id(Long.toString(line.sequence()))
+                                    .name("log")
+                                    .data(line));
+                            subscriber.lastSent = line.sequence();
+                        }
+                        if (finished) {
+                            subscriber.emitter.send(SseEmitter.event().name("end").data(id));
+                            subscriber.emitter.complete();
+                            subscribers.remove(subscriber);
+                        }
+                    } catch (IOException | IllegalStateException e) {
+                        subscribers.remove(subscriber);
+                        log.debug("Dropped build log stream for {}", id, e);
+                    }
+                }
+            }
+        }
+    }
+}
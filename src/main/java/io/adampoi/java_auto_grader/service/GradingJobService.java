@@ -0,0 +1,583 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.Submission;
+import io.adampoi.java_auto_grader.model.dto.GradingJobDTO;
+import io.adampoi.java_auto_grader.model.dto.SubmissionDTO;
+import io.adampoi.java_auto_grader.model.enums.GradingJobStatus;
+import io.adampoi.java_auto_grader.model.request.TestSubmitRequest;
+import io.adampoi.java_auto_grader.util.CancellationToken;
+import io.adampoi.java_auto_grader.util.GradingQueueFullException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Runs grading off the request thread. Jobs are queued in one lane per submission type and served by a fixed
+ * pool of workers; the caller either waits for the result or gets the job back straight away and polls or
+ * subscribes to it. A full queue is rejected up front with a retry hint instead of tying up another request
+ * thread.
+ * <p>
+ * Workers take FINAL before ATTEMPT before TRYOUT jobs, but a job gains one priority level for every
+ * {@code grader.jobs.aging-seconds} it waits, so practice runs are delayed rather than starved. Each lane
+ * also has its own concurrency limit, which keeps workers free for graded submissions during an exam.
+ * <p>
+ * A job can be cancelled while queued or running. A running job's {@link CancellationToken} kills the sandbox
+ * command it is waiting on. A TRYOUT job is also cancelled when the last client watching its status goes away.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class GradingJobService {
+
+    private static final long SSE_TIMEOUT_MILLIS = Duration.ofMinutes(10).toMillis();
+
+    private final MeterRegistry meterRegistry;
+    private final BuildLogService buildLogService;
+    private final Map<UUID, GradingJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final Map<Submission.SubmissionType, Lane> lanes = new EnumMap<>(Submission.SubmissionType.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition jobReady = lock.newCondition();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private int queued;
+
+    @Value("${grader.jobs.workers:4}")
+    private int workers;
+
+    @Value("${grader.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${grader.jobs.retention-minutes:30}")
+    private long retentionMinutes;
+
+    @Value("${grader.jobs.min-retry-after-seconds:5}")
+    private long minRetryAfterSeconds;
+
+    @Value("${grader.jobs.async-by-default:true}")
+    private boolean asyncByDefault;
+
+    @Value("${grader.jobs.aging-seconds:30}")
+    private long agingSeconds;
+
+    @Value("${grader.jobs.lanes.final.max-concurrent:${grader.jobs.workers:4}}")
+    private int finalMaxConcurrent;
+
+    @Value("${grader.jobs.lanes.attempt.max-concurrent:${grader.jobs.workers:4}}")
+    private int attemptMaxConcurrent;
+
+    @Value("${grader.jobs.lanes.tryout.max-concurrent:2}")
+    private int tryoutMaxConcurrent;
+
+    @PostConstruct
+    public void init() {
+        lanes.put(Submission.SubmissionType.FINAL, new Lane(Submission.SubmissionType.FINAL, 2, finalMaxConcurrent));
+        lanes.put(Submission.SubmissionType.ATTEMPT,
+                new Lane(Submission.SubmissionType.ATTEMPT, 1, attemptMaxConcurrent));
+        lanes.put(Submission.SubmissionType.TRYOUT, new Lane(Submission.SubmissionType.TRYOUT, 0, tryoutMaxConcurrent));
+        for (Lane lane : lanes.values()) {
+            Gauge.builder("grader.jobs.queue.length", lane, this::queueLength)
+                    .description("Grading jobs waiting for a worker")
+                    .tag("type", tag(lane.type))
+                    .register(meterRegistry);
+            Gauge.builder("grader.jobs.active", lane, this::runningCount)
+                    .description("Grading jobs currently running")
+                    .tag("type", tag(lane.type))
+                    .register(meterRegistry);
+        }
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::work, "grading-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            workerThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerThreads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Whether a request should get a job back instead of the result. By default it does; a client that would
+     * rather hold the connection until grading finishes sends {@code Prefer: wait} (RFC 7240).
+     * {@code respond-async} wins when both are present.
+     */
+    public boolean respondAsync(String preferHeader) {
+        boolean wait = false;
+        if (preferHeader != null) {
+            for (String preference : preferHeader.split(",")) {
+                String token = preference.split("[=;]", 2)[0].strip().toLowerCase(Locale.ROOT);
+                if (token.equals("respond-async")) {
+                    return true;
+                }
+                wait |= token.equals("wait");
+            }
+        }
+        return asyncByDefault && !wait;
+    }
+
+    /**
+     * Queues a grading job and returns immediately.
+     *
+     * @throws GradingQueueFullException if the queue is at capacity
+     */
+    public GradingJob submit(Submission.SubmissionType type, Supplier<SubmissionDTO> work) {
+        GradingJob job = new GradingJob(UUID.randomUUID(), type, currentUser());
+        jobs.put(job.getId(), job);
+        Runnable task = DelegatingSecurityContextRunnable.create(() -> run(job, work),
+                SecurityContextHolder.getContext());
+        lock.lock();
+        try {
+            // A FINAL submission is never turned away: retrying it could run past the exam's deadline.
+            if (queued >= queueCapacity && type != Submission.SubmissionType.FINAL) {
+                jobs.remove(job.getId());
+                meterRegistry.counter("grader.jobs.rejected", "type", tag(type)).increment();
+                throw new GradingQueueFullException(retryAfterSeconds());
+            }
+            lanes.get(type).queue.addLast(new QueuedJob(job, task, monotonicTime()));
+            queued++;
+            jobReady.signal();
+        } finally {
+            lock.unlock();
+        }
+        return job;
+    }
+
+    /**
+     * Queues a grading job and blocks until it finishes. Exceptions thrown by the job are rethrown as is, so
+     * callers see the same errors as when grading ran on their own thread.
+     */
+    public SubmissionDTO submitAndWait(Submission.SubmissionType type, Supplier<SubmissionDTO> work) {
+        GradingJob job = submit(type, work);
+        try {
+            return job.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for grading job " + job.getId(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Grading job " + job.getId() + " failed", e.getCause());
+        }
+    }
+
+    public GradingJobDTO get(UUID jobId) {
+        return toDTO(find(jobId));
+    }
+
+    /**
+     * Streams status changes of a job as {@code status} events. The stream ends after the final state.
+     */
+    public SseEmitter subscribe(UUID jobId) {
+        GradingJob job = find(jobId);
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        job.emitters.add(emitter);
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(error -> dropAbandoned(job, emitter));
+        // Also covers a job that finished between the lookup and registering the emitter.
+        send(job, emitter);
+        return emitter;
+    }
+
+    /**
+     * Cancels a job of the caller. A queued job is dropped; a running job has its sandbox command killed and
+     * ends as {@code CANCELLED} shortly after. Finished jobs are left as they are.
+     */
+    public GradingJobDTO cancel(UUID jobId) {
+        GradingJob job = find(jobId);
+        cancel(job, "cancelled by request");
+        return toDTO(job);
+    }
+
+    public static Submission.SubmissionType typeOf(TestSubmitRequest request) {
+        if (request.getType() == null || request.getType().isBlank()) {
+            return Submission.SubmissionType.ATTEMPT;
+        }
+        try {
+            return Submission.SubmissionType.valueOf(request.getType().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Submission.SubmissionType.ATTEMPT;
+        }
+    }
+
+    /**
+     * Sends a comment on every status stream. A client that disconnected is only noticed when writing to it,
+     * and an unfinished job may not change status for minutes.
+     */
+    @Scheduled(fixedDelayString = "${grader.jobs.heartbeat-interval-ms:15000}")
+    public void sendHeartbeats() {
+        for (GradingJob job : jobs.values()) {
+            if (job.isDone()) {
+                continue;
+            }
+            for (SseEmitter emitter : job.emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    dropAbandoned(job, emitter);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${grader.jobs.cleanup-interval-ms:60000}")
+    public void evictFinishedJobs() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.completedAt != null && job.completedAt.isBefore(cutoff));
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            QueuedJob next;
+            Lane lane;
+            lock.lock();
+            try {
+                while ((next = pollNext()) == null) {
+                    jobReady.await();
+                }
+                lane = lanes.get(next.job().type);
+                lane.running++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                next.task().run();
+            } catch (RuntimeException e) {
+                log.error("Grading worker failed to run job {}", next.job().getId(), e);
+            } finally {
+                lock.lock();
+                try {
+                    lane.running--;
+                    // The freed slot may unblock a lane that was at its limit.
+                    jobReady.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the waiting job with the highest aged priority among lanes below their concurrency
+     * limit. Each lane is FIFO, so only its head can be the best candidate. Must hold {@link #lock}.
+     */
+    private QueuedJob pollNext() {
+        long now = monotonicTime();
+        Lane best = null;
+        for (Lane lane : lanes.values()) {
+            QueuedJob head = lane.queue.peekFirst();
+            if (head == null || lane.running >= lane.maxConcurrent) {
+                continue;
+            }
+            if (best == null || ranksBefore(head, best.queue.peekFirst(), now)) {
+                best = lane;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        queued--;
+        return best.queue.pollFirst();
+    }
+
+    private boolean ranksBefore(QueuedJob job, QueuedJob other, long now) {
+        double priority = priority(job, now);
+        double otherPriority = priority(other, now);
+        return priority > otherPriority || priority == otherPriority && job.job().sequence < other.job().sequence;
+    }
+
+    private double priority(QueuedJob job, long now) {
+        double waitedSeconds = (now - job.enqueuedNanos()) / 1e9;
+        return lanes.get(job.job().type).priority + waitedSeconds / Math.max(1, agingSeconds);
+    }
+
+    private void run(GradingJob job, Supplier<SubmissionDTO> work) {
+        job.startedAt = OffsetDateTime.now();
+        job.status = GradingJobStatus.RUNNING;
+        laneTimer("grader.jobs.wait", "Time grading jobs spent queued", job.type)
+                .record(Duration.between(job.submittedAt, job.startedAt));
+        publish(job);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "completed";
+        buildLogService.open(job.getId().toString());
+        try {
+            SubmissionDTO result = CancellationToken.callWith(job.cancellation, work);
+            job.completedAt = OffsetDateTime.now();
+            job.status = GradingJobStatus.COMPLETED;
+            job.result.complete(result);
+        } catch (RuntimeException e) {
+            job.completedAt = OffsetDateTime.now();
+            if (job.cancellation.isCancelled()) {
+                outcome = "cancelled";
+                log.info("Grading job {} cancelled", job.getId());
+                job.error = job.cancelReason;
+                job.status = GradingJobStatus.CANCELLED;
+                job.result.completeExceptionally(new CancellationException(job.cancelReason));
+            } else {
+                outcome = "failed";
+                log.warn("Grading job {} failed", job.getId(), e);
+                job.error = e.getMessage();
+                job.status = GradingJobStatus.FAILED;
+                job.result.completeExceptionally(e);
+            }
+        } finally {
+            buildLogService.close(job.getId().toString());
+            sample.stop(Timer.builder("grader.jobs.service")
+                    .description("Time spent grading")
+                    .tags("type", tag(job.type), "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            publish(job);
+        }
+    }
+
+    private void cancel(GradingJob job, String reason) {
+        lock.lock();
+        try {
+            if (job.isDone() || job.cancellation.isCancelled()) {
+                return;
+            }
+            job.cancelReason = "Grading job " + reason;
+            if (job.status == GradingJobStatus.QUEUED
+                    && lanes.get(job.type).queue.removeIf(queuedJob -> queuedJob.job() == job)) {
+                queued--;
+                job.cancellation.cancel();
+                job.completedAt = OffsetDateTime.now();
+                job.error = job.cancelReason;
+                job.status = GradingJobStatus.CANCELLED;
+                job.result.completeExceptionally(new CancellationException(job.cancelReason));
+                meterRegistry.counter("grader.jobs.cancelled", "type", tag(job.type), "state", "queued").increment();
+                publish(job);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Killing the sandbox command takes a round trip to the container; do not hold up the queue meanwhile.
+        meterRegistry.counter("grader.jobs.cancelled", "type", tag(job.type), "state", "running").increment();
+        job.cancellation.cancel();
+    }
+
+    /**
+     * Forgets a status stream whose client went away. A practice run nobody is watching any more is not worth
+     * a sandbox, so the last watcher of a TRYOUT job leaving cancels it.
+     */
+    private void dropAbandoned(GradingJob job, SseEmitter emitter) {
+        job.emitters.remove(emitter);
+        if (job.type == Submission.SubmissionType.TRYOUT && job.emitters.isEmpty() && !job.isDone()) {
+            cancel(job, "cancelled after the client disconnected");
+        }
+    }
+
+    private void publish(GradingJob job) {
+        job.emitters.forEach(emitter -> send(job, emitter));
+    }
+
+    private void send(GradingJob job, SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(toDTO(job)));
+            if (job.isDone()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropped event stream for grading job {}", job.getId(), e);
+            dropAbandoned(job, emitter);
+        }
+    }
+
+    private GradingJob find(UUID jobId) {
+        GradingJob job = jobs.get(jobId);
+        if (job == null || !job.owner.equals(currentUser()) && !canReadAllSubmissions()) {
+            throw new EntityNotFoundException("Grading job not found: " + jobId);
+        }
+        return job;
+    }
+
+    public GradingJobDTO toDTO(GradingJob job) {
+        SubmissionDTO result = job.result.isDone() && !job.result.isCompletedExceptionally()
+                ? job.result.join()
+                : null;
+        return GradingJobDTO.builder()
+                .id(job.getId())
+                .type(job.type.name())
+                .status(job.status)
+                .queuePosition(job.status == GradingJobStatus.QUEUED ? queuePosition(job) : null)
+                .submittedAt(job.submittedAt)
+                .startedAt(job.startedAt)
+                .completedAt(job.completedAt)
+                .result(result)
+                .error(job.error)
+                .build();
+    }
+
+    /**
+     * How many waiting jobs would be picked before this one if a worker were free now.
+     */
+    private int queuePosition(GradingJob job) {
+        lock.lock();
+        try {
+            long now = monotonicTime();
+            List<QueuedJob> waiting = lanes.values().stream().flatMap(lane -> lane.queue.stream()).toList();
+            return waiting.stream()
+                    .filter(queuedJob -> queuedJob.job() == job)
+                    .findFirst()
+                    .map(self -> (int) waiting.stream().filter(other -> ranksBefore(other, self, now)).count())
+                    .orElse(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int queueLength(Lane lane) {
+        lock.lock();
+        try {
+            return lane.queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int runningCount(Lane lane) {
+        lock.lock();
+        try {
+            return lane.running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Timer laneTimer(String name, String description, Submission.SubmissionType type) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("type", tag(type))
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Roughly how long until a worker frees up a queue slot, from the mean service time so far.
+     */
+    private long retryAfterSeconds() {
+        double meanServiceSeconds = meterRegistry.find("grader.jobs.service").timers().stream()
+                .filter(timer -> timer.count() > 0)
+                .mapToDouble(timer -> timer.mean(TimeUnit.SECONDS))
+                .average()
+                .orElse(0);
+        long estimate = (long) Math.ceil(meanServiceSeconds * queued / Math.max(1, workers));
+        return Math.max(minRetryAfterSeconds, estimate);
+    }
+
+    private boolean canReadAllSubmissions() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> "SUBMISSION:READ".equals(authority.getAuthority()));
+    }
+
+    private static String currentUser() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "anonymous" : authentication.getName();
+    }
+
+    /**
+     * Waiting times are measured with the registry's clock, so they agree with the recorded timers.
+     */
+    private long monotonicTime() {
+        return meterRegistry.config().clock().monotonicTime();
+    }
+
+    private static String tag(Submission.SubmissionType type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    private record QueuedJob(GradingJob job, Runnable task, long enqueuedNanos) {
+    }
+
+    /**
+     * The waiting jobs of one submission type. Guarded by {@link #lock}.
+     */
+    private static final class Lane {
+
+        private final Submission.SubmissionType type;
+        private final int priority;
+        private final int maxConcurrent;
+        private final ArrayDeque<QueuedJob> queue = new ArrayDeque<>();
+        private int running;
+
+        Lane(Submission.SubmissionType type, int priority, int maxConcurrent) {
+            this.type = type;
+            this.priority = priority;
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+        }
+    }
+
+    public static final class GradingJob {
+
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+        @Getter
+        private final UUID id;
+        private final Submission.SubmissionType type;
+        private final String owner;
+        private final int sequence = SEQUENCE.incrementAndGet();
+        private final OffsetDateTime submittedAt = OffsetDateTime.now();
+        private final CompletableFuture<SubmissionDTO> result = new CompletableFuture<>();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private final CancellationToken cancellation = new CancellationToken();
+        private volatile GradingJobStatus status = GradingJobStatus.QUEUED;
+        private volatile String cancelReason;
+        private volatile OffsetDateTime startedAt;
+        private volatile OffsetDateTime completedAt;
+        private volatile String error;
+
+        private GradingJob(UUID id, Submission.SubmissionType type, String owner) {
+            this.id = id;
+            this.type = type;
+            this.owner = owner;
+        }
+
+        boolean isDone() {
+            return status == GradingJobStatus.COMPLETED || status == GradingJobStatus.FAILED
+                    || status == GradingJobStatus.CANCELLED;
+        }
+    }
+}
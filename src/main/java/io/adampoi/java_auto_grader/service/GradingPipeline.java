@@ -0,0 +1,380 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.Assignment;
+import io.adampoi.java_auto_grader.domain.RubricGrade;
+import io.adampoi.java_auto_grader.domain.Submission;
+import io.adampoi.java_auto_grader.domain.SubmissionCode;
+import io.adampoi.java_auto_grader.domain.TestExecution;
+import io.adampoi.java_auto_grader.model.arguments.InputOutputArguments;
+import io.adampoi.java_auto_grader.model.dto.SubmissionDTO;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import io.adampoi.java_auto_grader.model.type.InputOutputResult;
+import io.adampoi.java_auto_grader.model.type.InputOutputRun;
+import io.adampoi.java_auto_grader.model.type.TestCaseResult;
+import io.adampoi.java_auto_grader.repository.RubricGradeRepository;
+import io.adampoi.java_auto_grader.repository.SubmissionCodeRepository;
+import io.adampoi.java_auto_grader.repository.SubmissionRepository;
+import io.adampoi.java_auto_grader.repository.TestExecutionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Grades one submission in fixed steps: plan the test run, execute it, parse the results, map them onto the
+ * assignment's rubric grades, score and persist. Student submissions, tryouts, timed assessments and instructor
+ * test runs all go through here, so they are graded by the same rules. Each step is timed as
+ * {@code grader.pipeline.stage}, tagged with the step, and can be replaced by a {@link GradingStage} bean.
+ */
+@Service
+@Slf4j
+public class GradingPipeline {
+
+    private static final String UNKNOWN_STAGE = "unknown build stage";
+
+    private final TestCodeService testCodeService;
+    private final RubricGradeRepository rubricGradeRepository;
+    private final SubmissionRepository submissionRepository;
+    private final TestExecutionRepository testExecutionRepository;
+    private final SubmissionCodeRepository submissionCodeRepository;
+    private final RubricTestCaseMatcher testCaseMatcher;
+    private final InputOutputEvaluator inputOutputEvaluator;
+    private final Map<GradingStage.Step, GradingStage> stages = new EnumMap<>(GradingStage.Step.class);
+    private final Map<GradingStage.Step, Timer> timers = new EnumMap<>(GradingStage.Step.class);
+
+    public GradingPipeline(TestCodeService testCodeService, RubricGradeRepository rubricGradeRepository,
+                           SubmissionRepository submissionRepository,
+                           TestExecutionRepository testExecutionRepository,
+                           SubmissionCodeRepository submissionCodeRepository,
+                           RubricTestCaseMatcher testCaseMatcher, InputOutputEvaluator inputOutputEvaluator,
+                           MeterRegistry meterRegistry, ObjectProvider<GradingStage> stageOverrides) {
+        this.testCodeService = testCodeService;
+        this.rubricGradeRepository = rubricGradeRepository;
+        this.submissionRepository = submissionRepository;
+        this.testExecutionRepository = testExecutionRepository;
+        this.submissionCodeRepository = submissionCodeRepository;
+        this.testCaseMatcher = testCaseMatcher;
+        this.inputOutputEvaluator = inputOutputEvaluator;
+
+        stageOverrides.orderedStream().forEach(stage -> {
+            if (stages.putIfAbsent(stage.step(), stage) == null) {
+                log.info("Grading step {} is handled by {}", stage.step(), stage.getClass().getName());
+            }
+        });
+        stages.putIfAbsent(GradingStage.Step.PLAN, new DefaultStage(GradingStage.Step.PLAN, this::plan));
+        stages.putIfAbsent(GradingStage.Step.EXECUTE, new DefaultStage(GradingStage.Step.EXECUTE, this::execute));
+        stages.putIfAbsent(GradingStage.Step.PARSE, new DefaultStage(GradingStage.Step.PARSE, this::parse));
+        stages.putIfAbsent(GradingStage.Step.MAP, new DefaultStage(GradingStage.Step.MAP, this::map));
+        stages.putIfAbsent(GradingStage.Step.SCORE, new DefaultStage(GradingStage.Step.SCORE, this::score));
+        stages.putIfAbsent(GradingStage.Step.PERSIST, new DefaultStage(GradingStage.Step.PERSIST, this::persist));
+
+        for (GradingStage.Step step : GradingStage.Step.values()) {
+            timers.put(step, Timer.builder("grader.pipeline.stage")
+                    .description("Time spent in each step of grading a submission")
+                    .tag("stage", step.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Runs every step on the given run and returns it, with {@link GradingRun#getResult()} set.
+     */
+    public GradingRun run(GradingRun run) {
+        for (GradingStage.Step step : GradingStage.Step.values()) {
+            GradingStage stage = stages.get(step);
+            timers.get(step).record(() -> stage.run(run));
+        }
+        return run;
+    }
+
+    private void plan(GradingRun run) {
+        Assignment assignment = run.getAssignment();
+        boolean mutationTestingEnabled = run.getMutationTestingEnabled() != null
+                ? run.getMutationTestingEnabled()
+                : run.getType() != Submission.SubmissionType.TRYOUT;
+        run.setRubricGrades(assignment == null
+                ? List.of()
+                : rubricGradeRepository.findByAssignmentId(assignment.getId()));
+        run.setRequest(TestCodeRequest.builder()
+                .assignmentId(assignment == null ? null : String.valueOf(assignment.getId()))
+                .studentId(run.getStudent() == null ? null : String.valueOf(run.getStudent().getId()))
+                .sourceFiles(run.getSourceFiles())
+                .testFiles(resolveRubricTestFiles(assignment, run.getTestFiles()))
+                .mainClassName(run.getMainClassName())
+                .buildTool(run.getBuildTool())
+                .mutationTestingEnabled(mutationTestingEnabled)
+                .gradingEngine(assignment == null || assignment.getOptions() == null
+                        ? null
+                        : assignment.getOptions().getGradingEngine())
+                .timeoutSeconds(assignment == null || assignment.getOptions() == null
+                        ? null
+                        : assignment.getOptions().getGradingTimeout())
+                .submissionType(run.getType())
+                .inputOutputRuns(planInputOutputRuns(run))
+                .build());
+        run.setStartedAt(OffsetDateTime.now());
+    }
+
+    /**
+     * Input/output cases run with the tests, by the same engine, so they never run student code outside it.
+     */
+    private List<InputOutputRun> planInputOutputRuns(GradingRun run) {
+        return run.getRubricGrades().stream()
+                .filter(rubricGrade -> rubricGrade.getGradeType() == RubricGrade.GradeType.INPUT_OUTPUT)
+                .flatMap(rubricGrade -> rubricGrade.getArguments() instanceof InputOutputArguments arguments
+                        ? inputOutputEvaluator.plan(rubricGrade, arguments, run.getMainClassName()).stream()
+                        : Stream.empty())
+                .toList();
+    }
+
+    private void execute(GradingRun run) {
+        run.setResponse(testCodeService.runTestCode(run.getRequest()));
+        run.setCompletedAt(OffsetDateTime.now());
+    }
+
+    private void parse(GradingRun run) {
+        TestCodeResponse response = run.getResponse();
+        run.setTestCases(testCaseMatcher.index(response));
+        run.setCompilationFailed(response != null
+                && response.getCompilationErrors() != null
+                && !response.getCompilationErrors().isEmpty());
+    }
+
+    private void map(GradingRun run) {
+        List<RubricGrade> rubricGrades = run.getRubricGrades();
+        if (rubricGrades == null) {
+            // A replaced plan step may not have loaded them.
+            rubricGrades = run.getAssignment() == null
+                    ? List.of()
+                    : rubricGradeRepository.findByAssignmentId(run.getAssignment().getId());
+        }
+        run.setTestExecutions(rubricGrades.stream()
+                .flatMap(rubricGrade -> mapRubricGrade(rubricGrade, run))
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Input/output grades are judged on what their cases printed during the run; every other grade is matched to
+     * a test case of the build by name.
+     */
+    private Stream<TestExecution> mapRubricGrade(RubricGrade rubricGrade, GradingRun run) {
+        if (rubricGrade.getGradeType() == RubricGrade.GradeType.INPUT_OUTPUT
+                && rubricGrade.getArguments() instanceof InputOutputArguments arguments
+                && !run.isCompilationFailed()) {
+            return inputOutputEvaluator.evaluate(rubricGrade, arguments, inputOutputResult(rubricGrade, run))
+                    .stream();
+        }
+        return Stream.of(mapRubricToTestExecution(rubricGrade, run));
+    }
+
+    private static InputOutputResult inputOutputResult(RubricGrade rubricGrade, GradingRun run) {
+        TestCodeResponse response = run.getResponse();
+        if (response == null || response.getInputOutputResults() == null) {
+            return null;
+        }
+        String id = String.valueOf(rubricGrade.getId());
+        return response.getInputOutputResults().stream()
+                .filter(result -> id.equals(result.getId()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void score(GradingRun run) {
+        TestCodeResponse response = run.getResponse();
+        boolean success = response != null && response.isSuccess();
+        Set<TestExecution> testExecutions = run.getTestExecutions();
+        // Input/output cases are not in the test reports, so they count as executed tests too.
+        boolean hasTestCases = run.getTestCases().hasTestCases() || testExecutions.stream()
+                .anyMatch(execution -> isInputOutputCase(execution)
+                        && execution.getStatus() != TestExecution.ExecutionStatus.NOT_EXECUTED);
+        boolean inputOutputPassed = testExecutions.stream()
+                .filter(GradingPipeline::isInputOutputCase)
+                .allMatch(execution -> execution.getStatus() == TestExecution.ExecutionStatus.PASSED);
+        success = success && inputOutputPassed;
+        Set<SubmissionCode> codes = run.getSourceFiles() == null
+                ? new HashSet<>()
+                : run.getSourceFiles().stream()
+                .map(sf -> SubmissionCode.builder()
+                        .fileName(sf.getFileName())
+                        .sourceCode(sf.getContent())
+                        .build())
+                .collect(Collectors.toSet());
+
+        String feedback;
+        if (run.isCompilationFailed()) {
+            feedback = "Compilation failed; rubric tests were not executed";
+        } else if (!hasTestCases) {
+            feedback = "No test cases were executed";
+        } else {
+            feedback = success ? "All tests passed" : "Some tests failed";
+        }
+
+        Submission submission = Submission.builder()
+                .assignment(run.getAssignment())
+                .student(run.getStudent())
+                .submissionCodes(codes)
+                .testExecutions(testExecutions)
+                .startedAt(run.getStartedAt())
+                .completedAt(run.getCompletedAt())
+                .executionTime(response == null ? null : response.getExecutionTime())
+                .totalPoints(calculateTotalPoints(testExecutions))
+                .manualFeedback(feedback)
+                .type(run.getType())
+                .status(success && !run.isCompilationFailed() && hasTestCases
+                        ? Submission.SubmissionStatus.COMPLETED
+                        : Submission.SubmissionStatus.FAILED)
+                .build();
+        codes.forEach(code -> code.setSubmission(submission));
+        testExecutions.forEach(execution -> execution.setSubmission(submission));
+        run.setSubmission(submission);
+    }
+
+    private void persist(GradingRun run) {
+        Submission submission = run.getSubmission();
+        // A submission that does not compile is reported but not kept, so it does not use up an attempt.
+        if (run.isPersist() && !run.isCompilationFailed()) {
+            submission = submissionRepository.save(submission);
+            testExecutionRepository.saveAll(run.getTestExecutions());
+            submissionCodeRepository.saveAll(submission.getSubmissionCodes());
+        }
+        SubmissionDTO result = SubmissionService.mapToDTO(submission, new SubmissionDTO());
+        if (run.getResponse() != null) {
+            result.setCompilationErrors(run.getResponse().getCompilationErrors());
+            result.setMutationTestResult(run.getResponse().getMutationTestResult());
+        }
+        run.setResult(result);
+    }
+
+    private List<CodeFile> resolveRubricTestFiles(Assignment assignment, List<CodeFile> requestTestFiles) {
+        if (requestTestFiles != null && !requestTestFiles.isEmpty()) {
+            return requestTestFiles;
+        }
+
+        if (assignment != null && assignment.getTestCode() != null && !assignment.getTestCode().isBlank()) {
+            return List.of(CodeFile.builder()
+                    .fileName("MainTest.java")
+                    .content(assignment.getTestCode())
+                    .build());
+        }
+
+        return Collections.emptyList();
+    }
+
+    private TestExecution mapRubricToTestExecution(RubricGrade rubricGrade, GradingRun run) {
+        TestCodeResponse response = run.getResponse();
+        if (run.isCompilationFailed()) {
+            return createNotExecutedTestExecution(rubricGrade,
+                    "Rubric test was not executed because compilation failed during " + compilationStage(response));
+        }
+
+        if (response == null || response.getTestSuites() == null) {
+            log.warn("TestCodeResponse or test suites is null for rubric: {}", rubricGrade.getName());
+            return createNotExecutedTestExecution(rubricGrade, "Test execution did not produce test results");
+        }
+
+        if (!run.getTestCases().hasTestCases()) {
+            return createNotExecutedTestExecution(rubricGrade,
+                    "Test was not executed because the build failed during " + compilationStage(response));
+        }
+
+        TestCaseResult tc = testCaseMatcher.match(run.getTestCases(), rubricGrade).orElse(null);
+        if (tc == null) {
+            log.warn("No matching test case found for rubric grade: {}", rubricGrade.getName());
+            return createNotExecutedTestExecution(rubricGrade,
+                    "No executed test case matched rubric grade: " + rubricGrade.getName());
+        }
+        return TestExecution.builder()
+                .rubricGrade(rubricGrade)
+                .methodName(tc.getMethodName())
+                .executionTime(tc.getExecutionTime() > 0 ? Math.round(tc.getExecutionTime() * 1000) : 0L)
+                .output(tc.getOutput() == null ? "" : tc.getOutput())
+                .error(tc.getFailureMessage())
+                .status(parseExecutionStatus(tc.getStatus()))
+                .build();
+    }
+
+    private static String compilationStage(TestCodeResponse response) {
+        return response == null || response.getCompilationStage() == null
+                ? UNKNOWN_STAGE
+                : response.getCompilationStage().name();
+    }
+
+    private TestExecution.ExecutionStatus parseExecutionStatus(String status) {
+        if (status == null) {
+            return TestExecution.ExecutionStatus.FAILED;
+        }
+
+        try {
+            return TestExecution.ExecutionStatus.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown test execution status: {}, defaulting to FAILED", status);
+            return TestExecution.ExecutionStatus.FAILED;
+        }
+    }
+
+    private TestExecution createNotExecutedTestExecution(RubricGrade rubricGrade, String errorMessage) {
+        return TestExecution.builder()
+                .rubricGrade(rubricGrade)
+                .methodName(rubricGrade.getName())
+                .executionTime(0L)
+                .output("")
+                .error(errorMessage)
+                .status(TestExecution.ExecutionStatus.NOT_EXECUTED)
+                .build();
+    }
+
+    /**
+     * A rubric grade earns its points once, when every execution recorded for it passed; only input/output
+     * grades record more than one.
+     */
+    static int calculateTotalPoints(Set<TestExecution> testExecutions) {
+        Map<UUID, RubricGrade> passed = new HashMap<>();
+        Set<UUID> failed = new HashSet<>();
+        for (TestExecution execution : testExecutions) {
+            RubricGrade rubricGrade = execution.getRubricGrade();
+            if (rubricGrade.getRubric() == null) {
+                continue;
+            }
+            if (execution.getStatus() == TestExecution.ExecutionStatus.PASSED) {
+                passed.putIfAbsent(rubricGrade.getId(), rubricGrade);
+            } else {
+                failed.add(rubricGrade.getId());
+            }
+        }
+        return passed.entrySet().stream()
+                .filter(entry -> !failed.contains(entry.getKey()))
+                .mapToInt(entry -> entry.getValue().getRubric().getPoints())
+                .sum();
+    }
+
+    private static boolean isInputOutputCase(TestExecution execution) {
+        return execution.getRubricGrade().getGradeType() == RubricGrade.GradeType.INPUT_OUTPUT
+                && execution.getRubricGrade().getArguments() instanceof InputOutputArguments;
+    }
+
+    private record DefaultStage(GradingStage.Step step, Consumer<GradingRun> action) implements GradingStage {
+
+        @Override
+        public void run(GradingRun run) {
+            action.accept(run);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package io.adampoi.java_auto_grader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.event.AssignmentTestCodeChangedEvent;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import io.adampoi.java_auto_grader.model.type.InputOutputRun;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of grading results, keyed by a hash of everything that determines the outcome: the
+ * normalized sources, the instructor tests, the build tool, the grading engine, the mutation flag, the build
+ * time limit and the input/output cases. Repeated tryouts of unchanged code, and submissions of code that was
+ * just tried out, skip the sandbox entirely.
+ * <p>
+ * Only complete results are cached: a run that failed for infrastructure reasons is retried next time.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class GradingResultCache {
+
+    private static final Pattern TRAILING_WHITESPACE = Pattern.compile("[ \\t]+$", Pattern.MULTILINE);
+    private static final String NO_ASSIGNMENT = "";
+
+    private record Entry(String assignmentId, TestCodeResponse response) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private Map<String, Entry> entries;
+
+    @Value("${grader.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${grader.result-cache.max-entries:500}")
+    private int maxEntries;
+
+    @PostConstruct
+    public void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                meterRegistry.counter("grader.result-cache.evictions").increment();
+                return true;
+            }
+        };
+        Gauge.builder("grader.result-cache.size", this, GradingResultCache::size)
+                .description("Cached grading results")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cache key for a request, or {@code null} when caching is disabled. {@code timeoutSeconds} is
+     * the time limit the run actually gets: a build that timed out must not answer for one with more time.
+     */
+    public String keyFor(TestCodeRequest request, int timeoutSeconds) {
+        if (!enabled) {
+            return null;
+        }
+        MessageDigest digest = sha256();
+        update(digest, Objects.toString(request.getAssignmentId(), NO_ASSIGNMENT));
+        update(digest, Objects.toString(request.getBuildTool(), "gradle").toLowerCase(Locale.ROOT));
+        update(digest, Objects.toString(request.getGradingEngine(), ""));
+        update(digest, Boolean.toString(request.isMutationTestingEnabled()));
+        update(digest, Integer.toString(timeoutSeconds));
+        updateFiles(digest, "source", request.getSourceFiles());
+        updateFiles(digest, "test", request.getTestFiles());
+        updateInputOutputRuns(digest, request.getInputOutputRuns());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Optional<TestCodeResponse> get(String key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        meterRegistry.counter("grader.result-cache.lookups", "result", entry == null ? "miss" : "hit").increment();
+        return Optional.ofNullable(entry).map(cached -> copy(cached.response()));
+    }
+
+    public void put(String key, TestCodeRequest request, TestCodeResponse response) {
+        if (key == null || !isCacheable(response)) {
+            return;
+        }
+        Entry entry = new Entry(Objects.toString(request.getAssignmentId(), NO_ASSIGNMENT), copy(response));
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    @EventListener
+    public void onTestCodeChanged(AssignmentTestCodeChangedEvent event) {
+        String assignmentId = String.valueOf(event.assignmentId());
+        boolean removed;
+        synchronized (this) {
+            removed = entries.values().removeIf(entry -> entry.assignmentId().equals(assignmentId));
+        }
+        if (removed) {
+            log.info("Invalidated cached grading results for assignment {}", assignmentId);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A result is worth reusing if it reflects the code: tests ran or the compiler rejected it. Error
+     * responses from sandbox failures carry a negative exit code and neither.
+     */
+    private boolean isCacheable(TestCodeResponse response) {
+        if (response.getExitCode() < 0) {
+            return false;
+        }
+        // Cases that did not all run may have been stopped by the sandbox rather than by the code.
+        if (response.getInputOutputResults() != null && response.getInputOutputResults().stream()
+                .anyMatch(result -> result.getError() != null)) {
+            return false;
+        }
+        return response.isSuccess()
+                || response.getTestSuites() != null && !response.getTestSuites().isEmpty()
+                || response.getCompilationErrors() != null && !response.getCompilationErrors().isEmpty();
+    }
+
+    private TestCodeResponse copy(TestCodeResponse response) {
+        return objectMapper.convertValue(response, TestCodeResponse.class);
+    }
+
+    private void updateFiles(MessageDigest digest, String kind, List<CodeFile> files) {
+        update(digest, kind);
+        if (files == null) {
+            return;
+        }
+        files.stream()
+                .sorted(Comparator.comparing(CodeFile::getFileName, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(file -> {
+                    update(digest, Objects.toString(file.getFileName(), ""));
+                    update(digest, normalize(file.getContent()));
+                });
+    }
+
+    private void updateInputOutputRuns(MessageDigest digest, List<InputOutputRun> runs) {
+        update(digest, "io");
+        if (runs == null) {
+            return;
+        }
+        for (InputOutputRun run : runs) {
+            update(digest, Objects.toString(run.getId(), ""));
+            update(digest, Objects.toString(run.getMainClass(), ""));
+            update(digest, Boolean.toString(run.isInputsAsArguments()));
+            update(digest, Long.toString(run.getTimeoutMs()));
+            List<String> inputs = run.getInputs() == null ? List.of() : run.getInputs();
+            update(digest, Integer.toString(inputs.size()));
+            inputs.forEach(input -> update(digest, Objects.toString(input, "")));
+        }
+    }
+
+    /**
+     * Line endings and trailing whitespace do not change what compiles or where errors are reported.
+     */
+    private static String normalize(String content) {
+        if (content == null) {
+            return "";
+        }
+        String unixLineEndings = content.replace("\r\n", "\n").replace('\r', '\n');
+        return TRAILING_WHITESPACE.matcher(unixLineEndings).replaceAll("").stripTrailing();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.Assignment;
+import io.adampoi.java_auto_grader.domain.RubricGrade;
+import io.adampoi.java_auto_grader.domain.Submission;
+import io.adampoi.java_auto_grader.domain.TestExecution;
+import io.adampoi.java_auto_grader.domain.User;
+import io.adampoi.java_auto_grader.model.dto.SubmissionDTO;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One submission passing through the grading pipeline. The inputs are set by the caller; each stage fills in
+ * its own part for the stages after it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradingRun {
+
+    private Assignment assignment;
+    /**
+     * {@code null} for instructor test runs and tryouts.
+     */
+    private User student;
+    private List<CodeFile> sourceFiles;
+    /**
+     * Instructor tests sent with the request; the assignment's own test code is used when there are none.
+     */
+    private List<CodeFile> testFiles;
+    private String mainClassName;
+    private String buildTool;
+    private Submission.SubmissionType type;
+    /**
+     * Defaults to every type but {@code TRYOUT}.
+     */
+    private Boolean mutationTestingEnabled;
+    private boolean persist;
+
+    // Plan
+    private List<RubricGrade> rubricGrades;
+    private TestCodeRequest request;
+    private OffsetDateTime startedAt;
+    // Execute
+    private TestCodeResponse response;
+    private OffsetDateTime completedAt;
+    // Parse
+    private RubricTestCaseMatcher.Index testCases;
+    private boolean compilationFailed;
+    // Map
+    private Set<TestExecution> testExecutions;
+    // Score
+    private Submission submission;
+    // Persist
+    private SubmissionDTO result;
+}
@@ -0,0 +1,40 @@
+package io.adampoi.java_auto_grader.service;
+
+/**
+ * One step of the {@link GradingPipeline}. A bean implementing this interface replaces the pipeline's own
+ * implementation of its {@link #step()}, e.g. an {@code EXECUTE} stage that answers from a precomputed result
+ * instead of running a build. If several beans claim a step, the first in {@code @Order} wins.
+ */
+public interface GradingStage {
+
+    enum Step {
+        /**
+         * Builds the {@code TestCodeRequest} from the assignment and the submitted files.
+         */
+        PLAN,
+        /**
+         * Compiles and runs the tests, in a sandbox, a grader JVM or on a worker.
+         */
+        EXECUTE,
+        /**
+         * Indexes the test results and checks for compilation errors.
+         */
+        PARSE,
+        /**
+         * Turns every rubric grade of the assignment into a test execution.
+         */
+        MAP,
+        /**
+         * Totals the points and builds the submission.
+         */
+        SCORE,
+        /**
+         * Saves the submission if asked to and produces the result.
+         */
+        PERSIST
+    }
+
+    Step step();
+
+    void run(GradingRun run);
+}
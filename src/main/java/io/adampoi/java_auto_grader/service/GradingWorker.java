@@ -0,0 +1,242 @@
+package io.adampoi.java_auto_grader.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.domain.GradingJobRecord;
+import io.adampoi.java_auto_grader.model.enums.GraderRole;
+import io.adampoi.java_auto_grader.model.enums.GradingJobStatus;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.repository.GradingJobRecordRepository;
+import io.adampoi.java_auto_grader.util.CancellationToken;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The worker side of remote grading. On a node with {@code grader.role=WORKER}, a fixed number of threads claim
+ * queued rows of {@code grading_jobs} with {@code FOR UPDATE SKIP LOCKED}, run them through
+ * {@link TestCodeService} and write the result back. Any number of workers can share one database.
+ * <p>
+ * A worker keeps touching the rows it runs. Rows whose heartbeat stops, e.g. because the worker was killed, are
+ * queued again, up to {@code grader.worker.max-attempts} claims. A cancel requested on the API node is seen with
+ * the next heartbeat and kills the running build.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class GradingWorker {
+
+    private final GradingJobRecordRepository repository;
+    private final TestCodeService testCodeService;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<UUID, CancellationToken> running = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final List<Thread> threads = new ArrayList<>();
+    private TransactionTemplate transaction;
+    private String workerId;
+
+    @Value("${grader.role:STANDALONE}")
+    private GraderRole role;
+
+    @Value("${grader.worker.threads:${grader.jobs.workers:4}}")
+    private int threadCount;
+
+    @Value("${grader.worker.poll-interval-ms:1000}")
+    private long pollIntervalMillis;
+
+    @Value("${grader.worker.stale-after-seconds:60}")
+    private long staleAfterSeconds;
+
+    @Value("${grader.worker.max-attempts:2}")
+    private int maxAttempts;
+
+    @Value("${grader.jobs.aging-seconds:30}")
+    private long agingSeconds;
+
+    @Value("${grader.jobs.retention-minutes:30}")
+    private long retentionMinutes;
+
+    @PostConstruct
+    public void init() {
+        if (role != GraderRole.WORKER) {
+            return;
+        }
+        transaction = new TransactionTemplate(transactionManager);
+        workerId = hostName() + "-" + ProcessHandle.current().pid();
+        Gauge.builder("grader.worker.active", running, Map::size)
+                .description("Remote grading jobs running on this worker")
+                .register(meterRegistry);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(this::work, "grader-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        log.info("Grader worker {} started with {} threads", workerId, threadCount);
+    }
+
+    /**
+     * Stops claiming and hands unfinished jobs back to the queue, so another worker picks them up without
+     * waiting for their heartbeat to go stale.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (role != GraderRole.WORKER) {
+            return;
+        }
+        // Released first, so the results of builds cut short by the interrupt are no longer stored.
+        int released = transaction.execute(status -> repository.release(workerId));
+        threads.forEach(Thread::interrupt);
+        if (released > 0) {
+            log.info("Grader worker {} released {} unfinished jobs", workerId, released);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${grader.worker.heartbeat-interval-ms:10000}")
+    public void sendHeartbeats() {
+        if (role != GraderRole.WORKER || running.isEmpty()) {
+            return;
+        }
+        List<UUID> ids = List.copyOf(running.keySet());
+        List<UUID> cancelled = transaction.execute(status -> {
+            repository.touch(ids, workerId, OffsetDateTime.now());
+            return repository.findCancelRequested(ids);
+        });
+        for (UUID id : cancelled) {
+            CancellationToken token = running.get(id);
+            if (token != null && !token.isCancelled()) {
+                log.info("Cancelling remote grading job {}", id);
+                token.cancel();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${grader.worker.recovery-interval-ms:30000}")
+    public void recoverStaleJobs() {
+        if (role != GraderRole.WORKER) {
+            return;
+        }
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime cutoff = now.minusSeconds(staleAfterSeconds);
+        transaction.executeWithoutResult(status -> {
+            int failed = repository.failStale(cutoff, maxAttempts, now);
+            int requeued = repository.requeueStale(cutoff);
+            if (failed + requeued > 0) {
+                log.warn("Recovered grading jobs of unresponsive workers: {} requeued, {} failed", requeued, failed);
+            }
+            repository.deleteCompletedBefore(now.minusMinutes(retentionMinutes));
+        });
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Optional<GradingJobRecord> job = claim();
+                if (job.isPresent()) {
+                    run(job.get());
+                } else {
+                    Thread.sleep(pollIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Typically the database being unreachable; back off instead of spinning.
+                log.error("Grader worker failed to claim a job", e);
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims the next queued job for this worker, or returns empty if there is none.
+     */
+    Optional<GradingJobRecord> claim() {
+        return transaction.execute(status -> repository.lockNextQueued(Math.max(1, agingSeconds)).map(job -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            job.setStatus(GradingJobStatus.RUNNING);
+            job.setWorkerId(workerId);
+            job.setClaimedAt(now);
+            job.setHeartbeatAt(now);
+            job.setAttempts(job.getAttempts() + 1);
+            meterRegistry.timer("grader.worker.queue.wait").record(Duration.between(job.getCreatedAt(), now));
+            return repository.save(job);
+        }));
+    }
+
+    private void run(GradingJobRecord job) {
+        UUID id = job.getId();
+        CancellationToken token = new CancellationToken();
+        running.put(id, token);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        GradingJobStatus outcome = GradingJobStatus.COMPLETED;
+        String response = null;
+        String error = null;
+        try {
+            TestCodeRequest request = objectMapper.readValue(job.getRequest(), TestCodeRequest.class);
+            log.info("Running remote grading job {} (attempt {})", id, job.getAttempts());
+            TestCodeResponse result = CancellationToken.callWith(token, () -> testCodeService.runTestCode(request));
+            response = objectMapper.writeValueAsString(result);
+        } catch (CancellationException e) {
+            outcome = GradingJobStatus.CANCELLED;
+            error = "Grading job was cancelled";
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Remote grading job {} failed", id, e);
+            outcome = GradingJobStatus.FAILED;
+            error = e.getMessage();
+        } finally {
+            running.remove(id);
+        }
+        complete(id, outcome, response, error);
+        sample.stop(Timer.builder("grader.worker.jobs")
+                .description("Time spent running remote grading jobs")
+                .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private void complete(UUID id, GradingJobStatus outcome, String response, String error) {
+        int updated = transaction.execute(status -> repository.complete(id, workerId, outcome.name(), response, error,
+                OffsetDateTime.now()));
+        if (updated == 0) {
+            log.warn("Remote grading job {} was reassigned before it finished, result dropped", id);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "worker";
+        }
+    }
+}
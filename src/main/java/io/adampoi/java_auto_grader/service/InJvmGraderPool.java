@@ -0,0 +1,438 @@
+package io.adampoi.java_auto_grader.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingRequest;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingResult;
+import io.adampoi.java_auto_grader.util.InJvmGraderMain;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+
+/**
+ * Pool of pre-warmed grader JVMs running {@link InJvmGraderMain}. Each worker grades one submission at a time;
+ * a worker that times out, dies or has served its quota of submissions is destroyed and replaced in the
+ * background, so a runaway submission never affects the next one.
+ * <p>
+ * Submissions can write to a grader JVM's stdout, which carries the answers. An answer only counts if it carries
+ * the nonce of its request, and anything else on stdout fails the submission and retires the JVM.
+ * <p>
+ * Grader JVMs run student code outside the build sandbox, so they start with only {@code PATH} and
+ * {@code JAVA_HOME} in their environment, and only through {@code grader.in-jvm.launcher}, a command that
+ * confines them (no network, read-only file system). Without one the pool is unavailable and IN_JVM
+ * assignments are built in the sandbox, unless {@code grader.in-jvm.allow-unsandboxed} is set for development.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class InJvmGraderPool {
+
+    private static final String WARMUP_SOURCE = """
+            public class Warmup {
+                public int value() {
+                    return 1;
+                }
+            }
+            """;
+    private static final String WARMUP_TEST = """
+            package workspace;
+
+            import org.junit.jupiter.api.Test;
+
+            import static org.junit.jupiter.api.Assertions.assertEquals;
+
+            class WarmupTest {
+                @Test
+                void warmsUp() {
+                    assertEquals(1, new Warmup().value());
+                }
+            }
+            """;
+
+    private static final List<String> INHERITED_ENVIRONMENT = List.of("PATH", "JAVA_HOME");
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final AtomicInteger workerCounter = new AtomicInteger();
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+    private ExecutorService launchExecutor;
+    private ScheduledExecutorService watchdog;
+
+    @Value("${grader.in-jvm.pool-size:2}")
+    private int poolSize;
+
+    @Value("${grader.in-jvm.prewarm:false}")
+    private boolean prewarm;
+
+    @Value("${grader.in-jvm.max-runs-per-worker:100}")
+    private int maxRunsPerWorker;
+
+    @Value("${grader.in-jvm.timeout-seconds:60}")
+    private int timeoutSeconds;
+
+    @Value("${grader.in-jvm.lease-timeout-seconds:60}")
+    private int leaseTimeoutSeconds;
+
+    @Value("${grader.in-jvm.max-heap:512m}")
+    private String maxHeap;
+
+    @Value("${grader.in-jvm.classpath:}")
+    private String classPath;
+
+    @Value("${grader.in-jvm.launcher:}")
+    private String launcher;
+
+    @Value("${grader.in-jvm.allow-unsandboxed:false}")
+    private boolean allowUnsandboxed;
+
+    @PostConstruct
+    public void init() {
+        launchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "in-jvm-grader-launcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "in-jvm-grader-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("grader.in-jvm.workers", workers, AtomicInteger::get)
+                .description("Grader JVMs that are running or starting")
+                .register(meterRegistry);
+        Gauge.builder("grader.in-jvm.idle", idle, BlockingQueue::size)
+                .description("Warm grader JVMs waiting for a submission")
+                .register(meterRegistry);
+        if (!isAvailable()) {
+            log.warn("No grader.in-jvm.launcher is configured; IN_JVM assignments are built in the sandbox");
+        } else if (isBlank(launcher)) {
+            log.warn("Grader JVMs run unsandboxed (grader.in-jvm.allow-unsandboxed)");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!prewarm || !isAvailable()) {
+            return;
+        }
+        for (int i = 0; i < poolSize; i++) {
+            if (reserveSlot()) {
+                launchInBackground();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown.set(true);
+        launchExecutor.shutdownNow();
+        watchdog.shutdownNow();
+        List<Worker> remaining = new ArrayList<>();
+        idle.drainTo(remaining);
+        remaining.forEach(Worker::destroy);
+    }
+
+    /**
+     * Whether grader JVMs can be started: a sandbox launcher is configured, or running without one is allowed.
+     */
+    public boolean isAvailable() {
+        return !isBlank(launcher) || allowUnsandboxed;
+    }
+
+    /**
+     * Grades one submission in a warm grader JVM.
+     *
+     * @throws IOException if the grader JVM died or exceeded {@code grader.in-jvm.timeout-seconds}
+     */
+    public InJvmGradingResult grade(InJvmGradingRequest request)
+            throws IOException, InterruptedException {
+        return grade(request, timeoutSeconds);
+    }
+
+    /**
+     * Grades one submission in a warm grader JVM, allowing it {@code timeoutSeconds} instead of the configured
+     * timeout, e.g. for a batch of {@code main} runs that each have their own.
+     */
+    public InJvmGradingResult grade(InJvmGradingRequest request, int timeoutSeconds)
+            throws IOException, InterruptedException {
+        Worker worker = acquire();
+        while (worker.hasPendingOutput()) {
+            // Written after the last answer, e.g. by a thread the previous submission left behind.
+            log.warn("{} wrote to stdout between submissions, replacing it", worker.name);
+            release(worker, false);
+            worker = acquire();
+        }
+        boolean reusable = false;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            InJvmGradingResult result = worker.grade(request, timeoutSeconds);
+            // A grader JVM asks to be replaced when a submission left a thread running or is exiting it.
+            reusable = !result.isRecycle();
+            return result;
+        } finally {
+            sample.stop(meterRegistry.timer("grader.in-jvm.grade"));
+            release(worker, reusable);
+        }
+    }
+
+    private Worker acquire() throws IOException, InterruptedException {
+        if (!isAvailable()) {
+            throw new IllegalStateException("In-JVM grading is disabled: no grader.in-jvm.launcher is configured");
+        }
+        Timer.Sample wait = Timer.start(meterRegistry);
+        try {
+            Worker worker = idle.poll();
+            if (worker != null) {
+                return worker;
+            }
+            if (reserveSlot()) {
+                try {
+                    return launch();
+                } catch (IOException | RuntimeException e) {
+                    workers.decrementAndGet();
+                    throw e;
+                }
+            }
+            worker = idle.poll(leaseTimeoutSeconds, TimeUnit.SECONDS);
+            if (worker == null) {
+                throw new IllegalStateException("No grader JVM became available within " + leaseTimeoutSeconds
+                        + " seconds");
+            }
+            return worker;
+        } finally {
+            wait.stop(meterRegistry.timer("grader.in-jvm.lease.wait"));
+        }
+    }
+
+    private void release(Worker worker, boolean reusable) {
+        if (reusable && worker.isAlive() && worker.runs < maxRunsPerWorker && !shuttingDown.get()) {
+            idle.offer(worker);
+            return;
+        }
+        worker.destroy();
+        if (!shuttingDown.get()) {
+            launchInBackground();
+        } else {
+            workers.decrementAndGet();
+        }
+    }
+
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = workers.get();
+            if (current >= poolSize) {
+                return false;
+            }
+        } while (!workers.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Starts a worker for an already reserved slot and parks it in the idle queue once it is warm.
+     */
+    private void launchInBackground() {
+        launchExecutor.execute(() -> {
+            try {
+                idle.offer(launch());
+            } catch (IOException | RuntimeException e) {
+                workers.decrementAndGet();
+                log.warn("Failed to start grader JVM", e);
+            }
+        });
+    }
+
+    private Worker launch() throws IOException {
+        long start = System.currentTimeMillis();
+        String name = "in-jvm-grader-" + workerCounter.incrementAndGet();
+        ProcessBuilder processBuilder = new ProcessBuilder(command());
+        // Nothing of the backend's environment (database, JWT and model credentials) reaches student code.
+        Map<String, String> environment = processBuilder.environment();
+        environment.clear();
+        for (String variable : INHERITED_ENVIRONMENT) {
+            String value = System.getenv(variable);
+            if (value != null) {
+                environment.put(variable, value);
+            }
+        }
+        Worker worker = new Worker(name, processBuilder.start());
+        try {
+            worker.grade(InJvmGradingRequest.builder()
+                    .sourceFiles(Map.of("src/main/java/workspace/Warmup.java", "package workspace;\n" + WARMUP_SOURCE))
+                    .testFiles(Map.of("src/test/java/workspace/WarmupTest.java", WARMUP_TEST))
+                    .build(), leaseTimeoutSeconds);
+        } catch (IOException | RuntimeException e) {
+            worker.destroy();
+            throw e;
+        }
+        worker.runs = 0;
+        log.info("Started {} in {}ms", name, System.currentTimeMillis() - start);
+        return worker;
+    }
+
+    private List<String> command() {
+        String effectiveClassPath = classPath == null || classPath.isBlank()
+                ? System.getProperty("java.class.path")
+                : classPath;
+        if (isBootJar(effectiveClassPath)) {
+            throw new IllegalStateException("Grader JVMs cannot load classes from the Spring Boot jar "
+                    + effectiveClassPath + "; set grader.in-jvm.classpath to the unpacked application");
+        }
+        List<String> command = new ArrayList<>();
+        if (!isBlank(launcher)) {
+            command.addAll(List.of(launcher.trim().split("\\s+")));
+        }
+        command.addAll(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + maxHeap,
+                "-XX:+UseSerialGC",
+                "-Djava.awt.headless=true",
+                "-cp", effectiveClassPath,
+                InJvmGraderMain.class.getName()));
+        return command;
+    }
+
+    /**
+     * A fat jar nests its classes and libraries under {@code BOOT-INF}, where a plain classpath does not look.
+     */
+    private static boolean isBootJar(String classPath) {
+        if (!classPath.endsWith(".jar") || classPath.contains(File.pathSeparator)) {
+            return false;
+        }
+        try (JarFile jar = new JarFile(classPath)) {
+            return jar.getEntry("BOOT-INF/classes/") != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private final class Worker {
+
+        private final String name;
+        private final Process process;
+        private final BufferedWriter stdin;
+        private final BufferedReader stdout;
+        private int runs;
+
+        Worker(String name, Process process) {
+            this.name = name;
+            this.process = process;
+            this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            Thread stderrDrain = new Thread(this::drainStderr, name + "-stderr");
+            stderrDrain.setDaemon(true);
+            stderrDrain.start();
+        }
+
+        InJvmGradingResult grade(InJvmGradingRequest request, int timeoutSeconds) throws IOException {
+            runs++;
+            String nonce = UUID.randomUUID().toString();
+            request.setNonce(nonce);
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+                timedOut.set(true);
+                destroy();
+            }, timeoutSeconds, TimeUnit.SECONDS);
+            try {
+                stdin.write(objectMapper.writeValueAsString(request));
+                stdin.newLine();
+                stdin.flush();
+                String line = stdout.readLine();
+                if (line == null) {
+                    throw new IOException(name + " exited with code " + process.waitFor());
+                }
+                InJvmGradingResult result;
+                try {
+                    result = objectMapper.readValue(line, InJvmGradingResult.class);
+                } catch (JsonProcessingException e) {
+                    throw new IOException(name + " wrote something other than an answer to stdout");
+                }
+                if (!nonce.equals(result.getNonce())) {
+                    throw new IOException(name + " answered without the nonce of the request");
+                }
+                return result;
+            } catch (IOException e) {
+                if (timedOut.get()) {
+                    throw new IOException("Grading timed out after " + timeoutSeconds + " seconds", e);
+                }
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + name, e);
+            } finally {
+                deadline.cancel(false);
+            }
+        }
+
+        boolean isAlive() {
+            return process.isAlive();
+        }
+
+        boolean hasPendingOutput() {
+            try {
+                return stdout.ready();
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        /**
+         * Also kills the processes below the launcher, which does not always forward the signal.
+         */
+        void destroy() {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+
+        private void drainStderr() {
+            try (BufferedReader stderr = new BufferedReader(
+                    new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = stderr.readLine()) != null) {
+                    log.debug("[{}] {}", name, line);
+                }
+            } catch (IOException e) {
+                log.debug("Stopped reading stderr of {}", name, e);
+            }
+        }
+    }
+}
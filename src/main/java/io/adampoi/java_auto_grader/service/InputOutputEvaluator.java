@@ -0,0 +1,174 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.RubricGrade;
+import io.adampoi.java_auto_grader.domain.TestExecution;
+import io.adampoi.java_auto_grader.model.arguments.InputOutputArguments;
+import io.adampoi.java_auto_grader.model.type.InJvmMainRun;
+import io.adampoi.java_auto_grader.model.type.InputOutputResult;
+import io.adampoi.java_auto_grader.model.type.InputOutputRun;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Grades {@code INPUT_OUTPUT} rubric grades. {@link #plan} turns a grade's cases into an {@link InputOutputRun},
+ * which {@link InputOutputRunner} runs with the tests, by the assignment's grading engine; {@link #evaluate}
+ * compares what each case printed with its expected output. Each case becomes a {@link TestExecution} of the
+ * rubric grade.
+ */
+@Service
+@RequiredArgsConstructor
+public class InputOutputEvaluator {
+
+    private static final String SOURCE_PACKAGE = "workspace.";
+    private static final long DEFAULT_CASE_TIMEOUT_MS = 10_000;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The cases of a rubric grade to run with the submission, or empty if it has none.
+     *
+     * @param mainClassName the submission's main class, used when the grade does not name one
+     */
+    public Optional<InputOutputRun> plan(RubricGrade rubricGrade, InputOutputArguments arguments,
+                                         String mainClassName) {
+        List<InputOutputArguments.IOTestCase> cases = cases(arguments);
+        if (cases.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(InputOutputRun.builder()
+                .id(String.valueOf(rubricGrade.getId()))
+                .mainClass(mainClass(arguments.getMainClass() == null || arguments.getMainClass().isBlank()
+                        ? mainClassName
+                        : arguments.getMainClass()))
+                .inputs(cases.stream().map(InputOutputArguments.IOTestCase::getInput).toList())
+                .inputsAsArguments(Boolean.FALSE.equals(arguments.getUseSystemIn()))
+                .timeoutMs(arguments.getTimeoutMs() == null || arguments.getTimeoutMs() <= 0
+                        ? DEFAULT_CASE_TIMEOUT_MS
+                        : arguments.getTimeoutMs())
+                .build());
+    }
+
+    /**
+     * @param result what running the grade's {@link #plan planned} cases gave, or {@code null} if they did not run
+     */
+    public List<TestExecution> evaluate(RubricGrade rubricGrade, InputOutputArguments arguments,
+                                        InputOutputResult result) {
+        List<InputOutputArguments.IOTestCase> cases = cases(arguments);
+        if (cases.isEmpty()) {
+            return List.of(execution(rubricGrade, rubricGrade.getName(), TestExecution.ExecutionStatus.NOT_EXECUTED,
+                    0, "", "No input/output cases are configured for this rubric grade"));
+        }
+        List<TestExecution> executions = new ArrayList<>(cases.size());
+        if (result == null) {
+            notExecuted(executions, rubricGrade, cases, "Input/output cases were not run");
+            return executions;
+        }
+        List<InJvmMainRun> runs = result.getRuns() == null ? List.of() : result.getRuns();
+        for (InJvmMainRun run : runs.subList(0, Math.min(runs.size(), cases.size()))) {
+            int index = executions.size();
+            executions.add(grade(rubricGrade, arguments, cases.get(index), index, run, result.getTimeoutMs()));
+        }
+        notExecuted(executions, rubricGrade, cases, result.getError() == null
+                ? "Input/output run stopped before this case"
+                : result.getError());
+        return executions;
+    }
+
+    private TestExecution grade(RubricGrade rubricGrade, InputOutputArguments arguments,
+                                InputOutputArguments.IOTestCase testCase, int index, InJvmMainRun run,
+                                long timeoutMs) {
+        String name = caseName(rubricGrade, testCase, index);
+        meterRegistry.counter("grader.io.cases", "status", run.getStatus().toLowerCase(Locale.ROOT)).increment();
+        return switch (run.getStatus()) {
+            case "TIMEOUT" -> execution(rubricGrade, name, TestExecution.ExecutionStatus.TIMEOUT,
+                    run.getExecutionTime(), run.getOutput(), "Timed out after " + timeoutMs + " ms");
+            case "EXCEPTION" -> execution(rubricGrade, name, TestExecution.ExecutionStatus.FAILED,
+                    run.getExecutionTime(), run.getOutput(), run.getException());
+            default -> {
+                // A main that ends with System.exit is judged on what it printed, like one that returns.
+                boolean trim = !Boolean.FALSE.equals(arguments.getTrimWhitespace());
+                boolean ignoreCase = Boolean.TRUE.equals(arguments.getIgnoreCase());
+                boolean matches = normalize(run.getOutput(), trim, ignoreCase)
+                        .equals(normalize(testCase.getExpectedOutput(), trim, ignoreCase));
+                yield execution(rubricGrade, name,
+                        matches ? TestExecution.ExecutionStatus.PASSED : TestExecution.ExecutionStatus.FAILED,
+                        run.getExecutionTime(), run.getOutput(),
+                        matches ? null : mismatch(testCase.getExpectedOutput(), run));
+            }
+        };
+    }
+
+    private void notExecuted(List<TestExecution> executions, RubricGrade rubricGrade,
+                             List<InputOutputArguments.IOTestCase> cases, String reason) {
+        for (int index = executions.size(); index < cases.size(); index++) {
+            executions.add(execution(rubricGrade, caseName(rubricGrade, cases.get(index), index),
+                    TestExecution.ExecutionStatus.NOT_EXECUTED, 0, "", reason));
+        }
+    }
+
+    private static TestExecution execution(RubricGrade rubricGrade, String name,
+                                           TestExecution.ExecutionStatus status, long executionTime,
+                                           String output, String error) {
+        return TestExecution.builder()
+                .rubricGrade(rubricGrade)
+                .methodName(name)
+                .executionTime(executionTime)
+                .output(output == null ? "" : output)
+                .error(error)
+                .status(status)
+                .build();
+    }
+
+    private static List<InputOutputArguments.IOTestCase> cases(InputOutputArguments arguments) {
+        return arguments.getTestCases() == null ? List.of() : arguments.getTestCases();
+    }
+
+    /**
+     * Numbered, so that cases sharing a description stay apart in the submission's set of executions.
+     */
+    private static String caseName(RubricGrade rubricGrade, InputOutputArguments.IOTestCase testCase, int index) {
+        String name = rubricGrade.getName() + " #" + (index + 1);
+        return testCase.getDescription() == null || testCase.getDescription().isBlank()
+                ? name
+                : name + ": " + testCase.getDescription();
+    }
+
+    private static String mismatch(String expectedOutput, InJvmMainRun run) {
+        String message = "Output did not match the expected output:\n" + (expectedOutput == null ? "" : expectedOutput);
+        return run.getTruncatedBytes() > 0
+                ? message + "\n(" + run.getTruncatedBytes() + " bytes of output were cut)"
+                : message;
+    }
+
+    /**
+     * Compares line by line regardless of line endings; with {@code trim}, trailing spaces and leading or
+     * trailing blank lines do not count.
+     */
+    static String normalize(String text, boolean trim, boolean ignoreCase) {
+        String normalized = text == null ? "" : text.replace("\r\n", "\n");
+        if (trim) {
+            normalized = normalized.lines().map(String::stripTrailing).collect(Collectors.joining("\n")).strip();
+        }
+        return ignoreCase ? normalized.toLowerCase(Locale.ROOT) : normalized;
+    }
+
+    /**
+     * The binary name of the class whose {@code main} is run; submitted sources are compiled into the
+     * {@code workspace} package, so {@code Main.java} becomes {@code workspace.Main}.
+     */
+    static String mainClass(String mainClass) {
+        String name = mainClass == null || mainClass.isBlank() ? "Main" : mainClass.trim();
+        name = name.substring(name.lastIndexOf('/') + 1);
+        if (name.endsWith(".java")) {
+            name = name.substring(0, name.length() - ".java".length());
+        }
+        return name.contains(".") ? name : SOURCE_PACKAGE + name;
+    }
+}
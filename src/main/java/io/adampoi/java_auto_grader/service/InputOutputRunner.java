@@ -0,0 +1,267 @@
+package io.adampoi.java_auto_grader.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingRequest;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingResult;
+import io.adampoi.java_auto_grader.model.type.InJvmMainRun;
+import io.adampoi.java_auto_grader.model.type.InputOutputResult;
+import io.adampoi.java_auto_grader.model.type.InputOutputRun;
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.adampoi.java_auto_grader.util.SandboxMainRunner;
+import io.adampoi.java_auto_grader.util.TarArchive;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the input/output cases of a request against the compiled submission, as part of the same run as its tests
+ * and by the same engine. A grader JVM compiles the sources once and calls {@code main} for every case; in a
+ * sandbox, {@link SandboxMainRunner} starts the classes the build compiled once per case. Judging the output is
+ * left to {@link InputOutputEvaluator}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class InputOutputRunner {
+
+    /**
+     * Where the runner, the inputs and the results go, relative to the sandbox project.
+     */
+    public static final String INPUT_OUTPUT_DIR = ".grader/io";
+    private static final String RUNNER_DIR = INPUT_OUTPUT_DIR + "/runner";
+    /**
+     * Allowed on top of the cases' own timeouts for leasing a grader JVM or starting the runner, and compiling.
+     */
+    private static final int BATCH_OVERHEAD_SECONDS = 15;
+    private static final int MAX_OUTPUT_BYTES = 256 * 1024;
+
+    private final InJvmGraderPool inJvmGraderPool;
+    private final ProjectSetupService projectSetupService;
+    private final DockerContainerManager dockerManager;
+    private final BuildLogService buildLogService;
+    private final ObjectMapper objectMapper;
+    private final Map<String, byte[]> runnerFiles = runnerFiles();
+
+    @Value("${grader.io.max-case-timeout-ms:30000}")
+    private long maxCaseTimeoutMs;
+
+    /**
+     * Runs every case in grader JVMs. A batch stops early after a timeout or {@code System.exit}; the rest go to a
+     * fresh grader JVM.
+     */
+    public List<InputOutputResult> runInJvm(TestCodeRequest request) {
+        Map<String, String> sourceFiles = projectSetupService.sourceFiles(request);
+        List<InputOutputResult> results = new ArrayList<>();
+        for (InputOutputRun run : request.getInputOutputRuns()) {
+            List<String> inputs = inputs(run);
+            long timeoutMs = timeoutMs(run);
+            List<InJvmMainRun> mainRuns = new ArrayList<>(inputs.size());
+            String error = null;
+            while (error == null && mainRuns.size() < inputs.size()) {
+                List<String> remaining = inputs.subList(mainRuns.size(), inputs.size());
+                try {
+                    InJvmGradingResult result = inJvmGraderPool.grade(InJvmGradingRequest.builder()
+                            .sourceFiles(sourceFiles)
+                            .mainClass(run.getMainClass())
+                            .inputs(remaining)
+                            .inputsAsArguments(run.isInputsAsArguments())
+                            .timeoutMs(timeoutMs)
+                            .build(), batchTimeoutSeconds(timeoutMs, remaining.size()));
+                    if (result.getCompilationErrors() != null && !result.getCompilationErrors().isEmpty()) {
+                        error = "Case was not run because compilation failed:\n" + result.getErrors();
+                    } else if (result.getMainRuns() == null || result.getMainRuns().isEmpty()) {
+                        error = "Input/output run failed: " + result.getErrors();
+                    } else {
+                        mainRuns.addAll(result.getMainRuns());
+                    }
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    log.warn("Input/output run {} failed", run.getId(), e);
+                    error = "Input/output run failed: " + e.getMessage();
+                }
+            }
+            results.add(result(run, mainRuns, error, timeoutMs));
+        }
+        return results;
+    }
+
+    /**
+     * Runs every case in the sandbox of a finished build, against the classes it compiled. All rubric grades share
+     * one command, whose time limit is the sum of theirs.
+     */
+    public List<InputOutputResult> runInSandbox(String containerName, String workspace, BuildTool buildTool,
+                                                TestCodeRequest request) {
+        List<InputOutputRun> runs = request.getInputOutputRuns();
+        String ioDir = workspace + "/" + INPUT_OUTPUT_DIR;
+        String classes = switch (buildTool) {
+            case GRADLE -> "build/classes/java/main";
+            case MAVEN, MAVEN_DAEMON -> "target/classes";
+        };
+        List<String> commands = new ArrayList<>();
+        long timeoutSeconds = 0;
+        for (int index = 0; index < runs.size(); index++) {
+            InputOutputRun run = runs.get(index);
+            commands.add(String.join(" ", "java", "-cp", RUNNER_DIR, SandboxMainRunner.class.getName(),
+                    classes, quote(run.getMainClass()), run.isInputsAsArguments() ? "args" : "stdin",
+                    Long.toString(timeoutMs(run)), Integer.toString(MAX_OUTPUT_BYTES),
+                    INPUT_OUTPUT_DIR + "/" + index, INPUT_OUTPUT_DIR + "/" + index + ".jsonl"));
+            timeoutSeconds += batchTimeoutSeconds(timeoutMs(run), inputs(run).size());
+        }
+
+        Map<Integer, List<InJvmMainRun>> mainRuns = new HashMap<>();
+        String error = null;
+        try {
+            // A templated workspace may still hold the cases of the previous submission.
+            ProcessResult reset = dockerManager.executeCommand(containerName,
+                    "rm -rf " + ioDir + " && mkdir -p " + ioDir, 60);
+            if (!reset.isSuccess()) {
+                throw new IOException("could not prepare " + ioDir + ": " + reset.getErrors());
+            }
+            dockerManager.uploadArchive(containerName, ioDir, archive -> writeInputs(archive, runs));
+            String command = "cd " + workspace + " && { " + String.join(" ; ", commands) + " ; }";
+            log.info("Running input/output cases in container {}: {}", containerName, command);
+            appendToBuildLog("$ " + command);
+            ProcessResult result = dockerManager.executeCommand(containerName, command,
+                    (int) Math.min(Integer.MAX_VALUE, timeoutSeconds));
+            if (!result.isSuccess()) {
+                error = "Input/output run failed: " + result.getErrors();
+            }
+            dockerManager.readArchive(containerName, ioDir, (name, content, size) -> {
+                String fileName = name.substring(name.lastIndexOf('/') + 1);
+                if (fileName.endsWith(".jsonl")) {
+                    mainRuns.put(Integer.parseInt(fileName.substring(0, fileName.length() - ".jsonl".length())),
+                            readRuns(content));
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Input/output run was interrupted";
+        } catch (IOException | RuntimeException e) {
+            log.warn("Input/output cases failed in container {}", containerName, e);
+            error = "Input/output run failed: " + e.getMessage();
+        }
+
+        List<InputOutputResult> results = new ArrayList<>();
+        for (int index = 0; index < runs.size(); index++) {
+            InputOutputRun run = runs.get(index);
+            List<InJvmMainRun> runResults = mainRuns.getOrDefault(index, List.of());
+            results.add(result(run, runResults,
+                    runResults.size() < inputs(run).size() && error == null
+                            ? "Input/output run stopped before every case ran"
+                            : error,
+                    timeoutMs(run)));
+        }
+        return results;
+    }
+
+    private List<InJvmMainRun> readRuns(InputStream content) throws IOException {
+        List<InJvmMainRun> runs = new ArrayList<>();
+        for (String line : new String(content.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                runs.add(objectMapper.readValue(line, InJvmMainRun.class));
+            } catch (JsonProcessingException e) {
+                // The runner was stopped while writing this line; the cases from here on did not finish.
+                break;
+            }
+        }
+        return runs;
+    }
+
+    private void writeInputs(TarArchive.Writer archive, List<InputOutputRun> runs) throws IOException {
+        archive.addDirectory("runner");
+        String packagePath = SandboxMainRunner.class.getPackageName().replace('.', '/');
+        String directory = "runner";
+        for (String segment : packagePath.split("/")) {
+            directory += "/" + segment;
+            archive.addDirectory(directory);
+        }
+        for (Map.Entry<String, byte[]> file : runnerFiles.entrySet()) {
+            archive.addFile("runner/" + file.getKey(), file.getValue(), false);
+        }
+        for (int index = 0; index < runs.size(); index++) {
+            archive.addDirectory(Integer.toString(index));
+            List<String> inputs = inputs(runs.get(index));
+            for (int input = 0; input < inputs.size(); input++) {
+                archive.addFile(index + "/" + input + ".in", inputs.get(input) == null ? "" : inputs.get(input));
+            }
+        }
+    }
+
+    private static InputOutputResult result(InputOutputRun run, List<InJvmMainRun> mainRuns, String error,
+                                            long timeoutMs) {
+        // A batch answers for at most the inputs it was given.
+        List<InJvmMainRun> runs = mainRuns.size() > inputs(run).size()
+                ? List.copyOf(mainRuns.subList(0, inputs(run).size()))
+                : List.copyOf(mainRuns);
+        return InputOutputResult.builder()
+                .id(run.getId())
+                .runs(runs)
+                .error(runs.size() < inputs(run).size() ? error : null)
+                .timeoutMs(timeoutMs)
+                .build();
+    }
+
+    private static List<String> inputs(InputOutputRun run) {
+        return run.getInputs() == null ? List.of() : run.getInputs();
+    }
+
+    private long timeoutMs(InputOutputRun run) {
+        return Math.max(1, Math.min(run.getTimeoutMs(), maxCaseTimeoutMs));
+    }
+
+    private static int batchTimeoutSeconds(long caseTimeoutMs, int cases) {
+        long seconds = (caseTimeoutMs * cases + 999) / 1000 + BATCH_OVERHEAD_SECONDS;
+        return (int) Math.min(Integer.MAX_VALUE, seconds);
+    }
+
+    private static String quote(String value) {
+        return "'" + (value == null ? "" : value).replace("'", "'\\''") + "'";
+    }
+
+    private void appendToBuildLog(String line) {
+        BuildLogService.BuildLog buildLog = buildLogService.current();
+        if (buildLog != null) {
+            buildLog.appendLine(line);
+        }
+    }
+
+    /**
+     * Read from this application's own classpath by name, keyed by their path below the runner directory.
+     */
+    private static Map<String, byte[]> runnerFiles() {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        String packagePath = SandboxMainRunner.class.getPackageName().replace('.', '/');
+        for (String classFile : SandboxMainRunner.CLASS_FILES) {
+            String resource = packagePath + "/" + classFile;
+            try (InputStream in = InputOutputRunner.class.getClassLoader().getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing input/output runner class " + resource);
+                }
+                files.put(resource, in.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return files;
+    }
+}
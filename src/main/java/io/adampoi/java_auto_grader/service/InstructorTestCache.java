@@ -0,0 +1,308 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.event.AssignmentTestCodeChangedEvent;
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.adampoi.java_auto_grader.util.SourceApiFingerprint;
+import io.adampoi.java_auto_grader.util.TarArchive;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of compiled instructor test classes. The key is a hash of the test sources, the
+ * build's dependency set and the {@link SourceApiFingerprint} of the student's sources, so submissions against
+ * the same rubric tests share one compilation as long as they expose the same API and constant values.
+ * <p>
+ * Compiled classes live on the grader host ({@code grader.test-cache.dir}), where no sandbox can write, and are
+ * copied into each workspace that uses them. An entry is only ever taken from a compile-only build that ran no
+ * student code (see {@link ProjectSetupService#testCompileCommand}); its digest is recorded when it is stored and
+ * checked before every restore.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class InstructorTestCache {
+
+    private static final String GRADLE_TEST_CLASSES = "build/classes/java/test";
+    private static final String NO_ASSIGNMENT = "";
+    private static final List<String> LINKAGE_ERRORS = List.of(
+            "NoSuchMethodError", "NoSuchFieldError", "NoClassDefFoundError",
+            "IncompatibleClassChangeError", "AbstractMethodError");
+
+    private final DockerContainerManager dockerManager;
+    private final ProjectSetupService projectSetupService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${grader.test-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${grader.test-cache.dir:${java.io.tmpdir}/grader-test-cache}")
+    private String cacheDirectory;
+
+    private Path cacheRoot;
+
+    private record Entry(String assignmentId, String digest) {
+    }
+
+    /**
+     * Entries are only known to the instance that stored them, so whatever an earlier run left is removed.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        cacheRoot = Path.of(cacheDirectory).toAbsolutePath().normalize();
+        if (Files.isDirectory(cacheRoot)) {
+            try (Stream<Path> leftovers = Files.list(cacheRoot)) {
+                leftovers.forEach(InstructorTestCache::deleteQuietly);
+            }
+        }
+        Files.createDirectories(cacheRoot);
+    }
+
+    /**
+     * Returns the cache key for the request's tests, or {@code null} if its tests cannot be cached.
+     * Only Gradle builds can skip test compilation independently of running the tests.
+     * <p>
+     * Compiled tests hold copies of the student's constants, so sources with other constant values, or another
+     * API, get another key: linkage errors would only catch the latter.
+     */
+    public String keyFor(TestCodeRequest request, BuildTool buildTool) {
+        if (!enabled || buildTool != BuildTool.GRADLE
+                || request.getTestFiles() == null || request.getTestFiles().isEmpty()) {
+            return null;
+        }
+        Optional<String> studentApi = SourceApiFingerprint.of(projectSetupService.sourceFiles(request));
+        if (studentApi.isEmpty()) {
+            return null;
+        }
+        MessageDigest digest = sha256();
+        update(digest, buildTool.name());
+        update(digest, projectSetupService.dependencyFingerprint(buildTool));
+        update(digest, studentApi.get());
+        request.getTestFiles().stream()
+                .sorted(Comparator.comparing(CodeFile::getFileName, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(testFile -> {
+                    update(digest, Objects.toString(testFile.getFileName(), ""));
+                    update(digest, Objects.toString(testFile.getContent(), ""));
+                });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Copies cached test classes into the workspace. Returns {@code false} on a miss, in which case the build
+     * must compile the tests itself. An entry whose files no longer match their digest is dropped.
+     */
+    public boolean restore(String containerName, String key, String workspacePath)
+            throws IOException, InterruptedException {
+        Entry entry = key == null ? null : entries.get(key);
+        if (entry == null) {
+            recordLookup("miss");
+            return false;
+        }
+        Map<String, byte[]> classes = readEntry(key);
+        if (!digest(classes).equals(entry.digest())) {
+            log.warn("Cached test classes {} do not match their digest, dropping entry", key);
+            drop(key);
+            recordLookup("miss");
+            return false;
+        }
+        ProcessResult result = dockerManager.executeCommand(containerName,
+                "cd " + workspacePath + " && rm -rf " + GRADLE_TEST_CLASSES + " && mkdir -p " + GRADLE_TEST_CLASSES,
+                60);
+        if (!result.isSuccess()) {
+            log.warn("Cached test classes {} could not be restored, dropping entry: {}", key, result.getErrors());
+            drop(key);
+            recordLookup("miss");
+            return false;
+        }
+        // The same bytes that were just checked, so the files cannot change in between.
+        dockerManager.uploadArchive(containerName, workspacePath + "/" + GRADLE_TEST_CLASSES,
+                archive -> writeClasses(archive, classes));
+        recordLookup("hit");
+        return true;
+    }
+
+    /**
+     * Publishes the test classes a compile-only build just wrote under {@code key}. Must not be called once
+     * student code has run in the workspace, since it could have replaced them. Written to a temporary directory
+     * and renamed, so a concurrent restore never observes a partial entry.
+     */
+    public void store(String containerName, String key, String workspacePath, String assignmentId) {
+        if (key == null || entries.containsKey(key)) {
+            return;
+        }
+        Path target = cacheRoot.resolve(key);
+        Path staging = cacheRoot.resolve(key + ".tmp-" + UUID.randomUUID());
+        try {
+            Map<String, byte[]> classes = new TreeMap<>();
+            boolean found = dockerManager.readArchive(containerName, workspacePath + "/" + GRADLE_TEST_CLASSES,
+                    (name, content, size) -> {
+                        // The archive's root entry is the classes directory itself.
+                        String path = name.substring(name.indexOf('/') + 1);
+                        if (path.endsWith(".class")) {
+                            classes.put(path, content.readAllBytes());
+                        }
+                    });
+            if (!found || classes.isEmpty()) {
+                log.warn("No compiled instructor tests to cache for {}", key);
+                return;
+            }
+            for (Map.Entry<String, byte[]> classFile : classes.entrySet()) {
+                Path file = staging.resolve(classFile.getKey()).normalize();
+                if (!file.startsWith(staging)) {
+                    throw new IOException("Unexpected path in compiled tests: " + classFile.getKey());
+                }
+                Files.createDirectories(file.getParent());
+                Files.write(file, classFile.getValue());
+            }
+            deleteQuietly(target);
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            entries.put(key, new Entry(assignmentId == null ? NO_ASSIGNMENT : assignmentId, digest(classes)));
+            log.info("Cached compiled instructor tests {}", key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to cache compiled instructor tests {}", key, e);
+        } finally {
+            deleteQuietly(staging);
+        }
+    }
+
+    /**
+     * Precompiled tests are linked against whatever sources first compiled them. The key keeps them to sources
+     * with the same API; should a student's classes still not fit, that shows up as linkage errors, and the build
+     * has to be redone with test compilation.
+     */
+    public boolean hasLinkageErrors(List<TestSuiteResult> testSuites) {
+        return testSuites.stream()
+                .filter(Objects::nonNull)
+                .map(TestSuiteResult::getTestCases)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .flatMap(testCase -> Stream.of(testCase.getFailureMessage(), testCase.getErrorMessage(),
+                        testCase.getStackTrace()))
+                .filter(Objects::nonNull)
+                .anyMatch(message -> LINKAGE_ERRORS.stream().anyMatch(message::contains));
+    }
+
+    @EventListener
+    public void onTestCodeChanged(AssignmentTestCodeChangedEvent event) {
+        String assignmentId = String.valueOf(event.assignmentId());
+        List<String> keys = entries.entrySet().stream()
+                .filter(entry -> entry.getValue().assignmentId().equals(assignmentId))
+                .map(Map.Entry::getKey)
+                .toList();
+        keys.forEach(this::drop);
+        if (!keys.isEmpty()) {
+            log.info("Invalidated cached instructor tests for assignment {}", assignmentId);
+        }
+    }
+
+    private void drop(String key) {
+        entries.remove(key);
+        deleteQuietly(cacheRoot.resolve(key));
+    }
+
+    private Map<String, byte[]> readEntry(String key) throws IOException {
+        Path directory = cacheRoot.resolve(key);
+        Map<String, byte[]> classes = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return classes;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                classes.put(directory.relativize(file).toString().replace('\\', '/'), Files.readAllBytes(file));
+            }
+        }
+        return classes;
+    }
+
+    private static void writeClasses(TarArchive.Writer archive, Map<String, byte[]> classes) throws IOException {
+        Set<String> directories = new TreeSet<>();
+        for (String path : classes.keySet()) {
+            for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+                directories.add(path.substring(0, slash));
+            }
+        }
+        for (String directory : directories) {
+            archive.addDirectory(directory);
+        }
+        for (Map.Entry<String, byte[]> classFile : classes.entrySet()) {
+            archive.addFile(classFile.getKey(), classFile.getValue(), false);
+        }
+    }
+
+    /**
+     * Hash over the sorted paths and contents of an entry's class files.
+     */
+    private static String digest(Map<String, byte[]> classes) {
+        MessageDigest digest = sha256();
+        classes.forEach((path, bytes) -> {
+            update(digest, path);
+            digest.update(Long.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) ':');
+            digest.update(bytes);
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private void recordLookup(String result) {
+        meterRegistry.counter("grader.test-cache.lookups", "result", result).increment();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * PIT incremental analysis history, one file per assignment and student. Before a mutation run the student's
+ * last history is copied into the workspace; afterwards the updated file is copied back. PIT then reuses the
+ * results of mutants whose class and covering tests have not changed since the previous attempt.
+ * <p>
+ * History files live on the grader host ({@code grader.mutation.history-dir}), where no sandbox can write, and are
+ * uploaded into the workspace that uses them. A student's history is only ever stored from that student's own
+ * run, so it is no more trustworthy than the mutation report of that run, and never reaches another student. Its
+ * digest is recorded when it is stored and checked before every restore. Files unused for
+ * {@code grader.mutation.history-retention-days} are removed.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MutationHistoryStore {
+
+    /**
+     * Where the history is placed in the workspace, relative to the project directory.
+     */
+    public static final String WORKSPACE_HISTORY_FILE = "build/pit-history.bin";
+
+    private static final String HISTORY_FILE_NAME = WORKSPACE_HISTORY_FILE.substring(
+            WORKSPACE_HISTORY_FILE.lastIndexOf('/') + 1);
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9-]+");
+    private static final int COMMAND_TIMEOUT_SECONDS = 60;
+
+    private final DockerContainerManager dockerManager;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, String> digests = new ConcurrentHashMap<>();
+
+    @Value("${grader.mutation.history-enabled:true}")
+    private boolean enabled;
+
+    @Value("${grader.mutation.history-dir:${java.io.tmpdir}/grader-mutation-history}")
+    private String historyDirectory;
+
+    @Value("${grader.mutation.history-max-bytes:16777216}")
+    private long maxBytes;
+
+    @Value("${grader.mutation.history-retention-days:120}")
+    private int retentionDays;
+
+    private Path historyRoot;
+
+    /**
+     * Digests are only known to the instance that stored the files, so whatever an earlier run left is removed.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        historyRoot = Path.of(historyDirectory).toAbsolutePath().normalize();
+        if (Files.isDirectory(historyRoot)) {
+            try (Stream<Path> leftovers = Files.list(historyRoot)) {
+                leftovers.forEach(MutationHistoryStore::deleteQuietly);
+            }
+        }
+        Files.createDirectories(historyRoot);
+    }
+
+    /**
+     * Copies the stored history into the workspace. Returns the workspace-relative file PIT should read and
+     * write, or nothing if the request has no history of its own, e.g. an instructor's test run. A history
+     * whose file no longer matches its digest is dropped.
+     */
+    public Optional<String> restore(String containerName, TestCodeRequest request, String workspacePath)
+            throws IOException, InterruptedException {
+        Optional<String> key = historyKey(request);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        String target = workspacePath + "/" + WORKSPACE_HISTORY_FILE;
+        ProcessResult result = dockerManager.executeCommand(containerName,
+                "rm -f " + target + " && mkdir -p " + parent(target), COMMAND_TIMEOUT_SECONDS);
+        if (!result.isSuccess()) {
+            log.warn("Failed to prepare mutation history in {}: {}", workspacePath, result.getErrors());
+            recordLookup("miss");
+            return Optional.of(WORKSPACE_HISTORY_FILE);
+        }
+        // A miss is normal for a first attempt: PIT starts without history and writes one.
+        Optional<byte[]> history = read(key.get());
+        if (history.isEmpty()) {
+            recordLookup("miss");
+            return Optional.of(WORKSPACE_HISTORY_FILE);
+        }
+        // The same bytes that were just checked, so the file cannot change in between.
+        dockerManager.uploadArchive(containerName, parent(target),
+                archive -> archive.addFile(HISTORY_FILE_NAME, history.get(), false));
+        recordLookup("hit");
+        return Optional.of(WORKSPACE_HISTORY_FILE);
+    }
+
+    /**
+     * Stores the history the mutation run just wrote. Written to a temporary file and renamed, so a concurrent
+     * restore for the same student never reads a partial file.
+     */
+    public void harvest(String containerName, TestCodeRequest request, String workspacePath) {
+        Optional<String> key = historyKey(request);
+        if (key.isEmpty()) {
+            return;
+        }
+        Path target = historyRoot.resolve(key.get() + ".bin");
+        Path staging = historyRoot.resolve(key.get() + ".tmp-" + UUID.randomUUID());
+        try {
+            AtomicReference<byte[]> history = new AtomicReference<>();
+            dockerManager.readArchive(containerName, workspacePath + "/" + WORKSPACE_HISTORY_FILE,
+                    (name, content, size) -> {
+                        // Anything but the plain file itself, e.g. a directory put in its place, is ignored.
+                        if (!name.equals(HISTORY_FILE_NAME)) {
+                            return;
+                        }
+                        if (size > maxBytes) {
+                            throw new IOException("Mutation history of " + size + " bytes exceeds " + maxBytes);
+                        }
+                        history.set(content.readAllBytes());
+                    });
+            if (history.get() == null || history.get().length == 0) {
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            Files.write(staging, history.get());
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            digests.put(key.get(), digest(history.get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to store mutation history {}", target, e);
+        } finally {
+            deleteQuietly(staging);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${grader.workspace-gc.orphan-initial-delay-ms:300000}",
+            fixedDelayString = "${grader.mutation.history-cleanup-interval-ms:86400000}")
+    public void removeExpiredHistory() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(Duration.ofDays(retentionDays)));
+        try (Stream<Path> files = Files.walk(historyRoot)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> lastModified(file).compareTo(cutoff) < 0)
+                    .forEach(file -> {
+                        String path = historyRoot.relativize(file).toString().replace('\\', '/');
+                        if (path.endsWith(".bin")) {
+                            digests.remove(path.substring(0, path.length() - ".bin".length()));
+                        }
+                        deleteQuietly(file);
+                    });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to remove expired mutation history", e);
+        }
+    }
+
+    /**
+     * Returns the history stored under {@code key}, or nothing if there is none or it does not match its digest.
+     */
+    private Optional<byte[]> read(String key) throws IOException {
+        String expected = digests.get(key);
+        Path file = historyRoot.resolve(key + ".bin");
+        if (expected == null || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        byte[] history = Files.readAllBytes(file);
+        if (!digest(history).equals(expected)) {
+            log.warn("Mutation history {} does not match its digest, dropping it", key);
+            digests.remove(key, expected);
+            deleteQuietly(file);
+            return Optional.empty();
+        }
+        // Retention counts from the last use, not the last store.
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        return Optional.of(history);
+    }
+
+    private Optional<String> historyKey(TestCodeRequest request) {
+        String assignmentId = request.getAssignmentId();
+        String studentId = request.getStudentId();
+        if (!enabled || assignmentId == null || studentId == null
+                || !SAFE_ID.matcher(assignmentId).matches() || !SAFE_ID.matcher(studentId).matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(assignmentId + "/" + studentId);
+    }
+
+    private void recordLookup(String result) {
+        meterRegistry.counter("grader.mutation.history.lookups", "result", result).increment();
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private static String digest(byte[] history) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(history));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String parent(String path) {
+        return path.substring(0, path.lastIndexOf('/'));
+    }
+}
@@ -0,0 +1,90 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.type.CompilationError;
+import io.adampoi.java_auto_grader.util.InMemoryJavaCompiler;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Compiles the student's sources in the backend JVM before any sandbox is leased. Code that does not compile
+ * is rejected in milliseconds with the compiler's own diagnostics, instead of after a project setup and a full
+ * build whose log then has to be scraped for errors.
+ * <p>
+ * The backend classpath is not the sandbox project's, so errors that may come from a library only the sandbox
+ * provides make the check inconclusive and the submission goes to the sandbox as before.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PreflightCompiler {
+
+    /**
+     * javac codes for references the backend cannot resolve but the sandbox build might.
+     */
+    private static final Set<String> CLASSPATH_DEPENDENT_ERRORS = Set.of(
+            "compiler.err.doesnt.exist",
+            "compiler.err.cant.access");
+
+    private final ProjectSetupService projectSetupService;
+    private final MeterRegistry meterRegistry;
+    // The compiler reuses its file manager between compilations, which must not be shared across threads.
+    private final ThreadLocal<InMemoryJavaCompiler> compilers = ThreadLocal.withInitial(InMemoryJavaCompiler::new);
+
+    @Value("${grader.preflight.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Returns the compilation errors of the student's sources, or an empty result if they compile or the check
+     * could not tell.
+     */
+    public Optional<List<CompilationError>> findCompilationErrors(TestCodeRequest request) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Map<String, String> sources = projectSetupService.sourceFiles(request);
+        if (sources.isEmpty()) {
+            return Optional.empty();
+        }
+
+        InMemoryJavaCompiler.Result compilation;
+        try {
+            compilation = compilers.get().compile(sources);
+        } catch (RuntimeException e) {
+            log.warn("Pre-flight compilation failed, continuing with the sandbox build", e);
+            record("skipped");
+            return Optional.empty();
+        }
+        if (compilation.success()) {
+            record("passed");
+            return Optional.empty();
+        }
+
+        List<Diagnostic<? extends JavaFileObject>> errors = compilation.diagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .toList();
+        if (errors.stream().anyMatch(diagnostic -> CLASSPATH_DEPENDENT_ERRORS.contains(diagnostic.getCode()))) {
+            record("inconclusive");
+            return Optional.empty();
+        }
+        record("failed");
+        // sources are compiled with a package declaration prepended
+        return Optional.of(errors.stream()
+                .map(diagnostic -> InMemoryJavaCompiler.toCompilationError(diagnostic, sources, 1))
+                .toList());
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("grader.preflight", "outcome", outcome).increment();
+    }
+}
@@ -3,80 +3,325 @@ package io.adampoi.java_auto_grader.service;
 import io.adampoi.java_auto_grader.model.enums.BuildTool;
 import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
 import io.adampoi.java_auto_grader.model.type.CodeFile;
+import io.adampoi.java_auto_grader.util.JavacDiagnosticsPlugin;
+import io.adampoi.java_auto_grader.util.TarArchive;
 import io.adampoi.java_auto_grader.util.TestFileFolderConverter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class ProjectSetupService {
 
+    private static final String MAIN_SOURCE_DIR = "src/main/java/workspace";
+    private static final String TEST_SOURCE_DIR = "src/test/java/workspace";
+    private static final String MAVEN_REPOSITORY = "/workspace/.m2/repository";
+    private static final Pattern SAFE_TARGET_CLASSES = Pattern.compile("[A-Za-z0-9_.,*]+");
+    private static final String DIAGNOSTICS_PLUGIN_DIR = ".grader/javac-plugin";
+    // JavacDiagnosticsPlugin hooks javac internals; Maven compiles in its own JVM, Gradle in a forked one.
+    private static final String COMPILER_EXPORTS = "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED "
+            + "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED";
+    /**
+     * Where compiler errors end up, relative to the project: one JSON lines file per compile task, see
+     * {@link JavacDiagnosticsPlugin}.
+     */
+    public static final String GRADLE_DIAGNOSTICS_DIR = "build/grader-diagnostics";
+    public static final String MAVEN_DIAGNOSTICS_DIR = "target/grader-diagnostics";
+
+    private final Map<String, byte[]> diagnosticsPluginFiles = diagnosticsPluginFiles();
+
     public void setupProject(Path projectDir, TestCodeRequest request, BuildTool buildTool) throws IOException {
-        switch (buildTool) {
-            case GRADLE:
-                setupGradleProject(projectDir);
-                break;
-            case MAVEN:
-                setupMavenProject(projectDir);
-                break;
+        for (String directory : projectDirectories(buildTool)) {
+            Files.createDirectories(projectDir.resolve(directory));
+        }
+        for (Map.Entry<String, String> file : projectFiles(request, buildTool).entrySet()) {
+            Path filePath = projectDir.resolve(file.getKey());
+            Files.createDirectories(filePath.getParent());
+            writeFile(filePath, file.getValue());
+        }
+        for (Map.Entry<String, byte[]> file : diagnosticsPluginFiles.entrySet()) {
+            Path filePath = projectDir.resolve(file.getKey());
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, file.getValue());
+        }
+    }
+
+    /**
+     * Writes the same project as {@link #setupProject} into a tar archive under {@code rootDirectory},
+     * so it can be unpacked straight into a sandbox without a host temp directory.
+     */
+    public void writeProjectArchive(TarArchive.Writer archive, String rootDirectory, TestCodeRequest request,
+                                    BuildTool buildTool) throws IOException {
+        writeArchive(archive, rootDirectory, projectDirectories(buildTool), projectFiles(request, buildTool));
+        writeDiagnosticsPlugin(archive, rootDirectory);
+    }
+
+    /**
+     * Writes only the submitted sources and tests, for dropping into an already configured template project.
+     */
+    public void writeSourcesArchive(TarArchive.Writer archive, String rootDirectory, TestCodeRequest request)
+            throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        addSourceFiles(files, request);
+        addTestFiles(files, request);
+        writeArchive(archive, rootDirectory, List.of(MAIN_SOURCE_DIR, TEST_SOURCE_DIR), files);
+    }
+
+    /**
+     * Writes the build files plus a trivial class and test, so building the template once resolves
+     * dependencies, fills the configuration cache and warms the build daemon.
+     */
+    public void writeTemplateArchive(TarArchive.Writer archive, String rootDirectory, BuildTool buildTool)
+            throws IOException {
+        Map<String, String> files = buildFiles(buildTool);
+        files.put(MAIN_SOURCE_DIR + "/Warmup.java", """
+                package workspace;
+
+                public class Warmup {
+                    public int value() {
+                        return 1;
+                    }
+                }
+                """);
+        files.put(TEST_SOURCE_DIR + "/WarmupTest.java", """
+                package workspace;
+
+                import org.junit.jupiter.api.Test;
+
+                import static org.junit.jupiter.api.Assertions.assertEquals;
+
+                class WarmupTest {
+                    @Test
+                    void warmsUp() {
+                        assertEquals(1, new Warmup().value());
+                    }
+                }
+                """);
+        writeArchive(archive, rootDirectory, projectDirectories(buildTool), files);
+        writeDiagnosticsPlugin(archive, rootDirectory);
+    }
+
+    /**
+     * The submitted sources by project path, exactly as they are written into a sandbox project.
+     */
+    public Map<String, String> sourceFiles(TestCodeRequest request) {
+        Map<String, String> files = new LinkedHashMap<>();
+        addSourceFiles(files, request);
+        return files;
+    }
+
+    /**
+     * The instructor tests by project path, exactly as they are written into a sandbox project.
+     */
+    public Map<String, String> testFiles(TestCodeRequest request) {
+        Map<String, String> files = new LinkedHashMap<>();
+        addTestFiles(files, request);
+        return files;
+    }
+
+    public String buildCommand(BuildTool buildTool, String workspace) {
+        return buildCommand(buildTool, workspace, false, false);
+    }
+
+    /**
+     * @param precompiledTests     skip test compilation because compiled instructor tests were restored into
+     *                             the workspace (Gradle only)
+     * @param dependenciesResolved the project's dependencies and plugins are already in the local repository,
+     *                             so Maven can run offline instead of checking remote repositories
+     */
+    public String buildCommand(BuildTool buildTool, String workspace, boolean precompiledTests,
+                               boolean dependenciesResolved) {
+        String baseCommand = String.format("cd %s && ", workspace);
+        String offline = dependenciesResolved ? "--offline " : "";
+        return switch (buildTool) {
+            case GRADLE -> baseCommand + "gradle test " +
+                        (precompiledTests ? "-x compileTestJava " : "") +
+                        "--daemon --parallel --build-cache --configuration-cache " +
+                        "--console=plain";
+            case MAVEN -> baseCommand + "mvn " + offline + "test -Dmaven.repo.local=" + MAVEN_REPOSITORY;
+            case MAVEN_DAEMON -> baseCommand + "mvnd -B " + offline + "test -Dmaven.repo.local=" + MAVEN_REPOSITORY;
+        };
+    }
+
+    /**
+     * Compiles the sources and instructor tests without running anything, for {@link InstructorTestCache}. Every
+     * compile task is rerun and the build cache is not read, so the classes come from javac and not from outputs
+     * an earlier build in the sandbox left behind.
+     */
+    public String testCompileCommand(BuildTool buildTool, String workspace) {
+        if (buildTool != BuildTool.GRADLE) {
+            throw new IllegalArgumentException("Separate test compilation is not supported for " + buildTool);
+        }
+        return String.format("cd %s && ", workspace) + "gradle testClasses --rerun-tasks --no-build-cache "
+                + "--daemon --configuration-cache --console=plain";
+    }
+
+    /**
+     * The PIT run that follows a green test build, mutating only the submitted classes. Only the Gradle project
+     * applies the PIT plugin.
+     *
+     * @param historyFile workspace-relative incremental analysis history PIT reads and rewrites, or {@code null}
+     */
+    public String mutationCommand(BuildTool buildTool, String workspace, boolean precompiledTests,
+                                  String targetClasses, String historyFile) {
+        if (buildTool != BuildTool.GRADLE) {
+            throw new IllegalArgumentException("Mutation testing is not supported for " + buildTool);
+        }
+        // Class names come from student file names, so anything unusual falls back to the whole package.
+        String targets = SAFE_TARGET_CLASSES.matcher(targetClasses).matches() ? targetClasses : "workspace.*";
+        return String.format("cd %s && ", workspace) + "gradle pitest " +
+                (precompiledTests ? "-x compileTestJava " : "") +
+                "--daemon --build-cache --configuration-cache --console=plain " +
+                "'-PpitestTargetClasses=" + targets + "'" +
+                (historyFile == null ? "" : " -PpitestHistory=" + historyFile);
+    }
+
+    /**
+     * The build a template project runs once when it is provisioned. Besides warming the build tool it resolves
+     * everything later offline builds need, including plugins only bound to later phases.
+     */
+    public String warmupCommand(BuildTool buildTool, String workspace) {
+        return switch (buildTool) {
+            case GRADLE -> buildCommand(buildTool, workspace);
+            case MAVEN -> String.format("cd %s && ", workspace)
+                    + "mvn dependency:go-offline test -Dmaven.repo.local=" + MAVEN_REPOSITORY;
+            case MAVEN_DAEMON -> String.format("cd %s && ", workspace)
+                    + "mvnd -B dependency:go-offline test -Dmaven.repo.local=" + MAVEN_REPOSITORY;
+        };
+    }
+
+    /**
+     * Everything that affects how instructor tests compile apart from their sources: the generated build files.
+     */
+    public String dependencyFingerprint(BuildTool buildTool) {
+        return String.join("\n", buildFiles(buildTool).values());
+    }
+
+    private void writeArchive(TarArchive.Writer archive, String rootDirectory, List<String> projectDirectories,
+                              Map<String, String> files) throws IOException {
+        Set<String> directories = new HashSet<>();
+        addDirectory(archive, rootDirectory, directories);
+        for (String directory : projectDirectories) {
+            addDirectory(archive, rootDirectory + "/" + directory, directories);
+        }
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            String entryName = rootDirectory + "/" + file.getKey();
+            addDirectory(archive, entryName.substring(0, entryName.lastIndexOf('/')), directories);
+            archive.addFile(entryName, file.getValue());
         }
-        createSourceDirectories(projectDir);
-        writeSourceFiles(projectDir, request);
-        writeTestFiles(projectDir, request);
     }
 
-    private void setupGradleProject(Path projectDir) throws IOException {
-        writeGradleBuildFile(projectDir);
-        writeGradleProperties(projectDir);
+    /**
+     * The compiled {@link JavacDiagnosticsPlugin} and its service registration, which the build files put on the
+     * processor path. Only the template and cold projects carry it; submissions reuse the template's copy.
+     */
+    private void writeDiagnosticsPlugin(TarArchive.Writer archive, String rootDirectory) throws IOException {
+        Set<String> directories = new HashSet<>();
+        for (Map.Entry<String, byte[]> file : diagnosticsPluginFiles.entrySet()) {
+            String entryName = rootDirectory + "/" + file.getKey();
+            addDirectory(archive, entryName.substring(0, entryName.lastIndexOf('/')), directories);
+            archive.addFile(entryName, file.getValue(), false);
+        }
+    }
+
+    /**
+     * Read from this application's own classpath by name. The handler class cannot even be loaded here, since
+     * javac's internals are not exported to the grader.
+     */
+    private static Map<String, byte[]> diagnosticsPluginFiles() {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        String packagePath = JavacDiagnosticsPlugin.class.getPackageName().replace('.', '/');
+        for (String classFile : JavacDiagnosticsPlugin.CLASS_FILES) {
+            String resource = packagePath + "/" + classFile;
+            try (InputStream in = ProjectSetupService.class.getClassLoader().getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing compiler plugin class " + resource);
+                }
+                files.put(DIAGNOSTICS_PLUGIN_DIR + "/" + packagePath + "/" + classFile, in.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        files.put(DIAGNOSTICS_PLUGIN_DIR + "/META-INF/services/com.sun.source.util.Plugin",
+                (JavacDiagnosticsPlugin.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+        return files;
     }
 
-    private void setupMavenProject(Path projectDir) throws IOException {
-        writeMavenPomFile(projectDir);
-        createMavenDirectoryStructure(projectDir);
+    private void addDirectory(TarArchive.Writer archive, String directory, Set<String> written) throws IOException {
+        int slash = directory.lastIndexOf('/');
+        if (slash > 0) {
+            addDirectory(archive, directory.substring(0, slash), written);
+        }
+        if (written.add(directory)) {
+            archive.addDirectory(directory);
+        }
+    }
+
+    private List<String> projectDirectories(BuildTool buildTool) {
+        return switch (buildTool) {
+            case GRADLE -> List.of(MAIN_SOURCE_DIR, TEST_SOURCE_DIR);
+            case MAVEN, MAVEN_DAEMON ->
+                    List.of(MAIN_SOURCE_DIR, TEST_SOURCE_DIR, "src/main/resources", "src/test/resources");
+        };
+    }
+
+    private Map<String, String> projectFiles(TestCodeRequest request, BuildTool buildTool) {
+        Map<String, String> files = buildFiles(buildTool);
+        addSourceFiles(files, request);
+        addTestFiles(files, request);
+        return files;
+    }
+
+    private Map<String, String> buildFiles(BuildTool buildTool) {
+        Map<String, String> files = new LinkedHashMap<>();
+        switch (buildTool) {
+            case GRADLE -> {
+                files.put("build.gradle", gradleBuildFile());
+                files.put("gradle.properties", gradleProperties());
+            }
+            case MAVEN, MAVEN_DAEMON -> {
+                files.put("pom.xml", mavenPomFile());
+                files.put(".mvn/jvm.config", COMPILER_EXPORTS + "\n");
+            }
+        }
+        return files;
     }
 
-    private void writeSourceFiles(Path projectDir, TestCodeRequest request) throws IOException {
-        Path srcMainJava = projectDir.resolve("src/main/java/workspace");
-        log.info("Writing {} source files to {}", request.getSourceFiles().size(), srcMainJava);
+    private void addSourceFiles(Map<String, String> files, TestCodeRequest request) {
+        log.info("Writing {} source files to {}", request.getSourceFiles().size(), MAIN_SOURCE_DIR);
 
         for (CodeFile sourceFile : request.getSourceFiles()) {
-            Path filePath = srcMainJava.resolve(sourceFile.getFileName());
-            Files.createDirectories(filePath.getParent());
             String sourceCode = "package workspace;\n" + sourceFile.getContent();
-            Files.writeString(filePath, sourceCode);
+            files.put(MAIN_SOURCE_DIR + "/" + sourceFile.getFileName(), sourceCode);
         }
     }
 
-    private void writeTestFiles(Path projectDir, TestCodeRequest request) throws IOException {
-        Path srcTestJava = projectDir.resolve("src/test/java/workspace");
+    private void addTestFiles(Map<String, String> files, TestCodeRequest request) {
         List<CodeFile> testFiles = TestFileFolderConverter.toSeparateTestFolders(request.getTestFiles());
-        log.info("Writing {} test files to separate folders under {}", testFiles.size(), srcTestJava);
+        log.info("Writing {} test files to separate folders under {}", testFiles.size(), TEST_SOURCE_DIR);
 
         for (CodeFile testFile : testFiles) {
-            Path filePath = srcTestJava.resolve(testFile.getFileName());
-            // Create parent directories if they don't exist
-            Files.createDirectories(filePath.getParent());
-
-            Files.writeString(filePath, testFile.getContent());
+            files.put(TEST_SOURCE_DIR + "/" + testFile.getFileName(), testFile.getContent());
         }
     }
 
-    private Path createSourceDirectories(Path projectDir) throws IOException {
-        Path srcDir = projectDir.resolve("src");
-        Files.createDirectories(srcDir.resolve("main/java/workspace"));
-        Files.createDirectories(srcDir.resolve("test/java/workspace"));
-        return srcDir;
-    }
-
-    private void writeGradleBuildFile(Path projectDir) throws IOException {
-        String buildGradle = """
+    private String gradleBuildFile() {
+        return """
                 plugins {
                     id 'java'
                     id 'application'
@@ -119,6 +364,10 @@ public class ProjectSetupService {
                     mutationThreshold = 0
                     coverageThreshold = 0
                     avoidCallsTo = []
+                    if (findProperty('pitestHistory')) {
+                        historyInputLocation.set(file(findProperty('pitestHistory')))
+                        historyOutputLocation.set(file(findProperty('pitestHistory')))
+                    }
                 }
                 
                 java {
@@ -138,18 +387,40 @@ public class ProjectSetupService {
                     }
                 }
                 
+                // Compiler errors are also written as JSON lines to build/grader-diagnostics for the grader; the
+                // plugin is added to the processor path, next to any annotation processors (Lombok, ...). The
+                // path is @Internal so it does not keep compile results from being shared through the build cache.
+                class GraderDiagnostics implements CommandLineArgumentProvider {
+                    @Internal File sidecar
+                    @Input String stage
+                
+                    Iterable<String> asArguments() {
+                        ["-Xplugin:GraderDiagnostics ${sidecar.absolutePath} ${stage}".toString()]
+                    }
+                }
+                
+                def graderCompilerJvmArgs = ['-Xmx512m',
+                        '--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED',
+                        '--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED']
+                
                 compileJava {
                     options.encoding = 'UTF-8'
                     options.incremental = true
                     options.fork = true
-                    options.forkOptions.jvmArgs = ['-Xmx512m']
+                    options.forkOptions.jvmArgs = graderCompilerJvmArgs
+                    options.annotationProcessorPath += files('.grader/javac-plugin')
+                    options.compilerArgumentProviders.add(new GraderDiagnostics(
+                            sidecar: file('build/grader-diagnostics/compileJava.jsonl'), stage: 'STUDENT_SOURCE'))
                 }
                 
                 compileTestJava {
                     options.encoding = 'UTF-8'
                     options.incremental = true
                     options.fork = true
-                    options.forkOptions.jvmArgs = ['-Xmx512m']
+                    options.forkOptions.jvmArgs = graderCompilerJvmArgs
+                    options.annotationProcessorPath += files('.grader/javac-plugin')
+                    options.compilerArgumentProviders.add(new GraderDiagnostics(
+                            sidecar: file('build/grader-diagnostics/compileTestJava.jsonl'), stage: 'INSTRUCTOR_TEST'))
                 }
                 
                 testlogger {
@@ -172,8 +443,6 @@ public class ProjectSetupService {
                     logLevel 'lifecycle'
                 }
                 """;
-
-        writeFile(projectDir.resolve("build.gradle"), buildGradle);
     }
 
     public String submittedSourceTargetClasses(TestCodeRequest request) {
@@ -193,8 +462,8 @@ public class ProjectSetupService {
         return targetClasses.isBlank() ? "workspace.*" : targetClasses;
     }
 
-    private void writeGradleProperties(Path projectDir) throws IOException {
-        String gradleProps = """
+    private String gradleProperties() {
+        return """
                 org.gradle.daemon=true
                 org.gradle.parallel=true
                 org.gradle.caching=true
@@ -206,11 +475,10 @@ public class ProjectSetupService {
                 org.gradle.console=rich
                 org.gradle.logging.level=lifecycle
                 """;
-        Files.writeString(projectDir.resolve("gradle.properties"), gradleProps);
     }
 
-    private void writeMavenPomFile(Path projectDir) throws IOException {
-        String pomXml = """
+    private String mavenPomFile() {
+        return """
                 <?xml version="1.0" encoding="UTF-8"?>
                 <project xmlns="http://maven.apache.org/POM/4.0.0"
                          xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
@@ -246,6 +514,34 @@ public class ProjectSetupService {
                 
                     <build>
                         <plugins>
+                            <!-- Compiler errors are also written as JSON lines to target/grader-diagnostics for the grader. -->
+                            <plugin>
+                                <groupId>org.apache.maven.plugins</groupId>
+                                <artifactId>maven-compiler-plugin</artifactId>
+                                <version>3.13.0</version>
+                                <executions>
+                                    <execution>
+                                        <id>default-compile</id>
+                                        <configuration>
+                                            <compilerArgs>
+                                                <arg>-processorpath</arg>
+                                                <arg>${project.basedir}/.grader/javac-plugin</arg>
+                                                <arg>-Xplugin:GraderDiagnostics ${project.build.directory}/grader-diagnostics/compile.jsonl STUDENT_SOURCE</arg>
+                                            </compilerArgs>
+                                        </configuration>
+                                    </execution>
+                                    <execution>
+                                        <id>default-testCompile</id>
+                                        <configuration>
+                                            <compilerArgs>
+                                                <arg>-processorpath</arg>
+                                                <arg>${project.basedir}/.grader/javac-plugin</arg>
+                                                <arg>-Xplugin:GraderDiagnostics ${project.build.directory}/grader-diagnostics/testCompile.jsonl INSTRUCTOR_TEST</arg>
+                                            </compilerArgs>
+                                        </configuration>
+                                    </execution>
+                                </executions>
+                            </plugin>
                             <plugin>
                                 <groupId>org.apache.maven.plugins</groupId>
                                 <artifactId>maven-surefire-plugin</artifactId>
@@ -262,15 +558,6 @@ public class ProjectSetupService {
                     </build>
                 </project>
                 """;
-
-        writeFile(projectDir.resolve("pom.xml"), pomXml);
-    }
-
-    private void createMavenDirectoryStructure(Path projectDir) throws IOException {
-        Files.createDirectories(projectDir.resolve("src/main/java/workspace"));
-        Files.createDirectories(projectDir.resolve("src/test/java/workspace"));
-        Files.createDirectories(projectDir.resolve("src/main/resources"));
-        Files.createDirectories(projectDir.resolve("src/test/resources"));
     }
 
     private void writeFile(Path filePath, String content) throws IOException {
@@ -0,0 +1,150 @@
+package io.adampoi.java_auto_grader.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.domain.GradingJobRecord;
+import io.adampoi.java_auto_grader.domain.Submission;
+import io.adampoi.java_auto_grader.model.enums.GraderRole;
+import io.adampoi.java_auto_grader.model.enums.GradingJobStatus;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.repository.GradingJobRecordRepository;
+import io.adampoi.java_auto_grader.util.CancellationToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The API side of remote grading. On a node with {@code grader.role=API} every sandbox run is written to the
+ * {@code grading_jobs} table and the calling thread waits until a {@link GradingWorker} has stored the result,
+ * so grading capacity grows with the number of workers, not with the API host.
+ * <p>
+ * Each database call runs in its own transaction: the caller is usually inside a long service transaction,
+ * whose uncommitted insert no worker could see.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RemoteGradingQueue {
+
+    private final GradingJobRecordRepository repository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private TransactionTemplate transaction;
+
+    @Value("${grader.role:STANDALONE}")
+    private GraderRole role;
+
+    @Value("${grader.remote.poll-interval-ms:500}")
+    private long pollIntervalMillis;
+
+    @PostConstruct
+    public void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return role == GraderRole.API;
+    }
+
+    /**
+     * Queues the run for a grader worker and blocks until it has finished. Cancelling the current job cancels
+     * the queued row, or asks the worker running it to kill its build.
+     */
+    public TestCodeResponse submitAndWait(TestCodeRequest request) {
+        UUID id = transaction.execute(status -> repository.save(GradingJobRecord.builder()
+                .status(GradingJobStatus.QUEUED)
+                .priority(priority(request.getSubmissionType()))
+                .request(write(request))
+                .attempts(0)
+                .cancelRequested(false)
+                .createdAt(OffsetDateTime.now())
+                .build()).getId());
+        log.info("Queued remote grading job {}", id);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "completed";
+        try (CancellationToken.Registration ignored = CancellationToken.onCurrentCancel(() -> cancel(id))) {
+            GradingJobRecord job = await(id);
+            outcome = job.getStatus().name().toLowerCase(Locale.ROOT);
+            return switch (job.getStatus()) {
+                case COMPLETED -> read(job.getResponse());
+                case CANCELLED -> throw new CancellationException("Grading job was cancelled");
+                default -> throw new IllegalStateException("Remote grading job " + id + " failed: " + job.getError());
+            };
+        } finally {
+            sample.stop(Timer.builder("grader.remote.jobs")
+                    .description("Time from queueing a remote grading job to reading its result")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private GradingJobRecord await(UUID id) {
+        try {
+            while (true) {
+                GradingJobRecord job = transaction.execute(status -> repository.findById(id).orElseThrow(
+                        () -> new IllegalStateException("Remote grading job " + id + " disappeared")));
+                if (job.getStatus() == GradingJobStatus.COMPLETED || job.getStatus() == GradingJobStatus.FAILED
+                        || job.getStatus() == GradingJobStatus.CANCELLED) {
+                    return job;
+                }
+                Thread.sleep(pollIntervalMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(id);
+            throw new IllegalStateException("Interrupted while waiting for remote grading job " + id, e);
+        }
+    }
+
+    private void cancel(UUID id) {
+        transaction.executeWithoutResult(status -> {
+            if (repository.cancelQueued(id, OffsetDateTime.now()) == 0) {
+                repository.requestCancel(id);
+            }
+        });
+    }
+
+    private String write(TestCodeRequest request) {
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize grading request", e);
+        }
+    }
+
+    private TestCodeResponse read(String response) {
+        try {
+            return objectMapper.readValue(response, TestCodeResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read remote grading result", e);
+        }
+    }
+
+    private static int priority(Submission.SubmissionType type) {
+        if (type == null) {
+            return 1;
+        }
+        return switch (type) {
+            case FINAL -> 2;
+            case ATTEMPT -> 1;
+            case TRYOUT -> 0;
+        };
+    }
+}
@@ -32,18 +32,22 @@ public class RubricGradeService {
     private final RubricGradeRepository rubricGradeRepository;
     private final RubricRepository rubricRepository;
     private final AssignmentRepository assignmentRepository;
+    private final RubricTestCaseMatcher testCaseMatcher;
 
     public RubricGradeService(final RubricGradeRepository rubricGradeRepository,
-                              final RubricRepository rubricRepository, AssignmentRepository assignmentRepository) {
+                              final RubricRepository rubricRepository, AssignmentRepository assignmentRepository,
+                              RubricTestCaseMatcher testCaseMatcher) {
         this.rubricGradeRepository = rubricGradeRepository;
         this.rubricRepository = rubricRepository;
         this.assignmentRepository = assignmentRepository;
+        this.testCaseMatcher = testCaseMatcher;
     }
 
     public static RubricGradeDTO mapToDTO(final RubricGrade rubricGrade, final RubricGradeDTO rubricGradeDTO) {
         rubricGradeDTO.setId(String.valueOf(rubricGrade.getId()));
         rubricGradeDTO.setName(rubricGrade.getName());
         rubricGradeDTO.setGradeType(rubricGrade.getGradeType());
+        rubricGradeDTO.setArguments(rubricGrade.getArguments());
         rubricGradeDTO.setRubricId(Optional.ofNullable(rubricGrade.getRubric())
                 .map(Rubric::getId)
                 .orElse(null));
@@ -116,6 +120,7 @@ public class RubricGradeService {
         // Now delete the rubric grades
         rubricGradeRepository.deleteByAssignmentId(assignmentId);
         rubricGradeRepository.flush(); // Ensure deletion is flushed
+        testCaseMatcher.evict(assignmentId);
 
         List<RubricGradeDTO> savedRubricGrades = new ArrayList<>();
         for (RubricGradeDTO rubricGradeDTO : rubricGradeDTOs) {
@@ -163,6 +168,9 @@ public class RubricGradeService {
         if (rubricGradeDTO.getGradeType() != null) {
             rubricGrade.setGradeType(rubricGradeDTO.getGradeType());
         }
+        if (rubricGradeDTO.getArguments() != null) {
+            rubricGrade.setArguments(rubricGradeDTO.getArguments());
+        }
         if (rubricGradeDTO.getRubricId() != null) {
             final Rubric rubric = rubricRepository.findById(rubricGradeDTO.getRubricId())
                     .orElseThrow(() -> new EntityNotFoundException("Rubric not found"));
@@ -188,6 +196,9 @@ public class RubricGradeService {
         if (rubricGradeDTO.getGradeType() != null) {
             rubricGrade.setGradeType(rubricGradeDTO.getGradeType());
         }
+        if (rubricGradeDTO.getArguments() != null) {
+            rubricGrade.setArguments(rubricGradeDTO.getArguments());
+        }
         if (rubricGradeDTO.getRubricId() != null) {
             final Rubric rubric = rubricRepository.findById(rubricGradeDTO.getRubricId())
                     .orElseThrow(() -> new EntityNotFoundException("Rubric not found"));
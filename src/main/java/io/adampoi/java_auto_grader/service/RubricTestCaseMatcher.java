@@ -0,0 +1,130 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.RubricGrade;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.TestCaseResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matches rubric grades to the test cases of a grading result by name, ignoring case, punctuation, parameter
+ * lists, a trailing {@code [n]} of parameterized runs and a leading {@code test}. Each result is indexed once,
+ * so grading is linear in rubrics plus test cases, and rubric names are normalized once per assignment.
+ */
+@Component
+public class RubricTestCaseMatcher {
+
+    private static final String TEST_PREFIX = "test";
+
+    /**
+     * Normalized rubric names by assignment. Keyed by the name itself, so a renamed rubric simply gets a new
+     * entry; the few stale ones are dropped with the assignment's rubrics.
+     */
+    private final Map<UUID, Map<String, String>> rubricKeys = new ConcurrentHashMap<>();
+
+    /**
+     * The test cases of one grading result by normalized method name.
+     */
+    public static final class Index {
+
+        private static final Index EMPTY = new Index(Map.of(), false);
+
+        private final Map<String, TestCaseResult> testCases;
+        private final boolean hasTestCases;
+
+        private Index(Map<String, TestCaseResult> testCases, boolean hasTestCases) {
+            this.testCases = testCases;
+            this.hasTestCases = hasTestCases;
+        }
+
+        /**
+         * Whether the result holds any test case at all, matched or not.
+         */
+        public boolean hasTestCases() {
+            return hasTestCases;
+        }
+    }
+
+    public Index index(TestCodeResponse response) {
+        if (response == null || response.getTestSuites() == null) {
+            return Index.EMPTY;
+        }
+        Map<String, TestCaseResult> testCases = new HashMap<>();
+        boolean hasTestCases = false;
+        for (TestSuiteResult suite : response.getTestSuites()) {
+            if (suite == null || suite.getTestCases() == null) {
+                continue;
+            }
+            for (TestCaseResult testCase : suite.getTestCases()) {
+                hasTestCases = true;
+                if (testCase == null || testCase.getMethodName() == null) {
+                    continue;
+                }
+                // The first test case in report order wins, whether it matches as written or without "test".
+                String key = normalize(testCase.getMethodName());
+                testCases.putIfAbsent(key, testCase);
+                if (key.startsWith(TEST_PREFIX)) {
+                    testCases.putIfAbsent(key.substring(TEST_PREFIX.length()), testCase);
+                }
+            }
+        }
+        return new Index(testCases, hasTestCases);
+    }
+
+    public Optional<TestCaseResult> match(Index index, RubricGrade rubricGrade) {
+        String name = rubricGrade.getName();
+        if (name == null) {
+            return Optional.empty();
+        }
+        UUID assignmentId = rubricGrade.getAssignment() == null ? null : rubricGrade.getAssignment().getId();
+        String key = assignmentId == null
+                ? normalize(name)
+                : rubricKeys.computeIfAbsent(assignmentId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, RubricTestCaseMatcher::normalize);
+        return Optional.ofNullable(index.testCases.get(key));
+    }
+
+    /**
+     * Forgets the normalized rubric names of an assignment whose rubrics were replaced.
+     */
+    public void evict(UUID assignmentId) {
+        rubricKeys.remove(assignmentId);
+    }
+
+    /**
+     * Drops a trailing {@code [...]}, every {@code (...)} and everything but ASCII letters and digits, then
+     * lower-cases what is left: {@code "testAdd(int, int)[2]"} becomes {@code "testadd"}.
+     */
+    static String normalize(String value) {
+        int end = value.length();
+        if (end > 0 && value.charAt(end - 1) == ']') {
+            int open = value.indexOf('[', value.lastIndexOf(']', end - 2) + 1);
+            if (open >= 0 && open < end - 1) {
+                end = open;
+            }
+        }
+        StringBuilder normalized = new StringBuilder(end);
+        for (int i = 0; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '(') {
+                int close = value.indexOf(')', i + 1);
+                if (close >= 0 && close < end) {
+                    i = close;
+                    continue;
+                }
+            }
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                normalized.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                normalized.append((char) (c + ('a' - 'A')));
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,259 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a fixed number of pre-started sandbox containers per {@link BuildTool}.
+ * Each grading job leases one container for the duration of its build and returns it afterwards,
+ * so concurrent submissions no longer share a single container.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SandboxContainerPool {
+
+    private final SandboxHealthMonitor healthMonitor;
+    private final MeterRegistry meterRegistry;
+    private final Map<BuildTool, ToolPool> pools = new ConcurrentHashMap<>();
+
+    @Value("${grader.sandbox.pool-size:2}")
+    private int poolSize;
+
+    @Value("${grader.sandbox.lease-timeout-seconds:120}")
+    private long leaseTimeoutSeconds;
+
+    @Value("${grader.sandbox.warm-build-tools:GRADLE}")
+    private List<BuildTool> warmBuildTools;
+
+    @PostConstruct
+    public void init() {
+        healthMonitor.onSuspect(this::recoverIfIdle);
+        warmBuildTools.forEach(this::poolFor);
+    }
+
+    /**
+     * Hands out an idle container whose cached health is READY. Readiness is maintained by
+     * {@link SandboxHealthMonitor}, so this never probes Docker on the request path.
+     */
+    public Lease lease(BuildTool buildTool) throws InterruptedException {
+        ToolPool pool = poolFor(buildTool);
+        requestRefill(pool);
+
+        SandboxContainer container = null;
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + TimeUnit.SECONDS.toNanos(leaseTimeoutSeconds);
+        pool.waiting.incrementAndGet();
+        try {
+            while (container == null) {
+                long remaining = deadline - System.nanoTime();
+                SandboxContainer candidate = remaining > 0 ? pool.idle.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (candidate == null) {
+                    break;
+                }
+                if (healthMonitor.isReady(candidate.getName())) {
+                    container = candidate;
+                    pool.leased.add(container.getName());
+                } else {
+                    recover(pool, candidate);
+                }
+            }
+        } finally {
+            pool.waiting.decrementAndGet();
+            pool.leaseWait.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+        if (container == null) {
+            throw new IllegalStateException("No " + buildTool + " sandbox became available within "
+                    + leaseTimeoutSeconds + " seconds");
+        }
+        return new Lease(this, container);
+    }
+
+    void release(Lease lease) {
+        SandboxContainer container = lease.getContainer();
+        ToolPool pool = poolFor(container.getBuildTool());
+        if (lease.getSuspectReason() != null) {
+            healthMonitor.markSuspect(container.getName(), lease.getSuspectReason());
+        }
+        if (!pool.leased.remove(container.getName())) {
+            return;
+        }
+        if (healthMonitor.isReady(container.getName())) {
+            pool.idle.offerFirst(container);
+        } else {
+            recover(pool, container);
+        }
+    }
+
+    /**
+     * Some healthy container for housekeeping on the shared workspace mount, preferring one without a build.
+     * The container is not leased: the caller only runs short commands next to whatever else executes there.
+     */
+    public Optional<String> anyReadyContainer() {
+        Optional<String> idleContainer = pools.values().stream()
+                .flatMap(pool -> pool.idle.stream())
+                .map(SandboxContainer::getName)
+                .filter(healthMonitor::isReady)
+                .findFirst();
+        if (idleContainer.isPresent()) {
+            return idleContainer;
+        }
+        return pools.values().stream()
+                .flatMap(pool -> pool.leased.stream())
+                .filter(healthMonitor::isReady)
+                .findFirst();
+    }
+
+    @Scheduled(initialDelayString = "${grader.sandbox.refill-initial-delay-ms:0}",
+            fixedDelayString = "${grader.sandbox.refill-interval-ms:30000}")
+    public void refillPools() {
+        pools.values().forEach(this::requestRefill);
+    }
+
+    private ToolPool poolFor(BuildTool buildTool) {
+        return pools.computeIfAbsent(buildTool, this::createPool);
+    }
+
+    private ToolPool createPool(BuildTool buildTool) {
+        ToolPool pool = new ToolPool(buildTool, poolSize, meterRegistry);
+        log.info("Created {} sandbox pool with {} containers", buildTool, poolSize);
+        return pool;
+    }
+
+    private void requestRefill(ToolPool pool) {
+        pool.vacantSlots().forEach(container -> recover(pool, container));
+    }
+
+    private void recoverIfIdle(SandboxContainer container) {
+        ToolPool pool = poolFor(container.getBuildTool());
+        if (pool.idle.remove(container)) {
+            recover(pool, container);
+        }
+    }
+
+    /**
+     * Takes a container out of rotation until the health monitor has probed (and if necessary restarted) it.
+     * Only containers that are neither leased nor idle get here, so a restart never runs under a build.
+     */
+    private void recover(ToolPool pool, SandboxContainer container) {
+        if (!pool.recovering.add(container.getName())) {
+            return;
+        }
+        healthMonitor.recover(container).whenComplete((healthy, error) -> {
+            pool.recovering.remove(container.getName());
+            if (Boolean.TRUE.equals(healthy)) {
+                pool.idle.offerLast(container);
+                log.info("Sandbox container {} is ready", container.getName());
+            } else {
+                log.warn("Sandbox container {} is unavailable; retrying on next refill", container.getName());
+            }
+        });
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class SandboxContainer {
+        private final String name;
+        private final BuildTool buildTool;
+    }
+
+    /**
+     * Exclusive hold on one pooled container. Closing the lease hands the container back to the pool.
+     */
+    @Getter
+    public static class Lease implements AutoCloseable {
+        private final SandboxContainerPool pool;
+        private final SandboxContainer container;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile String suspectReason;
+
+        Lease(SandboxContainerPool pool, SandboxContainer container) {
+            this.pool = pool;
+            this.container = container;
+        }
+
+        public String getContainerName() {
+            return container.getName();
+        }
+
+        /**
+         * Flags the container for an out-of-band health probe once this lease is closed.
+         */
+        public void markSuspect(String reason) {
+            this.suspectReason = reason;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                pool.release(this);
+            }
+        }
+    }
+
+    private static class ToolPool {
+        private final List<SandboxContainer> slots = new ArrayList<>();
+        private final BlockingDeque<SandboxContainer> idle = new LinkedBlockingDeque<>();
+        private final Set<String> leased = ConcurrentHashMap.newKeySet();
+        private final Set<String> recovering = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final Timer leaseWait;
+
+        ToolPool(BuildTool buildTool, int size, MeterRegistry meterRegistry) {
+            String prefix = buildTool.name().toLowerCase(Locale.ROOT) + "-sandbox-";
+            for (int i = 0; i < size; i++) {
+                slots.add(new SandboxContainer(prefix + i, buildTool));
+            }
+            String tag = buildTool.name().toLowerCase(Locale.ROOT);
+            this.leaseWait = Timer.builder("grader.sandbox.lease.wait")
+                    .description("Time a grading job waited for a sandbox container")
+                    .tag("build.tool", tag)
+                    .register(meterRegistry);
+            Gauge.builder("grader.sandbox.pool.queue.depth", waiting, AtomicInteger::get)
+                    .description("Grading jobs waiting for a sandbox container")
+                    .tag("build.tool", tag)
+                    .register(meterRegistry);
+            Gauge.builder("grader.sandbox.pool.idle", idle, BlockingDeque::size)
+                    .tag("build.tool", tag)
+                    .register(meterRegistry);
+            Gauge.builder("grader.sandbox.pool.leased", leased, Set::size)
+                    .tag("build.tool", tag)
+                    .register(meterRegistry);
+            Gauge.builder("grader.sandbox.pool.utilisation", this,
+                            pool -> pool.slots.isEmpty() ? 0.0 : (double) pool.leased.size() / pool.slots.size())
+                    .description("Fraction of pooled sandbox containers currently leased")
+                    .tag("build.tool", tag)
+                    .register(meterRegistry);
+        }
+
+        List<SandboxContainer> vacantSlots() {
+            return slots.stream()
+                    .filter(slot -> !leased.contains(slot.getName())
+                            && !recovering.contains(slot.getName())
+                            && !idle.contains(slot))
+                    .toList();
+        }
+    }
+}
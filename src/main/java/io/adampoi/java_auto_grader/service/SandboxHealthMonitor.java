@@ -0,0 +1,197 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Tracks readiness of every sandbox container in the background so the request path only reads a cached
+ * state. Containers are re-probed on a schedule, and a container reported as suspect is probed out of band.
+ * Restarts are single-flight per container: concurrent callers share the same recovery instead of each
+ * running {@code startContainer}. Recoveries run on their own threads, so a slow restart or template
+ * provisioning never holds up the readiness probes.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SandboxHealthMonitor {
+
+    public enum Health {
+        UNKNOWN, READY, SUSPECT, RECOVERING, FAILED
+    }
+
+    private final DockerContainerManager dockerManager;
+    private final SandboxProjectTemplates projectTemplates;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Health> states = new ConcurrentHashMap<>();
+    private final Map<String, SandboxContainerPool.SandboxContainer> containers = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> recoveries = new ConcurrentHashMap<>();
+    private final List<Consumer<SandboxContainerPool.SandboxContainer>> suspectListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private ExecutorService probeExecutor;
+    private ExecutorService recoveryExecutor;
+
+    @Value("${grader.sandbox.health-probe-threads:2}")
+    private int probeThreads;
+
+    @Value("${grader.sandbox.recovery-threads:2}")
+    private int recoveryThreads;
+
+    @PostConstruct
+    public void init() {
+        probeExecutor = Executors.newFixedThreadPool(Math.max(1, probeThreads), daemonThreads("sandbox-health-"));
+        recoveryExecutor = Executors.newFixedThreadPool(Math.max(1, recoveryThreads),
+                daemonThreads("sandbox-recovery-"));
+        for (Health health : Health.values()) {
+            Gauge.builder("grader.sandbox.health", states,
+                            map -> map.values().stream().filter(health::equals).count())
+                    .description("Sandbox containers by cached health state")
+                    .tag("state", health.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+        recoveryExecutor.shutdownNow();
+    }
+
+    public Health health(String containerName) {
+        return states.getOrDefault(containerName, Health.UNKNOWN);
+    }
+
+    public boolean isReady(String containerName) {
+        return health(containerName) == Health.READY;
+    }
+
+    /**
+     * Registers a callback for containers that a scheduled probe found unhealthy. The owner decides whether
+     * the container can be recovered right away or has to wait until its current lease ends.
+     */
+    public void onSuspect(Consumer<SandboxContainerPool.SandboxContainer> listener) {
+        suspectListeners.add(listener);
+    }
+
+    public void markSuspect(String containerName, String reason) {
+        states.computeIfPresent(containerName, (name, current) ->
+                current == Health.RECOVERING ? current : Health.SUSPECT);
+        log.info("Sandbox container {} marked suspect: {}", containerName, reason);
+    }
+
+    /**
+     * Probes the container and restarts it if the probe fails. Must only be called by the container's owner
+     * while no build is running in it. Concurrent calls for the same container share one recovery.
+     */
+    public CompletableFuture<Boolean> recover(SandboxContainerPool.SandboxContainer container) {
+        String name = container.getName();
+        containers.putIfAbsent(name, container);
+        CompletableFuture<Boolean> recovery = new CompletableFuture<>();
+        CompletableFuture<Boolean> inFlight = recoveries.putIfAbsent(name, recovery);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        states.put(name, Health.RECOVERING);
+        recoveryExecutor.execute(() -> {
+            boolean healthy = false;
+            try {
+                healthy = probeOrRestart(container);
+                if (healthy && projectTemplates.needsProvisioning(name)) {
+                    provisionTemplate(container);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to recover sandbox container {}", name, e);
+            } finally {
+                states.put(name, healthy ? Health.READY : Health.FAILED);
+                recoveries.remove(name, recovery);
+                recovery.complete(healthy);
+            }
+        });
+        return recovery;
+    }
+
+    @Scheduled(initialDelayString = "${grader.sandbox.health-interval-ms:15000}",
+            fixedDelayString = "${grader.sandbox.health-interval-ms:15000}")
+    public void probeContainers() {
+        containers.values().stream()
+                .filter(container -> isReady(container.getName()))
+                .forEach(container -> probeExecutor.execute(() -> probeInBackground(container)));
+    }
+
+    private ThreadFactory daemonThreads(String prefix) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void probeInBackground(SandboxContainerPool.SandboxContainer container) {
+        try {
+            if (probe(container)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Health probe failed for sandbox container {}", container.getName(), e);
+        }
+        if (states.replace(container.getName(), Health.READY, Health.SUSPECT)) {
+            log.warn("Sandbox container {} failed its health probe", container.getName());
+            suspectListeners.forEach(listener -> listener.accept(container));
+        }
+    }
+
+    private void provisionTemplate(SandboxContainerPool.SandboxContainer container) throws InterruptedException {
+        try {
+            projectTemplates.provision(container.getName(), container.getBuildTool());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to provision project template in {}", container.getName(), e);
+        }
+    }
+
+    private boolean probeOrRestart(SandboxContainerPool.SandboxContainer container)
+            throws IOException, InterruptedException {
+        if (probe(container)) {
+            return true;
+        }
+        String name = container.getName();
+        BuildTool buildTool = container.getBuildTool();
+        log.info("Starting {} container: {}", buildTool, name);
+        projectTemplates.invalidate(name);
+        meterRegistry.counter("grader.sandbox.restarts",
+                "build.tool", buildTool.name().toLowerCase(Locale.ROOT)).increment();
+        dockerManager.startContainer(name, buildTool);
+        return probe(container);
+    }
+
+    private boolean probe(SandboxContainerPool.SandboxContainer container) throws IOException, InterruptedException {
+        String name = container.getName();
+        return dockerManager.isContainerRunning(name)
+                && dockerManager.isContainerUsable(name, container.getBuildTool());
+    }
+}
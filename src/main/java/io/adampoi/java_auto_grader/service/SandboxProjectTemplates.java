@@ -0,0 +1,156 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.adampoi.java_auto_grader.util.SandboxContainerSpec;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one pre-configured project per sandbox container. The template is built once after the container
+ * becomes healthy, so dependencies are resolved, the configuration cache is populated and the build daemon
+ * is warm. Submissions then only replace the source and test folders.
+ * <p>
+ * Each container has its own template directory and is leased exclusively, so no two builds share one.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SandboxProjectTemplates {
+
+    public enum ProjectMode {
+        COLD, TEMPLATED
+    }
+
+    /**
+     * Where a submission's project lives inside the container.
+     */
+    public record Workspace(String containerName, String path, String archiveRoot, boolean templated) {
+    }
+
+    private static final String WORKSPACE_ROOT = SandboxContainerSpec.WORKSPACE_ROOT;
+    private static final String TEMPLATE_DIRECTORY = ".templates";
+    private static final int PROVISION_TIMEOUT_SECONDS = 600;
+    private static final String SUBMISSION_PATHS =
+            "src/main/java/workspace src/test/java/workspace build/test-results target/surefire-reports "
+                    + ProjectSetupService.GRADLE_DIAGNOSTICS_DIR + " " + ProjectSetupService.MAVEN_DIAGNOSTICS_DIR + " "
+                    + InputOutputRunner.INPUT_OUTPUT_DIR;
+
+    private final DockerContainerManager dockerManager;
+    private final ProjectSetupService projectSetupService;
+    private final Set<String> provisioned = ConcurrentHashMap.newKeySet();
+    private final Set<String> attempted = ConcurrentHashMap.newKeySet();
+
+    @Setter
+    @Value("${grader.sandbox.project-mode:TEMPLATED}")
+    private ProjectMode projectMode;
+
+    public boolean isProvisioned(String containerName) {
+        return provisioned.contains(containerName);
+    }
+
+    /**
+     * True until a provisioning attempt has been made since the container was last (re)started, so a template
+     * that fails to build is not retried on every recovery.
+     */
+    public boolean needsProvisioning(String containerName) {
+        return projectMode == ProjectMode.TEMPLATED && !attempted.contains(containerName);
+    }
+
+    public void invalidate(String containerName) {
+        provisioned.remove(containerName);
+        attempted.remove(containerName);
+    }
+
+    /**
+     * Builds the template project inside a freshly (re)started container. Must run while the container is
+     * out of rotation. On failure the container stays usable and submissions fall back to a cold project.
+     */
+    public void provision(String containerName, BuildTool buildTool) throws IOException, InterruptedException {
+        provisioned.remove(containerName);
+        attempted.add(containerName);
+        if (projectMode != ProjectMode.TEMPLATED) {
+            return;
+        }
+        String archiveRoot = templateArchiveRoot(containerName);
+        String templatePath = WORKSPACE_ROOT + "/" + archiveRoot;
+        long start = System.currentTimeMillis();
+
+        dockerManager.executeCommand(containerName, "rm -rf " + templatePath, 60);
+        dockerManager.uploadArchive(containerName, WORKSPACE_ROOT,
+                archive -> projectSetupService.writeTemplateArchive(archive, archiveRoot, buildTool));
+        ProcessResult warmup = dockerManager.executeCommand(
+                containerName, projectSetupService.warmupCommand(buildTool, templatePath), PROVISION_TIMEOUT_SECONDS);
+        if (!warmup.isSuccess()) {
+            log.warn("Failed to provision {} template in {}: {}", buildTool, containerName,
+                    warmup.getErrors() == null || warmup.getErrors().isBlank() ? warmup.getOutput() : warmup.getErrors());
+            return;
+        }
+        if (clearSubmission(containerName, templatePath)) {
+            provisioned.add(containerName);
+            log.info("Provisioned {} template in {} in {}ms", buildTool, containerName,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    public Workspace workspaceFor(String containerName, String uuid) {
+        if (projectMode == ProjectMode.TEMPLATED && isProvisioned(containerName)) {
+            String archiveRoot = templateArchiveRoot(containerName);
+            return new Workspace(containerName, WORKSPACE_ROOT + "/" + archiveRoot, archiveRoot, true);
+        }
+        return new Workspace(containerName, WORKSPACE_ROOT + "/" + uuid, uuid, false);
+    }
+
+    public void populate(Workspace workspace, TestCodeRequest request, BuildTool buildTool)
+            throws IOException, InterruptedException {
+        if (workspace.templated()) {
+            dockerManager.uploadArchive(workspace.containerName(), WORKSPACE_ROOT,
+                    archive -> projectSetupService.writeSourcesArchive(archive, workspace.archiveRoot(), request));
+        } else {
+            dockerManager.uploadArchive(workspace.containerName(), WORKSPACE_ROOT,
+                    archive -> projectSetupService.writeProjectArchive(archive, workspace.archiveRoot(), request, buildTool));
+        }
+    }
+
+    /**
+     * Removes the submission from a template workspace. Returns {@code false} if the template could not be reset;
+     * it is then dropped so the next submission does not see stale sources. Cold workspaces are left to
+     * {@link WorkspaceSweeper}.
+     */
+    public boolean cleanup(Workspace workspace) {
+        if (!workspace.templated()) {
+            return true;
+        }
+        if (clearSubmission(workspace.containerName(), workspace.path())) {
+            return true;
+        }
+        invalidate(workspace.containerName());
+        return false;
+    }
+
+    private boolean clearSubmission(String containerName, String templatePath) {
+        try {
+            ProcessResult result = dockerManager.executeCommand(
+                    containerName, "cd " + templatePath + " && rm -rf " + SUBMISSION_PATHS, 60);
+            return result.isSuccess();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to reset template in {}", containerName, e);
+        }
+        return false;
+    }
+
+    private String templateArchiveRoot(String containerName) {
+        return TEMPLATE_DIRECTORY + "/" + containerName;
+    }
+}
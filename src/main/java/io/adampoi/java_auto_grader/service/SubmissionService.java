@@ -3,12 +3,9 @@ package io.adampoi.java_auto_grader.service;
 import io.adampoi.java_auto_grader.domain.*;
 import io.adampoi.java_auto_grader.model.dto.*;
 import io.adampoi.java_auto_grader.model.flat_dto.SubmissionFlatDTO;
-import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
 import io.adampoi.java_auto_grader.model.request.TestSubmitRequest;
 import io.adampoi.java_auto_grader.model.response.PageResponse;
-import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
 import io.adampoi.java_auto_grader.model.type.CodeFile;
-import io.adampoi.java_auto_grader.model.type.TestCaseResult;
 import io.adampoi.java_auto_grader.repository.*;
 import io.adampoi.java_auto_grader.util.ReferencedException;
 import io.adampoi.java_auto_grader.util.ReferencedWarning;
@@ -32,7 +29,6 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -45,21 +41,15 @@ public class SubmissionService {
     private final SubmissionRepository submissionRepository;
     private final AssignmentRepository assignmentRepository;
     private final UserRepository userRepository;
-    private final TestCodeService testCodeService;
-    private final RubricGradeRepository rubricGradeRepository;
-    private final SubmissionCodeRepository submissionCodeRepository;
-    private final TestExecutionRepository testExecutionRepository;
+    private final GradingPipeline gradingPipeline;
 
     public SubmissionService(final SubmissionRepository submissionRepository,
                              final AssignmentRepository assignmentRepository, final UserRepository userRepository,
-                             TestCodeService testCodeService, RubricGradeRepository rubricGradeRepository, SubmissionCodeRepository submissionCodeRepository, TestExecutionRepository testExecutionRepository) {
+                             GradingPipeline gradingPipeline) {
         this.submissionRepository = submissionRepository;
         this.assignmentRepository = assignmentRepository;
         this.userRepository = userRepository;
-        this.testCodeService = testCodeService;
-        this.rubricGradeRepository = rubricGradeRepository;
-        this.submissionCodeRepository = submissionCodeRepository;
-        this.testExecutionRepository = testExecutionRepository;
+        this.gradingPipeline = gradingPipeline;
     }
 
     public static SubmissionDTO mapToDTO(final Submission submission, final SubmissionDTO submissionDTO) {
@@ -359,204 +349,16 @@ public class SubmissionService {
             Submission.SubmissionType type,
             boolean persist
     ) {
-        // 1. Run Tests
-        List<CodeFile> rubricTestFiles = resolveRubricTestFiles(assignment, testFiles);
-        TestCodeResponse testCodeResponse = testCodeService.runTestCode(
-                TestCodeRequest.builder()
-                        .sourceFiles(sourceFiles)
-                        .testFiles(rubricTestFiles)
-                        .mainClassName(mainClassName)
-                        .buildTool(buildTool)
-                        .mutationTestingEnabled(type != Submission.SubmissionType.TRYOUT)
-                        .build()
-        );
-        boolean compilationFailed = hasCompilationErrors(testCodeResponse);
-        // 2. Build SubmissionCodes
-        Set<SubmissionCode> codes = sourceFiles.stream()
-                .map(sf -> SubmissionCode.builder()
-                        .fileName(sf.getFileName())
-                        .sourceCode(sf.getContent())
-                        .build()
-                )
-                .collect(Collectors.toSet());
-
-        // 3. Build Test Executions (from rubrics)
-        Set<TestExecution> testExecutions = rubricGradeRepository.findByAssignmentId(assignment.getId()).stream()
-                .map(rubricGrade -> mapRubricToTestExecution(rubricGrade, testCodeResponse, null))
-                .collect(Collectors.toSet());
-
-        // 4. Calculate total points
-        int totalPoints = calculateTotalPoints(testExecutions);
-
-        // 5. Build Submission object
-        Submission submission = Submission.builder()
+        return gradingPipeline.run(GradingRun.builder()
                 .assignment(assignment)
                 .student(student)
-                .submissionCodes(codes)
-                .testExecutions(testExecutions)
-                .startedAt(OffsetDateTime.now())
-                .completedAt(OffsetDateTime.now())
-                .executionTime(testCodeResponse.getExecutionTime())
-                .totalPoints(totalPoints)
-                .manualFeedback(compilationFailed
-                        ? "Compilation failed; rubric tests were not executed"
-                        : testCodeResponse.isSuccess() ? "All tests passed" : "Some tests failed")
+                .sourceFiles(sourceFiles)
+                .testFiles(testFiles)
+                .mainClassName(mainClassName)
+                .buildTool(buildTool)
                 .type(type)
-                .status(testCodeResponse.isSuccess()
-                        ? Submission.SubmissionStatus.COMPLETED
-                        : Submission.SubmissionStatus.FAILED)
-                .build();
-
-        Submission finalSubmission = submission;
-        codes.forEach(code -> code.setSubmission(submission));
-        testExecutions.forEach(exec -> exec.setSubmission(submission));
-        if (persist) {
-            if (!compilationFailed) {
-
-                finalSubmission = submissionRepository.save(submission);
-                testExecutionRepository.saveAll(testExecutions);
-                submissionCodeRepository.saveAll(codes);
-            } else {
-                finalSubmission.setStatus(Submission.SubmissionStatus.FAILED);
-                finalSubmission.setManualFeedback("Compilation failed; rubric tests were not executed");
-            }
-        }
-        SubmissionDTO submittedSubmission = SubmissionService.mapToDTO(finalSubmission, new SubmissionDTO());
-
-        submittedSubmission.setCompilationErrors(testCodeResponse.getCompilationErrors());
-        return submittedSubmission;
-    }
-
-    private List<CodeFile> resolveRubricTestFiles(Assignment assignment, List<CodeFile> requestTestFiles) {
-        if (requestTestFiles != null && !requestTestFiles.isEmpty()) {
-            return requestTestFiles;
-        }
-
-        if (assignment != null && assignment.getTestCode() != null && !assignment.getTestCode().isBlank()) {
-            return List.of(CodeFile.builder()
-                    .fileName("MainTest.java")
-                    .content(assignment.getTestCode())
-                    .build());
-        }
-
-        return Collections.emptyList();
-    }
-
-
-    TestExecution mapRubricToTestExecution(
-            RubricGrade rubricGrade,
-            TestCodeResponse testCodeResponse,
-            Submission submission
-    ) {
-        if (hasCompilationErrors(testCodeResponse)) {
-            String stage = testCodeResponse.getCompilationStage() == null
-                    ? "unknown build stage"
-                    : testCodeResponse.getCompilationStage().name();
-            return createNotExecutedTestExecution(rubricGrade, submission,
-                    "Rubric test was not executed because compilation failed during " + stage);
-        }
-
-        if (testCodeResponse == null || testCodeResponse.getTestSuites() == null) {
-            log.warn("TestCodeResponse or test suites is null for rubric: {}", rubricGrade.getName());
-            return createNotExecutedTestExecution(rubricGrade, submission,
-                    "Test execution did not produce test results");
-        }
-
-        boolean hasAnyTestCases = testCodeResponse.getTestSuites().stream()
-                .filter(Objects::nonNull)
-                .map(suite -> suite.getTestCases())
-                .filter(Objects::nonNull)
-                .anyMatch(testCases -> !testCases.isEmpty());
-
-        if (!hasAnyTestCases) {
-            String stage = testCodeResponse.getCompilationStage() == null
-                    ? "unknown build stage"
-                    : testCodeResponse.getCompilationStage().name();
-            return createNotExecutedTestExecution(rubricGrade, submission,
-                    "Test was not executed because the build failed during " + stage);
-        }
-
-        Optional<TestCaseResult> maybeCase = testCodeResponse.getTestSuites().stream()
-                .filter(suite -> suite != null && suite.getTestCases() != null) // Null safety
-                .flatMap(suite -> suite.getTestCases().stream())
-                .filter(tc -> tc != null && matchesTestMethod(tc, rubricGrade.getName())) // Improved matching
-                .findFirst();
-
-        if (maybeCase.isPresent()) {
-            TestCaseResult tc = maybeCase.get();
-            return TestExecution.builder()
-                    .rubricGrade(rubricGrade)
-                    .submission(submission)
-                    .methodName(tc.getMethodName())
-                    .executionTime(tc.getExecutionTime() > 0 ? Math.round(tc.getExecutionTime() * 1000) : 0L)
-                    .output(String.valueOf(Optional.ofNullable(tc.getFailureMessage())))
-                    .error(tc.getFailureMessage())
-                    .status(parseExecutionStatus(tc.getStatus()))
-                    .build();
-        } else {
-            log.warn("No matching test case found for rubric grade: {}", rubricGrade.getName());
-            return createNotExecutedTestExecution(rubricGrade, submission,
-                    "No executed test case matched rubric grade: " + rubricGrade.getName());
-        }
-    }
-
-    private boolean matchesTestMethod(TestCaseResult testCase, String rubricName) {
-        if (testCase.getMethodName() == null || rubricName == null) {
-            return false;
-        }
-
-        String normalizedMethod = normalizeTestIdentifier(testCase.getMethodName());
-        String normalizedRubric = normalizeTestIdentifier(rubricName);
-
-        return normalizedMethod.equals(normalizedRubric) ||
-                (normalizedMethod.startsWith("test") &&
-                        normalizedMethod.substring(4).equals(normalizedRubric));
-    }
-
-    private String normalizeTestIdentifier(String value) {
-        return value
-                .replaceAll("\\[[^]]*]$", "")
-                .replaceAll("\\([^)]*\\)", "")
-                .replaceAll("[^A-Za-z0-9]", "")
-                .toLowerCase(Locale.ROOT);
-    }
-
-    private TestExecution.ExecutionStatus parseExecutionStatus(String status) {
-        if (status == null) {
-            return TestExecution.ExecutionStatus.FAILED;
-        }
-
-        try {
-            return TestExecution.ExecutionStatus.valueOf(status.toUpperCase(Locale.ROOT));
-        } catch (IllegalArgumentException e) {
-            log.warn("Unknown test execution status: {}, defaulting to FAILED", status);
-            return TestExecution.ExecutionStatus.FAILED;
-        }
-    }
-
-    private TestExecution createNotExecutedTestExecution(RubricGrade rubricGrade, Submission submission, String errorMessage) {
-        return TestExecution.builder()
-                .rubricGrade(rubricGrade)
-                .submission(submission)
-                .methodName(rubricGrade.getName())
-                .executionTime(0L)
-                .output("")
-                .error(errorMessage)
-                .status(TestExecution.ExecutionStatus.NOT_EXECUTED)
-                .build();
-    }
-
-    private boolean hasCompilationErrors(TestCodeResponse testCodeResponse) {
-        return testCodeResponse != null
-                && testCodeResponse.getCompilationErrors() != null
-                && !testCodeResponse.getCompilationErrors().isEmpty();
-    }
-
-    private int calculateTotalPoints(Set<TestExecution> testExecutions) {
-        return testExecutions.stream()
-                .filter(execution -> execution.getStatus() == TestExecution.ExecutionStatus.PASSED)
-                .mapToInt(execution -> execution.getRubricGrade().getRubric().getPoints())
-                .sum();
+                .persist(persist)
+                .build()).getResult();
     }
 
 }
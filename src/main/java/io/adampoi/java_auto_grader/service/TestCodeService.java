@@ -2,24 +2,43 @@ package io.adampoi.java_auto_grader.service;
 
 import io.adampoi.java_auto_grader.model.enums.BuildTool;
 import io.adampoi.java_auto_grader.model.enums.CompilationStage;
+import io.adampoi.java_auto_grader.model.enums.GradingEngine;
 import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
 import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
 import io.adampoi.java_auto_grader.model.type.CompilationError;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingRequest;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingResult;
+import io.adampoi.java_auto_grader.model.type.MutationTestResult;
 import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import io.adampoi.java_auto_grader.util.CancellationToken;
+import io.adampoi.java_auto_grader.util.CompilerDiagnosticsParser;
 import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.adampoi.java_auto_grader.util.MutationReportParser;
 import io.adampoi.java_auto_grader.util.TestReportParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -28,151 +47,485 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class TestCodeService {
 
-    private static final int TIMEOUT_SECONDS = 300;
-    private static final int SHORT_ERROR_MESSAGE_LENGTH = 20;
     private static final String JAVA_ERROR_MARKER = ".java:";
+
+    /**
+     * Exit codes of {@code docker exec} and the shell when the command itself could not be started: daemon error,
+     * not executable, not found.
+     */
+    private static final Set<Integer> EXEC_FAILURE_EXIT_CODES = Set.of(125, 126, 127);
     private static final Pattern MAVEN_COMPILATION_ERROR = Pattern.compile(
             "^\\[ERROR] (.+\\.java):\\[(\\d+),(\\d+)] (.+)$");
-    private final ConcurrentMap<BuildTool, ContainerInstance> containers = new ConcurrentHashMap<>();
 
     private final DockerContainerManager dockerManager;
+    private final SandboxContainerPool containerPool;
     private final TestReportParser reportParser;
     private final ProjectSetupService projectSetupService;
+    private final SandboxProjectTemplates projectTemplates;
+    private final InstructorTestCache testCache;
+    private final InJvmGraderPool inJvmGraderPool;
+    private final GradingResultCache resultCache;
+    private final BuildLogService buildLogService;
+    private final PreflightCompiler preflightCompiler;
+    private final WorkspaceSweeper workspaceSweeper;
+    private final TestShardPlanner shardPlanner;
+    private final MutationHistoryStore mutationHistory;
+    private final MutationReportParser mutationReportParser;
+    private final CompilerDiagnosticsParser diagnosticsParser;
+    private final RemoteGradingQueue remoteQueue;
+    private final InputOutputRunner inputOutputRunner;
+    private final AtomicInteger shardThreadCounter = new AtomicInteger();
+    private ExecutorService shardExecutor;
+
+    /**
+     * How Maven submissions are built: {@code COLD} starts {@code mvn} per build, {@code DAEMON} reuses a resident
+     * mvnd daemon in each sandbox.
+     */
+    @Setter
+    @Value("${grader.sandbox.maven-mode:DAEMON}")
+    private MavenMode mavenMode;
+
+    /**
+     * Time limit of a sandbox build when the assignment does not set one, and the most an assignment may set.
+     */
+    @Value("${grader.sandbox.build-timeout-seconds:300}")
+    private int defaultTimeoutSeconds;
+
+    @Value("${grader.sandbox.max-build-timeout-seconds:1800}")
+    private int maxTimeoutSeconds;
+
+    public enum MavenMode {
+        COLD, DAEMON
+    }
 
     public TestCodeResponse runTestCode(TestCodeRequest request) {
-        String uuid = java.util.UUID.randomUUID().toString();
-        Path tempDir = null;
+        String resultCacheKey = resultCache.keyFor(request, timeoutSeconds(request));
+        Optional<TestCodeResponse> cached = resultCache.get(resultCacheKey);
+        if (cached.isPresent()) {
+            log.info("Reusing cached grading result {}", resultCacheKey);
+            appendToBuildLog("Reusing the result of an identical earlier run");
+            return cached.get();
+        }
+        TestCodeResponse response;
+        if (remoteQueue.isEnabled()) {
+            appendToBuildLog("Queued for a grader worker");
+            response = remoteQueue.submitAndWait(request);
+        } else {
+            // IN_JVM needs a sandboxed grader JVM launcher; without one the assignment is built like the others.
+            response = request.getGradingEngine() == GradingEngine.IN_JVM && inJvmGraderPool.isAvailable()
+                    ? runInJvm(request)
+                    : preflight(request).orElseGet(() -> runInSandboxes(request));
+        }
+        // A cancelled job may have swallowed the failure of a step and still produced a partial response.
+        CancellationToken.throwIfCurrentCancelled();
+        resultCache.put(resultCacheKey, request, response);
+        return response;
+    }
 
-        try {
-            BuildTool buildTool = determineBuildTool(request);
-            ContainerInstance container = ensureContainerReady(buildTool);
+    @PostConstruct
+    public void init() {
+        shardExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "test-shard-" + shardThreadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-            tempDir = createTempDirectory(uuid);
-            String workspace = "/workspace/" + uuid;
+    @PreDestroy
+    public void shutdown() {
+        shardExecutor.shutdownNow();
+    }
 
-            projectSetupService.setupProject(tempDir, request, buildTool);
+    /**
+     * Runs large rubrics as several shards, each in its own leased sandbox, and merges their reports. Smaller
+     * ones run in a single sandbox as before.
+     */
+    private TestCodeResponse runInSandboxes(TestCodeRequest request) {
+        List<TestCodeRequest> shards = shardPlanner.plan(request);
+        if (shards.size() < 2) {
+            TestCodeResponse response = runInSandbox(request);
+            shardPlanner.recordTimings(request, response);
+            return response;
+        }
+        log.info("Running {} test classes in {} shards", request.getTestFiles().size(), shards.size());
+        BuildLogService.BuildLog buildLog = buildLogService.current();
+        CancellationToken cancellation = CancellationToken.current();
+        List<CompletableFuture<TestCodeResponse>> runs = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> CancellationToken.callWith(cancellation,
+                        () -> buildLogService.callWith(buildLog, () -> runInSandbox(shard))), shardExecutor))
+                .toList();
+        List<TestCodeResponse> responses = new ArrayList<>();
+        for (CompletableFuture<TestCodeResponse> run : runs) {
+            try {
+                responses.add(run.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        TestCodeResponse response = shardPlanner.merge(responses);
+        shardPlanner.recordTimings(request, response);
+        return response;
+    }
 
-            dockerManager.copyToContainer(container.getName(), tempDir, workspace);
+    /**
+     * Answers straight away, without a sandbox, when the student's sources do not compile on their own.
+     */
+    private Optional<TestCodeResponse> preflight(TestCodeRequest request) {
+        long startTime = System.currentTimeMillis();
+        return preflightCompiler.findCompilationErrors(request).map(compilationErrors -> {
+            List<String> errorLines = compilationErrors.stream()
+                    .map(error -> error.getErrorFile() + ":" + error.getLine() + ": error: " + error.getErrorMessage())
+                    .toList();
+            errorLines.forEach(this::appendToBuildLog);
+            TestCodeResponse response = createResponse(new ProcessResult(1, "", String.join("\n", errorLines),
+                    System.currentTimeMillis() - startTime), new ArrayList<>());
+            response.setCompilationErrors(new ArrayList<>(compilationErrors));
+            response.setCompilationStage(CompilationStage.STUDENT_SOURCE);
+            return response;
+        });
+    }
 
+    private TestCodeResponse runInSandbox(TestCodeRequest request) {
+        String uuid = java.util.UUID.randomUUID().toString();
+        SandboxContainerPool.Lease lease = null;
+        SandboxProjectTemplates.Workspace workspace = null;
 
-            ProcessResult result = executeBuildCommand(container, workspace, buildTool);
-            copyTestResults(container, workspace, tempDir);
+        try {
+            BuildTool buildTool = determineBuildTool(request);
+            lease = containerPool.lease(buildTool);
+            String containerName = lease.getContainerName();
+            workspace = projectTemplates.workspaceFor(containerName, uuid);
+            if (!workspace.templated()) {
+                workspaceSweeper.track(workspace.path());
+            }
+            projectTemplates.populate(workspace, request, buildTool);
 
-            TestCodeResponse response = createResponse(result, tempDir);
+            String testCacheKey = testCache.keyFor(request, buildTool);
+            boolean precompiledTests = testCache.restore(containerName, testCacheKey, workspace.path());
+            int timeoutSeconds = timeoutSeconds(request);
+            if (testCacheKey != null && !precompiledTests) {
+                cacheCompiledTests(workspace, buildTool, request, testCacheKey, timeoutSeconds);
+            }
+            ProcessResult result = executeBuildCommand(workspace, buildTool, precompiledTests, timeoutSeconds);
+            List<TestSuiteResult> testSuites = readTestResults(containerName, workspace.path(), buildTool);
+            if (precompiledTests && testCache.hasLinkageErrors(testSuites)) {
+                log.info("Cached tests do not link against submission {}, rebuilding with test compilation", uuid);
+                result = executeBuildCommand(workspace, buildTool, false, timeoutSeconds);
+                testSuites = readTestResults(containerName, workspace.path(), buildTool);
+            }
+            if (result.isTruncated()) {
+                log.warn("Build output of {} exceeded the capture limit, {} bytes dropped", uuid,
+                        result.getTruncatedBytes());
+            }
+
+            TestCodeResponse response = createResponse(result, testSuites);
+            // PIT needs a green suite, so mutants are only run once every test passed.
+            if (request.isMutationTestingEnabled() && result.isSuccess()) {
+                response.setMutationTestResult(
+                        runMutationTests(workspace, request, buildTool, precompiledTests, timeoutSeconds));
+            }
 
-            String buildLog = combineBuildOutput(result);
             if (!result.isSuccess()) {
-                List<CompilationError> compilationErrors = parseCompilationErrors(buildLog);
+                Optional<CompilerDiagnosticsParser.Diagnostics> diagnostics =
+                        readCompilerDiagnostics(containerName, workspace.path(), buildTool);
+                List<CompilationError> compilationErrors;
+                if (diagnostics.isPresent()) {
+                    compilationErrors = diagnostics.get().errors();
+                    response.setCompilationStage(diagnostics.get().stage());
+                } else {
+                    // No sidecar: the compiler plugin did not run, e.g. the build failed before compiling.
+                    String buildLog = combineBuildOutput(result);
+                    compilationErrors = parseCompilationErrors(buildLog);
+                    response.setCompilationStage(determineCompilationStage(buildLog));
+                }
                 compilationErrors.stream().forEach(error ->
                         log.error("Compilation error in {} at line {}: {}. code snippet {} , pointer {}", error.getErrorFile(), error.getLine(), error.getErrorMessage(), error.getCodeSnippet(), error.getPointer())
                 );
                 response.setCompilationErrors(compilationErrors);
-                response.setCompilationStage(determineCompilationStage(buildLog));
+                boolean compilerOutput = diagnostics.isPresent() || !compilationErrors.isEmpty();
+                if (isInfrastructureFailure(result, testSuites, compilerOutput)) {
+                    lease.markSuspect("build exited with code " + result.getExitCode());
+                }
             } else {
                 response.setCompilationErrors(new ArrayList<>());
                 response.setCompilationStage(result.isSuccess()
                         ? CompilationStage.NONE
                         : CompilationStage.UNKNOWN);
             }
+            if (hasInputOutputRuns(request) && response.getCompilationErrors().isEmpty()) {
+                response.setInputOutputResults(
+                        inputOutputRunner.runInSandbox(containerName, workspace.path(), buildTool, request));
+            }
 
             return response;
 
+        } catch (CancellationException e) {
+            log.info("Test execution cancelled for UUID: {}", uuid);
+            throw e;
         } catch (IOException | InterruptedException | RuntimeException e) {
             if (e instanceof InterruptedException) {
                 Thread.currentThread().interrupt();
             }
             log.error("Test execution failed for UUID: {}", uuid, e);
+            if (lease != null) {
+                lease.markSuspect(e.getMessage());
+            }
             return createErrorResponse("Test execution failed: " + e.getMessage());
         } finally {
-            cleanupResources(tempDir, uuid);
+            cleanupResources(lease, workspace);
         }
     }
 
 
+    /**
+     * Compiles and tests the submission in a warm grader JVM instead of a sandbox build. The sources and tests
+     * are laid out exactly as in the sandbox project, so results and compilation errors look the same.
+     */
+    private TestCodeResponse runInJvm(TestCodeRequest request) {
+        try {
+            InJvmGradingResult result = inJvmGraderPool.grade(InJvmGradingRequest.builder()
+                    .sourceFiles(projectSetupService.sourceFiles(request))
+                    .testFiles(projectSetupService.testFiles(request))
+                    .build());
+            ProcessResult processResult = new ProcessResult(result.getExitCode(), result.getOutput(),
+                    result.getErrors(), result.getExecutionTime(), result.getTruncatedBytes());
+            // The grader JVM answers with a single message, so its output can only be relayed once it is done.
+            BuildLogService.BuildLog buildLog = buildLogService.current();
+            if (buildLog != null) {
+                byte[] output = combineBuildOutput(processResult).getBytes(StandardCharsets.UTF_8);
+                buildLog.onOutput(false, output, output.length);
+            }
+            TestCodeResponse response = createResponse(processResult,
+                    result.getTestSuites() == null ? new ArrayList<>() : new ArrayList<>(result.getTestSuites()));
+            response.setCompilationErrors(result.getCompilationErrors() == null
+                    ? new ArrayList<>()
+                    : new ArrayList<>(result.getCompilationErrors()));
+            response.setCompilationStage(result.getCompilationStage() == null
+                    ? CompilationStage.UNKNOWN
+                    : result.getCompilationStage());
+            if (hasInputOutputRuns(request) && response.getCompilationErrors().isEmpty()) {
+                response.setInputOutputResults(inputOutputRunner.runInJvm(request));
+            }
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("In-JVM test execution failed", e);
+            return createErrorResponse("Test execution failed: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasInputOutputRuns(TestCodeRequest request) {
+        return request.getInputOutputRuns() != null && !request.getInputOutputRuns().isEmpty();
+    }
+
     private BuildTool determineBuildTool(TestCodeRequest request) {
         if (request.getBuildTool() == null || request.getBuildTool().isEmpty()) {
             log.warn("No build tool specified, defaulting to Gradle");
             return BuildTool.GRADLE;
         }
         try {
-            return BuildTool.valueOf(request.getBuildTool().toUpperCase(Locale.ROOT));
+            BuildTool buildTool = BuildTool.valueOf(request.getBuildTool().toUpperCase(Locale.ROOT));
+            if (buildTool == BuildTool.MAVEN && mavenMode == MavenMode.DAEMON) {
+                return BuildTool.MAVEN_DAEMON;
+            }
+            return buildTool;
         } catch (IllegalArgumentException e) {
             log.warn("Invalid build tool specified: {}, defaulting to Gradle", request.getBuildTool());
             return BuildTool.GRADLE;
         }
     }
 
-    private ContainerInstance ensureContainerReady(BuildTool buildTool) throws IOException, InterruptedException {
-        ContainerInstance container = containers.computeIfAbsent(buildTool, bt -> {
-            String containerName = bt.name().toLowerCase(Locale.ROOT) + "-sandbox";
-            return new ContainerInstance(containerName, bt);
-        });
-
-        boolean running = dockerManager.isContainerRunning(container.getName());
-        boolean usable = running && dockerManager.isContainerUsable(container.getName(), buildTool);
-        if (!usable) {
-            if (running) {
-                log.warn("Recreating incompatible or unhealthy {} container: {}", buildTool, container.getName());
-            }
-            log.info("Starting {} container: {}", buildTool, container.getName());
-            dockerManager.startContainer(container.getName(), buildTool);
+    /**
+     * Compiles the tests on their own before the build runs any student code, and caches what javac wrote. The
+     * build that follows finds them up to date; if they do not compile, it reports that as usual.
+     */
+    private void cacheCompiledTests(SandboxProjectTemplates.Workspace workspace, BuildTool buildTool,
+                                    TestCodeRequest request, String testCacheKey, int timeoutSeconds)
+            throws IOException, InterruptedException {
+        String command = projectSetupService.testCompileCommand(buildTool, workspace.path());
+        log.info("Compiling instructor tests in container {}: {}", workspace.containerName(), command);
+        appendToBuildLog("$ " + command);
+        ProcessResult result = dockerManager.executeCommand(workspace.containerName(), command, timeoutSeconds,
+                buildLogService.current());
+        if (result.isSuccess()) {
+            testCache.store(workspace.containerName(), testCacheKey, workspace.path(), request.getAssignmentId());
         }
-
-        return container;
     }
 
-    private Path createTempDirectory(String uuid) throws IOException {
-        Path tempDir = Files.createTempDirectory("gradle-test-" + uuid);
-        log.info("Created temporary directory for UUID {}: {}", uuid, tempDir);
-        return tempDir;
+    private ProcessResult executeBuildCommand(SandboxProjectTemplates.Workspace workspace, BuildTool buildTool,
+                                              boolean precompiledTests, int timeoutSeconds)
+            throws IOException, InterruptedException {
+        // Provisioning a template resolved the project's dependencies into the shared local repository.
+        String command = projectSetupService.buildCommand(buildTool, workspace.path(), precompiledTests,
+                workspace.templated());
+        log.info("Executing build command in container {}: {}", workspace.containerName(), command);
+        appendToBuildLog("$ " + command);
+        return dockerManager.executeCommand(workspace.containerName(), command, timeoutSeconds,
+                buildLogService.current());
     }
 
-    private ProcessResult executeBuildCommand(ContainerInstance container, String workspace, BuildTool buildTool)
+    /**
+     * Runs PIT against the submitted classes, resuming from the student's previous history for this assignment.
+     * Returns {@code null} if PIT could not run; mutation results never change the test outcome.
+     */
+    private MutationTestResult runMutationTests(SandboxProjectTemplates.Workspace workspace, TestCodeRequest request,
+                                                BuildTool buildTool, boolean precompiledTests,
+                                                int timeoutSeconds)
             throws IOException, InterruptedException {
-        String command = buildCommand(buildTool, workspace);
-        log.info("Executing build command in container {}: {}", container.getName(), command);
-        return dockerManager.executeCommand(container.getName(), command, TIMEOUT_SECONDS);
+        if (buildTool != BuildTool.GRADLE) {
+            log.info("Skipping mutation testing, the {} project has no PIT plugin", buildTool);
+            return null;
+        }
+        String containerName = workspace.containerName();
+        Optional<String> historyFile = mutationHistory.restore(containerName, request, workspace.path());
+        String command = projectSetupService.mutationCommand(buildTool, workspace.path(), precompiledTests,
+                projectSetupService.submittedSourceTargetClasses(request), historyFile.orElse(null));
+        log.info("Executing mutation tests in container {}: {}", containerName, command);
+        appendToBuildLog("$ " + command);
+        ProcessResult result = dockerManager.executeCommand(containerName, command, timeoutSeconds,
+                buildLogService.current());
+        if (!result.isSuccess()) {
+            log.warn("Mutation testing exited with code {}: {}", result.getExitCode(), result.getErrors());
+            return null;
+        }
+        if (historyFile.isPresent()) {
+            mutationHistory.harvest(containerName, request, workspace.path());
+        }
+        return readMutationResults(containerName, workspace.path());
     }
 
-    private String buildCommand(BuildTool buildTool, String workspace) {
-        String baseCommand = String.format("cd %s && ", workspace);
-        return switch (buildTool) {
-            case GRADLE -> baseCommand + "gradle test" +
-//                        "-x compileJava"+
-                        " --rerun-tasks " +
-                        "--daemon --parallel --build-cache --configuration-cache " +
-                        "--console=plain";
-            case MAVEN -> baseCommand + "mvn test -Dmaven.repo.local=/workspace/.m2/repository";
-        };
+    private MutationTestResult readMutationResults(String containerName, String workspace) {
+        String reportsPath = workspace + "/build/reports/pitest";
+        AtomicReference<MutationTestResult> mutationResult = new AtomicReference<>();
+        try {
+            boolean found = dockerManager.readArchive(containerName, reportsPath, (name, content, size) -> {
+                if (name.endsWith("mutations.xml")) {
+                    mutationReportParser.parseMutationReport(content, name).ifPresent(mutationResult::set);
+                }
+            });
+            if (!found) {
+                log.warn("Mutation reports directory not found: {}", reportsPath);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while copying mutation reports", e);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to copy mutation reports", e);
+        }
+        return mutationResult.get();
     }
 
-    private void copyTestResults(ContainerInstance container, String workspace, Path tempDir) {
+    /**
+     * Collects the compiler errors of a failed build from the sidecars the compiler plugin wrote. Empty if it
+     * wrote none; a compilation without errors still leaves an empty sidecar behind.
+     */
+    private Optional<CompilerDiagnosticsParser.Diagnostics> readCompilerDiagnostics(String containerName,
+                                                                                     String workspace,
+                                                                                     BuildTool buildTool) {
+        String diagnosticsPath = workspace + "/" + switch (buildTool) {
+            case GRADLE -> ProjectSetupService.GRADLE_DIAGNOSTICS_DIR;
+            case MAVEN, MAVEN_DAEMON -> ProjectSetupService.MAVEN_DIAGNOSTICS_DIR;
+        };
+        List<CompilationError> errors = new ArrayList<>();
+        List<CompilationStage> stages = new ArrayList<>();
         try {
-            String testResultsGradle = workspace + "/build/test-results/test";
-            String testResultsMaven = workspace + "/target/surefire-reports";
+            boolean found = dockerManager.readArchive(containerName, diagnosticsPath, (name, content, size) -> {
+                if (name.endsWith(".jsonl")) {
+                    diagnosticsParser.parseDiagnostics(content, name).ifPresent(diagnostics -> {
+                        errors.addAll(diagnostics.errors());
+                        if (diagnostics.stage() != null) {
+                            stages.add(diagnostics.stage());
+                        }
+                    });
+                }
+            });
+            if (!found) {
+                return Optional.empty();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while copying compiler diagnostics", e);
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to copy compiler diagnostics", e);
+            return Optional.empty();
+        }
+        // As with the build log, failing instructor tests take precedence over the student's sources.
+        CompilationStage stage = stages.contains(CompilationStage.INSTRUCTOR_TEST) ? CompilationStage.INSTRUCTOR_TEST
+                : stages.isEmpty() ? CompilationStage.UNKNOWN : stages.get(0);
+        return Optional.of(new CompilerDiagnosticsParser.Diagnostics(errors, stage));
+    }
 
-            dockerManager.copyFromContainer(container.getName(), testResultsGradle, tempDir.resolve("gradle-results"));
-            dockerManager.copyFromContainer(container.getName(), testResultsMaven, tempDir.resolve("maven-results"));
+    private int timeoutSeconds(TestCodeRequest request) {
+        Integer requested = request.getTimeoutSeconds();
+        if (requested == null || requested <= 0) {
+            return defaultTimeoutSeconds;
+        }
+        return Math.min(requested, maxTimeoutSeconds);
+    }
+
+    private void appendToBuildLog(String line) {
+        BuildLogService.BuildLog buildLog = buildLogService.current();
+        if (buildLog != null) {
+            buildLog.appendLine(line);
+        }
+    }
+
+    private List<TestSuiteResult> readTestResults(String containerName, String workspace, BuildTool buildTool) {
+        String resultsPath = workspace + switch (buildTool) {
+            case GRADLE -> "/build/test-results/test";
+            case MAVEN, MAVEN_DAEMON -> "/target/surefire-reports";
+        };
+        List<TestSuiteResult> testSuites = new ArrayList<>();
+        try {
+            boolean found = dockerManager.readArchive(containerName, resultsPath, (name, content, size) -> {
+                if (name.endsWith(".xml")) {
+                    reportParser.parseTestReport(content, name).ifPresent(testSuites::add);
+                }
+            });
+            if (!found) {
+                log.warn("Test results directory not found: {}", resultsPath);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             log.warn("Interrupted while copying test results", e);
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
             log.warn("Failed to copy test results", e);
         }
+        return testSuites;
+    }
+
+    /**
+     * Whether a failed build points at the container rather than the submission: the command could not be run,
+     * or the build stopped before it reported a test or a compiler error. Failing tests and compile errors are
+     * the student's, and must not cost the container its place in the pool. Timeouts throw and are handled by
+     * the caller.
+     */
+    static boolean isInfrastructureFailure(ProcessResult result, List<TestSuiteResult> testSuites,
+                                           boolean compilerOutput) {
+        if (result.isSuccess()) {
+            return false;
+        }
+        if (result.getExitCode() < 0 || EXEC_FAILURE_EXIT_CODES.contains(result.getExitCode())) {
+            return true;
+        }
+        return testSuites.isEmpty() && !compilerOutput;
     }
 
-    private TestCodeResponse createResponse(ProcessResult result, Path tempDir) {
+    private TestCodeResponse createResponse(ProcessResult result, List<TestSuiteResult> testSuites) {
         TestCodeResponse response = new TestCodeResponse();
         response.setSuccess(result.isSuccess());
         response.setOutput(result.getOutput());
         response.setError(result.getErrors());
         response.setExecutionTime(result.getExecutionTime());
         response.setExitCode(result.getExitCode());
-
-        var testSuites = reportParser.parseTestReports(tempDir.resolve("gradle-results"));
-        if (testSuites.isEmpty()) {
-            testSuites = reportParser.parseTestReports(tempDir.resolve("maven-results"));
-        }
+        response.setOutputTruncated(result.isTruncated());
+        response.setTruncatedBytes(result.getTruncatedBytes());
         response.setTestSuites(testSuites);
 
         return response;
@@ -189,26 +542,16 @@ public class TestCodeService {
         return response;
     }
 
-    private void cleanupResources(Path tempDir, String uuid) {
-        if (tempDir != null) {
-            try {
-                Files.walk(tempDir)
-                        .sorted((a, b) -> b.toString().length() - a.toString().length())
-                        .forEach(path -> {
-                            try {
-                                Files.deleteIfExists(path);
-                            } catch (IOException e) {
-                                log.warn("Failed to delete: {}", path, e);
-                            }
-                        });
-            } catch (IOException e) {
-                log.warn("Failed to cleanup temp directory: {}", tempDir, e);
-            }
+    private void cleanupResources(SandboxContainerPool.Lease lease, SandboxProjectTemplates.Workspace workspace) {
+        if (lease == null) {
+            return;
         }
-
-        containers.values().forEach(container ->
-                dockerManager.cleanupWorkspace(container.getName(), "/workspace/" + uuid)
-        );
+        if (workspace != null && !workspace.templated()) {
+            workspaceSweeper.release(workspace.path());
+        } else if (workspace != null && !projectTemplates.cleanup(workspace)) {
+            lease.markSuspect("project template could not be reset");
+        }
+        lease.close();
     }
 
     String combineBuildOutput(ProcessResult result) {
@@ -350,32 +693,8 @@ public class TestCodeService {
         int errorIndex = line.indexOf(": error:");
         if (errorIndex != -1) {
             String fullMessage = line.substring(errorIndex + 8).trim(); // +8 to skip ": error:"
-
-            // If the message is just a symbol like "';' expected",
-            // try to create a more descriptive message
-            if (fullMessage.length() < SHORT_ERROR_MESSAGE_LENGTH) { // Short messages are likely just symbols
-                if (fullMessage.contains("';'")) {
-                    return "Missing semicolon (;) at end of statement";
-                } else if (fullMessage.contains("')'")) {
-                    return "Missing closing parenthesis )";
-                } else if (fullMessage.contains("'('")) {
-                    return "Missing opening parenthesis (";
-                } else if (fullMessage.contains("'}'")) {
-                    return "Missing closing brace }";
-                } else if (fullMessage.contains("'{'")) {
-                    return "Missing opening brace {";
-                }
-            }
-
-            return fullMessage;
+            return CompilerDiagnosticsParser.describe(fullMessage);
         }
         return line.trim();
     }
-
-    @lombok.Data
-    @lombok.AllArgsConstructor
-    private static class ContainerInstance {
-        private String name;
-        private BuildTool buildTool;
-    }
 }
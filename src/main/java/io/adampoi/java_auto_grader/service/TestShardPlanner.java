@@ -0,0 +1,211 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.event.AssignmentTestCodeChangedEvent;
+import io.adampoi.java_auto_grader.model.enums.CompilationStage;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import io.adampoi.java_auto_grader.model.type.CompilationError;
+import io.adampoi.java_auto_grader.model.type.InputOutputResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Splits an assignment's instructor test classes into shards of similar duration, so large rubrics can be run
+ * in several sandboxes at once, and merges the shard results back into one response.
+ * <p>
+ * Durations come from earlier runs of the same assignment, smoothed per test class. Classes without history
+ * are assumed to take as long as the average known class.
+ */
+@Component
+public class TestShardPlanner {
+
+    private static final double DEFAULT_CLASS_SECONDS = 1.0;
+    private static final double SMOOTHING = 0.3;
+    private static final String NO_ASSIGNMENT = "";
+    private static final Pattern TEST_ANNOTATION = Pattern.compile("@(Test|ParameterizedTest|RepeatedTest|TestFactory)\\b");
+    private static final Pattern ABSTRACT_CLASS = Pattern.compile("\\babstract\\s+class\\b");
+
+    private final Map<String, Map<String, Double>> timings = new ConcurrentHashMap<>();
+
+    @Value("${grader.sharding.enabled:true}")
+    private boolean enabled;
+
+    @Value("${grader.sharding.min-test-classes:8}")
+    private int minTestClasses;
+
+    @Value("${grader.sharding.max-shards:2}")
+    private int maxShards;
+
+    /**
+     * Returns one request per shard, or the request itself if it is not worth splitting. Mutation testing needs
+     * the whole suite in one run and is never sharded.
+     */
+    public List<TestCodeRequest> plan(TestCodeRequest request) {
+        List<CodeFile> testFiles = request.getTestFiles();
+        if (!enabled || maxShards < 2 || request.isMutationTestingEnabled()
+                || testFiles == null || testFiles.size() < minTestClasses) {
+            return List.of(request);
+        }
+        // Helpers and abstract base classes may be needed by any test class, so every shard gets them.
+        List<CodeFile> shared = testFiles.stream().filter(file -> !isConcreteTestClass(file)).toList();
+        List<CodeFile> testClasses = testFiles.stream().filter(TestShardPlanner::isConcreteTestClass).toList();
+        if (testClasses.size() < minTestClasses) {
+            return List.of(request);
+        }
+        Map<String, Double> known = timings.getOrDefault(assignmentKey(request), Map.of());
+        double fallback = known.values().stream().mapToDouble(Double::doubleValue).average()
+                .orElse(DEFAULT_CLASS_SECONDS);
+
+        // Longest processing time first: each class goes to the shard with the least work so far.
+        int shardCount = Math.min(maxShards, testClasses.size());
+        List<List<CodeFile>> shards = new ArrayList<>();
+        double[] load = new double[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>(shared));
+        }
+        testClasses.stream()
+                .sorted(Comparator.comparingDouble(
+                        (CodeFile file) -> known.getOrDefault(className(file.getFileName()), fallback)).reversed())
+                .forEach(file -> {
+                    int lightest = 0;
+                    for (int i = 1; i < shardCount; i++) {
+                        if (load[i] < load[lightest]) {
+                            lightest = i;
+                        }
+                    }
+                    shards.get(lightest).add(file);
+                    load[lightest] += known.getOrDefault(className(file.getFileName()), fallback);
+                });
+
+        // Input/output cases do not depend on the tests, so only the first shard runs them.
+        return IntStream.range(0, shards.size())
+                .mapToObj(shard -> TestCodeRequest.builder()
+                        .assignmentId(request.getAssignmentId())
+                        .studentId(request.getStudentId())
+                        .sourceFiles(request.getSourceFiles())
+                        .testFiles(shards.get(shard))
+                        .mainClassName(request.getMainClassName())
+                        .mutationTestingEnabled(false)
+                        .gradingEngine(request.getGradingEngine())
+                        .buildTool(request.getBuildTool())
+                        .timeoutSeconds(request.getTimeoutSeconds())
+                        .submissionType(request.getSubmissionType())
+                        .inputOutputRuns(shard == 0 ? request.getInputOutputRuns() : null)
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Combines shard results as if all tests had run in one build. The elapsed time is that of the slowest
+     * shard, since they ran side by side.
+     */
+    public TestCodeResponse merge(List<TestCodeResponse> responses) {
+        StringBuilder output = new StringBuilder();
+        StringBuilder errors = new StringBuilder();
+        List<TestSuiteResult> testSuites = new ArrayList<>();
+        List<InputOutputResult> inputOutputResults = new ArrayList<>();
+        LinkedHashSet<CompilationError> compilationErrors = new LinkedHashSet<>();
+        CompilationStage compilationStage = CompilationStage.NONE;
+        boolean success = true;
+        int exitCode = 0;
+        long executionTime = 0;
+        long truncatedBytes = 0;
+        for (int i = 0; i < responses.size(); i++) {
+            TestCodeResponse response = responses.get(i);
+            appendSection(output, i, response.getOutput());
+            appendSection(errors, i, response.getError());
+            success &= response.isSuccess();
+            if (exitCode == 0) {
+                exitCode = response.getExitCode();
+            }
+            executionTime = Math.max(executionTime, response.getExecutionTime());
+            truncatedBytes += response.getTruncatedBytes();
+            if (response.getTestSuites() != null) {
+                testSuites.addAll(response.getTestSuites());
+            }
+            if (response.getInputOutputResults() != null) {
+                inputOutputResults.addAll(response.getInputOutputResults());
+            }
+            if (response.getCompilationErrors() != null) {
+                // Every shard compiles the same sources, so their errors repeat.
+                compilationErrors.addAll(response.getCompilationErrors());
+            }
+            if (compilationStage == CompilationStage.NONE && response.getCompilationStage() != null) {
+                compilationStage = response.getCompilationStage();
+            }
+        }
+        return TestCodeResponse.builder()
+                .success(success)
+                .output(output.toString())
+                .error(errors.toString())
+                .exitCode(exitCode)
+                .executionTime(executionTime)
+                .outputTruncated(truncatedBytes > 0)
+                .truncatedBytes(truncatedBytes)
+                .testSuites(testSuites)
+                .compilationErrors(new ArrayList<>(compilationErrors))
+                .compilationStage(compilationStage)
+                .inputOutputResults(inputOutputResults)
+                .build();
+    }
+
+    /**
+     * Feeds the per-class durations of a finished run into the history used by {@link #plan}.
+     */
+    public void recordTimings(TestCodeRequest request, TestCodeResponse response) {
+        if (response.getTestSuites() == null || response.getTestSuites().isEmpty()) {
+            return;
+        }
+        Map<String, Double> known = timings.computeIfAbsent(assignmentKey(request), key -> new ConcurrentHashMap<>());
+        for (TestSuiteResult suite : response.getTestSuites()) {
+            if (suite == null || suite.getName() == null) {
+                continue;
+            }
+            String name = suite.getName().substring(suite.getName().lastIndexOf('.') + 1);
+            known.merge(name, suite.getExecutionTime(),
+                    (previous, latest) -> previous + SMOOTHING * (latest - previous));
+        }
+    }
+
+    @EventListener
+    public void onTestCodeChanged(AssignmentTestCodeChangedEvent event) {
+        timings.remove(String.valueOf(event.assignmentId()));
+    }
+
+    private static void appendSection(StringBuilder target, int shard, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        target.append("=== shard ").append(shard + 1).append(" ===\n").append(text);
+        if (!text.endsWith("\n")) {
+            target.append('\n');
+        }
+    }
+
+    private static boolean isConcreteTestClass(CodeFile file) {
+        String content = Objects.toString(file.getContent(), "");
+        return TEST_ANNOTATION.matcher(content).find() && !ABSTRACT_CLASS.matcher(content).find();
+    }
+
+    private static String assignmentKey(TestCodeRequest request) {
+        return Objects.toString(request.getAssignmentId(), NO_ASSIGNMENT);
+    }
+
+    private static String className(String fileName) {
+        String name = fileName == null ? "" : fileName.substring(fileName.lastIndexOf('/') + 1);
+        return name.endsWith(".java") ? name.substring(0, name.length() - ".java".length()) : name;
+    }
+}
@@ -220,6 +220,14 @@ public class TimedAssessmentService {
 
     @Transactional
     public SubmissionDTO submitTimedAssessment(UUID studentId, TestSubmitRequest request) {
+        return submitTimedAssessment(studentId, request, OffsetDateTime.now());
+    }
+
+    /**
+     * @param submittedAt when the student handed in, which is what the time limit is checked against
+     */
+    @Transactional
+    public SubmissionDTO submitTimedAssessment(UUID studentId, TestSubmitRequest request, OffsetDateTime submittedAt) {
         User student = userRepository.findById(studentId)
                 .orElseThrow(() -> new EntityNotFoundException("Student not found"));
         Assignment assignment = assignmentRepository.findById(UUID.fromString(request.getAssignmentId()))
@@ -239,7 +247,7 @@ public class TimedAssessmentService {
                 assignment, student, Submission.SubmissionType.FINAL
         ).orElseThrow(() -> new EntityNotFoundException("No in-progress Submission found"));
 
-        long elapsedMs = java.time.Duration.between(attempt.getStartedAt(), OffsetDateTime.now()).toMillis();
+        long elapsedMs = java.time.Duration.between(attempt.getStartedAt(), submittedAt).toMillis();
         if (elapsedMs > baseTimeLimitMs) {
             attempt.setSubmitted(true);
             cache.put(key, attempt);
@@ -336,6 +344,9 @@ public class TimedAssessmentService {
         if (rubricGradeDTO.getGradeType() != null) {
             rubricGrade.setGradeType(rubricGradeDTO.getGradeType());
         }
+        if (rubricGradeDTO.getArguments() != null) {
+            rubricGrade.setArguments(rubricGradeDTO.getArguments());
+        }
         if (rubricGradeDTO.getRubricId() != null) {
             final Rubric rubric = rubricRepository.findById(rubricGradeDTO.getRubricId())
                     .orElseThrow(() -> new EntityNotFoundException("Rubric not found"));
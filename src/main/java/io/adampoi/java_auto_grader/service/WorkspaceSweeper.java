@@ -0,0 +1,212 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import io.adampoi.java_auto_grader.util.DockerContainerManager;
+import io.adampoi.java_auto_grader.util.SandboxContainerSpec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Deletes finished cold workspaces in the background instead of on the grading path. Paths are queued when a
+ * build is done and removed in batches, many per {@code docker exec}, from any healthy container: the workspace
+ * root is one mount shared by all of them.
+ * <p>
+ * A second, slower sweep removes what a crash or a timeout left behind: workspace directories nobody is using,
+ * and the compiled test classes and mutation history older versions kept in the mount ({@link InstructorTestCache}
+ * and {@link MutationHistoryStore} now keep them on the grader host).
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WorkspaceSweeper {
+
+    private static final String WORKSPACE_ROOT = SandboxContainerSpec.WORKSPACE_ROOT;
+    private static final String TEST_CACHE_DIRECTORY = ".test-cache";
+    private static final String MUTATION_HISTORY_DIRECTORY = ".pit-history";
+    private static final Pattern WORKSPACE_NAME = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final Pattern SAFE_PATH = Pattern.compile("[A-Za-z0-9._/-]+");
+    private static final int COMMAND_TIMEOUT_SECONDS = 120;
+
+    private final DockerContainerManager dockerManager;
+    private final SandboxContainerPool containerPool;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> inUse = ConcurrentHashMap.newKeySet();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong diskUsageBytes = new AtomicLong(-1);
+    private Counter reclaimedBytes;
+    private Counter removedDirectories;
+
+    @Value("${grader.workspace-gc.batch-size:100}")
+    private int batchSize;
+
+    @Value("${grader.workspace-gc.orphan-age-minutes:60}")
+    private int orphanAgeMinutes;
+
+    @PostConstruct
+    public void init() {
+        reclaimedBytes = Counter.builder("grader.workspace.reclaimed")
+                .description("Disk space freed by deleting sandbox workspaces")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        removedDirectories = Counter.builder("grader.workspace.removed")
+                .description("Sandbox workspaces and cache entries deleted")
+                .register(meterRegistry);
+        Gauge.builder("grader.workspace.pending", pending, Set::size)
+                .description("Finished workspaces waiting to be deleted")
+                .register(meterRegistry);
+        Gauge.builder("grader.workspace.disk.usage", diskUsageBytes, AtomicLong::get)
+                .description("Size of the shared workspace mount at the last orphan sweep")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Protects a workspace from the orphan sweep while a build uses it.
+     */
+    public void track(String path) {
+        inUse.add(path);
+    }
+
+    /**
+     * Queues a workspace for deletion once its build is done.
+     */
+    public void release(String path) {
+        inUse.remove(path);
+        pending.add(path);
+    }
+
+    @Scheduled(fixedDelayString = "${grader.workspace-gc.interval-ms:30000}")
+    public synchronized void deletePending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<>();
+        for (String path : pending) {
+            batch.add(path);
+            if (batch.size() == batchSize) {
+                if (!delete(batch)) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+        delete(batch);
+    }
+
+    @Scheduled(initialDelayString = "${grader.workspace-gc.orphan-initial-delay-ms:300000}",
+            fixedDelayString = "${grader.workspace-gc.orphan-interval-ms:600000}")
+    public synchronized void sweepOrphans() {
+        Optional<String> container = containerPool.anyReadyContainer();
+        if (container.isEmpty()) {
+            return;
+        }
+        ProcessResult listing;
+        try {
+            listing = dockerManager.executeCommand(container.get(), "cd " + WORKSPACE_ROOT
+                    + " && find . " + TEST_CACHE_DIRECTORY + " " + MUTATION_HISTORY_DIRECTORY
+                    + " -mindepth 1 -maxdepth 1 -type d -mmin +" + orphanAgeMinutes
+                    + " 2>/dev/null; echo usage $(du -sk . 2>/dev/null | cut -f1)", COMMAND_TIMEOUT_SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to list sandbox workspaces for the orphan sweep", e);
+            return;
+        }
+
+        List<String> orphans = new ArrayList<>();
+        for (String line : listing.getOutput().split("\n")) {
+            String entry = line.strip();
+            if (entry.startsWith("usage ")) {
+                parseKilobytes(entry.substring("usage ".length())).ifPresent(kb -> diskUsageBytes.set(kb * 1024));
+                continue;
+            }
+            String path = entry.startsWith("./") ? entry.substring(2) : entry;
+            if (isOrphan(path)) {
+                orphans.add(WORKSPACE_ROOT + "/" + path);
+            }
+        }
+        if (!orphans.isEmpty()) {
+            log.info("Removing {} orphaned sandbox workspaces and cache entries", orphans.size());
+            pending.addAll(orphans);
+            deletePending();
+        }
+    }
+
+    private boolean isOrphan(String path) {
+        if (WORKSPACE_NAME.matcher(path).matches()) {
+            return !inUse.contains(WORKSPACE_ROOT + "/" + path) && !pending.contains(WORKSPACE_ROOT + "/" + path);
+        }
+        return path.startsWith(TEST_CACHE_DIRECTORY + "/") || path.startsWith(MUTATION_HISTORY_DIRECTORY + "/");
+    }
+
+    /**
+     * Measures and deletes a batch with a single command. Returns {@code false} if no container could run it,
+     * leaving the batch queued for the next run.
+     */
+    private boolean delete(List<String> batch) {
+        List<String> paths = batch.stream().filter(path -> {
+            if (SAFE_PATH.matcher(path).matches() && path.startsWith(WORKSPACE_ROOT + "/")) {
+                return true;
+            }
+            log.warn("Refusing to delete unexpected workspace path {}", path);
+            pending.remove(path);
+            return false;
+        }).toList();
+        if (paths.isEmpty()) {
+            return true;
+        }
+        Optional<String> container = containerPool.anyReadyContainer();
+        if (container.isEmpty()) {
+            return false;
+        }
+
+        String arguments = String.join(" ", new LinkedHashSet<>(paths));
+        try {
+            ProcessResult result = dockerManager.executeCommand(container.get(),
+                    "echo reclaimed $(du -sk -- " + arguments + " 2>/dev/null | awk '{s+=$1} END {print s+0}')"
+                            + " && rm -rf -- " + arguments,
+                    COMMAND_TIMEOUT_SECONDS);
+            if (!result.isSuccess()) {
+                log.warn("Failed to delete {} sandbox workspaces: {}", paths.size(), result.getErrors());
+                return false;
+            }
+            paths.forEach(pending::remove);
+            removedDirectories.increment(paths.size());
+            parseKilobytes(result.getOutput().strip().replace("reclaimed ", ""))
+                    .ifPresent(kb -> reclaimedBytes.increment(kb * 1024.0));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to delete {} sandbox workspaces", paths.size(), e);
+        }
+        return false;
+    }
+
+    private static Optional<Long> parseKilobytes(String value) {
+        try {
+            return Optional.of(Long.parseLong(value.strip()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.adampoi.java_auto_grader.util;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Cancellation of one grading job. The token travels with the job's thread the same way its build log does,
+ * so code deep in the grading path can check it or register what to undo, e.g. killing a running sandbox
+ * command, without every signature in between carrying it.
+ */
+public final class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+    private static final Registration NO_REGISTRATION = () -> {
+    };
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+
+    /**
+     * The token of the job running on this thread, or {@code null} outside a grading job.
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code work} with {@code token} as the current token, restoring the previous one afterwards.
+     */
+    public static <T> T callWith(CancellationToken token, Supplier<T> work) {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(token);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Registers {@code callback} with the current thread's token, if there is one.
+     */
+    public static Registration onCurrentCancel(Runnable callback) {
+        CancellationToken token = CURRENT.get();
+        return token == null ? NO_REGISTRATION : token.onCancel(callback);
+    }
+
+    /**
+     * Throws if the current thread's job has been cancelled.
+     */
+    public static void throwIfCurrentCancelled() {
+        CancellationToken token = CURRENT.get();
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+    }
+
+    /**
+     * Cancels the job and runs every registered callback once. Later calls do nothing.
+     */
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            // Whoever removes a callback runs it, so a registration racing with cancel() never runs twice.
+            for (Runnable callback : callbacks) {
+                if (callbacks.remove(callback)) {
+                    callback.run();
+                }
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Grading job was cancelled");
+        }
+    }
+
+    /**
+     * Registers {@code callback} to run on cancellation, or runs it right away if the job is already cancelled.
+     * Close the returned registration once the callback is no longer needed.
+     */
+    public Registration onCancel(Runnable callback) {
+        callbacks.add(callback);
+        if (isCancelled() && callbacks.remove(callback)) {
+            callback.run();
+        }
+        return () -> callbacks.remove(callback);
+    }
+
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,135 @@
+package io.adampoi.java_auto_grader.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.model.enums.CompilationStage;
+import io.adampoi.java_auto_grader.model.type.CompilationError;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads the JSON lines sidecars {@link JavacDiagnosticsPlugin} writes during sandbox builds, one line per
+ * compiler error, into the error model shown to students. Unlike scraping the build log, the work grows with
+ * the number of errors, not with the size of the output.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CompilerDiagnosticsParser {
+
+    private static final int SHORT_ERROR_MESSAGE_LENGTH = 20;
+    private static final int TAB_WIDTH = 8;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The errors of one sidecar and the stage that produced them, {@code null} if it holds no errors.
+     */
+    public record Diagnostics(List<CompilationError> errors, CompilationStage stage) {
+    }
+
+    public Optional<Diagnostics> parseDiagnostics(InputStream in, String sidecarName) {
+        List<CompilationError> errors = new ArrayList<>();
+        CompilationStage stage = null;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Entry entry = objectMapper.readValue(line, Entry.class);
+                if (stage == null) {
+                    stage = stage(entry.stage());
+                }
+                errors.add(toCompilationError(entry));
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Malformed compiler diagnostics in {}", sidecarName, e);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Failed to read compiler diagnostics: {}", sidecarName, e);
+            return Optional.empty();
+        }
+        return Optional.of(new Diagnostics(errors, stage));
+    }
+
+    /**
+     * Spells out the terse "expected" errors beginners run into most.
+     */
+    public static String describe(String message) {
+        if (message == null || message.length() >= SHORT_ERROR_MESSAGE_LENGTH) {
+            return message;
+        }
+        if (message.contains("';'")) {
+            return "Missing semicolon (;) at end of statement";
+        } else if (message.contains("')'")) {
+            return "Missing closing parenthesis )";
+        } else if (message.contains("'('")) {
+            return "Missing opening parenthesis (";
+        } else if (message.contains("'}'")) {
+            return "Missing closing brace }";
+        } else if (message.contains("'{'")) {
+            return "Missing opening brace {";
+        }
+        return message;
+    }
+
+    private CompilationError toCompilationError(Entry entry) {
+        String file = entry.file();
+        return CompilationError.builder()
+                .errorFile(file == null ? "unknown" : file.substring(file.lastIndexOf('/') + 1))
+                .line(entry.line() - 1) // compensate package code at the top
+                .column(Math.max(entry.column(), 0))
+                .errorMessage(describe(entry.message()))
+                .codeSnippet(entry.source())
+                .pointer(pointer(entry.source(), entry.column()))
+                .build();
+    }
+
+    /**
+     * A caret under the reported column. javac counts a tab as reaching the next multiple of eight, so tabs in
+     * the snippet are kept to line the caret up with it.
+     */
+    private static String pointer(String snippet, int column) {
+        if (snippet == null || column < 1) {
+            return null;
+        }
+        StringBuilder pointer = new StringBuilder();
+        int position = 1;
+        for (int i = 0; i < snippet.length() && position < column; i++) {
+            if (snippet.charAt(i) == '\t') {
+                pointer.append('\t');
+                position = (position - 1) / TAB_WIDTH * TAB_WIDTH + TAB_WIDTH + 1;
+            } else {
+                pointer.append(' ');
+                position++;
+            }
+        }
+        return pointer.append('^').toString();
+    }
+
+    private static CompilationStage stage(String stage) {
+        try {
+            return stage == null ? CompilationStage.UNKNOWN : CompilationStage.valueOf(stage);
+        } catch (IllegalArgumentException e) {
+            return CompilationStage.UNKNOWN;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Entry(String stage, String file, int line, int column, String code, String message,
+                         String source) {
+    }
+}
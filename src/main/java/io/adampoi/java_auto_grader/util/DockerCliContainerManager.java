@@ -0,0 +1,211 @@
+package io.adampoi.java_auto_grader.util;
+
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@RequiredArgsConstructor
+public class DockerCliContainerManager implements DockerContainerManager {
+
+    private static final String DOCKER_COMMAND = "docker";
+
+    private final SandboxContainerSpec containerSpec;
+
+    @Override
+    public boolean isContainerRunning(String containerName) throws IOException, InterruptedException {
+        ProcessBuilder checkContainer = new ProcessBuilder(
+                DOCKER_COMMAND, "inspect", "--format={{.State.Running}}", containerName
+        );
+        Process checkProcess = checkContainer.start();
+        checkProcess.waitFor();
+
+        if (checkProcess.exitValue() == 0) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(checkProcess.getInputStream(), StandardCharsets.UTF_8))) {
+                String isRunning = reader.readLine();
+                return "true".equals(isRunning);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void startContainer(String containerName, BuildTool buildTool) throws IOException, InterruptedException {
+        removeContainerIfExists(containerName);
+
+        String[] dockerRunCmd = createDockerRunCommand(containerName, buildTool);
+        ProcessBuilder startContainer = new ProcessBuilder(dockerRunCmd);
+        startContainer.redirectErrorStream(true);
+        Process startProcess = startContainer.start();
+
+        int exitCode = startProcess.waitFor();
+        if (exitCode != 0) {
+            String errorOutput = ProcessUtils.readOutput(startProcess);
+            throw new RuntimeException("Failed to start Docker container: " + errorOutput);
+        }
+
+        Thread.sleep(1000); // Allow container to fully start
+        setupBuildToolHome(containerName, buildTool);
+    }
+
+
+    @Override
+    public void uploadArchive(String containerName, String destination, TarArchive.WriterAction archive)
+            throws IOException, InterruptedException {
+        ProcessBuilder copyCommand = new ProcessBuilder(
+                DOCKER_COMMAND, "cp", "-", containerName + ":" + destination
+        );
+        copyCommand.redirectErrorStream(true);
+        Process copyProcess = copyCommand.start();
+        try (OutputStream stdin = copyProcess.getOutputStream()) {
+            TarArchive.write(stdin, archive);
+        }
+        String commandOutput = ProcessUtils.readOutput(copyProcess);
+        int exitCode = copyProcess.waitFor();
+        if (exitCode != 0) {
+            throw new RuntimeException("Failed to copy files to container " + containerName
+                    + " at " + destination + ": " + commandOutput.strip());
+        }
+    }
+
+    @Override
+    public boolean readArchive(String containerName, String source, TarArchive.EntryConsumer consumer)
+            throws IOException, InterruptedException {
+        ProcessBuilder copyCommand = new ProcessBuilder(
+                DOCKER_COMMAND, "cp", containerName + ":" + source, "-"
+        );
+        Process copyProcess = copyCommand.start();
+        try (InputStream stdout = copyProcess.getInputStream()) {
+            TarArchive.read(stdout, consumer);
+            stdout.transferTo(OutputStream.nullOutputStream());
+        }
+        String errors = ProcessUtils.readErrors(copyProcess);
+        int exitCode = copyProcess.waitFor();
+        if (exitCode == 0) {
+            return true;
+        }
+        if (errors.contains("Could not find the file") || errors.contains("No such container:path")) {
+            return false;
+        }
+        throw new RuntimeException("Failed to copy files from container " + containerName
+                + " at " + source + ": " + errors.strip());
+    }
+
+    @Override
+    public boolean isContainerUsable(String containerName, BuildTool buildTool)
+            throws IOException, InterruptedException {
+        String requiredCommand = containerSpec.requiredCommand(buildTool);
+        ProcessResult result = executeCommand(
+                containerName,
+                "test -d /workspace && test -w /workspace && command -v " + requiredCommand + " >/dev/null 2>&1",
+                15
+        );
+        if (!result.isSuccess()) {
+            log.warn("Container {} failed readiness check: {}", containerName,
+                    firstNonBlank(result.getErrors(), result.getOutput()));
+        }
+        return result.isSuccess();
+    }
+
+    @Override
+    public ProcessResult executeCommand(String containerName, String command, int timeoutSeconds,
+                                        OutputListener listener) throws IOException, InterruptedException {
+        String tag = UUID.randomUUID().toString();
+        List<String> dockerExec = new ArrayList<>(List.of(DOCKER_COMMAND, "exec", "-t", containerName));
+        dockerExec.addAll(containerSpec.trackedCommand(command, tag));
+        Process process = new ProcessBuilder(dockerExec).start();
+        ProcessResult result;
+        try (CancellationToken.Registration ignored =
+                CancellationToken.onCurrentCancel(() -> killCommand(containerName, tag))) {
+            result = ProcessUtils.capture(process, timeoutSeconds, containerSpec.getMaxOutputBytes(), listener);
+        } catch (InterruptedException | RuntimeException e) {
+            // Stopping the docker client does not stop the exec, the build would keep running in the container.
+            process.destroyForcibly();
+            killCommand(containerName, tag);
+            throw e;
+        }
+        CancellationToken.throwIfCurrentCancelled();
+        return result;
+    }
+
+    private void killCommand(String containerName, String tag) {
+        try {
+            Process kill = new ProcessBuilder(
+                    DOCKER_COMMAND, "exec", containerName, "sh", "-c", containerSpec.killCommand(tag)
+            ).start();
+            if (!kill.waitFor(30, TimeUnit.SECONDS)) {
+                kill.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Failed to kill command {} in container {}", tag, containerName, e);
+        }
+    }
+
+    @Override
+    public void cleanupWorkspace(String containerName, String workspace) {
+        try {
+            ProcessBuilder cleanupCommand = new ProcessBuilder(
+                    DOCKER_COMMAND, "exec", containerName, "sh", "-c", "rm -rf " + workspace
+            );
+            Process cleanupProcess = cleanupCommand.start();
+            cleanupProcess.waitFor();
+            log.info("Cleaned up workspace: {}", workspace);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while cleaning workspace: {}", workspace, e);
+        } catch (IOException e) {
+            log.warn("Failed to cleanup workspace: {}", workspace, e);
+        }
+    }
+
+    private void removeContainerIfExists(String containerName) throws IOException, InterruptedException {
+        ProcessBuilder removeContainer = new ProcessBuilder(DOCKER_COMMAND, "rm", "-f", containerName);
+        removeContainer.start().waitFor();
+    }
+
+    private String[] createDockerRunCommand(String containerName, BuildTool buildTool) {
+        List<String> command = new ArrayList<>(List.of(
+                DOCKER_COMMAND, "run", "-d", "--name", containerName,
+                "-v", containerSpec.workspaceBind(),
+                "--memory=" + containerSpec.getContainerMemory(),
+                "--cpus=" + containerSpec.getContainerCpus(),
+                "--shm-size=1g"
+        ));
+        containerSpec.environment(buildTool).forEach(variable -> {
+            command.add("-e");
+            command.add(variable);
+        });
+        command.add(containerSpec.image(buildTool));
+        command.addAll(containerSpec.keepAliveCommand());
+        return command.toArray(String[]::new);
+    }
+
+    private void setupBuildToolHome(String containerName, BuildTool buildTool)
+            throws IOException, InterruptedException {
+        String userHome = containerSpec.userHome(buildTool);
+        ProcessBuilder createHome = new ProcessBuilder(
+                DOCKER_COMMAND, "exec", containerName,
+                "sh", "-c", "mkdir -p " + userHome + " && chmod 755 " + userHome
+        );
+        createHome.start().waitFor();
+    }
+
+    private String firstNonBlank(String first, String second) {
+        return first != null && !first.isBlank() ? first : second == null ? "" : second;
+    }
+}
@@ -2,188 +2,57 @@ package io.adampoi.java_auto_grader.util;
 
 import io.adampoi.java_auto_grader.model.enums.BuildTool;
 import io.adampoi.java_auto_grader.model.type.ProcessResult;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
-import java.util.concurrent.TimeUnit;
 
-@Component
-@Slf4j
-public class DockerContainerManager {
+/**
+ * Operations the grader needs from a sandbox backend: starting sandboxes, copying workspaces in and results out,
+ * and running commands. {@link DockerEngineContainerManager} talks to the Docker Engine API over the daemon
+ * socket; {@link DockerCliContainerManager} shells out to the {@code docker} CLI and is kept as a fallback for
+ * hosts where the socket is not reachable. {@link LocalProcessContainerManager} runs commands on the grader host
+ * itself, for load tests and benchmarks without Docker.
+ */
+public interface DockerContainerManager {
 
-    private static final int DEFAULT_TIMEOUT_SECONDS = 180;
-    private static final String DOCKER_COMMAND = "docker";
-    private static final String GRADLE_USER_HOME = "/workspace/.gradle";
-    private static final String MAVEN_USER_HOME = "/workspace/.m2";
+    boolean isContainerRunning(String containerName) throws IOException, InterruptedException;
 
-    public boolean isContainerRunning(String containerName) throws IOException, InterruptedException {
-        ProcessBuilder checkContainer = new ProcessBuilder(
-                DOCKER_COMMAND, "inspect", "--format={{.State.Running}}", containerName
-        );
-        Process checkProcess = checkContainer.start();
-        checkProcess.waitFor();
-
-        if (checkProcess.exitValue() == 0) {
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(checkProcess.getInputStream(), StandardCharsets.UTF_8))) {
-                String isRunning = reader.readLine();
-                return "true".equals(isRunning);
-            }
-        }
-        return false;
-    }
-
-    public void startContainer(String containerName, BuildTool buildTool) throws IOException, InterruptedException {
-        removeContainerIfExists(containerName);
-
-        String[] dockerRunCmd = createDockerRunCommand(containerName, buildTool);
-        ProcessBuilder startContainer = new ProcessBuilder(dockerRunCmd);
-        startContainer.redirectErrorStream(true);
-        Process startProcess = startContainer.start();
-
-        int exitCode = startProcess.waitFor();
-        if (exitCode != 0) {
-            String errorOutput = ProcessUtils.readOutput(startProcess);
-            throw new RuntimeException("Failed to start Docker container: " + errorOutput);
-        }
-
-        Thread.sleep(1000); // Allow container to fully start
-        setupBuildToolHome(containerName, buildTool);
-    }
+    void startContainer(String containerName, BuildTool buildTool) throws IOException, InterruptedException;
 
+    /**
+     * Streams the archive produced by {@code archive} into the container and unpacks it under
+     * {@code destination}, which must already exist.
+     */
+    void uploadArchive(String containerName, String destination, TarArchive.WriterAction archive)
+            throws IOException, InterruptedException;
 
-    public void copyToContainer(String containerName, Path source, String destination)
-            throws IOException, InterruptedException {
-        ProcessResult prepareResult = executeCommand(
-                containerName,
-                "mkdir -p " + shellQuote(destination) + " && test -w " + shellQuote(destination),
-                15
-        );
-        if (!prepareResult.isSuccess()) {
-            throw new RuntimeException("Container workspace is not writable: "
-                    + firstNonBlank(prepareResult.getErrors(), prepareResult.getOutput()));
-        }
+    /**
+     * Streams {@code source} out of the container as a tar archive whose root entry is the last path
+     * segment of {@code source}. Returns {@code false} if the path does not exist.
+     */
+    boolean readArchive(String containerName, String source, TarArchive.EntryConsumer consumer)
+            throws IOException, InterruptedException;
 
-        ProcessBuilder copyCommand = new ProcessBuilder(
-                DOCKER_COMMAND, "cp", source.toString() + "/.",
-                containerName + ":" + destination
-        );
-        copyCommand.redirectErrorStream(true);
-        Process copyProcess = copyCommand.start();
-        String commandOutput = ProcessUtils.readOutput(copyProcess);
-        int exitCode = copyProcess.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("Failed to copy files to container " + containerName
-                    + " at " + destination + ": " + commandOutput.strip());
-        }
-    }
+    boolean isContainerUsable(String containerName, BuildTool buildTool) throws IOException, InterruptedException;
 
-    public void copyFromContainer(String containerName, String source, Path destination)
+    default ProcessResult executeCommand(String containerName, String command, int timeoutSeconds)
             throws IOException, InterruptedException {
-        ProcessBuilder copyCommand = new ProcessBuilder(
-                DOCKER_COMMAND, "cp", containerName + ":" + source, destination.toString()
-        );
-        copyCommand.redirectErrorStream(true);
-        Process copyProcess = copyCommand.start();
-        String commandOutput = ProcessUtils.readOutput(copyProcess);
-        int exitCode = copyProcess.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("Failed to copy files from container " + containerName
-                    + " at " + source + ": " + commandOutput.strip());
-        }
+        return executeCommand(containerName, command, timeoutSeconds, null);
     }
 
-    public boolean isContainerUsable(String containerName, BuildTool buildTool)
-            throws IOException, InterruptedException {
-        String requiredCommand = buildTool == BuildTool.GRADLE ? "gradle" : "mvn";
-        ProcessResult result = executeCommand(
-                containerName,
-                "test -d /workspace && test -w /workspace && command -v " + requiredCommand + " >/dev/null 2>&1",
-                15
-        );
-        if (!result.isSuccess()) {
-            log.warn("Container {} failed readiness check: {}", containerName,
-                    firstNonBlank(result.getErrors(), result.getOutput()));
-        }
-        return result.isSuccess();
-    }
-
-    public ProcessResult executeCommand(String containerName, String command, int timeoutSeconds)
-            throws IOException, InterruptedException {
-        ProcessBuilder dockerExec = new ProcessBuilder(
-                DOCKER_COMMAND, "exec", "-t", containerName, "sh", "-c", command
-        );
-        long startTime = System.currentTimeMillis();
-        Process process = dockerExec.start();
-        boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
-        long executionTime = System.currentTimeMillis() - startTime;
-
-        if (!finished) {
-            process.destroyForcibly();
-            throw new RuntimeException("Command timed out after " + timeoutSeconds + " seconds (executed for " + executionTime + "ms)");
-        }
+    /**
+     * Runs {@code command} and, if {@code listener} is not {@code null}, hands it the output while the command
+     * is still running. The returned result holds the complete output either way.
+     */
+    ProcessResult executeCommand(String containerName, String command, int timeoutSeconds, OutputListener listener)
+            throws IOException, InterruptedException;
 
-        String output = ProcessUtils.readOutput(process);
-        String errors = ProcessUtils.readErrors(process);
-        return new ProcessResult(process.exitValue(), output, errors, executionTime);
-    }
-
-    public void cleanupWorkspace(String containerName, String workspace) {
-        try {
-            ProcessBuilder cleanupCommand = new ProcessBuilder(
-                    DOCKER_COMMAND, "exec", containerName, "sh", "-c", "rm -rf " + workspace
-            );
-            Process cleanupProcess = cleanupCommand.start();
-            cleanupProcess.waitFor();
-            log.info("Cleaned up workspace: {}", workspace);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("Interrupted while cleaning workspace: {}", workspace, e);
-        } catch (IOException e) {
-            log.warn("Failed to cleanup workspace: {}", workspace, e);
-        }
-    }
-
-    private void removeContainerIfExists(String containerName) throws IOException, InterruptedException {
-        ProcessBuilder removeContainer = new ProcessBuilder(DOCKER_COMMAND, "rm", "-f", containerName);
-        removeContainer.start().waitFor();
-    }
-
-    private String[] createDockerRunCommand(String containerName, BuildTool buildTool) {
-        String userHome = buildTool == BuildTool.GRADLE ? GRADLE_USER_HOME : MAVEN_USER_HOME;
-        String imageName = buildTool == BuildTool.GRADLE ? "gradle" : "maven-sandbox";
-
-        return new String[]{
-                DOCKER_COMMAND, "run", "-d", "--name", containerName,
-                "-v", "/tmp:/workspace",
-                "--memory=3g", "--cpus=4", "--shm-size=1g",
-                "-e", "GRADLE_OPTS=-Xmx2g -XX:+UseG1GC -XX:MaxGCPauseMillis=200",
-                "-e", "GRADLE_USER_HOME=" + userHome,
-                "-e", "JAVA_OPTS=-Xmx2g",
-                imageName, "tail", "-f", "/dev/null"
-        };
-    }
-
-    private void setupBuildToolHome(String containerName, BuildTool buildTool)
-            throws IOException, InterruptedException {
-        String userHome = buildTool == BuildTool.GRADLE ? GRADLE_USER_HOME : MAVEN_USER_HOME;
-        ProcessBuilder createHome = new ProcessBuilder(
-                DOCKER_COMMAND, "exec", containerName,
-                "sh", "-c", "mkdir -p " + userHome + " && chmod 755 " + userHome
-        );
-        createHome.start().waitFor();
-    }
-
-    private String shellQuote(String value) {
-        return "'" + value.replace("'", "'\\''") + "'";
-    }
+    void cleanupWorkspace(String containerName, String workspace);
 
-    private String firstNonBlank(String first, String second) {
-        return first != null && !first.isBlank() ? first : second == null ? "" : second;
+    /**
+     * Receives chunks of a command's output as they arrive. Chunks are not aligned to lines or characters.
+     */
+    @FunctionalInterface
+    interface OutputListener {
+        void onOutput(boolean stderr, byte[] data, int length);
     }
 }
@@ -0,0 +1,531 @@
+package io.adampoi.java_auto_grader.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Small HTTP/1.1 client for the Docker Engine API over the daemon's Unix socket.
+ * Idle keep-alive connections are pooled so a grading job costs a handful of socket round-trips
+ * instead of one {@code docker} process per operation.
+ */
+@Slf4j
+public class DockerEngineClient implements Closeable {
+
+    private static final String API_PREFIX = "/v1.41";
+    private static final int STREAM_STDOUT = 1;
+    private static final int STREAM_STDERR = 2;
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE");
+
+    private final UnixDomainSocketAddress address;
+    private final int maxIdleConnections;
+    private final BlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    public DockerEngineClient(Path socketPath, int maxIdleConnections) {
+        this.address = UnixDomainSocketAddress.of(socketPath);
+        this.maxIdleConnections = maxIdleConnections;
+        this.watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "docker-api-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    public record Response(int status, byte[] body) {
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        public String bodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    @FunctionalInterface
+    public interface BodyWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface BodyReader {
+        void read(InputStream in) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface FrameListener {
+        void onFrame(boolean stderr, byte[] data, int length) throws IOException;
+    }
+
+    /**
+     * Thrown when a request does not complete within its deadline. The underlying connection is discarded.
+     */
+    public static class RequestTimeoutException extends IOException {
+        public RequestTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    public Response get(String path, Duration timeout) throws IOException {
+        return send("GET", path, null, timeout);
+    }
+
+    public Response post(String path, String json, Duration timeout) throws IOException {
+        return send("POST", path, json, timeout);
+    }
+
+    public Response delete(String path, Duration timeout) throws IOException {
+        return send("DELETE", path, null, timeout);
+    }
+
+    public Response send(String method, String path, String json, Duration timeout) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        byte[] body = json == null ? null : json.getBytes(StandardCharsets.UTF_8);
+        if (body != null) {
+            headers.put("Content-Type", "application/json");
+        }
+        return exchange(method, path, headers, body == null ? null : out -> out.write(body), null, timeout);
+    }
+
+    /**
+     * Uploads a tar stream produced by {@code writer} with chunked transfer encoding, so the archive
+     * never has to be materialised in memory or on disk.
+     */
+    public Response putArchive(String path, BodyWriter writer, Duration timeout) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/x-tar");
+        return exchange("PUT", path, headers, writer, null, timeout);
+    }
+
+    /**
+     * Streams a successful response body into {@code reader}; error bodies are buffered and returned.
+     */
+    public Response getStreaming(String path, BodyReader reader, Duration timeout) throws IOException {
+        return exchange("GET", path, new LinkedHashMap<>(), null, reader, timeout);
+    }
+
+    /**
+     * Starts an attached, non-TTY exec and demultiplexes its stdout/stderr frames until the process
+     * closes its streams. The hijacked connection cannot be reused afterwards.
+     */
+    public void startExec(String execId, FrameListener listener, Duration timeout) throws IOException {
+        Connection connection = open();
+        ScheduledFuture<?> deadline = connection.armDeadline(watchdog, timeout);
+        try {
+            Map<String, String> headers = new LinkedHashMap<>();
+            headers.put("Content-Type", "application/json");
+            headers.put("Connection", "Upgrade");
+            headers.put("Upgrade", "tcp");
+            byte[] body = "{\"Detach\":false,\"Tty\":false}".getBytes(StandardCharsets.UTF_8);
+            connection.writeRequest("POST", "/exec/" + execId + "/start", headers, out -> out.write(body), false);
+
+            ResponseHead head = connection.readHead();
+            if (head.status() != 101 && head.status() != 200) {
+                byte[] error = readBody(connection, head).readAllBytes();
+                throw new IOException("Docker exec start failed with HTTP " + head.status() + ": "
+                        + new String(error, StandardCharsets.UTF_8).strip());
+            }
+            readFrames(connection.in, listener);
+        } catch (IOException e) {
+            throw connection.translate(e, timeout);
+        } finally {
+            deadline.cancel(false);
+            connection.closeQuietly();
+        }
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.closeQuietly();
+        }
+    }
+
+    private Response exchange(String method, String path, Map<String, String> headers, BodyWriter body,
+                              BodyReader streamingReader, Duration timeout) throws IOException {
+        Connection pooled = idle.pollFirst();
+        Connection connection = pooled != null ? pooled : open();
+        try {
+            return exchange(connection, method, path, headers, body, streamingReader, timeout);
+        } catch (StaleConnectionException e) {
+            // The daemon closed an idle keep-alive connection. If that showed while writing, it never saw a
+            // whole request; if the request went out and no answer came, it may have acted on it, so only
+            // requests that can safely run twice are sent again (not exec create/start or container create).
+            if (e.isRequestSent() && !IDEMPOTENT_METHODS.contains(method)) {
+                throw new IOException("Docker API connection closed before answering " + method + " " + path, e);
+            }
+            log.debug("Discarding stale Docker API connection", e);
+            return exchange(open(), method, path, headers, body, streamingReader, timeout);
+        }
+    }
+
+    private Response exchange(Connection connection, String method, String path, Map<String, String> headers,
+                              BodyWriter body, BodyReader streamingReader, Duration timeout) throws IOException {
+        ScheduledFuture<?> deadline = connection.armDeadline(watchdog, timeout);
+        boolean reusable = false;
+        try {
+            connection.writeRequest(method, path, headers, body, body != null && isStreamingUpload(headers));
+            ResponseHead head = connection.readHead();
+            InputStream bodyStream = readBody(connection, head);
+            Response response;
+            if (streamingReader != null && head.status() >= 200 && head.status() < 300) {
+                streamingReader.read(bodyStream);
+                bodyStream.transferTo(OutputStream.nullOutputStream());
+                response = new Response(head.status(), new byte[0]);
+            } else {
+                response = new Response(head.status(), bodyStream.readAllBytes());
+            }
+            reusable = head.keepAlive() && head.bodyDelimited();
+            return response;
+        } catch (StaleConnectionException e) {
+            throw e;
+        } catch (IOException e) {
+            throw connection.translate(e, timeout);
+        } finally {
+            deadline.cancel(false);
+            release(connection, reusable);
+        }
+    }
+
+    private boolean isStreamingUpload(Map<String, String> headers) {
+        return "application/x-tar".equals(headers.get("Content-Type"));
+    }
+
+    private Connection open() throws IOException {
+        return new Connection(SocketChannel.open(address));
+    }
+
+    private void release(Connection connection, boolean reusable) {
+        if (reusable && !connection.timedOut.get() && idle.size() < maxIdleConnections) {
+            idle.offerFirst(connection);
+        } else {
+            connection.closeQuietly();
+        }
+    }
+
+    private static InputStream readBody(Connection connection, ResponseHead head) {
+        if (head.chunked()) {
+            return new ChunkedInputStream(connection.in);
+        }
+        if (head.contentLength() >= 0) {
+            return new LimitedInputStream(connection.in, head.contentLength());
+        }
+        if (head.status() == 204 || head.status() == 304) {
+            return InputStream.nullInputStream();
+        }
+        return connection.in;
+    }
+
+    private static void readFrames(InputStream in, FrameListener listener) throws IOException {
+        byte[] header = new byte[8];
+        byte[] buffer = new byte[8192];
+        while (true) {
+            int read = in.readNBytes(header, 0, header.length);
+            if (read == 0) {
+                return;
+            }
+            if (read < header.length) {
+                throw new EOFException("Truncated Docker stream frame header");
+            }
+            int stream = header[0];
+            long size = ((header[4] & 0xffL) << 24) | ((header[5] & 0xffL) << 16)
+                    | ((header[6] & 0xffL) << 8) | (header[7] & 0xffL);
+            while (size > 0) {
+                int chunk = in.read(buffer, 0, (int) Math.min(buffer.length, size));
+                if (chunk < 0) {
+                    throw new EOFException("Truncated Docker stream frame");
+                }
+                if (stream == STREAM_STDOUT || stream == STREAM_STDERR) {
+                    listener.onFrame(stream == STREAM_STDERR, buffer, chunk);
+                }
+                size -= chunk;
+            }
+        }
+    }
+
+    private static final class StaleConnectionException extends IOException {
+        private final boolean requestSent;
+
+        StaleConnectionException(Throwable cause, boolean requestSent) {
+            super("Docker API connection was closed by the daemon", cause);
+            this.requestSent = requestSent;
+        }
+
+        boolean isRequestSent() {
+            return requestSent;
+        }
+    }
+
+    private record ResponseHead(int status, long contentLength, boolean chunked, boolean keepAlive) {
+        boolean bodyDelimited() {
+            return chunked || contentLength >= 0 || status == 204 || status == 304;
+        }
+    }
+
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final InputStream in;
+        private final OutputStream out;
+        private final AtomicBoolean timedOut = new AtomicBoolean();
+        private int requests;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.in = new BufferedInputStream(Channels.newInputStream(channel), 16 * 1024);
+            this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 16 * 1024);
+        }
+
+        ScheduledFuture<?> armDeadline(ScheduledThreadPoolExecutor watchdog, Duration timeout) {
+            return watchdog.schedule(() -> {
+                timedOut.set(true);
+                closeQuietly();
+            }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        void writeRequest(String method, String path, Map<String, String> headers, BodyWriter body,
+                          boolean chunked) throws IOException {
+            requests++;
+            StringBuilder head = new StringBuilder()
+                    .append(method).append(' ').append(API_PREFIX).append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: docker\r\n");
+            headers.forEach((name, value) -> head.append(name).append(": ").append(value).append("\r\n"));
+
+            byte[] buffered = null;
+            if (body != null && !chunked) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                body.write(bytes);
+                buffered = bytes.toByteArray();
+                head.append("Content-Length: ").append(buffered.length).append("\r\n");
+            } else if (body != null) {
+                head.append("Transfer-Encoding: chunked\r\n");
+            } else if (!"GET".equals(method) && !"DELETE".equals(method)) {
+                head.append("Content-Length: 0\r\n");
+            }
+            head.append("\r\n");
+
+            try {
+                out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+                if (buffered != null) {
+                    out.write(buffered);
+                } else if (body != null) {
+                    try (ChunkedOutputStream chunkedOut = new ChunkedOutputStream(out)) {
+                        body.write(chunkedOut);
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                if (requests > 1 && !timedOut.get()) {
+                    throw new StaleConnectionException(e, false);
+                }
+                throw e;
+            }
+        }
+
+        ResponseHead readHead() throws IOException {
+            String statusLine = readLine(in);
+            if (statusLine == null) {
+                if (requests > 1 && !timedOut.get()) {
+                    throw new StaleConnectionException(new EOFException("No response from Docker daemon"), true);
+                }
+                throw new EOFException("Docker daemon closed the connection without a response");
+            }
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("Malformed Docker API status line: " + statusLine);
+            }
+            int status = Integer.parseInt(parts[1]);
+            long contentLength = -1;
+            boolean chunked = false;
+            boolean keepAlive = true;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                switch (name) {
+                    case "content-length" -> contentLength = Long.parseLong(value);
+                    case "transfer-encoding" -> chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                    case "connection" -> keepAlive = !"close".equalsIgnoreCase(value);
+                    default -> {
+                        // Other headers are irrelevant to framing.
+                    }
+                }
+            }
+            return new ResponseHead(status, contentLength, chunked, keepAlive);
+        }
+
+        IOException translate(IOException e, Duration timeout) {
+            if (timedOut.get()) {
+                RequestTimeoutException timeoutException = new RequestTimeoutException(
+                        "Docker API request timed out after " + timeout.toMillis() + "ms");
+                timeoutException.initCause(e);
+                return timeoutException;
+            }
+            return e;
+        }
+
+        void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Failed to close Docker API connection", e);
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            line.write(b);
+        }
+        return line.size() == 0 ? null : line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static final class ChunkedOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(buffer, offset, length);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+
+    private static final class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+        private boolean finished;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (remaining == 0) {
+                String sizeLine = readLine(in);
+                if (sizeLine == null) {
+                    throw new EOFException("Truncated chunked response");
+                }
+                int extension = sizeLine.indexOf(';');
+                String size = extension >= 0 ? sizeLine.substring(0, extension) : sizeLine;
+                remaining = Long.parseLong(size.trim(), 16);
+                if (remaining == 0) {
+                    String trailer;
+                    while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+                        // Trailers are not used by the Docker API.
+                    }
+                    finished = true;
+                    return -1;
+                }
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Truncated chunked response");
+            }
+            remaining -= read;
+            if (remaining == 0) {
+                readLine(in);
+            }
+            return read;
+        }
+    }
+
+    private static final class LimitedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Truncated Docker API response");
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+}
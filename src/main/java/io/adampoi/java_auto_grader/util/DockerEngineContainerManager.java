@@ -0,0 +1,248 @@
+package io.adampoi.java_auto_grader.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link DockerContainerManager} backed by the Docker Engine API. Commands run through exec create/start
+ * with attached streams, and files move through the archive endpoints as tar streams.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DockerEngineContainerManager implements DockerContainerManager, Closeable {
+
+    private static final Duration API_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration TRANSFER_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration PULL_TIMEOUT = Duration.ofMinutes(10);
+
+    private final DockerEngineClient client;
+    private final SandboxContainerSpec containerSpec;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public boolean isContainerRunning(String containerName) throws IOException {
+        DockerEngineClient.Response response = client.get("/containers/" + encode(containerName) + "/json", API_TIMEOUT);
+        if (response.status() == 404) {
+            return false;
+        }
+        requireSuccess(response, "inspect container " + containerName);
+        return objectMapper.readTree(response.body()).path("State").path("Running").asBoolean(false);
+    }
+
+    @Override
+    public void startContainer(String containerName, BuildTool buildTool) throws IOException {
+        DockerEngineClient.Response removed = client.delete(
+                "/containers/" + encode(containerName) + "?force=true", API_TIMEOUT);
+        if (!removed.isSuccess() && removed.status() != 404) {
+            throw new RuntimeException("Failed to remove Docker container " + containerName + ": "
+                    + removed.bodyAsString().strip());
+        }
+
+        String createPath = "/containers/create?name=" + encode(containerName);
+        String createBody = objectMapper.writeValueAsString(createContainerBody(buildTool));
+        DockerEngineClient.Response created = client.post(createPath, createBody, API_TIMEOUT);
+        if (created.status() == 404) {
+            pullImage(containerSpec.image(buildTool));
+            created = client.post(createPath, createBody, API_TIMEOUT);
+        }
+        if (!created.isSuccess()) {
+            throw new RuntimeException("Failed to start Docker container: " + created.bodyAsString().strip());
+        }
+
+        DockerEngineClient.Response started = client.post(
+                "/containers/" + encode(containerName) + "/start", null, API_TIMEOUT);
+        if (!started.isSuccess() && started.status() != 304) {
+            throw new RuntimeException("Failed to start Docker container: " + started.bodyAsString().strip());
+        }
+
+        String userHome = containerSpec.userHome(buildTool);
+        executeCommand(containerName, "mkdir -p " + userHome + " && chmod 755 " + userHome, 15);
+    }
+
+    @Override
+    public void uploadArchive(String containerName, String destination, TarArchive.WriterAction archive)
+            throws IOException {
+        DockerEngineClient.Response response = client.putArchive(
+                archivePath(containerName, destination),
+                out -> TarArchive.write(out, archive),
+                TRANSFER_TIMEOUT);
+        if (!response.isSuccess()) {
+            throw new RuntimeException("Failed to copy files to container " + containerName
+                    + " at " + destination + ": " + response.bodyAsString().strip());
+        }
+    }
+
+    @Override
+    public boolean readArchive(String containerName, String source, TarArchive.EntryConsumer consumer)
+            throws IOException {
+        DockerEngineClient.Response response = client.getStreaming(
+                archivePath(containerName, source),
+                in -> TarArchive.read(in, consumer),
+                TRANSFER_TIMEOUT);
+        if (response.status() == 404) {
+            return false;
+        }
+        if (!response.isSuccess()) {
+            throw new RuntimeException("Failed to copy files from container " + containerName
+                    + " at " + source + ": " + response.bodyAsString().strip());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isContainerUsable(String containerName, BuildTool buildTool) throws IOException {
+        String requiredCommand = containerSpec.requiredCommand(buildTool);
+        ProcessResult result = executeCommand(
+                containerName,
+                "test -d /workspace && test -w /workspace && command -v " + requiredCommand + " >/dev/null 2>&1",
+                15
+        );
+        if (!result.isSuccess()) {
+            log.warn("Container {} failed readiness check: {}", containerName,
+                    firstNonBlank(result.getErrors(), result.getOutput()));
+        }
+        return result.isSuccess();
+    }
+
+    @Override
+    public ProcessResult executeCommand(String containerName, String command, int timeoutSeconds,
+                                        OutputListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String tag = UUID.randomUUID().toString();
+        String execId = createExec(containerName, containerSpec.trackedCommand(command, tag));
+
+        ProcessUtils.CappedOutput stdout = new ProcessUtils.CappedOutput(containerSpec.getMaxOutputBytes());
+        ProcessUtils.CappedOutput stderr = new ProcessUtils.CappedOutput(containerSpec.getMaxOutputBytes());
+        try (CancellationToken.Registration ignored =
+                CancellationToken.onCurrentCancel(() -> killCommand(containerName, tag))) {
+            client.startExec(execId, (isStderr, data, length) -> {
+                (isStderr ? stderr : stdout).write(data, 0, length);
+                if (listener != null) {
+                    listener.onOutput(isStderr, data, length);
+                }
+            }, Duration.ofSeconds(timeoutSeconds));
+        } catch (DockerEngineClient.RequestTimeoutException e) {
+            // Dropping the connection does not stop the exec, the build would keep running in the container.
+            killCommand(containerName, tag);
+            long executionTime = System.currentTimeMillis() - startTime;
+            throw new RuntimeException("Command timed out after " + timeoutSeconds + " seconds (executed for "
+                    + executionTime + "ms)", e);
+        }
+        long executionTime = System.currentTimeMillis() - startTime;
+        CancellationToken.throwIfCurrentCancelled();
+
+        return new ProcessResult(execExitCode(execId),
+                stdout.toString(),
+                stderr.toString(),
+                executionTime,
+                stdout.getTruncatedBytes() + stderr.getTruncatedBytes());
+    }
+
+    private void killCommand(String containerName, String tag) {
+        try {
+            String execId = createExec(containerName, List.of("sh", "-c", containerSpec.killCommand(tag)));
+            client.startExec(execId, (isStderr, data, length) -> {
+            }, API_TIMEOUT);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to kill command {} in container {}", tag, containerName, e);
+        }
+    }
+
+    @Override
+    public void cleanupWorkspace(String containerName, String workspace) {
+        try {
+            executeCommand(containerName, "rm -rf " + workspace, 60);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to cleanup workspace: {}", workspace, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private String createExec(String containerName, List<String> cmd) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("AttachStdout", true);
+        body.put("AttachStderr", true);
+        body.put("Tty", false);
+        ArrayNode cmdNode = body.putArray("Cmd");
+        cmd.forEach(cmdNode::add);
+
+        DockerEngineClient.Response response = client.post(
+                "/containers/" + encode(containerName) + "/exec", objectMapper.writeValueAsString(body), API_TIMEOUT);
+        requireSuccess(response, "create exec in " + containerName);
+        return objectMapper.readTree(response.body()).path("Id").asText();
+    }
+
+    private int execExitCode(String execId) throws IOException {
+        DockerEngineClient.Response response = client.get("/exec/" + execId + "/json", API_TIMEOUT);
+        requireSuccess(response, "inspect exec " + execId);
+        JsonNode exitCode = objectMapper.readTree(response.body()).path("ExitCode");
+        return exitCode.isNumber() ? exitCode.asInt() : -1;
+    }
+
+    private ObjectNode createContainerBody(BuildTool buildTool) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("Image", containerSpec.image(buildTool));
+        ArrayNode cmd = body.putArray("Cmd");
+        containerSpec.keepAliveCommand().forEach(cmd::add);
+        ArrayNode env = body.putArray("Env");
+        containerSpec.environment(buildTool).forEach(env::add);
+
+        ObjectNode hostConfig = body.putObject("HostConfig");
+        hostConfig.putArray("Binds").add(containerSpec.workspaceBind());
+        hostConfig.put("Memory", containerSpec.memoryBytes());
+        hostConfig.put("NanoCpus", containerSpec.nanoCpus());
+        hostConfig.put("ShmSize", containerSpec.shmSizeBytes());
+        return body;
+    }
+
+    private void pullImage(String image) throws IOException {
+        String name = image;
+        String tag = "latest";
+        int colon = image.lastIndexOf(':');
+        if (colon > image.lastIndexOf('/')) {
+            name = image.substring(0, colon);
+            tag = image.substring(colon + 1);
+        }
+        log.info("Pulling Docker image {}:{}", name, tag);
+        DockerEngineClient.Response response = client.post(
+                "/images/create?fromImage=" + encode(name) + "&tag=" + encode(tag), null, PULL_TIMEOUT);
+        requireSuccess(response, "pull image " + image);
+    }
+
+    private void requireSuccess(DockerEngineClient.Response response, String action) {
+        if (!response.isSuccess()) {
+            throw new RuntimeException("Docker API failed to " + action + " (HTTP " + response.status() + "): "
+                    + response.bodyAsString().strip());
+        }
+    }
+
+    private String archivePath(String containerName, String path) {
+        return "/containers/" + encode(containerName) + "/archive?path=" + encode(path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private String firstNonBlank(String first, String second) {
+        return first != null && !first.isBlank() ? first : second == null ? "" : second;
+    }
+}
@@ -0,0 +1,20 @@
+package io.adampoi.java_auto_grader.util;
+
+import lombok.Getter;
+
+/**
+ * Thrown when the grading queue cannot take another job. Mapped to 503 with a {@code Retry-After} hint.
+ */
+@Getter
+public class GradingQueueFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public GradingQueueFullException(final long retryAfterSeconds) {
+        super("The grading queue is full, please retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,637 @@
+package io.adampoi.java_auto_grader.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.model.enums.CompilationStage;
+import io.adampoi.java_auto_grader.model.type.CompilationError;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingRequest;
+import io.adampoi.java_auto_grader.model.type.InJvmGradingResult;
+import io.adampoi.java_auto_grader.model.type.InJvmMainRun;
+import io.adampoi.java_auto_grader.model.type.TestCaseResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Entry point of a grader JVM. Reads one JSON {@link InJvmGradingRequest} per line from stdin, compiles it in
+ * memory, runs the tests through the JUnit Platform Launcher and writes one JSON {@link InJvmGradingResult}
+ * per line to stdout. Anything the submission prints is captured and returned in the result instead.
+ * <p>
+ * The compiler and launcher stay loaded between requests; each submission gets its own class loader. A request
+ * naming a main class runs {@code main} once per input instead of the tests.
+ * <p>
+ * Submissions share this JVM, so nothing here keeps them from writing to the real stdout. Every answer carries
+ * the nonce of its request, which the pool checks; {@code System.out} never points at stdout, and submission
+ * class loaders do not see the grader's own classes.
+ */
+public final class InJvmGraderMain {
+
+    private static final int MAX_CAPTURED_BYTES = 1024 * 1024;
+    private static final int MAX_MAIN_RUN_BYTES = 256 * 1024;
+    private static final String CLASS_LEVEL_TEST_NAME = "classMethod";
+    private static final String GRADER_PACKAGE = "io.adampoi.java_auto_grader.";
+
+    private final InMemoryJavaCompiler compiler = new InMemoryJavaCompiler();
+    private final Launcher launcher = LauncherFactory.create();
+    private final ClassLoader submissionParent = new GraderClassFilter(InJvmGraderMain.class.getClassLoader());
+    private final PrintStream protocol;
+    private final ObjectMapper objectMapper;
+
+    private InJvmGraderMain(PrintStream protocol, ObjectMapper objectMapper) {
+        this.protocol = protocol;
+        this.objectMapper = objectMapper;
+    }
+
+    public static void main(String[] args) throws IOException {
+        PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        // What is printed outside a capture, e.g. by a thread a submission left running, goes to the pool's log.
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true, StandardCharsets.UTF_8));
+        ObjectMapper objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        InJvmGraderMain grader = new InJvmGraderMain(protocol, objectMapper);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            InJvmGradingRequest request = null;
+            InJvmGradingResult result;
+            try {
+                request = objectMapper.readValue(line, InJvmGradingRequest.class);
+                result = grader.grade(request);
+            } catch (IOException | RuntimeException | LinkageError e) {
+                result = InJvmGradingResult.builder()
+                        .exitCode(-1)
+                        .errors("Grader failed: " + e)
+                        .compilationStage(CompilationStage.UNKNOWN)
+                        .compilationErrors(List.of())
+                        .testSuites(List.of())
+                        .build();
+            }
+            result.setExecutionTime(System.currentTimeMillis() - start);
+            result.setNonce(request == null ? null : request.getNonce());
+            grader.respond(result);
+        }
+    }
+
+    private synchronized void respond(InJvmGradingResult result) throws IOException {
+        protocol.println(objectMapper.writeValueAsString(result));
+    }
+
+    InJvmGradingResult grade(InJvmGradingRequest request) {
+        if (request.getMainClass() != null) {
+            return runMain(request);
+        }
+        Map<String, String> sources = new LinkedHashMap<>();
+        Optional.ofNullable(request.getSourceFiles()).ifPresent(sources::putAll);
+        Optional.ofNullable(request.getTestFiles()).ifPresent(sources::putAll);
+
+        InMemoryJavaCompiler.Result compilation = compiler.compile(sources);
+        if (!compilation.success()) {
+            return compilationFailure(request, sources, compilation);
+        }
+
+        InMemoryJavaCompiler.MemoryClassLoader classLoader = new InMemoryJavaCompiler.MemoryClassLoader(
+                compilation.classes(), submissionParent);
+        Map<String, String> testFiles = Optional.ofNullable(request.getTestFiles()).orElse(Map.of());
+        List<Class<?>> testClasses = new ArrayList<>();
+        for (Map.Entry<String, String> origin : compilation.origins().entrySet()) {
+            if (testFiles.containsKey(origin.getValue()) && !origin.getKey().contains("$")) {
+                try {
+                    testClasses.add(classLoader.loadClass(origin.getKey()));
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Compiled class disappeared: " + origin.getKey(), e);
+                }
+            }
+        }
+
+        ResultCollector collector = new ResultCollector();
+        CapturedStream stdout = new CapturedStream();
+        CapturedStream stderr = new CapturedStream();
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        Thread thread = Thread.currentThread();
+        ClassLoader originalContextLoader = thread.getContextClassLoader();
+        Set<Thread> threadsBefore = liveThreads();
+        try {
+            System.setOut(new PrintStream(stdout, true, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(stderr, true, StandardCharsets.UTF_8));
+            thread.setContextClassLoader(classLoader);
+            LauncherDiscoveryRequest discovery = LauncherDiscoveryRequestBuilder.request()
+                    .selectors(testClasses.stream().map(DiscoverySelectors::selectClass).toList())
+                    .build();
+            launcher.execute(discovery, collector);
+        } finally {
+            thread.setContextClassLoader(originalContextLoader);
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+
+        List<TestSuiteResult> testSuites = collector.testSuites();
+        boolean allPassed = testSuites.stream().allMatch(suite -> suite.getFailures() == 0 && suite.getErrors() == 0);
+        return InJvmGradingResult.builder()
+                .exitCode(allPassed ? 0 : 1)
+                .output(stdout.toString())
+                .errors(stderr.toString())
+                .truncatedBytes(stdout.truncatedBytes() + stderr.truncatedBytes())
+                .compilationStage(CompilationStage.NONE)
+                .compilationErrors(List.of())
+                .testSuites(testSuites)
+                .recycle(threadsLeftRunning(threadsBefore))
+                .build();
+    }
+
+    /**
+     * Compiles the sources once, then calls {@code main} for every input with it on stdin, or as arguments, and
+     * captures what it prints. Each run gets a fresh class loader, so static state does not leak from one input
+     * into the next, while the compiled classes and the warm JIT are shared.
+     * <p>
+     * A run that times out cannot be stopped, so the remaining inputs are left for a fresh grader JVM. When a
+     * submission calls {@code System.exit}, a shutdown hook answers with the runs so far before the JVM goes.
+     */
+    private InJvmGradingResult runMain(InJvmGradingRequest request) {
+        Map<String, String> sources = new LinkedHashMap<>();
+        Optional.ofNullable(request.getSourceFiles()).ifPresent(sources::putAll);
+        InMemoryJavaCompiler.Result compilation = compiler.compile(sources);
+        if (!compilation.success()) {
+            return compilationFailure(request, sources, compilation);
+        }
+
+        Set<Thread> threadsBefore = liveThreads();
+        MainBatch batch = new MainBatch(request.getNonce());
+        Thread exitHook = new Thread(() -> answerOnExit(batch), "in-jvm-grader-exit");
+        Runtime.getRuntime().addShutdownHook(exitHook);
+        InputStream originalIn = System.in;
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        boolean timedOut = false;
+        try {
+            // Also covers threads the submission starts, and keeps them away from the protocol streams.
+            System.setIn(new MainRunInput(batch));
+            System.setOut(new PrintStream(new MainRunOutput(batch, false), true, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(new MainRunOutput(batch, true), true, StandardCharsets.UTF_8));
+            for (String input : Optional.ofNullable(request.getInputs()).orElse(List.of())) {
+                InJvmMainRun run = invokeMain(compilation.classes(), request, input == null ? "" : input, batch);
+                batch.runs.add(run);
+                if ("TIMEOUT".equals(run.getStatus())) {
+                    timedOut = true;
+                    break;
+                }
+            }
+        } finally {
+            if (!timedOut) {
+                System.setIn(originalIn);
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+            }
+        }
+
+        if (!batch.answered.compareAndSet(false, true)) {
+            // A thread of the submission called System.exit; the shutdown hook answers and the JVM halts.
+            while (true) {
+                LockSupport.park(this);
+            }
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(exitHook);
+        } catch (IllegalStateException e) {
+            // The JVM started shutting down after this answer was claimed; it is still written if time allows.
+        }
+        return mainResult(batch.runs, timedOut || threadsLeftRunning(threadsBefore));
+    }
+
+    private static Set<Thread> liveThreads() {
+        return new HashSet<>(Thread.getAllStackTraces().keySet());
+    }
+
+    /**
+     * Whether threads the submission started are still running. They may print, or hold on to the streams, after
+     * the capture ended, so the grader JVM is not reused.
+     */
+    private static boolean threadsLeftRunning(Set<Thread> threadsBefore) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.isAlive() && !threadsBefore.contains(thread));
+    }
+
+    private InJvmMainRun invokeMain(Map<String, byte[]> classes, InJvmGradingRequest request, String input,
+                                    MainBatch batch) {
+        String[] args = request.isInputsAsArguments() && !input.isBlank()
+                ? input.trim().split("\\s+")
+                : new String[0];
+        byte[] stdin = request.isInputsAsArguments() ? new byte[0] : input.getBytes(StandardCharsets.UTF_8);
+        MainRunIo io = new MainRunIo(stdin);
+        InMemoryJavaCompiler.MemoryClassLoader classLoader = new InMemoryJavaCompiler.MemoryClassLoader(
+                classes, submissionParent);
+        Method main;
+        try {
+            main = Class.forName(request.getMainClass(), false, classLoader).getMethod("main", String[].class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            main = null;
+        }
+        if (main == null || !Modifier.isStatic(main.getModifiers())) {
+            io.failure = new NoSuchMethodException("No public static void main(String[]) in "
+                    + request.getMainClass());
+            return io.toRun("EXCEPTION");
+        }
+        main.setAccessible(true);
+
+        Method entryPoint = main;
+        Thread thread = new Thread(() -> {
+            try {
+                entryPoint.invoke(null, (Object) args);
+            } catch (InvocationTargetException e) {
+                io.failure = e.getCause();
+            } catch (IllegalAccessException | RuntimeException | LinkageError e) {
+                io.failure = e;
+            }
+        }, "main-run");
+        thread.setDaemon(true);
+        thread.setContextClassLoader(classLoader);
+        batch.current = io;
+        io.started = System.nanoTime();
+        thread.start();
+        try {
+            thread.join(Math.max(1, request.getTimeoutMs()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean timedOut = thread.isAlive();
+        if (timedOut) {
+            thread.interrupt();
+        }
+        batch.current = null;
+        return io.toRun(timedOut ? "TIMEOUT" : io.failure == null ? "COMPLETED" : "EXCEPTION");
+    }
+
+    private void answerOnExit(MainBatch batch) {
+        MainRunIo io = batch.current;
+        if (!batch.answered.compareAndSet(false, true)) {
+            return;
+        }
+        List<InJvmMainRun> runs = new ArrayList<>(batch.runs);
+        if (io != null) {
+            runs.add(io.toRun("EXITED"));
+        }
+        InJvmGradingResult result = mainResult(runs, true);
+        result.setExecutionTime(System.currentTimeMillis() - batch.started);
+        result.setNonce(batch.nonce);
+        try {
+            respond(result);
+        } catch (IOException e) {
+            // Nothing left to tell; the pool sees the JVM exit without an answer.
+        }
+    }
+
+    private static InJvmGradingResult mainResult(List<InJvmMainRun> runs, boolean recycle) {
+        boolean allCompleted = runs.stream().allMatch(run -> "COMPLETED".equals(run.getStatus()));
+        return InJvmGradingResult.builder()
+                .exitCode(allCompleted ? 0 : 1)
+                .output("")
+                .errors("")
+                .compilationStage(CompilationStage.NONE)
+                .compilationErrors(List.of())
+                .testSuites(List.of())
+                .mainRuns(List.copyOf(runs))
+                .recycle(recycle)
+                .build();
+    }
+
+    private InJvmGradingResult compilationFailure(InJvmGradingRequest request, Map<String, String> sources,
+                                                  InMemoryJavaCompiler.Result compilation) {
+        Map<String, String> sourceFiles = Optional.ofNullable(request.getSourceFiles()).orElse(Map.of());
+        List<CompilationError> errors = new ArrayList<>();
+        StringBuilder log = new StringBuilder();
+        boolean studentSourceFailed = false;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : compilation.diagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            String path = InMemoryJavaCompiler.sourcePath(diagnostic);
+            studentSourceFailed |= path != null && sourceFiles.containsKey(path);
+            log.append(path == null ? "javac" : path).append(':').append(diagnostic.getLineNumber())
+                    .append(": error: ").append(diagnostic.getMessage(Locale.ROOT)).append('\n');
+            // sources are compiled with a package declaration prepended
+            errors.add(InMemoryJavaCompiler.toCompilationError(diagnostic, sources, 1));
+        }
+        return InJvmGradingResult.builder()
+                .exitCode(1)
+                .output("")
+                .errors(log.toString())
+                .compilationStage(studentSourceFailed ? CompilationStage.STUDENT_SOURCE : CompilationStage.INSTRUCTOR_TEST)
+                .compilationErrors(errors)
+                .testSuites(List.of())
+                .build();
+    }
+
+    /**
+     * Builds the same suite and case model as the JUnit XML reports of a sandbox build: one suite per test
+     * class, cases named by display name ({@code method()} unless overridden).
+     */
+    private static final class ResultCollector implements TestExecutionListener {
+
+        private final Map<String, Long> startTimes = new ConcurrentHashMap<>();
+        private final Map<String, List<TestCaseResult>> casesByClass = new LinkedHashMap<>();
+        private TestPlan testPlan;
+
+        @Override
+        public void testPlanExecutionStarted(TestPlan testPlan) {
+            this.testPlan = testPlan;
+        }
+
+        @Override
+        public void executionStarted(TestIdentifier identifier) {
+            startTimes.put(identifier.getUniqueId(), System.nanoTime());
+        }
+
+        @Override
+        public void executionSkipped(TestIdentifier identifier, String reason) {
+            if (identifier.isTest()) {
+                add(identifier, "SKIPPED", null, 0);
+            } else {
+                testPlan.getDescendants(identifier).stream()
+                        .filter(TestIdentifier::isTest)
+                        .forEach(test -> add(test, "SKIPPED", null, 0));
+            }
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier identifier, TestExecutionResult result) {
+            Long start = startTimes.remove(identifier.getUniqueId());
+            double seconds = start == null ? 0 : (System.nanoTime() - start) / 1_000_000_000.0;
+            Throwable throwable = result.getThrowable().orElse(null);
+            String status = switch (result.getStatus()) {
+                case SUCCESSFUL -> "PASSED";
+                case ABORTED -> "SKIPPED";
+                case FAILED -> throwable instanceof AssertionError ? "FAILED" : "ERROR";
+            };
+            if (identifier.isTest()) {
+                add(identifier, status, throwable, seconds);
+            } else if (result.getStatus() == TestExecutionResult.Status.FAILED
+                    && identifier.getSource().filter(ClassSource.class::isInstance).isPresent()) {
+                // Failures in class-level lifecycle methods have no test of their own.
+                addCase(className(identifier), CLASS_LEVEL_TEST_NAME, status, throwable, seconds);
+            }
+        }
+
+        private void add(TestIdentifier identifier, String status, Throwable throwable, double seconds) {
+            addCase(className(identifier), identifier.getDisplayName(), status, throwable, seconds);
+        }
+
+        private synchronized void addCase(String className, String methodName, String status, Throwable throwable,
+                                          double seconds) {
+            TestCaseResult testCase = TestCaseResult.builder()
+                    .className(className)
+                    .methodName(methodName)
+                    .status(status)
+                    .executionTime(seconds)
+                    .build();
+            if (throwable != null) {
+                if ("FAILED".equals(status)) {
+                    testCase.setFailureMessage(throwable.toString());
+                } else {
+                    testCase.setErrorMessage(throwable.toString());
+                }
+                testCase.setStackTrace(stackTrace(throwable));
+            }
+            casesByClass.computeIfAbsent(className, name -> new ArrayList<>()).add(testCase);
+        }
+
+        private String className(TestIdentifier identifier) {
+            Optional<TestIdentifier> current = Optional.of(identifier);
+            while (current.isPresent()) {
+                Optional<TestSource> source = current.get().getSource();
+                if (source.isPresent() && source.get() instanceof MethodSource method) {
+                    return method.getClassName();
+                }
+                if (source.isPresent() && source.get() instanceof ClassSource type) {
+                    return type.getClassName();
+                }
+                current = testPlan.getParent(current.get());
+            }
+            return identifier.getDisplayName();
+        }
+
+        synchronized List<TestSuiteResult> testSuites() {
+            List<TestSuiteResult> suites = new ArrayList<>();
+            casesByClass.forEach((className, cases) -> suites.add(TestSuiteResult.builder()
+                    .name(className)
+                    .totalTests(cases.size())
+                    .failures(count(cases, "FAILED"))
+                    .errors(count(cases, "ERROR"))
+                    .skipped(count(cases, "SKIPPED"))
+                    .executionTime(cases.stream().mapToDouble(TestCaseResult::getExecutionTime).sum())
+                    .testCases(List.copyOf(cases))
+                    .build()));
+            return suites;
+        }
+
+        private static int count(List<TestCaseResult> cases, String status) {
+            return (int) cases.stream().filter(testCase -> status.equals(testCase.getStatus())).count();
+        }
+
+        private static String stackTrace(Throwable throwable) {
+            StringWriter writer = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(writer));
+            return writer.toString();
+        }
+    }
+
+    /**
+     * The {@code main} runs of one request and the one in progress.
+     */
+    private static final class MainBatch {
+
+        private final String nonce;
+        private final List<InJvmMainRun> runs = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private final long started = System.currentTimeMillis();
+        private volatile MainRunIo current;
+
+        MainBatch(String nonce) {
+            this.nonce = nonce;
+        }
+    }
+
+    /**
+     * Parent of every submission class loader: the JDK, JUnit and the other libraries, but not the grader, so a
+     * submission cannot link against the classes that hold the protocol stream.
+     */
+    private static final class GraderClassFilter extends ClassLoader {
+
+        GraderClassFilter(ClassLoader parent) {
+            super("grader-filter", parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith(GRADER_PACKAGE)) {
+                throw new ClassNotFoundException(name);
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+
+    private static final class MainRunIo {
+
+        private final InputStream stdin;
+        private final CapturedStream stdout = new CapturedStream(MAX_MAIN_RUN_BYTES);
+        private final CapturedStream stderr = new CapturedStream(MAX_MAIN_RUN_BYTES);
+        private volatile long started = System.nanoTime();
+        private volatile Throwable failure;
+
+        MainRunIo(byte[] stdin) {
+            this.stdin = new ByteArrayInputStream(stdin);
+        }
+
+        InJvmMainRun toRun(String status) {
+            Throwable thrown = failure;
+            return InJvmMainRun.builder()
+                    .status(status)
+                    .output(stdout.toString())
+                    .errors(stderr.toString())
+                    .exception(thrown == null ? null : ResultCollector.stackTrace(thrown))
+                    .executionTime((System.nanoTime() - started) / 1_000_000)
+                    .truncatedBytes(stdout.truncatedBytes() + stderr.truncatedBytes())
+                    .build();
+        }
+    }
+
+    /**
+     * {@code System.in} during a {@code main} request: the input of the run in progress, or end of input.
+     */
+    private static final class MainRunInput extends InputStream {
+
+        private final MainBatch batch;
+
+        MainRunInput(MainBatch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public int read() throws IOException {
+            MainRunIo io = batch.current;
+            return io == null ? -1 : io.stdin.read();
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            MainRunIo io = batch.current;
+            return io == null ? -1 : io.stdin.read(bytes, offset, length);
+        }
+
+        @Override
+        public int available() throws IOException {
+            MainRunIo io = batch.current;
+            return io == null ? 0 : io.stdin.available();
+        }
+    }
+
+    /**
+     * {@code System.out} or {@code System.err} during a {@code main} request: the buffers of the run in progress;
+     * anything printed between runs is dropped.
+     */
+    private static final class MainRunOutput extends OutputStream {
+
+        private final MainBatch batch;
+        private final boolean stderr;
+
+        MainRunOutput(MainBatch batch, boolean stderr) {
+            this.batch = batch;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public void write(int b) {
+            MainRunIo io = batch.current;
+            if (io != null) {
+                (stderr ? io.stderr : io.stdout).write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            MainRunIo io = batch.current;
+            if (io != null) {
+                (stderr ? io.stderr : io.stdout).write(bytes, offset, length);
+            }
+        }
+    }
+
+    /**
+     * Keeps the first and last half of what a submission prints, up to a limit, and counts the rest.
+     */
+    private static final class CapturedStream extends OutputStream {
+
+        private final ProcessUtils.CappedOutput buffer;
+
+        CapturedStream() {
+            this(MAX_CAPTURED_BYTES);
+        }
+
+        CapturedStream(int limit) {
+            buffer = new ProcessUtils.CappedOutput(limit);
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.write(bytes, offset, length);
+        }
+
+        long truncatedBytes() {
+            return buffer.getTruncatedBytes();
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+}
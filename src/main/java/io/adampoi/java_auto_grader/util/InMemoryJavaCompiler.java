@@ -0,0 +1,200 @@
+package io.adampoi.java_auto_grader.util;
+
+import io.adampoi.java_auto_grader.model.type.CompilationError;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles sources held in memory into class files held in memory. The underlying file manager is reused
+ * between compilations, so the JDK and classpath indexes are only built once per JVM.
+ */
+public class InMemoryJavaCompiler {
+
+    private static final List<String> OPTIONS = List.of("-proc:none", "-g", "-parameters");
+
+    /**
+     * @param classes      compiled class files by binary name
+     * @param origins      the source path each class was compiled from, by binary name
+     * @param diagnostics  everything javac reported, errors and warnings
+     */
+    public record Result(boolean success, Map<String, byte[]> classes, Map<String, String> origins,
+                         List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    }
+
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager standardFileManager;
+
+    public InMemoryJavaCompiler() {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler available; the grader JVM must run on a JDK");
+        }
+        standardFileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param sources source text by project path, e.g. {@code src/main/java/workspace/Main.java}
+     */
+    public Result compile(Map<String, String> sources) {
+        List<JavaFileObject> compilationUnits = new ArrayList<>();
+        sources.forEach((path, content) -> compilationUnits.add(new SourceFile(path, content)));
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        MemoryFileManager fileManager = new MemoryFileManager(standardFileManager);
+        boolean success = compiler.getTask(null, fileManager, diagnostics, OPTIONS, null, compilationUnits).call();
+        return new Result(success, fileManager.classes(), fileManager.origins, diagnostics.getDiagnostics());
+    }
+
+    /**
+     * The project path of a diagnostic's source, or {@code null} if it did not come from one of the compiled sources.
+     */
+    public static String sourcePath(Diagnostic<? extends JavaFileObject> diagnostic) {
+        return diagnostic.getSource() instanceof SourceFile source ? source.path : null;
+    }
+
+    /**
+     * Converts an error diagnostic into the error model shown to students, with the offending source line and a
+     * caret under the reported column.
+     *
+     * @param sources         the sources that were compiled, by project path
+     * @param prependedLines  lines the grader added above the student's code, subtracted from the line number
+     */
+    public static CompilationError toCompilationError(Diagnostic<? extends JavaFileObject> diagnostic,
+                                                      Map<String, String> sources, int prependedLines) {
+        String path = sourcePath(diagnostic);
+        int line = (int) diagnostic.getLineNumber();
+        int column = (int) diagnostic.getColumnNumber();
+        String snippet = path == null ? null : sourceLine(sources.get(path), line);
+        String pointer = snippet == null || column < 1 ? null : " ".repeat(column - 1) + "^";
+        return CompilationError.builder()
+                .errorFile(path == null ? "unknown" : path.substring(path.lastIndexOf('/') + 1))
+                .line(line - prependedLines)
+                .column(Math.max(column, 0))
+                .errorMessage(diagnostic.getMessage(Locale.ROOT))
+                .codeSnippet(snippet)
+                .pointer(pointer)
+                .build();
+    }
+
+    private static String sourceLine(String source, int line) {
+        if (source == null || line < 1) {
+            return null;
+        }
+        String[] lines = source.split("\n", -1);
+        return line <= lines.length ? lines[line - 1].stripTrailing() : null;
+    }
+
+    /**
+     * Defines classes from a compilation result. A fresh loader per submission keeps static state and class
+     * identities from leaking between runs in the same JVM.
+     */
+    public static class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        public MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super("submission", parent);
+            this.classes = Map.copyOf(classes);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String path;
+        private final String content;
+
+        SourceFile(String path, String content) {
+            super(sourceUri(path), Kind.SOURCE);
+            this.path = path;
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+
+        private static URI sourceUri(String path) {
+            try {
+                return new URI("string", null, "/" + path, null);
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid source path: " + path, e);
+            }
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ClassFile> outputs = new ConcurrentHashMap<>();
+        private final Map<String, String> origins = new ConcurrentHashMap<>();
+
+        MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            ClassFile classFile = new ClassFile(className);
+            outputs.put(className, classFile);
+            if (sibling instanceof SourceFile source) {
+                origins.put(className, source.path);
+            }
+            return classFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The wrapped file manager is shared between compilations and stays open.
+        }
+
+        Map<String, byte[]> classes() {
+            Map<String, byte[]> classes = new ConcurrentHashMap<>();
+            outputs.forEach((name, classFile) -> classes.put(name, classFile.bytes.toByteArray()));
+            return classes;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.adampoi.java_auto_grader.util;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.Log;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * A javac plugin that runs inside sandbox builds, not in the grader. Every compiler error is appended as one
+ * JSON object per line to a sidecar file, besides being reported as usual:
+ * <pre>
+ * {"stage":"STUDENT_SOURCE","file":"/workspace/.../Main.java","line":8,"column":12,
+ *  "code":"compiler.err.expected","message":"';' expected","source":"        int x = 1"}
+ * </pre>
+ * Enabled with {@code -Xplugin:"GraderDiagnostics <sidecar file> <stage>"} and the compiled class on the
+ * processor path. It hooks javac's internal diagnostic chain, so the JVM running javac needs
+ * {@code --add-exports} for {@code com.sun.tools.javac.api} and {@code com.sun.tools.javac.util}; without them
+ * it only prints a warning and the build goes on without a sidecar.
+ * <p>
+ * Only uses the JDK: the class files are copied into sandbox projects as they are.
+ */
+public class JavacDiagnosticsPlugin implements Plugin {
+
+    public static final String NAME = "GraderDiagnostics";
+
+    /**
+     * Class files making up the plugin, as resources next to this class.
+     */
+    public static final String[] CLASS_FILES = {
+            "JavacDiagnosticsPlugin.class", "JavacDiagnosticsPlugin$SidecarHandler.class"};
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void init(JavacTask task, String... args) {
+        if (args.length != 2) {
+            System.err.println(NAME + ": expected a sidecar file and a stage, got " + args.length + " arguments");
+            return;
+        }
+        try {
+            Log log = Log.instance(((BasicJavacTask) task).getContext());
+            Path sidecar = Path.of(args[0]);
+            Files.createDirectories(sidecar.toAbsolutePath().getParent());
+            // Created even when there are no errors, so the grader can tell an empty sidecar from a missing one,
+            // but only once the handler can be installed.
+            Files.write(sidecar, new byte[0]);
+            new SidecarHandler(log, sidecar, args[1]);
+        } catch (IOException | RuntimeException | LinkageError e) {
+            // Never fail the build over diagnostics; the grader falls back to the build log.
+            System.err.println(NAME + ": disabled, " + e);
+        }
+    }
+
+    @Override
+    public boolean autoStart() {
+        return false;
+    }
+
+    private static final class SidecarHandler extends Log.DiagnosticHandler {
+
+        private final Path sidecar;
+        private final String stage;
+        private JavaFileObject lastSource;
+        private String[] lastSourceLines;
+
+        private SidecarHandler(Log log, Path sidecar, String stage) {
+            this.sidecar = sidecar;
+            this.stage = stage;
+            install(log);
+        }
+
+        @Override
+        public void report(JCDiagnostic diagnostic) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                write(diagnostic);
+            }
+            prev.report(diagnostic);
+        }
+
+        private void write(JCDiagnostic diagnostic) {
+            JavaFileObject source = diagnostic.getSource();
+            long line = diagnostic.getLineNumber();
+            StringBuilder json = new StringBuilder(256).append('{');
+            field(json, "stage", stage).append(',');
+            field(json, "file", source == null ? null : source.getName()).append(',');
+            json.append("\"line\":").append(line).append(',');
+            json.append("\"column\":").append(diagnostic.getColumnNumber()).append(',');
+            field(json, "code", diagnostic.getCode()).append(',');
+            field(json, "message", diagnostic.getMessage(Locale.ROOT)).append(',');
+            field(json, "source", sourceLine(source, line)).append("}\n");
+            try {
+                // Written per error, so the file is complete whenever javac stops, and the handle is not kept
+                // open in a compiler daemon that outlives the compilation.
+                Files.writeString(sidecar, json, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println(NAME + ": failed to write " + sidecar + ": " + e);
+            }
+        }
+
+        private String sourceLine(JavaFileObject source, long line) {
+            if (source == null || line < 1) {
+                return null;
+            }
+            if (source != lastSource) {
+                try {
+                    lastSourceLines = source.getCharContent(true).toString().split("\n", -1);
+                } catch (IOException e) {
+                    lastSourceLines = new String[0];
+                }
+                lastSource = source;
+            }
+            return line <= lastSourceLines.length ? lastSourceLines[(int) line - 1].stripTrailing() : null;
+        }
+
+        private static StringBuilder field(StringBuilder json, String name, String value) {
+            json.append('"').append(name).append("\":");
+            if (value == null) {
+                return json.append("null");
+            }
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                    }
+                }
+            }
+            return json.append('"');
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.adampoi.java_auto_grader.util;
+
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs sandbox commands as plain processes on the grader host, with the build tools installed there, so the
+ * grading pipeline can be load-tested and benchmarked without a Docker daemon. It isolates nothing beyond
+ * {@code ulimit}s and the command timeout: only use it with trusted submissions.
+ * <p>
+ * The shared {@code /workspace} mount becomes a local directory and every path under it in a command is
+ * rewritten. A container is just a name; all of them share that directory, as containers share the mount.
+ * Commands run in their own process group, which is killed on timeout or cancellation as in a container.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LocalProcessContainerManager implements DockerContainerManager {
+
+    private static final String SHELL = "sh";
+
+    private final SandboxContainerSpec containerSpec;
+    private final Path root;
+    private final List<String> ulimits;
+    private final Map<String, BuildTool> containers = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isContainerRunning(String containerName) {
+        return containers.containsKey(containerName);
+    }
+
+    @Override
+    public void startContainer(String containerName, BuildTool buildTool) throws IOException {
+        Files.createDirectories(localPath(containerSpec.userHome(buildTool)));
+        containers.put(containerName, buildTool);
+        log.info("Using local process sandbox {} rooted at {}", containerName, root);
+    }
+
+    @Override
+    public void uploadArchive(String containerName, String destination, TarArchive.WriterAction archive)
+            throws IOException {
+        Path target = localPath(destination);
+        if (!Files.isDirectory(target)) {
+            throw new RuntimeException("Failed to copy files to sandbox " + containerName + " at " + destination
+                    + ": no such directory");
+        }
+        TarArchive.extract(new ByteArrayInputStream(TarArchive.toBytes(archive)), target, 0);
+    }
+
+    @Override
+    public boolean readArchive(String containerName, String source, TarArchive.EntryConsumer consumer)
+            throws IOException {
+        Path path = localPath(source);
+        if (!Files.exists(path)) {
+            return false;
+        }
+        // Same entry names as docker cp: relative to the parent, so the root entry is the last path segment.
+        Path parent = path.getParent();
+        List<Path> entries;
+        try (Stream<Path> paths = Files.walk(path)) {
+            entries = paths.sorted().toList();
+        }
+        for (Path entry : entries) {
+            String name = parent.relativize(entry).toString().replace('\\', '/');
+            if (Files.isDirectory(entry)) {
+                consumer.accept(name + "/", InputStream.nullInputStream(), 0);
+            } else {
+                try (InputStream content = Files.newInputStream(entry)) {
+                    consumer.accept(name, content, Files.size(entry));
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isContainerUsable(String containerName, BuildTool buildTool)
+            throws IOException, InterruptedException {
+        if (!containers.containsKey(containerName) || !Files.isWritable(root)) {
+            return false;
+        }
+        String requiredCommand = containerSpec.requiredCommand(buildTool);
+        ProcessResult result = executeCommand(containerName,
+                "command -v " + requiredCommand + " >/dev/null 2>&1", 15);
+        if (!result.isSuccess()) {
+            log.warn("Local sandbox {} cannot run {}: not on the PATH", containerName, requiredCommand);
+        }
+        return result.isSuccess();
+    }
+
+    @Override
+    public ProcessResult executeCommand(String containerName, String command, int timeoutSeconds,
+                                        OutputListener listener) throws IOException, InterruptedException {
+        String tag = UUID.randomUUID().toString();
+        ProcessBuilder builder = new ProcessBuilder(containerSpec.trackedCommand(limits() + rewrite(command), tag));
+        builder.directory(root.toFile());
+        BuildTool buildTool = containers.get(containerName);
+        if (buildTool != null) {
+            for (String variable : containerSpec.environment(buildTool)) {
+                int separator = variable.indexOf('=');
+                builder.environment().put(variable.substring(0, separator),
+                        rewrite(variable.substring(separator + 1)));
+            }
+        }
+        Process process = builder.start();
+        ProcessResult result;
+        try (CancellationToken.Registration ignored = CancellationToken.onCurrentCancel(() -> killCommand(tag))) {
+            result = ProcessUtils.capture(process, timeoutSeconds, containerSpec.getMaxOutputBytes(), listener);
+        } catch (InterruptedException | RuntimeException e) {
+            // The shell is only the session leader; the build it started would keep running.
+            process.destroyForcibly();
+            killCommand(tag);
+            throw e;
+        }
+        CancellationToken.throwIfCurrentCancelled();
+        return result;
+    }
+
+    @Override
+    public void cleanupWorkspace(String containerName, String workspace) {
+        try {
+            executeCommand(containerName, "rm -rf " + workspace, 60);
+            log.info("Cleaned up workspace: {}", workspace);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while cleaning workspace: {}", workspace, e);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to cleanup workspace: {}", workspace, e);
+        }
+    }
+
+    private void killCommand(String tag) {
+        try {
+            Process kill = new ProcessBuilder(SHELL, "-c", containerSpec.killCommand(tag)).start();
+            if (!kill.waitFor(30, TimeUnit.SECONDS)) {
+                kill.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Failed to kill local command {}", tag, e);
+        }
+    }
+
+    /**
+     * One {@code ulimit} per configured option; dash only accepts a single limit per call. CPU time is left
+     * alone, since a Gradle daemon started by a command inherits the limits and outlives it.
+     */
+    private String limits() {
+        StringBuilder limits = new StringBuilder();
+        for (String limit : ulimits) {
+            if (!limit.isBlank()) {
+                limits.append("ulimit ").append(limit.strip()).append(" && ");
+            }
+        }
+        return limits.toString();
+    }
+
+    private String rewrite(String value) {
+        return value.replace(SandboxContainerSpec.WORKSPACE_ROOT, root.toString());
+    }
+
+    private Path localPath(String path) {
+        return Path.of(rewrite(path));
+    }
+}
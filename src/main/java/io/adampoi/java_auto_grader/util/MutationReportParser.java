@@ -0,0 +1,110 @@
+package io.adampoi.java_auto_grader.util;
+
+import io.adampoi.java_auto_grader.model.type.MutantResult;
+import io.adampoi.java_auto_grader.model.type.MutationTestResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads PIT's {@code mutations.xml}. Only mutants the tests did not detect are listed individually; the rest
+ * are counted.
+ */
+@Component
+@Slf4j
+public class MutationReportParser {
+
+    public Optional<MutationTestResult> parseMutationReport(InputStream in, String reportName) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            factory.setXIncludeAware(false);
+            factory.setExpandEntityReferences(false);
+
+            Document document = factory.newDocumentBuilder().parse(in);
+            return Optional.of(parseMutations(document));
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            log.warn("Failed to parse mutation report: {}", reportName, e);
+            return Optional.empty();
+        }
+    }
+
+    private MutationTestResult parseMutations(Document document) {
+        NodeList mutations = document.getElementsByTagName("mutation");
+        int detected = 0;
+        int survived = 0;
+        int noCoverage = 0;
+        List<MutantResult> undetected = new ArrayList<>();
+
+        for (int i = 0; i < mutations.getLength(); i++) {
+            Element mutation = (Element) mutations.item(i);
+            String status = mutation.getAttribute("status");
+            if (Boolean.parseBoolean(mutation.getAttribute("detected"))) {
+                detected++;
+                continue;
+            }
+            if ("SURVIVED".equals(status)) {
+                survived++;
+            } else if ("NO_COVERAGE".equals(status)) {
+                noCoverage++;
+            }
+            undetected.add(MutantResult.builder()
+                    .sourceFile(childText(mutation, "sourceFile"))
+                    .mutatedClass(childText(mutation, "mutatedClass"))
+                    .mutatedMethod(childText(mutation, "mutatedMethod"))
+                    .lineNumber(parseInt(childText(mutation, "lineNumber")))
+                    .mutator(childText(mutation, "mutator"))
+                    .description(childText(mutation, "description"))
+                    .status(status)
+                    .killingTest(childText(mutation, "killingTest"))
+                    .build());
+        }
+
+        int total = mutations.getLength();
+        return MutationTestResult.builder()
+                .totalMutations(total)
+                .detected(detected)
+                .survived(survived)
+                .noCoverage(noCoverage)
+                .mutationScore(total == 0 ? 0.0 : detected * 100.0 / total)
+                .undetectedMutants(undetected)
+                .build();
+    }
+
+    private String childText(Element parent, String tagName) {
+        NodeList children = parent.getElementsByTagName(tagName);
+        if (children.getLength() == 0) {
+            return null;
+        }
+        String text = children.item(0).getTextContent();
+        return text == null || text.isBlank() ? null : text.strip();
+    }
+
+    private int parseInt(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -1,15 +1,143 @@
 package io.adampoi.java_auto_grader.util;
 
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 public class ProcessUtils {
 
+    /**
+     * Output cap for the short-lived helper commands read through {@link #readOutput} and {@link #readErrors}.
+     */
+    private static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
     public static String readOutput(Process process) throws IOException {
-        return new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        return read(process.getInputStream(), DEFAULT_MAX_BYTES);
     }
 
     public static String readErrors(Process process) throws IOException {
-        return new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+        return read(process.getErrorStream(), DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Waits for a process while draining stdout and stderr on separate threads, so a chatty process never blocks
+     * on a full pipe. Each stream keeps at most {@code maxBytesPerStream} bytes: the beginning and the end of the
+     * output, which is where build tools print what went wrong.
+     *
+     * @param listener receives every chunk as it is read, or {@code null}
+     * @throws RuntimeException if the process does not exit within {@code timeoutSeconds}
+     */
+    public static ProcessResult capture(Process process, int timeoutSeconds, int maxBytesPerStream,
+                                        DockerContainerManager.OutputListener listener)
+            throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        CappedOutput output = new CappedOutput(maxBytesPerStream);
+        CappedOutput errors = new CappedOutput(maxBytesPerStream);
+        Thread outputPump = pump(process.getInputStream(), output, false, listener);
+        Thread errorPump = pump(process.getErrorStream(), errors, true, listener);
+
+        boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+        long executionTime = System.currentTimeMillis() - startTime;
+        if (!finished) {
+            process.destroyForcibly();
+            throw new RuntimeException("Command timed out after " + timeoutSeconds + " seconds (executed for " + executionTime + "ms)");
+        }
+
+        outputPump.join();
+        errorPump.join();
+        return new ProcessResult(process.exitValue(), output.toString(), errors.toString(), executionTime,
+                output.getTruncatedBytes() + errors.getTruncatedBytes());
+    }
+
+    private static String read(InputStream in, int maxBytes) throws IOException {
+        CappedOutput output = new CappedOutput(maxBytes);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toString();
+    }
+
+    private static Thread pump(InputStream in, CappedOutput sink, boolean stderr,
+                               DockerContainerManager.OutputListener listener) {
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[8192];
+            try (in) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    sink.write(buffer, 0, read);
+                    if (listener != null) {
+                        listener.onOutput(stderr, buffer, read);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Stopped reading process output", e);
+            }
+        }, "process-output-" + (stderr ? "stderr" : "stdout"));
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Byte sink that keeps the first half of its capacity as written and the second half as a ring buffer of the
+     * most recent bytes. Everything in between is dropped and only counted, so memory stays at the cap no matter
+     * how much a process prints.
+     */
+    public static final class CappedOutput {
+
+        private final byte[] head;
+        private final byte[] tail;
+        private int headLength;
+        private int tailStart;
+        private int tailLength;
+        private long truncatedBytes;
+
+        public CappedOutput(int maxBytes) {
+            int capacity = Math.max(2, maxBytes);
+            this.head = new byte[capacity / 2];
+            this.tail = new byte[capacity - capacity / 2];
+        }
+
+        public synchronized void write(byte[] data, int offset, int length) {
+            int toHead = Math.min(length, head.length - headLength);
+            System.arraycopy(data, offset, head, headLength, toHead);
+            headLength += toHead;
+            for (int i = offset + toHead; i < offset + length; i++) {
+                if (tailLength == tail.length) {
+                    tail[tailStart] = data[i];
+                    tailStart = (tailStart + 1) % tail.length;
+                    truncatedBytes++;
+                } else {
+                    tail[(tailStart + tailLength) % tail.length] = data[i];
+                    tailLength++;
+                }
+            }
+        }
+
+        public synchronized long getTruncatedBytes() {
+            return truncatedBytes;
+        }
+
+        @Override
+        public synchronized String toString() {
+            byte[] ordered = new byte[headLength + tailLength];
+            System.arraycopy(head, 0, ordered, 0, headLength);
+            int firstPart = Math.min(tailLength, tail.length - tailStart);
+            System.arraycopy(tail, tailStart, ordered, headLength, firstPart);
+            System.arraycopy(tail, 0, ordered, headLength + firstPart, tailLength - firstPart);
+            if (truncatedBytes == 0) {
+                return new String(ordered, StandardCharsets.UTF_8);
+            }
+            return new String(ordered, 0, headLength, StandardCharsets.UTF_8)
+                    + "\n... [" + truncatedBytes + " bytes of output truncated] ...\n"
+                    + new String(ordered, headLength, tailLength, StandardCharsets.UTF_8);
+        }
     }
 }
@@ -0,0 +1,132 @@
+package io.adampoi.java_auto_grader.util;
+
+import io.adampoi.java_auto_grader.model.enums.BuildTool;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Image, resource limits and environment used when (re)creating sandbox containers.
+ * Shared by every {@link DockerContainerManager} backend so they start identical containers.
+ */
+@Component
+@Getter
+public class SandboxContainerSpec {
+
+    public static final String WORKSPACE_ROOT = "/workspace";
+    private static final String GRADLE_USER_HOME = WORKSPACE_ROOT + "/.gradle";
+    private static final String MAVEN_USER_HOME = WORKSPACE_ROOT + "/.m2";
+    private static final String PID_DIRECTORY = "/tmp/grader-commands";
+    private static final int KILL_GRACE_SECONDS = 2;
+
+    @Value("${grader.sandbox.container-memory:3g}")
+    private String containerMemory;
+
+    @Value("${grader.sandbox.container-cpus:4}")
+    private String containerCpus;
+
+    @Value("${grader.sandbox.workspace-host-path:/tmp}")
+    private String workspaceHostPath;
+
+    @Value("${grader.sandbox.gradle-image:gradle}")
+    private String gradleImage;
+
+    @Value("${grader.sandbox.maven-image:maven-sandbox}")
+    private String mavenImage;
+
+    /**
+     * Captured bytes per output stream of a sandbox command; the middle of longer output is dropped.
+     */
+    @Value("${grader.sandbox.max-output-bytes:1048576}")
+    private int maxOutputBytes;
+
+    public String image(BuildTool buildTool) {
+        return buildTool == BuildTool.GRADLE ? gradleImage : mavenImage;
+    }
+
+    public String userHome(BuildTool buildTool) {
+        return buildTool == BuildTool.GRADLE ? GRADLE_USER_HOME : MAVEN_USER_HOME;
+    }
+
+    public String requiredCommand(BuildTool buildTool) {
+        return switch (buildTool) {
+            case GRADLE -> "gradle";
+            case MAVEN -> "mvn";
+            case MAVEN_DAEMON -> "mvnd";
+        };
+    }
+
+    public String workspaceBind() {
+        return workspaceHostPath + ":" + WORKSPACE_ROOT;
+    }
+
+    public List<String> environment(BuildTool buildTool) {
+        return List.of(
+                "GRADLE_OPTS=-Xmx2g -XX:+UseG1GC -XX:MaxGCPauseMillis=200",
+                "GRADLE_USER_HOME=" + userHome(buildTool),
+                "JAVA_OPTS=-Xmx2g"
+        );
+    }
+
+    public List<String> keepAliveCommand() {
+        return List.of("tail", "-f", "/dev/null");
+    }
+
+    /**
+     * Runs {@code command} as the leader of a new session and records its id under {@code tag}, so
+     * {@link #killCommand} can later take down everything it started. Killing only the {@code docker exec}
+     * client would leave the build running inside the container.
+     */
+    public List<String> trackedCommand(String command, String tag) {
+        String pidFile = pidFile(tag);
+        return List.of("setsid", "-w", "sh", "-c",
+                "mkdir -p " + PID_DIRECTORY + " && echo $$ > " + pidFile
+                        + "; sh -c \"$1\"; status=$?; rm -f " + pidFile + "; exit $status",
+                "sh", command);
+    }
+
+    /**
+     * Terminates the process group of a command started through {@link #trackedCommand}, then kills whatever
+     * ignored the signal. Does nothing if the command has already finished.
+     */
+    public String killCommand(String tag) {
+        String pidFile = pidFile(tag);
+        return "test -f " + pidFile + " || exit 0; pgid=$(cat " + pidFile + ");"
+                + " kill -TERM -$pgid 2>/dev/null && sleep " + KILL_GRACE_SECONDS
+                + " && kill -KILL -$pgid 2>/dev/null; rm -f " + pidFile + "; exit 0";
+    }
+
+    public long memoryBytes() {
+        return parseByteSize(containerMemory);
+    }
+
+    public long nanoCpus() {
+        return Math.round(Double.parseDouble(containerCpus) * 1_000_000_000L);
+    }
+
+    public long shmSizeBytes() {
+        return parseByteSize("1g");
+    }
+
+    private static String pidFile(String tag) {
+        return PID_DIRECTORY + "/" + tag + ".pid";
+    }
+
+    static long parseByteSize(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        long multiplier = 1;
+        char unit = normalized.charAt(normalized.length() - 1);
+        switch (unit) {
+            case 'k' -> multiplier = 1024L;
+            case 'm' -> multiplier = 1024L * 1024;
+            case 'g' -> multiplier = 1024L * 1024 * 1024;
+            default -> {
+                return Long.parseLong(normalized);
+            }
+        }
+        return Long.parseLong(normalized.substring(0, normalized.length() - 1)) * multiplier;
+    }
+}
@@ -0,0 +1,197 @@
+package io.adampoi.java_auto_grader.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the input/output cases of a rubric grade inside a sandbox, not in the grader. Every input file
+ * {@code <input dir>/0.in}, {@code 1.in}, ... is handed to a fresh {@code java} process running the compiled
+ * submission, and the outcome is appended as one JSON object per line to the result file, with the fields of
+ * {@link io.adampoi.java_auto_grader.model.type.InJvmMainRun}:
+ * <pre>
+ * java SandboxMainRunner &lt;classes&gt; &lt;main class&gt; stdin|args &lt;timeout ms&gt; &lt;max output bytes&gt;
+ *     &lt;input dir&gt; &lt;result file&gt;
+ * </pre>
+ * A line is written as soon as its case ends, so the file holds every finished case even if the runner is stopped.
+ * <p>
+ * Only uses the JDK: the class files are copied into sandbox workspaces as they are.
+ */
+public final class SandboxMainRunner {
+
+    /**
+     * Class files making up the runner, as resources next to this class.
+     */
+    public static final String[] CLASS_FILES = {"SandboxMainRunner.class", "SandboxMainRunner$Capture.class"};
+
+    private static final String UNCAUGHT_EXCEPTION = "Exception in thread \"main\" ";
+    private static final String LAUNCHER_ERROR = "Error: ";
+    private static final long CAPTURE_DRAIN_MS = 1000;
+
+    private SandboxMainRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 7) {
+            System.err.println("SandboxMainRunner: expected 7 arguments, got " + args.length);
+            System.exit(2);
+        }
+        String classes = args[0];
+        String mainClass = args[1];
+        boolean inputsAsArguments = "args".equals(args[2]);
+        long timeoutMs = Long.parseLong(args[3]);
+        int maxOutputBytes = Integer.parseInt(args[4]);
+        Path inputDir = Path.of(args[5]);
+        Path resultFile = Path.of(args[6]);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        Files.write(resultFile, new byte[0]);
+        for (int index = 0; Files.exists(inputDir.resolve(index + ".in")); index++) {
+            String input = Files.readString(inputDir.resolve(index + ".in"), StandardCharsets.UTF_8);
+            List<String> command = new ArrayList<>(List.of(java, "-cp", classes, mainClass));
+            if (inputsAsArguments && !input.isBlank()) {
+                command.addAll(List.of(input.trim().split("\\s+")));
+            }
+            String json = run(command, inputsAsArguments ? "" : input, timeoutMs, maxOutputBytes);
+            Files.writeString(resultFile, json + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static String run(List<String> command, String input, long timeoutMs, int maxOutputBytes)
+            throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).start();
+        Capture output = Capture.start(process.getInputStream(), maxOutputBytes);
+        Capture errors = Capture.start(process.getErrorStream(), maxOutputBytes);
+        try {
+            process.getOutputStream().write(input.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // The program ended or closed stdin without reading all of its input.
+        } finally {
+            try {
+                process.getOutputStream().close();
+            } catch (IOException e) {
+                // Same as above.
+            }
+        }
+        boolean finished = process.waitFor(Math.max(1, timeoutMs), TimeUnit.MILLISECONDS);
+        long executionTime = (System.nanoTime() - started) / 1_000_000;
+        if (!finished) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+            process.waitFor();
+        }
+        output.join(CAPTURE_DRAIN_MS);
+        errors.join(CAPTURE_DRAIN_MS);
+
+        String stderr = errors.text();
+        String exception = finished && process.exitValue() != 0 ? failure(stderr) : null;
+        String status = !finished ? "TIMEOUT"
+                : exception != null ? "EXCEPTION"
+                : process.exitValue() == 0 ? "COMPLETED"
+                : "EXITED";
+        StringBuilder json = new StringBuilder(256).append('{');
+        field(json, "status", status).append(',');
+        field(json, "output", output.text()).append(',');
+        field(json, "errors", stderr).append(',');
+        field(json, "exception", exception).append(',');
+        json.append("\"executionTime\":").append(executionTime).append(',');
+        json.append("\"truncatedBytes\":").append(output.dropped + errors.dropped);
+        return json.append('}').toString();
+    }
+
+    /**
+     * The uncaught exception, or the launcher's complaint about a missing main class or method; {@code null}
+     * if the program ended through {@code System.exit}.
+     */
+    private static String failure(String stderr) {
+        for (String line : stderr.split("\n")) {
+            if (line.startsWith(UNCAUGHT_EXCEPTION)) {
+                return line.substring(UNCAUGHT_EXCEPTION.length()).stripTrailing();
+            }
+        }
+        return stderr.startsWith(LAUNCHER_ERROR) ? stderr.lines().findFirst().orElse("").strip() : null;
+    }
+
+    private static StringBuilder field(StringBuilder json, String name, String value) {
+        json.append('"').append(name).append("\":");
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Keeps the first bytes of a stream and counts the rest, reading to the end so the program never blocks on a
+     * full pipe.
+     */
+    private static final class Capture extends Thread {
+
+        private final InputStream in;
+        private final int limit;
+        private final ByteArrayOutputStream kept = new ByteArrayOutputStream();
+        private volatile long dropped;
+
+        private Capture(InputStream in, int limit) {
+            super("capture");
+            this.in = in;
+            this.limit = limit;
+            setDaemon(true);
+        }
+
+        static Capture start(InputStream in, int limit) {
+            Capture capture = new Capture(in, limit);
+            capture.start();
+            return capture;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[8192];
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    int keep;
+                    synchronized (kept) {
+                        keep = Math.max(0, Math.min(read, limit - kept.size()));
+                        kept.write(buffer, 0, keep);
+                    }
+                    dropped += read - keep;
+                }
+            } catch (IOException e) {
+                // The process was killed; what was read so far is kept.
+            }
+        }
+
+        String text() {
+            synchronized (kept) {
+                return kept.toString(StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
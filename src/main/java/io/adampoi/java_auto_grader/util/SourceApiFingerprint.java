@@ -0,0 +1,167 @@
+package io.adampoi.java_auto_grader.util;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+
+import javax.lang.model.element.Modifier;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Hash of what compiled test classes depend on in the student's sources: every type and non-private member
+ * signature, and the initializers of constants. javac copies the value of a {@code static final} constant into
+ * the classes that use it, so tests compiled against one student's sources only fit another student whose
+ * sources have the same fingerprint. Method bodies and private members do not count.
+ * <p>
+ * Sources are only parsed, never attributed, so this takes a few milliseconds and does not need the classpath.
+ */
+public final class SourceApiFingerprint {
+
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+
+    private SourceApiFingerprint() {
+    }
+
+    /**
+     * @param sources source text by project path
+     * @return the fingerprint, or empty if the sources do not parse or no compiler is available
+     */
+    public static Optional<String> of(Map<String, String> sources) {
+        if (COMPILER == null) {
+            return Optional.empty();
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> signatures = new ArrayList<>();
+        try {
+            List<JavaFileObject> compilationUnits = new ArrayList<>();
+            new TreeMap<>(sources).forEach((path, content) -> compilationUnits.add(new Source(path, content)));
+            JavacTask task = (JavacTask) COMPILER.getTask(null, null, diagnostics, List.of("-proc:none"), null,
+                    compilationUnits);
+            for (CompilationUnitTree unit : task.parse()) {
+                signatures.add("package " + unit.getPackageName());
+                for (Tree declaration : unit.getTypeDecls()) {
+                    if (declaration instanceof ClassTree type) {
+                        addType(signatures, type, "");
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+        if (diagnostics.getDiagnostics().stream()
+                .anyMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)) {
+            return Optional.empty();
+        }
+        MessageDigest digest = sha256();
+        for (String signature : signatures) {
+            digest.update(signature.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return Optional.of(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static void addType(List<String> signatures, ClassTree type, String outer) {
+        String name = outer + type.getSimpleName();
+        signatures.add(modifiers(type.getModifiers()) + type.getKind() + " " + name + type.getTypeParameters()
+                + " extends " + type.getExtendsClause() + " implements " + type.getImplementsClause()
+                + " permits " + type.getPermitsClause());
+        boolean isInterface = type.getKind() == Tree.Kind.INTERFACE || type.getKind() == Tree.Kind.ANNOTATION_TYPE;
+        for (Tree member : type.getMembers()) {
+            if (member instanceof ClassTree nested) {
+                if (!isPrivate(nested.getModifiers())) {
+                    addType(signatures, nested, name + "$");
+                }
+            } else if (member instanceof MethodTree method) {
+                if (!isPrivate(method.getModifiers())) {
+                    signatures.add(name + "." + modifiers(method.getModifiers()) + method.getTypeParameters() + " "
+                            + method.getReturnType() + " " + method.getName() + parameters(method)
+                            + " throws " + method.getThrows() + " default " + method.getDefaultValue());
+                }
+            } else if (member instanceof VariableTree field
+                    && (!isPrivate(field.getModifiers()) || isRecordComponent(type, field))) {
+                Set<Modifier> flags = field.getModifiers().getFlags();
+                boolean constant = isInterface
+                        || flags.contains(Modifier.STATIC) && flags.contains(Modifier.FINAL);
+                // Enum constants are fields too: their names and order are part of the API.
+                signatures.add(name + "." + modifiers(field.getModifiers()) + field.getType() + " " + field.getName()
+                        + (constant && field.getInitializer() != null ? " = " + field.getInitializer() : ""));
+            }
+        }
+    }
+
+    private static String parameters(MethodTree method) {
+        List<String> types = new ArrayList<>();
+        for (VariableTree parameter : method.getParameters()) {
+            types.add(String.valueOf(parameter.getType()));
+        }
+        return "(" + String.join(",", types) + ")";
+    }
+
+    private static String modifiers(ModifiersTree modifiers) {
+        return modifiers.getFlags() + " " + modifiers.getAnnotations() + " ";
+    }
+
+    /**
+     * Record components are parsed as private fields, but make up the record's accessors and constructor.
+     */
+    private static boolean isRecordComponent(ClassTree type, VariableTree field) {
+        return type.getKind() == Tree.Kind.RECORD && !field.getModifiers().getFlags().contains(Modifier.STATIC);
+    }
+
+    private static boolean isPrivate(ModifiersTree modifiers) {
+        return modifiers.getFlags().contains(Modifier.PRIVATE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+
+        private final String content;
+
+        Source(String path, String content) {
+            super(uri(path), Kind.SOURCE);
+            this.content = content == null ? "" : content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+
+        private static URI uri(String path) {
+            try {
+                return new URI("string", null, "/" + path, null);
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid source path: " + path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package io.adampoi.java_auto_grader.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Minimal POSIX ustar reader/writer used to move workspaces in and out of sandbox containers
+ * without going through the host filesystem. Long names are written as PAX extended headers;
+ * both PAX and GNU long-name entries are understood when reading.
+ */
+public final class TarArchive {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_DIRECTORY = '5';
+    private static final byte TYPE_PAX_HEADER = 'x';
+    private static final byte TYPE_GNU_LONG_NAME = 'L';
+
+    private TarArchive() {
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(String name, InputStream content, long size) throws IOException;
+    }
+
+    /**
+     * Streams the contents of {@code directory} (not the directory itself) as a tar archive.
+     */
+    public static void writeDirectory(Path directory, OutputStream out) throws IOException {
+        Writer writer = new Writer(out);
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<Path> entries = paths.filter(path -> !path.equals(directory)).sorted().toList();
+            for (Path path : entries) {
+                String name = directory.relativize(path).toString().replace('\\', '/');
+                if (Files.isDirectory(path)) {
+                    writer.addDirectory(name);
+                } else {
+                    writer.addFile(name, Files.readAllBytes(path), Files.isExecutable(path));
+                }
+            }
+        }
+        writer.finish();
+    }
+
+    /**
+     * Extracts a tar stream into {@code destination}, dropping the first {@code stripComponents}
+     * path segments the way {@code tar --strip-components} does.
+     */
+    public static void extract(InputStream in, Path destination, int stripComponents) throws IOException {
+        Path root = destination.toAbsolutePath().normalize();
+        read(in, (name, content, size) -> {
+            String stripped = stripComponents(name, stripComponents);
+            if (stripped.isEmpty()) {
+                return;
+            }
+            Path target = root.resolve(stripped).normalize();
+            if (!target.startsWith(root)) {
+                throw new IOException("Tar entry escapes destination: " + name);
+            }
+            if (name.endsWith("/")) {
+                Files.createDirectories(target);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.copy(content, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
+        });
+    }
+
+    /**
+     * Reads every entry of a tar stream. Directory names are reported with a trailing slash and an
+     * empty content stream; the content stream is only valid for the duration of the callback.
+     */
+    public static void read(InputStream in, EntryConsumer consumer) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        String pendingLongName = null;
+        while (readBlock(in, header)) {
+            if (isZeroBlock(header)) {
+                return;
+            }
+            String name = pendingLongName != null ? pendingLongName : headerName(header);
+            pendingLongName = null;
+            long size = parseOctal(header, 124, 12);
+            byte type = header[156];
+
+            if (type == TYPE_PAX_HEADER || type == TYPE_GNU_LONG_NAME) {
+                byte[] data = readFully(in, size);
+                skipPadding(in, size);
+                pendingLongName = type == TYPE_GNU_LONG_NAME
+                        ? trimNul(new String(data, StandardCharsets.UTF_8))
+                        : paxPath(data);
+                continue;
+            }
+
+            if (type == TYPE_DIRECTORY) {
+                consumer.accept(name.endsWith("/") ? name : name + "/", InputStream.nullInputStream(), 0);
+            } else if (type == TYPE_FILE || type == 0) {
+                BoundedInputStream content = new BoundedInputStream(in, size);
+                consumer.accept(name, content, size);
+                content.skipRemaining();
+            } else {
+                in.skipNBytes(size);
+            }
+            skipPadding(in, size);
+        }
+    }
+
+    private static String stripComponents(String name, int count) {
+        String result = name;
+        for (int i = 0; i < count; i++) {
+            int slash = result.indexOf('/');
+            if (slash < 0) {
+                return "";
+            }
+            result = result.substring(slash + 1);
+        }
+        return result;
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int read = in.readNBytes(block, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header");
+        }
+        return true;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String headerName(byte[] header) {
+        String name = cString(header, 0, NAME_LENGTH);
+        String prefix = cString(header, 345, 155);
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String paxPath(byte[] data) {
+        String records = new String(data, StandardCharsets.UTF_8);
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            if (space > 0 && record.startsWith("path=", space + 1)) {
+                return record.substring(space + 1 + "path=".length());
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readFully(InputStream in, long size) throws IOException {
+        byte[] data = in.readNBytes((int) size);
+        if (data.length < size) {
+            throw new EOFException("Truncated tar entry");
+        }
+        return data;
+    }
+
+    private static void skipPadding(InputStream in, long size) throws IOException {
+        long remainder = size % BLOCK_SIZE;
+        if (remainder != 0) {
+            in.skipNBytes(BLOCK_SIZE - remainder);
+        }
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private static String cString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trimNul(String value) {
+        int nul = value.indexOf('\0');
+        return nul >= 0 ? value.substring(0, nul) : value;
+    }
+
+    /**
+     * Incremental tar writer. Callers must invoke {@link #finish()} to write the end-of-archive marker;
+     * the underlying stream is flushed but not closed.
+     */
+    public static class Writer {
+        private final OutputStream out;
+
+        public Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        public void addDirectory(String name) throws IOException {
+            String directoryName = name.endsWith("/") ? name : name + "/";
+            writeHeader(directoryName, 0, 0755, TYPE_DIRECTORY);
+        }
+
+        public void addFile(String name, byte[] content, boolean executable) throws IOException {
+            writeHeader(name, content.length, executable ? 0755 : 0644, TYPE_FILE);
+            out.write(content);
+            writePadding(content.length);
+        }
+
+        public void addFile(String name, String content) throws IOException {
+            addFile(name, content.getBytes(StandardCharsets.UTF_8), false);
+        }
+
+        public void finish() throws IOException {
+            out.write(new byte[BLOCK_SIZE * 2]);
+            out.flush();
+        }
+
+        private void writeHeader(String name, long size, int mode, byte type) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            if (nameBytes.length > NAME_LENGTH) {
+                writePaxPath(name);
+                nameBytes = java.util.Arrays.copyOf(nameBytes, NAME_LENGTH);
+            }
+            byte[] header = new byte[BLOCK_SIZE];
+            System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+            writeOctal(header, 100, 8, mode);
+            writeOctal(header, 108, 8, 0);
+            writeOctal(header, 116, 8, 0);
+            writeOctal(header, 124, 12, size);
+            writeOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+            header[156] = type;
+            System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+            header[263] = '0';
+            header[264] = '0';
+            writeChecksum(header);
+            out.write(header);
+        }
+
+        private void writePaxPath(String name) throws IOException {
+            String record = " path=" + name + "\n";
+            int length = record.getBytes(StandardCharsets.UTF_8).length;
+            int total = length + Integer.toString(length).length();
+            if (Integer.toString(total).length() != Integer.toString(length).length()) {
+                total++;
+            }
+            byte[] data = (total + record).getBytes(StandardCharsets.UTF_8);
+            writeHeader("././@PaxHeader", data.length, 0644, TYPE_PAX_HEADER);
+            out.write(data);
+            writePadding(data.length);
+        }
+
+        private void writePadding(long size) throws IOException {
+            long remainder = size % BLOCK_SIZE;
+            if (remainder != 0) {
+                out.write(new byte[(int) (BLOCK_SIZE - remainder)]);
+            }
+        }
+
+        private static void writeOctal(byte[] header, int offset, int length, long value) {
+            String octal = Long.toOctalString(value);
+            int digits = length - 1;
+            String padded = "0".repeat(Math.max(0, digits - octal.length())) + octal;
+            byte[] bytes = padded.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, digits));
+            header[offset + length - 1] = 0;
+        }
+
+        private static void writeChecksum(byte[] header) {
+            for (int i = 148; i < 156; i++) {
+                header[i] = ' ';
+            }
+            long sum = 0;
+            for (byte b : header) {
+                sum += b & 0xff;
+            }
+            String octal = String.format("%06o", sum);
+            System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, 148, 6);
+            header[154] = 0;
+            header[155] = ' ';
+        }
+    }
+
+    /**
+     * Writes a complete archive, including the end-of-archive marker, straight to {@code out}.
+     */
+    public static void write(OutputStream out, WriterAction action) throws IOException {
+        Writer writer = new Writer(out);
+        action.write(writer);
+        writer.finish();
+    }
+
+    /**
+     * Convenience for building a whole archive in memory.
+     */
+    public static byte[] toBytes(WriterAction action) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        write(buffer, action);
+        return buffer.toByteArray();
+    }
+
+    @FunctionalInterface
+    public interface WriterAction {
+        void write(Writer writer) throws IOException;
+    }
+
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long size) {
+            this.in = in;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The archive stream is owned by the reader.
+        }
+
+        void skipRemaining() throws IOException {
+            in.skipNBytes(remaining);
+            remaining = 0;
+        }
+    }
+}
@@ -3,29 +3,43 @@ package io.adampoi.java_auto_grader.util;
 import io.adampoi.java_auto_grader.model.type.TestCaseResult;
 import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Stream;
 
+/**
+ * Reads JUnit XML reports as written by Gradle and Surefire in a single streaming pass. Nothing but the
+ * fields of {@link TestSuiteResult} and {@link TestCaseResult} is kept: suite-level {@code system-out} and
+ * {@code system-err}, often megabytes of build chatter, are skipped without being turned into strings, and
+ * stack traces and per-test output are cut to {@code grader.reports.max-stack-trace-chars} and
+ * {@code grader.reports.max-output-chars}.
+ */
 @Component
 @Slf4j
 public class TestReportParser {
 
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    @Value("${grader.reports.max-stack-trace-chars:8000}")
+    private int maxStackTraceChars = 8000;
+
+    @Value("${grader.reports.max-output-chars:4000}")
+    private int maxOutputChars = 4000;
+
     public List<TestSuiteResult> parseTestReports(Path testResultsDir) {
         if (!Files.exists(testResultsDir)) {
             log.warn("Test results directory not found: {}", testResultsDir);
@@ -46,98 +60,219 @@ public class TestReportParser {
     }
 
     private Optional<TestSuiteResult> parseXmlReport(Path xmlPath) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-            factory.setXIncludeAware(false);
-            factory.setExpandEntityReferences(false);
-
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(xmlPath.toFile());
-
-            return Optional.of(parseTestSuite(document.getDocumentElement(), document));
-        } catch (ParserConfigurationException | SAXException | IOException e) {
-            log.warn("Failed to parse XML report: {}", xmlPath, e);
+        try (InputStream in = Files.newInputStream(xmlPath)) {
+            return parseTestReport(in, xmlPath.toString());
+        } catch (IOException e) {
+            log.warn("Failed to read XML report: {}", xmlPath, e);
             return Optional.empty();
         }
     }
 
-    private TestSuiteResult parseTestSuite(Element testSuite, Document document) {
-        TestSuiteResult suiteResult = new TestSuiteResult();
-        suiteResult.setName(testSuite.getAttribute("name"));
-        suiteResult.setTotalTests(parseIntAttribute(testSuite, "tests", 0));
-        suiteResult.setFailures(parseIntAttribute(testSuite, "failures", 0));
-        suiteResult.setErrors(parseIntAttribute(testSuite, "errors", 0));
-        suiteResult.setSkipped(parseIntAttribute(testSuite, "skipped", 0));
-        suiteResult.setExecutionTime(parseDoubleAttribute(testSuite, "time", 0.0));
-
-        List<TestCaseResult> testCases = parseTestCases(document);
-        suiteResult.setTestCases(testCases);
-
-        return suiteResult;
+    /**
+     * Parses a single JUnit XML report, e.g. an entry read straight out of a container archive.
+     */
+    public Optional<TestSuiteResult> parseTestReport(InputStream in, String reportName) {
+        XMLStreamReader reader = null;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(in);
+            return Optional.of(parseTestSuite(reader));
+        } catch (XMLStreamException e) {
+            log.warn("Failed to parse XML report: {}", reportName, e);
+            return Optional.empty();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    log.debug("Failed to close XML report reader: {}", reportName, e);
+                }
+            }
+        }
     }
 
-    private List<TestCaseResult> parseTestCases(Document document) {
+    /**
+     * The root element describes the suite; every {@code testcase} below it, at any depth, belongs to it.
+     */
+    private TestSuiteResult parseTestSuite(XMLStreamReader reader) throws XMLStreamException {
+        TestSuiteResult suiteResult = null;
         List<TestCaseResult> testCases = new ArrayList<>();
-        NodeList testCaseNodes = document.getElementsByTagName("testcase");
+        TestCaseState testCase = null;
+        CappedText capture = null;
 
-        for (int i = 0; i < testCaseNodes.getLength(); i++) {
-            Element testCase = (Element) testCaseNodes.item(i);
-            testCases.add(parseTestCase(testCase));
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    String element = reader.getLocalName();
+                    if (suiteResult == null) {
+                        suiteResult = suite(reader);
+                    } else if ("testcase".equals(element)) {
+                        testCase = new TestCaseState(testCase(reader));
+                    } else if (testCase != null) {
+                        capture = testCase.start(element, reader);
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                    if (capture != null) {
+                        capture.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    capture = null;
+                    if (testCase != null && "testcase".equals(reader.getLocalName())) {
+                        testCases.add(testCase.finish());
+                        testCase = null;
+                    }
+                }
+                default -> {
+                    // Comments, processing instructions and the like carry no results.
+                }
+            }
+        }
+        if (suiteResult == null) {
+            throw new XMLStreamException("Report has no root element");
         }
+        suiteResult.setTestCases(testCases);
+        return suiteResult;
+    }
 
-        return testCases;
+    private TestSuiteResult suite(XMLStreamReader reader) {
+        TestSuiteResult suiteResult = new TestSuiteResult();
+        suiteResult.setName(attribute(reader, "name"));
+        suiteResult.setTotalTests(parseIntAttribute(reader, "tests", 0));
+        suiteResult.setFailures(parseIntAttribute(reader, "failures", 0));
+        suiteResult.setErrors(parseIntAttribute(reader, "errors", 0));
+        suiteResult.setSkipped(parseIntAttribute(reader, "skipped", 0));
+        suiteResult.setExecutionTime(parseDoubleAttribute(reader, "time", 0.0));
+        return suiteResult;
     }
 
-    private TestCaseResult parseTestCase(Element testCase) {
+    private TestCaseResult testCase(XMLStreamReader reader) {
         TestCaseResult result = new TestCaseResult();
-        result.setClassName(testCase.getAttribute("classname"));
-        result.setMethodName(testCase.getAttribute("name"));
-        result.setExecutionTime(parseDoubleAttribute(testCase, "time", 0.0));
-
-        if (hasChildElement(testCase, "failure")) {
-            setFailureInfo(result, testCase);
-        } else if (hasChildElement(testCase, "error")) {
-            setErrorInfo(result, testCase);
-        } else if (hasChildElement(testCase, "skipped")) {
-            result.setStatus("SKIPPED");
-        } else {
-            result.setStatus("PASSED");
-        }
-
+        result.setClassName(attribute(reader, "classname"));
+        result.setMethodName(attribute(reader, "name"));
+        result.setExecutionTime(parseDoubleAttribute(reader, "time", 0.0));
         return result;
     }
 
-    private void setFailureInfo(TestCaseResult result, Element testCase) {
-        Element failure = (Element) testCase.getElementsByTagName("failure").item(0);
-        result.setStatus("FAILED");
-        result.setFailureMessage(failure.getAttribute("message"));
-        result.setStackTrace(failure.getTextContent());
+    private static String attribute(XMLStreamReader reader, String attribute) {
+        return Objects.requireNonNullElse(reader.getAttributeValue(null, attribute), "");
     }
 
-    private void setErrorInfo(TestCaseResult result, Element testCase) {
-        Element error = (Element) testCase.getElementsByTagName("error").item(0);
-        result.setStatus("ERROR");
-        result.setErrorMessage(error.getAttribute("message"));
-        result.setStackTrace(error.getTextContent());
+    private static int parseIntAttribute(XMLStreamReader reader, String attribute, int defaultValue) {
+        String value = attribute(reader, attribute);
+        return value.isEmpty() ? defaultValue : Integer.parseInt(value);
     }
 
-    private boolean hasChildElement(Element parent, String tagName) {
-        return parent.getElementsByTagName(tagName).getLength() > 0;
+    private static double parseDoubleAttribute(XMLStreamReader reader, String attribute, double defaultValue) {
+        String value = attribute(reader, attribute);
+        return value.isEmpty() ? defaultValue : Double.parseDouble(value);
     }
 
-    private int parseIntAttribute(Element element, String attribute, int defaultValue) {
-        String value = element.getAttribute(attribute);
-        return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    private static XMLInputFactory createInputFactory() {
+        // Configured once and only used to create readers, which is safe from any number of threads.
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
     }
 
-    private double parseDoubleAttribute(Element element, String attribute, double defaultValue) {
-        String value = element.getAttribute(attribute);
-        return value.isEmpty() ? defaultValue : Double.parseDouble(value);
+    /**
+     * What has been seen of one {@code testcase} so far. A failure outranks an error, which outranks a skip,
+     * whatever order they appear in; only the first failure and the first error are kept.
+     */
+    private final class TestCaseState {
+
+        private final TestCaseResult result;
+        private String failureMessage;
+        private CappedText failureTrace;
+        private String errorMessage;
+        private CappedText errorTrace;
+        private CappedText output;
+        private boolean skipped;
+
+        private TestCaseState(TestCaseResult result) {
+            this.result = result;
+        }
+
+        /**
+         * Records a child element and returns where its text goes, or {@code null} if it is not kept.
+         */
+        private CappedText start(String element, XMLStreamReader reader) {
+            switch (element) {
+                case "failure" -> {
+                    if (failureTrace == null) {
+                        failureMessage = attribute(reader, "message");
+                        failureTrace = new CappedText(maxStackTraceChars);
+                        return failureTrace;
+                    }
+                }
+                case "error" -> {
+                    if (errorTrace == null) {
+                        errorMessage = attribute(reader, "message");
+                        errorTrace = new CappedText(maxStackTraceChars);
+                        return errorTrace;
+                    }
+                }
+                case "skipped" -> skipped = true;
+                case "system-out", "system-err" -> {
+                    if (output == null) {
+                        output = new CappedText(maxOutputChars);
+                    }
+                    return output;
+                }
+                default -> {
+                    // Properties and vendor extensions are not part of the result.
+                }
+            }
+            return null;
+        }
+
+        private TestCaseResult finish() {
+            if (failureTrace != null) {
+                result.setStatus("FAILED");
+                result.setFailureMessage(failureMessage);
+                result.setStackTrace(failureTrace.toString());
+            } else if (errorTrace != null) {
+                result.setStatus("ERROR");
+                result.setErrorMessage(errorMessage);
+                result.setStackTrace(errorTrace.toString());
+            } else if (skipped) {
+                result.setStatus("SKIPPED");
+            } else {
+                result.setStatus("PASSED");
+            }
+            if (output != null) {
+                result.setOutput(output.toString());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Keeps the start of a text up to a limit and counts what was dropped.
+     */
+    private static final class CappedText {
+
+        private final int limit;
+        private final StringBuilder text = new StringBuilder();
+        private long dropped;
+
+        private CappedText(int limit) {
+            this.limit = Math.max(0, limit);
+        }
+
+        private void append(char[] characters, int start, int length) {
+            int kept = Math.min(length, limit - text.length());
+            if (kept > 0) {
+                text.append(characters, start, kept);
+            }
+            dropped += length - Math.max(kept, 0);
+        }
+
+        @Override
+        public String toString() {
+            return dropped == 0 ? text.toString() : text + "\n... [" + dropped + " characters truncated]";
+        }
     }
 }
@@ -0,0 +1,2 @@
+ALTER TABLE assignments
+    ADD grading_engine VARCHAR(255);
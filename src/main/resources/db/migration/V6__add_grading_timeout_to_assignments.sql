@@ -0,0 +1,2 @@
+ALTER TABLE assignments
+    ADD grading_timeout INTEGER;
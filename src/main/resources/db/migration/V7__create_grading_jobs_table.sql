@@ -0,0 +1,21 @@
+CREATE TABLE grading_jobs
+(
+    id               UUID                        NOT NULL,
+    status           VARCHAR(20)                 NOT NULL,
+    priority         INTEGER                     NOT NULL,
+    request          TEXT                        NOT NULL,
+    response         TEXT,
+    error            TEXT,
+    worker_id        VARCHAR(255),
+    attempts         INTEGER                     NOT NULL DEFAULT 0,
+    cancel_requested BOOLEAN                     NOT NULL DEFAULT FALSE,
+    created_at       TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    claimed_at       TIMESTAMP WITHOUT TIME ZONE,
+    heartbeat_at     TIMESTAMP WITHOUT TIME ZONE,
+    completed_at     TIMESTAMP WITHOUT TIME ZONE,
+    CONSTRAINT pk_grading_jobs PRIMARY KEY (id)
+);
+
+-- Workers only ever scan for queued jobs and running jobs whose worker stopped sending heartbeats.
+CREATE INDEX idx_grading_jobs_queued ON grading_jobs (created_at) WHERE status = 'QUEUED';
+CREATE INDEX idx_grading_jobs_running ON grading_jobs (heartbeat_at) WHERE status = 'RUNNING';
@@ -0,0 +1,2 @@
+ALTER TABLE rubric_grades
+    ADD arguments JSONB;
@@ -0,0 +1,135 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.Submission;
+import io.adampoi.java_auto_grader.model.dto.SubmissionDTO;
+import io.adampoi.java_auto_grader.model.enums.GradingJobStatus;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class GradingJobServiceTest {
+
+    private static final long NO_AGING_SECONDS = 3600;
+
+    private final MockClock clock = new MockClock();
+    private final List<String> started = new CopyOnWriteArrayList<>();
+    private final Semaphore startedPermits = new Semaphore(0);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private GradingJobService service;
+    private int awaited;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void servesFinalBeforeAttemptBeforeTryout() throws InterruptedException {
+        start(1, NO_AGING_SECONDS, 1);
+        blockWorkers(Submission.SubmissionType.FINAL, 1);
+
+        GradingJobService.GradingJob tryout = service.submit(Submission.SubmissionType.TRYOUT, record("tryout"));
+        service.submit(Submission.SubmissionType.ATTEMPT, record("attempt-1"));
+        service.submit(Submission.SubmissionType.ATTEMPT, record("attempt-2"));
+        service.submit(Submission.SubmissionType.FINAL, record("final"));
+
+        assertThat(service.toDTO(tryout).getQueuePosition()).isEqualTo(3);
+        release.countDown();
+        awaitStarted(5);
+        assertThat(started).containsExactly("blocker-1", "final", "attempt-1", "attempt-2", "tryout");
+    }
+
+    @Test
+    void waitingJobOvertakesHigherLane() throws InterruptedException {
+        start(1, 30, 1);
+        blockWorkers(Submission.SubmissionType.FINAL, 1);
+
+        GradingJobService.GradingJob tryout = service.submit(Submission.SubmissionType.TRYOUT, record("tryout"));
+        // One aging period lifts the tryout to the level of a fresh attempt; half another puts it ahead.
+        clock.add(45, TimeUnit.SECONDS);
+        GradingJobService.GradingJob attempt = service.submit(Submission.SubmissionType.ATTEMPT, record("attempt"));
+
+        assertThat(service.toDTO(tryout).getQueuePosition()).isZero();
+        assertThat(service.toDTO(attempt).getQueuePosition()).isEqualTo(1);
+        release.countDown();
+        awaitStarted(3);
+        assertThat(started).containsExactly("blocker-1", "tryout", "attempt");
+    }
+
+    @Test
+    void laneAtItsLimitIsSkipped() throws InterruptedException {
+        start(2, NO_AGING_SECONDS, 1);
+        blockWorkers(Submission.SubmissionType.TRYOUT, 1);
+
+        GradingJobService.GradingJob tryout = service.submit(Submission.SubmissionType.TRYOUT, record("tryout"));
+        service.submit(Submission.SubmissionType.ATTEMPT, record("attempt"));
+
+        awaitStarted(2);
+        assertThat(started).containsExactly("blocker-1", "attempt");
+        assertThat(service.toDTO(tryout).getStatus()).isEqualTo(GradingJobStatus.QUEUED);
+
+        release.countDown();
+        awaitStarted(3);
+        assertThat(started).containsExactly("blocker-1", "attempt", "tryout");
+    }
+
+    private void start(int workers, long agingSeconds, int tryoutMaxConcurrent) {
+        service = new GradingJobService(new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock),
+                mock(BuildLogService.class));
+        ReflectionTestUtils.setField(service, "workers", workers);
+        ReflectionTestUtils.setField(service, "queueCapacity", 100);
+        ReflectionTestUtils.setField(service, "agingSeconds", agingSeconds);
+        ReflectionTestUtils.setField(service, "finalMaxConcurrent", workers);
+        ReflectionTestUtils.setField(service, "attemptMaxConcurrent", workers);
+        ReflectionTestUtils.setField(service, "tryoutMaxConcurrent", tryoutMaxConcurrent);
+        service.init();
+    }
+
+    /**
+     * Occupies workers with jobs that wait for {@link #release}, so later jobs queue up.
+     */
+    private void blockWorkers(Submission.SubmissionType type, int count) throws InterruptedException {
+        for (int i = 1; i <= count; i++) {
+            String name = "blocker-" + i;
+            service.submit(type, () -> {
+                started.add(name);
+                startedPermits.release();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+        }
+        awaitStarted(count);
+    }
+
+    private Supplier<SubmissionDTO> record(String name) {
+        return () -> {
+            started.add(name);
+            startedPermits.release();
+            return null;
+        };
+    }
+
+    private void awaitStarted(int count) throws InterruptedException {
+        assertThat(startedPermits.tryAcquire(count - awaited, 10, TimeUnit.SECONDS)).isTrue();
+        awaited = count;
+        assertThat(started).hasSize(count);
+    }
+}
@@ -0,0 +1,76 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.Rubric;
+import io.adampoi.java_auto_grader.domain.RubricGrade;
+import io.adampoi.java_auto_grader.domain.TestExecution;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradingPipelineTest {
+
+    private static final TestExecution.ExecutionStatus PASSED = TestExecution.ExecutionStatus.PASSED;
+
+    @Test
+    void countsAGradeOnceWhenAllItsCasesPass() {
+        RubricGrade inputOutput = rubricGrade("Sum", 10, RubricGrade.GradeType.INPUT_OUTPUT);
+
+        assertThat(GradingPipeline.calculateTotalPoints(Set.of(
+                execution(inputOutput, "Sum #1", PASSED),
+                execution(inputOutput, "Sum #2", PASSED),
+                execution(inputOutput, "Sum #3", PASSED)))).isEqualTo(10);
+    }
+
+    @Test
+    void anyCaseThatDidNotPassCostsTheGrade() {
+        RubricGrade failed = rubricGrade("Sum", 10, RubricGrade.GradeType.INPUT_OUTPUT);
+        RubricGrade timedOut = rubricGrade("Loop", 4, RubricGrade.GradeType.INPUT_OUTPUT);
+        RubricGrade notRun = rubricGrade("Echo", 2, RubricGrade.GradeType.INPUT_OUTPUT);
+        RubricGrade unitTest = rubricGrade("add", 5, RubricGrade.GradeType.AUTOMATIC);
+
+        assertThat(GradingPipeline.calculateTotalPoints(Set.of(
+                execution(failed, "Sum #1", PASSED),
+                execution(failed, "Sum #2", TestExecution.ExecutionStatus.FAILED),
+                execution(timedOut, "Loop #1", TestExecution.ExecutionStatus.TIMEOUT),
+                execution(timedOut, "Loop #2", PASSED),
+                execution(notRun, "Echo #1", PASSED),
+                execution(notRun, "Echo #2", TestExecution.ExecutionStatus.NOT_EXECUTED),
+                execution(unitTest, "add", PASSED)))).isEqualTo(5);
+    }
+
+    @Test
+    void ignoresGradesWithoutRubric() {
+        RubricGrade withoutRubric = RubricGrade.builder()
+                .id(UUID.randomUUID())
+                .name("orphan")
+                .gradeType(RubricGrade.GradeType.AUTOMATIC)
+                .build();
+        RubricGrade unitTest = rubricGrade("add", 5, RubricGrade.GradeType.AUTOMATIC);
+
+        assertThat(GradingPipeline.calculateTotalPoints(Set.of(
+                execution(withoutRubric, "orphan", PASSED),
+                execution(unitTest, "add", PASSED)))).isEqualTo(5);
+        assertThat(GradingPipeline.calculateTotalPoints(Set.of())).isZero();
+    }
+
+    private static RubricGrade rubricGrade(String name, int points, RubricGrade.GradeType gradeType) {
+        return RubricGrade.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .gradeType(gradeType)
+                .rubric(Rubric.builder().id(UUID.randomUUID()).name(name).points(points).build())
+                .build();
+    }
+
+    private static TestExecution execution(RubricGrade rubricGrade, String methodName,
+                                           TestExecution.ExecutionStatus status) {
+        return TestExecution.builder()
+                .rubricGrade(rubricGrade)
+                .methodName(methodName)
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,222 @@
+package io.adampoi.java_auto_grader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.adampoi.java_auto_grader.event.AssignmentTestCodeChangedEvent;
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import io.adampoi.java_auto_grader.model.type.CompilationError;
+import io.adampoi.java_auto_grader.model.type.InputOutputResult;
+import io.adampoi.java_auto_grader.model.type.InputOutputRun;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradingResultCacheTest {
+
+    private static final String ASSIGNMENT_ID = "6f1c2d3e-0000-4000-8000-000000000001";
+    private static final String SOURCE = """
+            public class Main {
+                int add(int a, int b) {
+                    return a + b;
+                }
+            }
+            """;
+
+    private GradingResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new GradingResultCache(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.init();
+    }
+
+    @Test
+    void ignoresLineEndingsAndTrailingWhitespace() {
+        String windows = SOURCE.replace("\n", "\r\n");
+        String trailing = SOURCE.replace("{\n", "{   \n").replace(";\n", ";\t\n") + "\n\n";
+
+        String key = cache.keyFor(request(SOURCE), 60);
+
+        assertThat(cache.keyFor(request(windows), 60)).isEqualTo(key);
+        assertThat(cache.keyFor(request(trailing), 60)).isEqualTo(key);
+        assertThat(cache.keyFor(request(SOURCE.replace("a + b", "a - b")), 60)).isNotEqualTo(key);
+        assertThat(cache.keyFor(request(SOURCE.replace("    int", "  int")), 60)).isNotEqualTo(key);
+    }
+
+    @Test
+    void ignoresFileOrder() {
+        CodeFile main = CodeFile.builder().fileName("Main.java").content(SOURCE).build();
+        CodeFile helper = CodeFile.builder().fileName("Helper.java").content("class Helper {}").build();
+
+        TestCodeRequest ordered = request(SOURCE);
+        ordered.setSourceFiles(List.of(main, helper));
+        TestCodeRequest reversed = request(SOURCE);
+        reversed.setSourceFiles(List.of(helper, main));
+
+        assertThat(cache.keyFor(reversed, 60)).isEqualTo(cache.keyFor(ordered, 60));
+    }
+
+    @Test
+    void keyDependsOnEverythingThatDecidesTheOutcome() {
+        String key = cache.keyFor(request(SOURCE), 60);
+
+        assertThat(cache.keyFor(request(SOURCE), 120)).isNotEqualTo(key);
+
+        TestCodeRequest maven = request(SOURCE);
+        maven.setBuildTool("maven");
+        assertThat(cache.keyFor(maven, 60)).isNotEqualTo(key);
+
+        TestCodeRequest mutation = request(SOURCE);
+        mutation.setMutationTestingEnabled(true);
+        assertThat(cache.keyFor(mutation, 60)).isNotEqualTo(key);
+
+        TestCodeRequest otherTests = request(SOURCE);
+        otherTests.setTestFiles(List.of(CodeFile.builder().fileName("MainTest.java")
+                .content("class MainTest {\n    @Test void add() {}\n}\n").build()));
+        assertThat(cache.keyFor(otherTests, 60)).isNotEqualTo(key);
+
+        TestCodeRequest defaultBuildTool = request(SOURCE);
+        defaultBuildTool.setBuildTool(null);
+        assertThat(cache.keyFor(defaultBuildTool, 60)).isEqualTo(key);
+    }
+
+    @Test
+    void keyDependsOnInputOutputRuns() {
+        TestCodeRequest withRun = request(SOURCE);
+        withRun.setInputOutputRuns(List.of(run("1 2\n", 1000)));
+        String key = cache.keyFor(withRun, 60);
+
+        assertThat(cache.keyFor(request(SOURCE), 60)).isNotEqualTo(key);
+
+        TestCodeRequest otherInput = request(SOURCE);
+        otherInput.setInputOutputRuns(List.of(run("2 3\n", 1000)));
+        assertThat(cache.keyFor(otherInput, 60)).isNotEqualTo(key);
+
+        TestCodeRequest otherTimeout = request(SOURCE);
+        otherTimeout.setInputOutputRuns(List.of(run("1 2\n", 2000)));
+        assertThat(cache.keyFor(otherTimeout, 60)).isNotEqualTo(key);
+
+        // Inputs are hashed with their length, so moving text between them is a different key.
+        TestCodeRequest split = request(SOURCE);
+        split.setInputOutputRuns(List.of(InputOutputRun.builder()
+                .id("rubric-1").mainClass("Main").inputs(List.of("1 ", "2\n")).timeoutMs(1000).build()));
+        TestCodeRequest joined = request(SOURCE);
+        joined.setInputOutputRuns(List.of(InputOutputRun.builder()
+                .id("rubric-1").mainClass("Main").inputs(List.of("1 2\n", "")).timeoutMs(1000).build()));
+        assertThat(cache.keyFor(split, 60)).isNotEqualTo(cache.keyFor(joined, 60));
+    }
+
+    @Test
+    void disabledCacheHasNoKeys() {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+
+        assertThat(cache.keyFor(request(SOURCE), 60)).isNull();
+        assertThat(cache.get(null)).isEmpty();
+    }
+
+    @Test
+    void cachesResultsThatReflectTheCode() {
+        assertThat(cached(TestCodeResponse.builder().success(true).build())).isTrue();
+        assertThat(cached(TestCodeResponse.builder().exitCode(1)
+                .testSuites(List.of(TestSuiteResult.builder().name("MainTest").build())).build())).isTrue();
+        assertThat(cached(TestCodeResponse.builder().exitCode(1)
+                .compilationErrors(List.of(CompilationError.builder().errorMessage("';' expected").build()))
+                .build())).isTrue();
+        assertThat(cached(TestCodeResponse.builder().success(true)
+                .inputOutputResults(List.of(InputOutputResult.builder().id("rubric-1").runs(List.of()).build()))
+                .build())).isTrue();
+    }
+
+    @Test
+    void doesNotCacheInfrastructureFailures() {
+        assertThat(cached(TestCodeResponse.builder().exitCode(-1).error("Sandbox failed").build())).isFalse();
+        assertThat(cached(TestCodeResponse.builder().exitCode(-1).success(true).build())).isFalse();
+        assertThat(cached(TestCodeResponse.builder().exitCode(1).testSuites(List.of()).build())).isFalse();
+        assertThat(cached(TestCodeResponse.builder().success(true)
+                .inputOutputResults(List.of(InputOutputResult.builder().id("rubric-1").runs(List.of())
+                        .error("Input/output run failed").build()))
+                .build())).isFalse();
+    }
+
+    @Test
+    void returnsCopies() {
+        String key = cache.keyFor(request(SOURCE), 60);
+        TestCodeResponse response = TestCodeResponse.builder().success(true).output("ok").build();
+        cache.put(key, request(SOURCE), response);
+        response.setOutput("changed");
+
+        cache.get(key).orElseThrow().setOutput("changed again");
+
+        assertThat(cache.get(key).map(TestCodeResponse::getOutput)).hasValue("ok");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        String first = put(SOURCE);
+        String second = put(SOURCE + "// 2");
+        cache.get(first);
+        String third = put(SOURCE + "// 3");
+
+        assertThat(cache.get(first)).isPresent();
+        assertThat(cache.get(second)).isEmpty();
+        assertThat(cache.get(third)).isPresent();
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void changedTestCodeInvalidatesTheAssignment() {
+        String key = put(SOURCE);
+        TestCodeRequest other = request(SOURCE);
+        other.setAssignmentId(UUID.randomUUID().toString());
+        String otherKey = cache.keyFor(other, 60);
+        cache.put(otherKey, other, TestCodeResponse.builder().success(true).build());
+
+        cache.onTestCodeChanged(new AssignmentTestCodeChangedEvent(UUID.fromString(ASSIGNMENT_ID)));
+
+        assertThat(cache.get(key)).isEmpty();
+        assertThat(cache.get(otherKey)).isPresent();
+    }
+
+    private boolean cached(TestCodeResponse response) {
+        String key = cache.keyFor(request(SOURCE), 60);
+        cache.put(key, request(SOURCE), response);
+        boolean cached = cache.get(key).isPresent();
+        cache.onTestCodeChanged(new AssignmentTestCodeChangedEvent(UUID.fromString(ASSIGNMENT_ID)));
+        return cached;
+    }
+
+    private String put(String source) {
+        String key = cache.keyFor(request(source), 60);
+        cache.put(key, request(source), TestCodeResponse.builder().success(true).build());
+        return key;
+    }
+
+    private static TestCodeRequest request(String source) {
+        return TestCodeRequest.builder()
+                .assignmentId(ASSIGNMENT_ID)
+                .buildTool("gradle")
+                .sourceFiles(List.of(CodeFile.builder().fileName("Main.java").content(source).build()))
+                .testFiles(List.of(CodeFile.builder().fileName("MainTest.java").content("class MainTest {}\n")
+                        .build()))
+                .build();
+    }
+
+    private static InputOutputRun run(String input, long timeoutMs) {
+        return InputOutputRun.builder()
+                .id("rubric-1")
+                .mainClass("Main")
+                .inputs(List.of(input))
+                .timeoutMs(timeoutMs)
+                .build();
+    }
+}
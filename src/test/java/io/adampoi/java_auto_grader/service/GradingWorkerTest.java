@@ -0,0 +1,148 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.GradingJobRecord;
+import io.adampoi.java_auto_grader.model.enums.GradingJobStatus;
+import io.adampoi.java_auto_grader.repository.GradingJobRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against the configured PostgreSQL database: claiming relies on {@code FOR UPDATE SKIP LOCKED}. No worker
+ * threads are started; the test claims and recovers jobs itself. Its jobs get priorities far above real ones,
+ * so rows other tests left queued do not get in the way. Recovery touches every stale row, so point it at a
+ * test database. Run with {@code ./gradlew postgresTest}.
+ */
+@Tag("postgres")
+@SpringBootTest(properties = {
+        "grader.role=WORKER",
+        "grader.worker.threads=0",
+        "grader.worker.stale-after-seconds=60",
+        "grader.worker.max-attempts=2",
+        "grader.jobs.aging-seconds=30"
+})
+class GradingWorkerTest {
+
+    private static final int PRIORITY = 1_000_000;
+
+    @Autowired
+    private GradingWorker worker;
+    @Autowired
+    private GradingJobRecordRepository repository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<UUID> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAllById(created);
+    }
+
+    @Test
+    void claimsTheHighestPriorityJob() {
+        UUID low = queued(PRIORITY, OffsetDateTime.now());
+        UUID high = queued(PRIORITY + 1, OffsetDateTime.now());
+
+        GradingJobRecord claimed = worker.claim().orElseThrow();
+
+        assertThat(claimed.getId()).isEqualTo(high);
+        assertThat(claimed.getStatus()).isEqualTo(GradingJobStatus.RUNNING);
+        assertThat(claimed.getWorkerId()).isNotNull();
+        assertThat(claimed.getClaimedAt()).isNotNull();
+        assertThat(claimed.getHeartbeatAt()).isNotNull();
+        assertThat(claimed.getAttempts()).isEqualTo(1);
+        assertThat(worker.claim().map(GradingJobRecord::getId)).hasValue(low);
+    }
+
+    @Test
+    void waitingJobOvertakesHigherPriority() {
+        // Four aging periods put the older job three levels ahead.
+        UUID old = queued(PRIORITY, OffsetDateTime.now().minusSeconds(120));
+        queued(PRIORITY + 1, OffsetDateTime.now());
+
+        assertThat(worker.claim().map(GradingJobRecord::getId)).hasValue(old);
+    }
+
+    @Test
+    void skipsJobsLockedByAnotherWorker() {
+        UUID locked = queued(PRIORITY + 1, OffsetDateTime.now());
+        UUID free = queued(PRIORITY, OffsetDateTime.now());
+
+        Optional<GradingJobRecord> claimed = new TransactionTemplate(transactionManager).execute(status -> {
+            assertThat(repository.lockNextQueued(30).map(GradingJobRecord::getId)).hasValue(locked);
+            // Claims on another connection while this transaction still holds the lock.
+            return CompletableFuture.supplyAsync(worker::claim).orTimeout(10, TimeUnit.SECONDS).join();
+        });
+
+        assertThat(claimed.map(GradingJobRecord::getId)).hasValue(free);
+        assertThat(repository.findById(locked).map(GradingJobRecord::getStatus)).hasValue(GradingJobStatus.QUEUED);
+    }
+
+    @Test
+    void requeuesOrFailsJobsWhoseWorkerStoppedResponding() {
+        OffsetDateTime stale = OffsetDateTime.now().minusMinutes(10);
+        UUID retried = running(1, stale);
+        UUID exhausted = running(2, stale);
+        UUID alive = running(1, OffsetDateTime.now());
+
+        worker.recoverStaleJobs();
+
+        GradingJobRecord requeued = repository.findById(retried).orElseThrow();
+        assertThat(requeued.getStatus()).isEqualTo(GradingJobStatus.QUEUED);
+        assertThat(requeued.getWorkerId()).isNull();
+        assertThat(requeued.getHeartbeatAt()).isNull();
+
+        GradingJobRecord failed = repository.findById(exhausted).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(GradingJobStatus.FAILED);
+        assertThat(failed.getError()).isEqualTo("Grading worker stopped responding");
+        assertThat(failed.getCompletedAt()).isNotNull();
+
+        assertThat(repository.findById(alive).map(GradingJobRecord::getStatus))
+                .hasValue(GradingJobStatus.RUNNING);
+
+        // The next claim is the job's second and last try.
+        GradingJobRecord reclaimed = worker.claim().orElseThrow();
+        assertThat(reclaimed.getId()).isEqualTo(retried);
+        assertThat(reclaimed.getAttempts()).isEqualTo(2);
+    }
+
+    private UUID queued(int priority, OffsetDateTime createdAt) {
+        return save(GradingJobRecord.builder()
+                .status(GradingJobStatus.QUEUED)
+                .priority(priority)
+                .attempts(0)
+                .createdAt(createdAt));
+    }
+
+    private UUID running(int attempts, OffsetDateTime heartbeatAt) {
+        return save(GradingJobRecord.builder()
+                .status(GradingJobStatus.RUNNING)
+                .priority(PRIORITY)
+                .workerId("stopped-worker")
+                .attempts(attempts)
+                .createdAt(heartbeatAt.minusMinutes(1))
+                .claimedAt(heartbeatAt)
+                .heartbeatAt(heartbeatAt));
+    }
+
+    private UUID save(GradingJobRecord.GradingJobRecordBuilder job) {
+        UUID id = repository.save(job.request("{}").cancelRequested(false).build()).getId();
+        created.add(id);
+        return id;
+    }
+}
@@ -0,0 +1,46 @@
+package io.adampoi.java_auto_grader.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InputOutputEvaluatorTest {
+
+    @Test
+    void normalizesLineEndings() {
+        assertThat(InputOutputEvaluator.normalize("3\r\n4\r\n", false, false)).isEqualTo("3\n4\n");
+        assertThat(InputOutputEvaluator.normalize("3\r\n4\r\n", true, false)).isEqualTo("3\n4");
+        assertThat(InputOutputEvaluator.normalize(null, false, false)).isEmpty();
+    }
+
+    @Test
+    void trimsTrailingSpacesAndBlankLines() {
+        assertThat(InputOutputEvaluator.normalize("\n\nSum: 3   \n  Product: 2\t\n\n", true, false))
+                .isEqualTo("Sum: 3\n  Product: 2");
+        assertThat(InputOutputEvaluator.normalize("Sum: 3 \n", false, false)).isEqualTo("Sum: 3 \n");
+        assertThat(InputOutputEvaluator.normalize("a\n\nb", true, false)).isEqualTo("a\n\nb");
+    }
+
+    @Test
+    void ignoresCaseOnlyWhenAsked() {
+        assertThat(InputOutputEvaluator.normalize("Hello\nWORLD", true, true)).isEqualTo("hello\nworld");
+        assertThat(InputOutputEvaluator.normalize("Hello\nWORLD", true, false)).isEqualTo("Hello\nWORLD");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "Main, workspace.Main",
+            "Main.java, workspace.Main",
+            "'  Calculator  ', workspace.Calculator",
+            "src/main/java/Calculator.java, workspace.Calculator",
+            "workspace.Main, workspace.Main",
+            "com.example.App, com.example.App",
+            "'', workspace.Main",
+            ", workspace.Main"
+    })
+    void resolvesMainClassInTheWorkspacePackage(String mainClass, String expected) {
+        assertThat(InputOutputEvaluator.mainClass(mainClass)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,120 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares Maven build latency with a fresh {@code mvn} per submission against the resident mvnd daemon running
+ * offline. Needs a reachable Docker daemon and the maven-sandbox image; run with
+ * {@code ./gradlew sandboxTemplateBenchmark}.
+ */
+@Slf4j
+@Tag("sandbox-benchmark")
+@SpringBootTest(properties = {
+        "grader.sandbox.project-mode=TEMPLATED",
+        "grader.sandbox.warm-build-tools=MAVEN,MAVEN_DAEMON",
+        "grader.result-cache.enabled=false"
+})
+class MavenWarmModeBenchmarkTest {
+
+    private static final int ITERATIONS = Integer.getInteger("grader.benchmark.iterations", 5);
+    private static final Path REPORT = Path.of("build/reports/maven-warm-mode-benchmark/latency.csv");
+
+    @Autowired
+    private TestCodeService testCodeService;
+
+    @Test
+    void daemonBuildsAreFasterThanColdBuilds() throws IOException {
+        // The first lease of each mode waits for its container to be started and the template provisioned.
+        testCodeService.setMavenMode(TestCodeService.MavenMode.COLD);
+        assertThat(testCodeService.runTestCode(request()).isSuccess()).isTrue();
+        List<Long> cold = measure();
+
+        testCodeService.setMavenMode(TestCodeService.MavenMode.DAEMON);
+        assertThat(testCodeService.runTestCode(request()).isSuccess()).isTrue();
+        List<Long> daemon = measure();
+
+        writeReport(cold, daemon);
+        log.info("Cold Maven median {}ms p95 {}ms; mvnd median {}ms p95 {}ms",
+                percentile(cold, 50), percentile(cold, 95), percentile(daemon, 50), percentile(daemon, 95));
+        assertThat(percentile(daemon, 50)).isLessThan(percentile(cold, 50));
+    }
+
+    private List<Long> measure() {
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            TestCodeResponse response = testCodeService.runTestCode(request());
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+            assertThat(response.isSuccess()).as(response.getError()).isTrue();
+        }
+        return latencies;
+    }
+
+    private TestCodeRequest request() {
+        return TestCodeRequest.builder()
+                .buildTool("maven")
+                .sourceFiles(List.of(CodeFile.builder()
+                        .fileName("Calculator.java")
+                        .content("""
+                                public class Calculator {
+                                    public int add(int a, int b) {
+                                        return a + b;
+                                    }
+                                }
+                                """)
+                        .build()))
+                .testFiles(List.of(CodeFile.builder()
+                        .fileName("CalculatorTest.java")
+                        .content("""
+                                package workspace;
+
+                                import org.junit.jupiter.api.Test;
+
+                                import static org.junit.jupiter.api.Assertions.assertEquals;
+
+                                class CalculatorTest {
+                                    @Test
+                                    void addsNumbers() {
+                                        assertEquals(5, new Calculator().add(2, 3));
+                                    }
+                                }
+                                """)
+                        .build()))
+                .build();
+    }
+
+    private long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private void writeReport(List<Long> cold, List<Long> daemon) throws IOException {
+        StringBuilder csv = new StringBuilder("mode,iteration,latency_ms\n");
+        for (int i = 0; i < cold.size(); i++) {
+            csv.append("cold,").append(i).append(',').append(cold.get(i)).append('\n');
+        }
+        for (int i = 0; i < daemon.size(); i++) {
+            csv.append("daemon,").append(i).append(',').append(daemon.get(i)).append('\n');
+        }
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, csv);
+    }
+}
@@ -0,0 +1,128 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.domain.RubricGrade;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.TestCaseResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RubricTestCaseMatcherTest {
+
+    private final RubricTestCaseMatcher matcher = new RubricTestCaseMatcher();
+
+    /**
+     * The regular expressions the matcher replaced.
+     */
+    private static String regexNormalize(String value) {
+        return value
+                .replaceAll("\\[[^]]*]$", "")
+                .replaceAll("\\([^)]*\\)", "")
+                .replaceAll("[^A-Za-z0-9]", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "", "test", "testAdd", "TestAdd", "TESTADD", "add", "test_add", "test__add_two_numbers", "_test",
+            "testAdd()", "testAdd(int, int)", "testAdd(int)[1]", "testAdd()[2]", "testAdd[]", "[1] testAdd",
+            "testAdd(int)[1][2]", "test[a]Add[b]", "a(b(c)d)e", "a(b", "a)b(", "(", ")", "[", "]", "[]", "()",
+            "add(int[] values)", "add(int[] values)[3]", "shouldAdd_whenPositive()", "test Add 2",
+            "\u00dcn\u00efc\u00f6d\u00e9(x)", "testAdd(String)[1] \"a, b\"", "testAdd()]", "testAdd[1]]",
+            "classMethod", "TESTtest"
+    })
+    void normalizesLikeTheRegularExpressions(String value) {
+        assertThat(RubricTestCaseMatcher.normalize(value)).isEqualTo(regexNormalize(value));
+    }
+
+    @Test
+    void normalizesRandomNamesLikeTheRegularExpressions() {
+        Random random = new Random(23);
+        char[] alphabet = "teSTaZ09()[]_ ,.-\u00e9".toCharArray();
+        for (int i = 0; i < 10_000; i++) {
+            char[] value = new char[random.nextInt(16)];
+            for (int j = 0; j < value.length; j++) {
+                value[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String name = new String(value);
+            assertThat(RubricTestCaseMatcher.normalize(name)).as(name).isEqualTo(regexNormalize(name));
+        }
+    }
+
+    @Test
+    void matchesWithOrWithoutTestPrefix() {
+        RubricTestCaseMatcher.Index index = matcher.index(response(testCase("testAdd()"), testCase("subtract()")));
+
+        assertThat(matcher.match(index, rubricGrade("add"))).map(TestCaseResult::getMethodName).hasValue("testAdd()");
+        assertThat(matcher.match(index, rubricGrade("Test_Add"))).map(TestCaseResult::getMethodName)
+                .hasValue("testAdd()");
+        assertThat(matcher.match(index, rubricGrade("subtract(int, int)"))).map(TestCaseResult::getMethodName)
+                .hasValue("subtract()");
+        assertThat(matcher.match(index, rubricGrade("testSubtract"))).isEmpty();
+    }
+
+    @Test
+    void firstTestCaseInReportOrderWins() {
+        TestCaseResult prefixed = testCase("testAdd()");
+        TestCaseResult plain = testCase("add()");
+
+        RubricTestCaseMatcher.Index prefixedFirst = matcher.index(response(prefixed, plain));
+        RubricTestCaseMatcher.Index plainFirst = matcher.index(response(plain, prefixed));
+
+        assertThat(matcher.match(prefixedFirst, rubricGrade("add"))).containsSame(prefixed);
+        assertThat(matcher.match(plainFirst, rubricGrade("add"))).containsSame(plain);
+        assertThat(matcher.match(plainFirst, rubricGrade("testAdd"))).containsSame(prefixed);
+    }
+
+    @Test
+    void firstParameterizedRunWins() {
+        TestCaseResult first = testCase("testAdd(int)[1]");
+        TestCaseResult second = testCase("testAdd(int)[2]");
+
+        RubricTestCaseMatcher.Index index = matcher.index(TestCodeResponse.builder()
+                .testSuites(List.of(suite(first), suite(second)))
+                .build());
+
+        assertThat(matcher.match(index, rubricGrade("add"))).containsSame(first);
+    }
+
+    @Test
+    void emptyResultHasNoTestCases() {
+        assertThat(matcher.index(null).hasTestCases()).isFalse();
+        assertThat(matcher.index(response()).hasTestCases()).isFalse();
+        assertThat(matcher.index(response(testCase(null))).hasTestCases()).isTrue();
+    }
+
+    private static TestCodeResponse response(TestCaseResult... testCases) {
+        return TestCodeResponse.builder()
+                .testSuites(List.of(suite(testCases)))
+                .build();
+    }
+
+    private static TestSuiteResult suite(TestCaseResult... testCases) {
+        return TestSuiteResult.builder()
+                .name("workspace.MainTest")
+                .testCases(Arrays.asList(testCases))
+                .build();
+    }
+
+    private static TestCaseResult testCase(String methodName) {
+        return TestCaseResult.builder()
+                .className("workspace.MainTest")
+                .methodName(methodName)
+                .status("PASSED")
+                .build();
+    }
+
+    private static RubricGrade rubricGrade(String name) {
+        return RubricGrade.builder().name(name).build();
+    }
+}
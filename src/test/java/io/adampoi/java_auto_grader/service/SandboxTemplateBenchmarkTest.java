@@ -0,0 +1,119 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.request.TestCodeRequest;
+import io.adampoi.java_auto_grader.model.response.TestCodeResponse;
+import io.adampoi.java_auto_grader.model.type.CodeFile;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares build latency of a cold per-submission project against the pre-provisioned template project.
+ * Needs a reachable Docker daemon; run with {@code ./gradlew sandboxTemplateBenchmark}.
+ */
+@Slf4j
+@Tag("sandbox-benchmark")
+@SpringBootTest(properties = {
+        "grader.sandbox.project-mode=TEMPLATED",
+        "grader.result-cache.enabled=false"
+})
+class SandboxTemplateBenchmarkTest {
+
+    private static final int ITERATIONS = Integer.getInteger("grader.benchmark.iterations", 5);
+    private static final Path REPORT = Path.of("build/reports/sandbox-template-benchmark/latency.csv");
+
+    @Autowired
+    private TestCodeService testCodeService;
+    @Autowired
+    private SandboxProjectTemplates projectTemplates;
+
+    @Test
+    void templatedBuildsAreFasterThanColdBuilds() throws IOException {
+        // The first lease waits for the container to be started and the template provisioned.
+        assertThat(testCodeService.runTestCode(request()).isSuccess()).isTrue();
+
+        projectTemplates.setProjectMode(SandboxProjectTemplates.ProjectMode.COLD);
+        List<Long> cold = measure();
+        projectTemplates.setProjectMode(SandboxProjectTemplates.ProjectMode.TEMPLATED);
+        List<Long> templated = measure();
+
+        writeReport(cold, templated);
+        log.info("Cold build median {}ms p95 {}ms; templated build median {}ms p95 {}ms",
+                percentile(cold, 50), percentile(cold, 95), percentile(templated, 50), percentile(templated, 95));
+        assertThat(percentile(templated, 50)).isLessThan(percentile(cold, 50));
+    }
+
+    private List<Long> measure() {
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            TestCodeResponse response = testCodeService.runTestCode(request());
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+            assertThat(response.isSuccess()).as(response.getError()).isTrue();
+        }
+        return latencies;
+    }
+
+    private TestCodeRequest request() {
+        return TestCodeRequest.builder()
+                .buildTool("gradle")
+                .sourceFiles(List.of(CodeFile.builder()
+                        .fileName("Calculator.java")
+                        .content("""
+                                public class Calculator {
+                                    public int add(int a, int b) {
+                                        return a + b;
+                                    }
+                                }
+                                """)
+                        .build()))
+                .testFiles(List.of(CodeFile.builder()
+                        .fileName("CalculatorTest.java")
+                        .content("""
+                                package workspace;
+
+                                import org.junit.jupiter.api.Test;
+
+                                import static org.junit.jupiter.api.Assertions.assertEquals;
+
+                                class CalculatorTest {
+                                    @Test
+                                    void addsNumbers() {
+                                        assertEquals(5, new Calculator().add(2, 3));
+                                    }
+                                }
+                                """)
+                        .build()))
+                .build();
+    }
+
+    private long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private void writeReport(List<Long> cold, List<Long> templated) throws IOException {
+        StringBuilder csv = new StringBuilder("mode,iteration,latency_ms\n");
+        for (int i = 0; i < cold.size(); i++) {
+            csv.append("cold,").append(i).append(',').append(cold.get(i)).append('\n');
+        }
+        for (int i = 0; i < templated.size(); i++) {
+            csv.append("templated,").append(i).append(',').append(templated.get(i)).append('\n');
+        }
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, csv);
+    }
+}
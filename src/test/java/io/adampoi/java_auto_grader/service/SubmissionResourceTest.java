@@ -27,7 +27,9 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -159,6 +161,7 @@ class SubmissionResourceTest {
             when(submissionService.submitStudentSubmission(eq(studentId), any())).thenReturn(responseDTO);
 
             mockMvc.perform(post(BASE_API_PATH)
+                            .header("Prefer", "wait")
                             .contentType(MediaType.APPLICATION_JSON)
                             .content(objectMapper.writeValueAsString(request)))
                     .andExpect(status().isCreated())
@@ -235,6 +238,7 @@ class SubmissionResourceTest {
                     .thenReturn(responseDTO);
 
             mockMvc.perform(post(BASE_API_PATH)
+                            .header("Prefer", "wait")
                             .contentType(MediaType.APPLICATION_JSON)
                             .content(objectMapper.writeValueAsString(request)))
                     .andExpect(status().isCreated())
@@ -361,6 +365,7 @@ class SubmissionResourceTest {
             when(submissionService.tryoutSubmission(request)).thenReturn(responseDTO);
 
             mockMvc.perform(post(BASE_API_PATH + "/tryout")
+                            .header("Prefer", "wait")
                             .contentType(MediaType.APPLICATION_JSON)
                             .content(objectMapper.writeValueAsString(request)))
                     .andExpect(status().isOk())
@@ -368,6 +373,50 @@ class SubmissionResourceTest {
                     .andExpect(jsonPath("$.data.status").value("PASSED"));
         }
 
+        @Test
+        @WithMockUser(authorities = {AUTHORITY_TRYOUT})
+        @DisplayName("Should return 202 Accepted with a pollable grading job by default")
+        void tryout_ReturnsAcceptedJob() throws Exception {
+            TestSubmitRequest request = TestSubmitRequest.builder()
+                    .sourceFiles(mockSourceFiles())
+                    .testFiles(mockTestFiles())
+                    .mainClassName("Main")
+                    .assignmentId(String.valueOf(UUID.randomUUID()))
+                    .buildTool("gradle")
+                    .build();
+
+            SubmissionDTO responseDTO = SubmissionDTO.builder()
+                    .id(randomId())
+                    .assignmentId(UUID.fromString(request.getAssignmentId()))
+                    .status("PASSED")
+                    .build();
+
+            when(submissionService.tryoutSubmission(request)).thenReturn(responseDTO);
+
+            String body = mockMvc.perform(post(BASE_API_PATH + "/tryout")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().exists("Location"))
+                    .andExpect(jsonPath("$.data.type").value("TRYOUT"))
+                    .andReturn().getResponse().getContentAsString();
+            String jobId = objectMapper.readTree(body).path("data").path("id").asText();
+
+            String jobStatus = null;
+            for (int i = 0; i < 50 && !"COMPLETED".equals(jobStatus); i++) {
+                Thread.sleep(100);
+                String job = mockMvc.perform(get("/api/grading-jobs/" + jobId))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+                jobStatus = objectMapper.readTree(job).path("data").path("status").asText();
+            }
+
+            mockMvc.perform(get("/api/grading-jobs/" + jobId))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.status").value("COMPLETED"))
+                    .andExpect(jsonPath("$.data.result.status").value("PASSED"));
+        }
+
         @Test
         @WithMockUser(authorities = {})
         @DisplayName("Should return 401 Unauthorized when missing authority")
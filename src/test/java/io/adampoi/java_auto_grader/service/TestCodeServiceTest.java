@@ -0,0 +1,39 @@
+package io.adampoi.java_auto_grader.service;
+
+import io.adampoi.java_auto_grader.model.type.ProcessResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestCodeServiceTest {
+
+    private static final List<TestSuiteResult> REPORTED =
+            List.of(TestSuiteResult.builder().name("workspace.MainTest").totalTests(1).failures(1).build());
+
+    @Test
+    void failingTestsAndCompileErrorsAreTheSubmissions() {
+        assertThat(TestCodeService.isInfrastructureFailure(exited(0), List.of(), false)).isFalse();
+        assertThat(TestCodeService.isInfrastructureFailure(exited(1), REPORTED, false)).isFalse();
+        assertThat(TestCodeService.isInfrastructureFailure(exited(1), List.of(), true)).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 125, 126, 127})
+    void commandThatCouldNotRunIsSuspect(int exitCode) {
+        assertThat(TestCodeService.isInfrastructureFailure(exited(exitCode), REPORTED, true)).isTrue();
+    }
+
+    @Test
+    void failedBuildWithoutReportsOrCompilerOutputIsSuspect() {
+        assertThat(TestCodeService.isInfrastructureFailure(exited(1), List.of(), false)).isTrue();
+    }
+
+    private static ProcessResult exited(int exitCode) {
+        return new ProcessResult(exitCode, "", "", 0);
+    }
+}
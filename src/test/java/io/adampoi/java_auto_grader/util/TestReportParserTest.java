@@ -0,0 +1,153 @@
+package io.adampoi.java_auto_grader.util;
+
+import io.adampoi.java_auto_grader.model.type.TestCaseResult;
+import io.adampoi.java_auto_grader.model.type.TestSuiteResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestReportParserTest {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private final TestReportParser parser = new TestReportParser();
+    private final DomTestReportParser domParser = new DomTestReportParser();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // Gradle: passed, failed, errored and skipped cases, suite-level output.
+            """
+                    <testsuite name="workspace.MainTest" tests="4" skipped="1" failures="1" errors="1" time="0.5">
+                      <properties/>
+                      <testcase name="add()" classname="workspace.MainTest" time="0.01"/>
+                      <testcase name="subtract()" classname="workspace.MainTest" time="0.02">
+                        <failure message="expected: &lt;1&gt; but was: &lt;2&gt;" type="AssertionFailedError">\
+                    AssertionFailedError: expected: &lt;1&gt; but was: &lt;2&gt;
+                    \tat workspace.MainTest.subtract(MainTest.java:12)
+                    </failure>
+                      </testcase>
+                      <testcase name="divide()" classname="workspace.MainTest" time="0.003">
+                        <error message="/ by zero" type="java.lang.ArithmeticException"><![CDATA[\
+                    java.lang.ArithmeticException: / by zero
+                    \tat workspace.Main.divide(Main.java:7)
+                    ]]></error>
+                      </testcase>
+                      <testcase name="later()" classname="workspace.MainTest" time="0">
+                        <skipped/>
+                      </testcase>
+                      <system-out><![CDATA[suite output]]></system-out>
+                      <system-err><![CDATA[]]></system-err>
+                    </testsuite>
+                    """,
+            // A failure outranks an error and a skip, whatever their order; only the first failure counts.
+            """
+                    <testsuite name="workspace.MainTest" tests="1" failures="1">
+                      <testcase name="add()" classname="workspace.MainTest">
+                        <skipped/>
+                        <error message="boom">error trace</error>
+                        <failure message="first">first trace</failure>
+                        <failure message="second">second trace</failure>
+                      </testcase>
+                    </testsuite>
+                    """,
+            // Surefire: nested suites, comments, missing attributes and messages.
+            """
+                    <testsuites>
+                      <!-- generated -->
+                      <testsuite name="workspace.MainTest">
+                        <testcase name="add"/>
+                        <testcase name="multiply" classname="workspace.MainTest" time="1.25">
+                          <failure>no message</failure>
+                        </testcase>
+                      </testsuite>
+                    </testsuites>
+                    """,
+            "<testsuite name=\"empty\" tests=\"0\"/>"
+    })
+    void parsesLikeTheDomParser(String report) {
+        Optional<TestSuiteResult> streamed = parse(report);
+
+        assertThat(streamed).isPresent();
+        assertThat(streamed).isEqualTo(domParse(report));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "<testsuite", "<testsuite></testcase>", "not xml"})
+    void rejectsMalformedReportsLikeTheDomParser(String report) {
+        assertThat(parse(report)).isEmpty();
+        assertThat(domParse(report)).isEmpty();
+    }
+
+    @Test
+    void capsStackTraces() {
+        ReflectionTestUtils.setField(parser, "maxStackTraceChars", 10);
+        String trace = "x".repeat(100_000);
+
+        TestCaseResult testCase = onlyTestCase(parse(
+                "<testsuite name=\"s\"><testcase name=\"t\"><failure message=\"m\">" + trace
+                        + "</failure></testcase></testsuite>"));
+
+        assertThat(testCase.getStatus()).isEqualTo("FAILED");
+        assertThat(testCase.getFailureMessage()).isEqualTo("m");
+        assertThat(testCase.getStackTrace()).isEqualTo("x".repeat(10) + "\n... [99990 characters truncated]");
+    }
+
+    @Test
+    void capsTestOutputAcrossStdoutAndStderr() {
+        ReflectionTestUtils.setField(parser, "maxOutputChars", 8);
+
+        TestCaseResult testCase = onlyTestCase(parse("""
+                <testsuite name="s">
+                  <testcase name="t">
+                    <system-out>hello </system-out>
+                    <system-err>world</system-err>
+                  </testcase>
+                </testsuite>
+                """));
+
+        assertThat(testCase.getStatus()).isEqualTo("PASSED");
+        assertThat(testCase.getOutput()).isEqualTo("hello wo\n... [3 characters truncated]");
+    }
+
+    @Test
+    void keepsTextWithinTheCaps() {
+        TestCaseResult testCase = onlyTestCase(parse("""
+                <testsuite name="s">
+                  <testcase name="t">
+                    <error message="m">trace</error>
+                    <system-out>printed</system-out>
+                  </testcase>
+                  <system-out>suite output is not kept</system-out>
+                </testsuite>
+                """));
+
+        assertThat(testCase.getStackTrace()).isEqualTo("trace");
+        assertThat(testCase.getOutput()).isEqualTo("printed");
+    }
+
+    private Optional<TestSuiteResult> parse(String report) {
+        return parser.parseTestReport(stream(report), "TEST-report.xml");
+    }
+
+    private Optional<TestSuiteResult> domParse(String report) {
+        return domParser.parseTestReport(stream(report), "TEST-report.xml");
+    }
+
+    private static TestCaseResult onlyTestCase(Optional<TestSuiteResult> suite) {
+        assertThat(suite).isPresent();
+        assertThat(suite.get().getTestCases()).hasSize(1);
+        return suite.get().getTestCases().get(0);
+    }
+
+    private static ByteArrayInputStream stream(String report) {
+        String xml = report.isEmpty() ? report : HEADER + report;
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}